@@ -0,0 +1,79 @@
+package com.clinic.demo.DTO;
+
+import com.clinic.demo.models.enums.notifications.NotificationChannel;
+import com.clinic.demo.models.enums.notifications.ReminderFrequency;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+/**
+ * An upcoming appointment with the patient's contact details and reminder preferences. The preference
+ * columns are null for patients who never saved any, in which case the {@code NotificationPreferences}
+ * defaults apply.
+ */
+public record AppointmentReminderDTO(
+        UUID appointmentId,
+        LocalDateTime startDateTime,
+        String patientEmail,
+        String patientPhoneNumber,
+        String patientFirstName,
+        String doctorFirstName,
+        String doctorLastName,
+        boolean patientEnabled,
+        boolean patientDeleted,
+        Boolean remindersEnabled,
+        Boolean emailNotificationsEnabled,
+        Boolean smsNotificationsEnabled,
+        ReminderFrequency reminderFrequency,
+        String preferredNotificationTime,
+        NotificationChannel notificationChannel
+) {
+    private static final LocalTime DEFAULT_NOTIFICATION_TIME = LocalTime.of(9, 0);
+
+    public boolean wantsReminder() {
+        return patientEnabled && !patientDeleted && (remindersEnabled == null || remindersEnabled)
+                && (sendsEmail() || sendsSms());
+    }
+
+    /**
+     * Whether the patient wants to be emailed about this appointment, e.g. when it is booked.
+     */
+    public boolean wantsConfirmationEmail() {
+        return wantsReminder() && sendsEmail();
+    }
+
+    public LocalDateTime reminderTime() {
+        ReminderFrequency frequency = reminderFrequency != null ? reminderFrequency : ReminderFrequency.TWO_DAYS_BEFORE;
+        return frequency.reminderTime(startDateTime, preferredTime());
+    }
+
+    public boolean sendsEmail() {
+        NotificationChannel channel = channel();
+        return (channel == NotificationChannel.EMAIL_ONLY || channel == NotificationChannel.BOTH)
+                && (emailNotificationsEnabled == null || emailNotificationsEnabled)
+                && patientEmail != null && !patientEmail.isEmpty();
+    }
+
+    public boolean sendsSms() {
+        NotificationChannel channel = channel();
+        return (channel == NotificationChannel.SMS_ONLY || channel == NotificationChannel.BOTH)
+                && smsNotificationsEnabled != null && smsNotificationsEnabled
+                && patientPhoneNumber != null && !patientPhoneNumber.isEmpty();
+    }
+
+    private NotificationChannel channel() {
+        return notificationChannel != null ? notificationChannel : NotificationChannel.EMAIL_ONLY;
+    }
+
+    private LocalTime preferredTime() {
+        if (preferredNotificationTime == null)
+            return DEFAULT_NOTIFICATION_TIME;
+        try {
+            return LocalTime.parse(preferredNotificationTime);
+        } catch (DateTimeParseException e) {
+            return DEFAULT_NOTIFICATION_TIME;
+        }
+    }
+}
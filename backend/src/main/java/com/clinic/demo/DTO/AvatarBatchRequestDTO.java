@@ -0,0 +1,19 @@
+package com.clinic.demo.DTO;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Users to look avatars up for, by id, by email, or both.
+ */
+public record AvatarBatchRequestDTO(
+        @Size(max = 200, message = "At most 200 ids can be looked up at once")
+        List<@NotNull UUID> ids,
+
+        @Size(max = 200, message = "At most 200 emails can be looked up at once")
+        List<@NotBlank String> emails
+) {}
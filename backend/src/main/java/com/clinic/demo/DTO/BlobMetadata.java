@@ -0,0 +1,9 @@
+package com.clinic.demo.DTO;
+
+import java.time.Instant;
+
+public record BlobMetadata(
+        String key,
+        long size,
+        Instant lastModified
+) {}
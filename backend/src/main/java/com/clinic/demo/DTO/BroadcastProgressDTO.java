@@ -0,0 +1,27 @@
+package com.clinic.demo.DTO;
+
+import com.clinic.demo.models.enums.BroadcastStatus;
+import com.clinic.demo.models.enums.notifications.NotificationType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class BroadcastProgressDTO {
+    private Long id;
+    private String title;
+    private NotificationType type;
+    private BroadcastStatus status;
+    private long totalRecipients; // active patients when the broadcast was created
+    private long processedRecipients;
+    private long emailsQueued;
+    private long smsQueued;
+    private long skippedRecipients; // opted out of this type or have no usable channel
+    private double percentComplete;
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
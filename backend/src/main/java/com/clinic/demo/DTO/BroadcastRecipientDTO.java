@@ -0,0 +1,48 @@
+package com.clinic.demo.DTO;
+
+import com.clinic.demo.models.enums.notifications.NotificationType;
+
+import java.util.UUID;
+
+/**
+ * A patient's contact details and notification preferences, as read by a broadcast. The preference columns
+ * are null for patients who never saved any, in which case the {@code NotificationPreferences} defaults apply.
+ */
+public record BroadcastRecipientDTO(
+        UUID id,
+        String email,
+        String phoneNumber,
+        Boolean emailNotificationsEnabled,
+        Boolean smsNotificationsEnabled,
+        Boolean appointmentRemindersEnabled,
+        Boolean prescriptionRemindersEnabled,
+        Boolean labResultsNotificationsEnabled,
+        Boolean emergencyAlertsEnabled,
+        Boolean marketingNotificationsEnabled
+) {
+    public boolean accepts(NotificationType type) {
+        return switch (type) {
+            case APPOINTMENT_REMINDER, APPOINTMENT_CONFIRMATION -> enabled(appointmentRemindersEnabled, true);
+            case PRESCRIPTION_REMINDER -> enabled(prescriptionRemindersEnabled, true);
+            case LAB_RESULTS -> enabled(labResultsNotificationsEnabled, true);
+            case EMERGENCY_ALERT -> enabled(emergencyAlertsEnabled, true);
+            case MARKETING -> enabled(marketingNotificationsEnabled, true);
+            // Service notices about the clinic itself; email and SMS opt-outs still apply
+            case SYSTEM_MAINTENANCE -> true;
+            // Sent to employees about their own requests, never broadcast to patients
+            case TIME_OFF_DECISION -> false;
+        };
+    }
+
+    public boolean sendsEmail() {
+        return enabled(emailNotificationsEnabled, true) && email != null && !email.isEmpty();
+    }
+
+    public boolean sendsSms() {
+        return enabled(smsNotificationsEnabled, false) && phoneNumber != null && !phoneNumber.isEmpty();
+    }
+
+    private static boolean enabled(Boolean preference, boolean defaultValue) {
+        return preference != null ? preference : defaultValue;
+    }
+}
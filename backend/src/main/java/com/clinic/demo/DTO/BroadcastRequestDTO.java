@@ -0,0 +1,20 @@
+package com.clinic.demo.DTO;
+
+import com.clinic.demo.models.enums.notifications.NotificationType;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+@Data
+public class BroadcastRequestDTO {
+    @NotBlank(message = "Title is required")
+    @Size(max = 255, message = "Title must be at most 255 characters")
+    private String title;
+
+    @NotBlank(message = "Message is required")
+    private String message;
+
+    @NotNull(message = "Notification type is required")
+    private NotificationType type;
+}
@@ -1,10 +1,20 @@
 package com.clinic.demo.DTO;
 
-import org.springframework.core.io.Resource;
+import java.nio.ByteBuffer;
+import java.time.Instant;
 
+/**
+ * @param storageKey   where the file is in {@code BlobStorage}; null for the default avatar
+ * @param content      the file's bytes when they are in memory, served instead of reading storage
+ * @param lastModified set along with {@code content}
+ * @param etag         strong validator for the file's content, without quotes
+ */
 public record FileResponseDTO(
-        Resource resource,
+        String storageKey,
+        ByteBuffer content,
+        Instant lastModified,
         String contentType,
         boolean exists,
-        String fileName
+        String fileName,
+        String etag
 ) {}
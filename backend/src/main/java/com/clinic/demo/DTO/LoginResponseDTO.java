@@ -8,5 +8,8 @@ public record LoginResponseDTO(
         String jwt,
 
         @NotNull(message = "User data is required")
-        UserProfileDTO user
+        UserProfileDTO user,
+
+        @NotBlank(message = "Refresh token is required")
+        String refreshToken
 ) {}
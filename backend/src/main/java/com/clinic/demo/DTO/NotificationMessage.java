@@ -0,0 +1,6 @@
+package com.clinic.demo.DTO;
+
+import com.clinic.demo.models.enums.notifications.NotificationType;
+
+public record NotificationMessage(NotificationType type, String title, String message) {
+}
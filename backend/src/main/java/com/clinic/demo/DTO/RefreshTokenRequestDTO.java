@@ -0,0 +1,8 @@
+package com.clinic.demo.DTO;
+
+import jakarta.validation.constraints.NotBlank;
+
+public record RefreshTokenRequestDTO(
+        @NotBlank(message = "Refresh token is required")
+        String refreshToken
+) {}
@@ -0,0 +1,4 @@
+package com.clinic.demo.DTO;
+
+public record SmsMessage(String phoneNumber, String text) {
+}
@@ -1,8 +1,13 @@
 package com.clinic.demo.DTO;
 
+import java.io.InputStream;
+
+/**
+ * @param content the uploaded file, read once and not closed by the service
+ */
 public record UploadPictureDTO(
         String email,
-        byte[] profilePicture,
+        InputStream content,
         String fileName
 ) {
 }
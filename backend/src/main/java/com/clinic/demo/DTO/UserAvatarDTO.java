@@ -0,0 +1,9 @@
+package com.clinic.demo.DTO;
+
+import java.util.UUID;
+
+public record UserAvatarDTO(
+        UUID id,
+        String email,
+        String avatarPath
+) {}
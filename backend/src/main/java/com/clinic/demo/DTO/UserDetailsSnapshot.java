@@ -0,0 +1,76 @@
+package com.clinic.demo.DTO;
+
+import com.clinic.demo.Mapper.UserMapper;
+import com.clinic.demo.models.entity.RoleEntity;
+import com.clinic.demo.models.entity.user.BaseUserEntity;
+import com.clinic.demo.models.enums.UserTypeEnum;
+import com.clinic.demo.utils.PermissionMask;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import lombok.With;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable copy of everything the login path needs from a user, taken in a single walk of the
+ * entity graph so the principal can be cached and shared without touching Hibernate again.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class UserDetailsSnapshot implements UserDetails {
+
+    UUID id;
+    String email;
+    @With
+    String password;
+    UserTypeEnum userType;
+    String firstName;
+    String lastName;
+    Set<String> roleNames;
+    PermissionMask permissions;
+    long permissionsVersion;
+    boolean accountNonExpired;
+    boolean accountNonLocked;
+    boolean credentialsNonExpired;
+    boolean enabled;
+    boolean deleted;
+    UserProfileDTO profile;
+
+    /**
+     * @param permissionsVersion version of the role permission table {@code permissions} was built from
+     */
+    public static UserDetailsSnapshot from(BaseUserEntity user, PermissionMask permissions, long permissionsVersion) {
+        return new UserDetailsSnapshot(
+                user.getId(),
+                user.getEmail(),
+                user.getPassword(),
+                user.getUserType(),
+                user.getFirstName(),
+                user.getLastName(),
+                user.getRoles().stream().map(RoleEntity::getName).collect(Collectors.toUnmodifiableSet()),
+                permissions,
+                permissionsVersion,
+                user.isAccountNonExpired(),
+                user.isAccountNonLocked(),
+                user.isCredentialsNonExpired(),
+                user.isEnabled(),
+                user.isDeleted(),
+                UserMapper.toUserProfileDTO(user)
+        );
+    }
+
+    @Override
+    public Set<GrantedAuthority> getAuthorities() {
+        return permissions.getAuthorities();
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+}
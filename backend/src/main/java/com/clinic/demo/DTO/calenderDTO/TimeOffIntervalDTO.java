@@ -0,0 +1,22 @@
+package com.clinic.demo.DTO.calenderDTO;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record TimeOffIntervalDTO(
+        Long id,
+        UUID employeeId,
+        String employeeEmail,
+        String employeeName,
+        LocalDateTime startDateTime,
+        LocalDateTime endDateTime,
+        String reason,
+        String approvedBy,
+        String approvalNotes,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt
+) {
+    public boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        return !startDateTime.isAfter(to) && !endDateTime.isBefore(from);
+    }
+}
@@ -0,0 +1,20 @@
+package com.clinic.demo.DTO.calenderDTO;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class TimeOffPageDTO {
+    private List<TimeOffDTO> content;
+    private boolean hasNext;
+
+    // Keyset cursor for the next page (null when there is no next page)
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime nextStartDateTime;
+    private Long nextId;
+}
@@ -1,39 +1,52 @@
 package com.clinic.demo.configuration;
 
-import com.clinic.demo.utils.RSAKeyProperties;
-import com.nimbusds.jose.jwk.JWK;
-import com.nimbusds.jose.jwk.JWKSet;
-import com.nimbusds.jose.jwk.RSAKey;
-import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
-import com.nimbusds.jose.jwk.source.JWKSource;
-import com.nimbusds.jose.proc.SecurityContext;
+import com.clinic.demo.service.RolePermissionCache;
+import com.clinic.demo.service.TokenRevocationService;
+import com.clinic.demo.utils.CachingJwtDecoder;
+import com.clinic.demo.utils.JwkJwtDecoder;
+import com.clinic.demo.utils.JwkJwtEncoder;
+import com.clinic.demo.utils.JwtKeyMaterial;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
 
 @Configuration
 @EnableWebSecurity
 public class JWTConfig {
-    private final RSAKeyProperties keys;
+    private final JwtKeyMaterial keys;
+
+    @Value("${security.jwt.cache.max.size:10000}")
+    private int jwtCacheMaxSize;
 
     @Autowired
-    public JWTConfig(RSAKeyProperties keys) {
+    public JWTConfig(JwtKeyMaterial keys) {
         this.keys = keys;
     }
 
     @Bean
-    public JwtDecoder jwtDecoder() {
-        return NimbusJwtDecoder.withPublicKey(keys.getPublicKey()).build();
+    public JwtDecoder jwtDecoder(MeterRegistry meterRegistry, TokenRevocationService tokenRevocationService,
+                                 RolePermissionCache rolePermissionCache) {
+        JwkJwtDecoder verifyingDecoder = new JwkJwtDecoder(keys::findVerificationKey);
+        CachingJwtDecoder cachingDecoder = new CachingJwtDecoder(verifyingDecoder, jwtCacheMaxSize, meterRegistry);
+        // Checked on every request, after the cache, so a revocation or role change takes effect for cached tokens too
+        return token -> {
+            Jwt jwt = cachingDecoder.decode(token);
+            if (tokenRevocationService.isRevoked(jwt))
+                throw new BadJwtException("Token has been revoked");
+            if (rolePermissionCache.isStale(jwt))
+                throw new BadJwtException("Token permissions are out of date");
+            return jwt;
+        };
     }
     @Bean
     public JwtEncoder jwtEncoder() {
-        JWK jwk = new RSAKey.Builder(keys.getPublicKey()).privateKey(keys.getPrivateKey()).build();
-        JWKSource<SecurityContext> jwkSource = new ImmutableJWKSet<>(new JWKSet(jwk));
-        return new NimbusJwtEncoder(jwkSource);
+        return new JwkJwtEncoder(keys::getSigningKey);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,39 @@
+package com.clinic.demo.configuration;
+
+import com.clinic.demo.utils.PermissionSecurityExpressionRoot;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.core.Authentication;
+
+import java.util.function.Supplier;
+
+@Configuration
+@EnableMethodSecurity
+public class MethodSecurityConfig {
+
+    // Static so the method security infrastructure can pick it up before regular beans are created
+    @Bean
+    static MethodSecurityExpressionHandler methodSecurityExpressionHandler() {
+        return new DefaultMethodSecurityExpressionHandler() {
+            @Override
+            public EvaluationContext createEvaluationContext(Supplier<Authentication> authentication, MethodInvocation invocation) {
+                StandardEvaluationContext context = (StandardEvaluationContext) super.createEvaluationContext(authentication, invocation);
+                PermissionSecurityExpressionRoot root = new PermissionSecurityExpressionRoot(authentication);
+                root.setPermissionEvaluator(getPermissionEvaluator());
+                root.setTrustResolver(new AuthenticationTrustResolverImpl());
+                root.setRoleHierarchy(getRoleHierarchy());
+                root.setDefaultRolePrefix(getDefaultRolePrefix());
+                root.setThis(invocation.getThis());
+                context.setRootObject(root);
+                return context;
+            }
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package com.clinic.demo.configuration;
+
+import com.clinic.demo.models.enums.notifications.NotificationType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * How notification emails are coalesced per recipient by {@code NotificationService}, bound from
+ * {@code notifications.digest}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "notifications.digest")
+public class NotificationDigestProperties {
+
+    private boolean enabled = true;
+
+    // A digest is sent as soon as it holds this many notifications
+    private int maxItems = 10;
+
+    // Longest a notification waits for others when its type has no window of its own
+    private Duration defaultWindow = Duration.ofMinutes(2);
+
+    private Map<NotificationType, Duration> windows = new EnumMap<>(NotificationType.class);
+
+    // Sent immediately, never held for a digest
+    private Set<NotificationType> bypass = EnumSet.of(NotificationType.EMERGENCY_ALERT);
+
+    public Duration windowFor(NotificationType type) {
+        return windows.getOrDefault(type, defaultWindow);
+    }
+
+    public boolean isBuffered(NotificationType type) {
+        return enabled && !bypass.contains(type) && windowFor(type).isPositive();
+    }
+}
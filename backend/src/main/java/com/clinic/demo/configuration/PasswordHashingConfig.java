@@ -0,0 +1,96 @@
+package com.clinic.demo.configuration;
+
+import com.clinic.demo.utils.BoundedExecutorPasswordEncoder;
+import com.clinic.demo.utils.PasswordHashCalibrator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+public class PasswordHashingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingConfig.class);
+
+    public static final String BCRYPT = "bcrypt";
+    public static final String ARGON2 = "argon2";
+
+    @Value("${security.password.hashing.algorithm:bcrypt}")
+    private String algorithm;
+
+    @Value("${security.password.hashing.calibrate:true}")
+    private boolean calibrate;
+
+    @Value("${security.password.hashing.target.millis:250}")
+    private long targetMillis;
+
+    // Used as configured; only Argon2 is calibrated
+    @Value("${security.password.hashing.bcrypt.strength:10}")
+    private int bcryptStrength;
+
+    @Value("${security.password.hashing.argon2.memory.kib:19456}")
+    private int argon2MemoryKib;
+
+    @Value("${security.password.hashing.argon2.parallelism:1}")
+    private int argon2Parallelism;
+
+    // The configured cost is a ceiling: calibration only lowers it, to no less than the minimum, on hosts too slow for the target
+    @Value("${security.password.hashing.argon2.iterations:3}")
+    private int argon2Iterations;
+
+    @Value("${security.password.hashing.argon2.min.iterations:2}")
+    private int argon2MinIterations;
+
+    @Value("${security.password.hashing.executor.threads:0}")
+    private int executorThreads;
+
+    @Value("${security.password.hashing.executor.queue.capacity:200}")
+    private int executorQueueCapacity;
+
+    @Bean
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        if (!BCRYPT.equals(algorithm) && !ARGON2.equals(algorithm))
+            throw new IllegalStateException("Unsupported password hashing algorithm: " + algorithm);
+
+        if (argon2MinIterations > argon2Iterations)
+            throw new IllegalStateException("Password hashing minimum cost exceeds the configured cost");
+
+        int argon2Iterations = this.argon2Iterations;
+
+        // Only the algorithm used for new hashes needs tuning; matching reads the cost from the stored hash
+        if (calibrate && ARGON2.equals(algorithm)) {
+            argon2Iterations = PasswordHashCalibrator.calibrateArgon2Iterations(
+                    targetMillis, argon2MemoryKib, argon2Parallelism, argon2MinIterations, this.argon2Iterations);
+        }
+
+        int workFactor = BCRYPT.equals(algorithm) ? bcryptStrength : argon2Iterations;
+        logger.info("Password hashing uses {} with work factor {} (target {} ms)", algorithm, workFactor, targetMillis);
+        Gauge.builder("password.hash.work.factor", () -> workFactor)
+                .tag("algorithm", algorithm)
+                .register(meterRegistry);
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, new BCryptPasswordEncoder(bcryptStrength));
+        encoders.put(ARGON2, PasswordHashCalibrator.argon2(argon2MemoryKib, argon2Parallelism, argon2Iterations));
+
+        DelegatingPasswordEncoder delegatingEncoder = new DelegatingPasswordEncoder(algorithm, encoders);
+        // Hashes stored before this encoder existed carry no {id} prefix and are all bcrypt;
+        // they are reported as needing an upgrade, so they get rehashed on the next successful login
+        delegatingEncoder.setDefaultPasswordEncoderForMatches(encoders.get(BCRYPT));
+
+        int threads = executorThreads > 0
+                ? executorThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        return new BoundedExecutorPasswordEncoder(delegatingEncoder, threads, executorQueueCapacity, meterRegistry, algorithm);
+    }
+}
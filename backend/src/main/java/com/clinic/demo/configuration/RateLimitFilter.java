@@ -0,0 +1,230 @@
+package com.clinic.demo.configuration;
+
+import com.clinic.demo.utils.TokenBucket;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throttles the expensive auth endpoints (password hashing, OTP mails) with token buckets per client IP and,
+ * where the route asks for it, per email in the JSON body. Over-limit requests get 429 with Retry-After.
+ * <p>
+ * Buckets live in a map bounded by {@code max-tracked-keys}: full buckets carry no state and are swept out,
+ * and when the map is still full new keys are shed rather than letting memory grow.
+ * Runs after the Spring Security chain so 429 responses still carry CORS headers.
+ */
+@Slf4j
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String THROTTLED_METRIC = "http.server.requests.throttled";
+
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    public RateLimitFilter(RateLimitProperties properties, MeterRegistry meterRegistry, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+        meterRegistry.gaugeMapSize("ratelimit.buckets", List.of(), buckets);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || findRoute(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RateLimitProperties.Route route = findRoute(request);
+        long now = System.nanoTime();
+
+        // The IP check needs no body, so floods are rejected before anything is read
+        if (route.getPerIp() != null) {
+            long wait = tryAcquire(route, "ip", request.getRemoteAddr(), route.getPerIp(), now);
+            if (wait != 0) {
+                reject(response, route, "ip", wait);
+                return;
+            }
+        }
+
+        if (route.getPerEmail() != null) {
+            BufferedBodyRequest buffered = BufferedBodyRequest.wrap(request, properties.getMaxBodyBytes());
+            String email = buffered.isComplete() ? readEmail(buffered.getPrefix()) : null;
+            if (email != null) {
+                long wait = tryAcquire(route, "email", email, route.getPerEmail(), now);
+                if (wait != 0) {
+                    reject(response, route, "email", wait);
+                    return;
+                }
+            }
+            request = buffered;
+        }
+
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * @return 0 when allowed, otherwise nanoseconds the client should wait
+     */
+    private long tryAcquire(RateLimitProperties.Route route, String dimension, String value,
+                            RateLimitProperties.Limit limit, long now) {
+        String key = route.getName() + '|' + dimension + '|' + value;
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= properties.getMaxTrackedKeys()) {
+                // Sweep at most once a second from the request path; a flood of new keys must not turn into O(n) work each
+                long last = lastSweep.get();
+                if (now - last > TimeUnit.SECONDS.toNanos(1) && lastSweep.compareAndSet(last, now))
+                    evictFullBuckets();
+                if (buckets.size() >= properties.getMaxTrackedKeys())
+                    return limit.getRefillPeriod().toNanos(); // shed: no room to track another client
+            }
+            bucket = buckets.computeIfAbsent(key,
+                    k -> new TokenBucket(limit.getCapacity(), limit.getRefillPeriod().toNanos(), now));
+        }
+        return bucket.tryAcquire(now);
+    }
+
+    @Scheduled(fixedDelayString = "${security.rate-limit.sweep-interval-ms:60000}")
+    public void evictFullBuckets() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    private void reject(HttpServletResponse response, RateLimitProperties.Route route, String dimension, long waitNanos)
+            throws IOException {
+        meterRegistry.counter(THROTTLED_METRIC, "route", route.getName(), "key", dimension).increment();
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write("Too many requests, please try again in " + retryAfterSeconds + " seconds");
+    }
+
+    private RateLimitProperties.Route findRoute(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (RateLimitProperties.Route route : properties.getRoutes()) {
+            if (route.getPath().equals(path) && route.getMethod().equalsIgnoreCase(request.getMethod()))
+                return route;
+        }
+        return null;
+    }
+
+    private String readEmail(byte[] body) {
+        try {
+            JsonNode email = objectMapper.readTree(body).get("email");
+            return email != null && email.isTextual() ? email.asText().trim().toLowerCase() : null;
+        } catch (IOException e) {
+            return null; // malformed bodies are rejected by the controller; the IP limit still applies
+        }
+    }
+
+    /**
+     * Reads up to {@code maxBytes} of the body up front and replays it to the controller, followed by
+     * whatever was not read.
+     */
+    private static class BufferedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] prefix;
+        private final boolean complete;
+        private final InputStream body;
+
+        private BufferedBodyRequest(HttpServletRequest request, byte[] prefix, boolean complete) throws IOException {
+            super(request);
+            this.prefix = prefix;
+            this.complete = complete;
+            this.body = complete
+                    ? new ByteArrayInputStream(prefix)
+                    : new SequenceInputStream(new ByteArrayInputStream(prefix), request.getInputStream());
+        }
+
+        static BufferedBodyRequest wrap(HttpServletRequest request, int maxBytes) throws IOException {
+            byte[] prefix = request.getInputStream().readNBytes(maxBytes + 1);
+            boolean complete = prefix.length <= maxBytes;
+            return new BufferedBodyRequest(request, prefix, complete);
+        }
+
+        byte[] getPrefix() {
+            return prefix;
+        }
+
+        boolean isComplete() {
+            return complete;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return new ServletInputStream() {
+                @Override
+                public int read() throws IOException {
+                    return body.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return body.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    try {
+                        return body.available() == 0;
+                    } catch (IOException e) {
+                        return true;
+                    }
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // The body is already in memory, so all of it is available right away
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(getInputStream(), Charset.forName(encoding)));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.clinic.demo.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-route request limits applied by {@link RateLimitFilter}, bound from {@code security.rate-limit}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "security.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Upper bound on buckets kept in memory; beyond it requests for new keys are shed
+    private int maxTrackedKeys = 100_000;
+
+    // Largest request body read to find the email; bigger bodies are only limited per IP
+    private int maxBodyBytes = 16 * 1024;
+
+    private List<Route> routes = new ArrayList<>();
+
+    @Data
+    public static class Route {
+        private String name;
+        private String method = "POST";
+        private String path;
+        private Limit perIp;
+        private Limit perEmail;
+    }
+
+    @Data
+    public static class Limit {
+        // Requests allowed in a burst
+        private int capacity;
+        // Time to regain one request
+        private Duration refillPeriod;
+    }
+}
@@ -0,0 +1,49 @@
+package com.clinic.demo.configuration;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Outbound SMS settings used by {@code SmsService}, bound from {@code sms}.
+ */
+@Data
+@Component
+@Validated
+@ConfigurationProperties(prefix = "sms")
+public class SmsProperties {
+
+    // Name of the SmsGateway that messages are sent through
+    private String provider = "stub";
+
+    // Messages waiting to be sent; beyond it new messages are rejected
+    private int queueCapacity = 10_000;
+
+    // How long a batch waits for more messages once it has one
+    private Duration linger = Duration.ofMillis(50);
+
+    private int maxConcurrentBatches = 4;
+
+    private Map<String, @Valid ProviderLimits> providers = new HashMap<>();
+
+    public ProviderLimits limitsFor(String provider) {
+        return providers.getOrDefault(provider, new ProviderLimits());
+    }
+
+    @Data
+    public static class ProviderLimits {
+        @Positive
+        private int maxBatchSize = 100;
+        @Positive
+        private double messagesPerSecond = 10;
+        // Messages that may be sent at once after an idle period
+        private int burst = 10;
+    }
+}
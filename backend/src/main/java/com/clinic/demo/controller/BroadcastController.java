@@ -0,0 +1,40 @@
+package com.clinic.demo.controller;
+
+import com.clinic.demo.DTO.BroadcastProgressDTO;
+import com.clinic.demo.DTO.BroadcastRequestDTO;
+import com.clinic.demo.service.BroadcastService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/broadcasts")
+@CrossOrigin("*")
+@PreAuthorize("hasPermission('NOTIFICATION_BROADCAST')")
+public class BroadcastController {
+
+    private final BroadcastService broadcastService;
+
+    @PostMapping
+    public ResponseEntity<BroadcastProgressDTO> createBroadcast(@Valid @RequestBody BroadcastRequestDTO request,
+                                                                Principal principal) {
+        BroadcastProgressDTO broadcast = broadcastService.createBroadcast(request, principal.getName());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(broadcast);
+    }
+
+    @GetMapping("/{broadcastId}")
+    public ResponseEntity<BroadcastProgressDTO> getBroadcast(@PathVariable Long broadcastId) {
+        return ResponseEntity.ok(broadcastService.getBroadcast(broadcastId));
+    }
+
+    @PostMapping("/{broadcastId}/cancel")
+    public ResponseEntity<BroadcastProgressDTO> cancelBroadcast(@PathVariable Long broadcastId) {
+        return ResponseEntity.ok(broadcastService.cancelBroadcast(broadcastId));
+    }
+}
@@ -1,17 +1,24 @@
 package com.clinic.demo.controller;
 
+import com.clinic.demo.DTO.AvatarBatchRequestDTO;
 import com.clinic.demo.DTO.FileResponseDTO;
 import com.clinic.demo.DTO.UploadPictureDTO;
 import com.clinic.demo.service.AvatarService;
+import com.clinic.demo.service.BlobStorage;
+import com.clinic.demo.utils.FileResponseWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/files")
@@ -19,40 +26,57 @@ import java.io.IOException;
 @CrossOrigin("*")
 public class FileController {
 
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
     private final AvatarService avatarService;
+    private final BlobStorage blobStorage;
 
     @PostMapping("/upload-avatar")
     public ResponseEntity<String> uploadAvatar(
             @RequestParam("email") String email,
             @RequestParam("file") MultipartFile file) throws IOException {
 
-        UploadPictureDTO uploadDTO = new UploadPictureDTO(
-                email,
-                file.getBytes(),
-                file.getOriginalFilename()
-        );
+        try (InputStream content = file.getInputStream()) {
+            UploadPictureDTO uploadDTO = new UploadPictureDTO(
+                    email,
+                    content,
+                    file.getOriginalFilename()
+            );
 
-        avatarService.uploadProfilePicture(uploadDTO);
+            avatarService.uploadProfilePicture(uploadDTO);
+        }
         return ResponseEntity.ok("Avatar uploaded successfully");
     }
 
     @GetMapping("/avatar/me")
-    public ResponseEntity<Resource> getMyProfilePicture() throws IOException {
-        FileResponseDTO response = avatarService.getCurrentUserProfilePicture();
-        if (!response.exists())
-            return ResponseEntity.notFound().build();
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(response.contentType()))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + response.fileName() + "\"")
-                .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(response.resource().contentLength()))
-                .body(response.resource());
+    public void getMyProfilePicture(@RequestParam(required = false) Integer size, HttpServletRequest request,
+                                    HttpServletResponse response) throws IOException {
+        writeAvatar(avatarService.getCurrentUserProfilePicture(size), "private, no-cache", request, response);
     }
 
+    /**
+     * The user's current avatar, as a thumbnail at least {@code size} pixels wide if given. Clients must
+     * revalidate, since it changes with every upload; the immutable URL of the picture is in
+     * {@code Content-Location}.
+     */
     @GetMapping("/avatar/{email}")
-    public ResponseEntity<Resource> getProfilePicture(@PathVariable String email) {
-        FileResponseDTO response = avatarService.getUserProfilePicture(email);
-        return buildResourceResponse(response);
+    public void getProfilePicture(@PathVariable String email, @RequestParam(required = false) Integer size,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeAvatar(avatarService.getUserProfilePicture(email, size), "no-cache", request, response);
+    }
+
+    @GetMapping("/avatar/content/{fileName}")
+    public void getAvatarContent(@PathVariable String fileName, HttpServletRequest request,
+                                 HttpServletResponse response) throws IOException {
+        writeAvatar(avatarService.getAvatarContent(fileName), IMMUTABLE, request, response);
+    }
+
+    /**
+     * The immutable URLs of many users' avatars, so a list view needs one request instead of one per row.
+     */
+    @PostMapping("/avatars")
+    public ResponseEntity<Map<String, String>> getAvatarUrls(@Valid @RequestBody AvatarBatchRequestDTO request) {
+        return ResponseEntity.ok(avatarService.getAvatarUrls(request.ids(), request.emails()));
     }
 
     @DeleteMapping("/delete-avatar")
@@ -61,14 +85,25 @@ public class FileController {
         return ResponseEntity.ok("Avatar deleted successfully");
     }
 
-    private ResponseEntity<Resource> buildResourceResponse(FileResponseDTO response) {
-        if (!response.exists())
-            return ResponseEntity.notFound().build();
+    private void writeAvatar(FileResponseDTO avatar, String cacheControl, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        if (!avatar.exists()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(response.contentType()))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline")
-                .header(HttpHeaders.CACHE_CONTROL, "max-age=3600")
-                .body(response.resource());
+        String url = avatarService.getAvatarUrl(avatar);
+        if (url != null)
+            response.setHeader(HttpHeaders.CONTENT_LOCATION, url);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline");
+        try {
+            if (avatar.content() != null)
+                FileResponseWriter.write(request, response, avatar.content(), avatar.lastModified(), avatar.contentType(), avatar.etag(), cacheControl);
+            else
+                FileResponseWriter.write(request, response, blobStorage, avatar.storageKey(), avatar.contentType(), avatar.etag(), cacheControl);
+        } catch (NoSuchFileException e) {
+            response.reset();
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        }
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,7 @@ package com.clinic.demo.controller;
 
 import com.clinic.demo.DTO.calenderDTO.TimeOffApprovalDTO;
 import com.clinic.demo.DTO.calenderDTO.TimeOffDTO;
+import com.clinic.demo.DTO.calenderDTO.TimeOffPageDTO;
 import com.clinic.demo.models.enums.TimeOffStatus;
 import com.clinic.demo.service.TimeOffService;
 import jakarta.validation.Valid;
@@ -86,20 +87,30 @@ public class TimeOffController {
     }
 
     @GetMapping("/active")
-    public ResponseEntity<List<TimeOffDTO>> getAllActiveTimeOffs() {
-        List<TimeOffDTO> activeTimeOffs = timeOffService.getAllActiveTimeOffs();
+    public ResponseEntity<TimeOffPageDTO> getAllActiveTimeOffs(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime afterStartDateTime,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "50") int size) {
+        TimeOffPageDTO activeTimeOffs = timeOffService.getAllActiveTimeOffs(afterStartDateTime, afterId, size);
         return ResponseEntity.ok(activeTimeOffs);
     }
 
     @GetMapping("/pending")
-    public ResponseEntity<List<TimeOffDTO>> getPendingTimeOffs() {
-        List<TimeOffDTO> pendingTimeOffs = timeOffService.getPendingTimeOffs();
+    public ResponseEntity<TimeOffPageDTO> getPendingTimeOffs(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime afterStartDateTime,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "50") int size) {
+        TimeOffPageDTO pendingTimeOffs = timeOffService.getPendingTimeOffs(afterStartDateTime, afterId, size);
         return ResponseEntity.ok(pendingTimeOffs);
     }
 
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<TimeOffDTO>> getTimeOffsByStatus(@PathVariable TimeOffStatus status) {
-        List<TimeOffDTO> timeOffs = timeOffService.getTimeOffsByStatus(status);
+    public ResponseEntity<TimeOffPageDTO> getTimeOffsByStatus(
+            @PathVariable TimeOffStatus status,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime afterStartDateTime,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "50") int size) {
+        TimeOffPageDTO timeOffs = timeOffService.getTimeOffsByStatus(status, afterStartDateTime, afterId, size);
         return ResponseEntity.ok(timeOffs);
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.clinic.demo.exception;
+
+public class BroadcastNotFoundException extends RuntimeException {
+    public BroadcastNotFoundException(String message) {
+        super(message);
+    }
+
+    public BroadcastNotFoundException(Long broadcastId) {
+        super("Broadcast not found with id: " + broadcastId);
+    }
+}
@@ -0,0 +1,18 @@
+package com.clinic.demo.exception;
+
+/**
+ * The password hashing pool is saturated; the client should retry after {@link #getRetryAfterSeconds()}.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingBusyException(long retryAfterSeconds, Throwable cause) {
+        super("Too many concurrent password checks, please try again shortly", cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,38 @@
+package com.clinic.demo.models.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An avatar file stored under its content hash, with the number of users pointing at it. Identical uploads
+ * share one blob; a blob no longer referenced is deleted by a later garbage collection sweep rather than
+ * right away, so requests still serving it are not cut short.
+ */
+@Entity
+@Table(name = "avatar_blob", indexes = @Index(name = "idx_avatar_blob_unreferenced", columnList = "unreferenced_since"))
+@Data
+@NoArgsConstructor
+public class AvatarBlobEntity {
+
+    /**
+     * {@code <sha256>.<extension>}, which is also the file name
+     */
+    @Id
+    @Column(name = "blob_key", length = 80)
+    private String key;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "unreferenced_since")
+    private LocalDateTime unreferencedSince;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
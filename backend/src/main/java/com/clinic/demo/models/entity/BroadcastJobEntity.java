@@ -0,0 +1,76 @@
+package com.clinic.demo.models.entity;
+
+import com.clinic.demo.models.enums.BroadcastStatus;
+import com.clinic.demo.models.enums.notifications.NotificationType;
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Setter;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A notification sent to every patient who accepts it. Recipients are processed in patient id order and
+ * {@code lastRecipientId} is the checkpoint: everything up to it has been queued, so an interrupted job
+ * resumes right after it. The node running the job holds it until {@code leaseUntil}.
+ */
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "broadcast_job")
+@Data
+public class BroadcastJobEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Setter(AccessLevel.NONE)
+    private Long id;
+
+    @Column(nullable = false)
+    private String title;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String message;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private NotificationType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private BroadcastStatus status = BroadcastStatus.PENDING;
+
+    private String createdBy;
+
+    @Column(nullable = false)
+    private long totalRecipients;
+
+    @Column(nullable = false)
+    private long processedRecipients;
+
+    @Column(nullable = false)
+    private long emailsQueued;
+
+    @Column(nullable = false)
+    private long smsQueued;
+
+    @Column(nullable = false)
+    private long skippedRecipients;
+
+    private UUID lastRecipientId;
+
+    private LocalDateTime leaseUntil;
+
+    @Column(length = 500)
+    private String lastError;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+}
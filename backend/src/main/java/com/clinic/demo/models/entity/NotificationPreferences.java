@@ -50,6 +50,9 @@ public class NotificationPreferences {
     @Column(nullable = false)
     private boolean emergencyAlertsEnabled = true;
 
+    @Column(nullable = false)
+    private boolean marketingNotificationsEnabled = true;
+
     @Column
     private String preferredNotificationTime = "09:00";
 
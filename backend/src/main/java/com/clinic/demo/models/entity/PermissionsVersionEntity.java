@@ -0,0 +1,24 @@
+package com.clinic.demo.models.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Single row counting changes to the role → permission table, shared by every node so the version carried
+ * in access tokens ({@code pv}) is comparable across the cluster and across restarts.
+ */
+@Entity
+@Table(name = "permissions_version")
+@Data
+@NoArgsConstructor
+public class PermissionsVersionEntity {
+
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private long version;
+}
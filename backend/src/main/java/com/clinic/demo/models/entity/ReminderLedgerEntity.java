@@ -0,0 +1,36 @@
+package com.clinic.demo.models.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One sent appointment reminder. A reminder is recorded in the same transaction that queues it, and the
+ * unique key makes a second attempt to record it a no-op, so restarts and concurrent nodes never send it twice.
+ */
+@Entity
+@Table(name = "reminder_ledger", uniqueConstraints = @UniqueConstraint(
+        name = "uk_reminder_ledger_appointment_due", columnNames = {"appointment_id", "due_at"}))
+@Data
+@NoArgsConstructor
+public class ReminderLedgerEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Setter(AccessLevel.NONE)
+    private Long id;
+
+    @Column(name = "appointment_id", nullable = false)
+    private UUID appointmentId;
+
+    @Column(name = "due_at", nullable = false)
+    private LocalDateTime dueAt;
+
+    @Column(name = "sent_at", nullable = false)
+    private LocalDateTime sentAt;
+}
@@ -0,0 +1,43 @@
+package com.clinic.demo.models.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * An access token id ({@code jti}) or session id ({@code sid}) that must be rejected until
+ * {@code expiresAt}, when every token carrying it has expired on its own.
+ */
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "revoked_token")
+@Data
+@NoArgsConstructor
+public class RevokedTokenEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Setter(AccessLevel.NONE)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String tokenId;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime revokedAt;
+
+    public RevokedTokenEntity(String tokenId, LocalDateTime expiresAt) {
+        this.tokenId = tokenId;
+        this.expiresAt = expiresAt;
+    }
+}
@@ -11,7 +11,9 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
-@Table(name = "time_off")
+@Table(name = "time_off", indexes = {
+        @Index(name = "idx_time_off_status_start_id", columnList = "status, start_date_time, id")
+})
 public class TimeOff {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
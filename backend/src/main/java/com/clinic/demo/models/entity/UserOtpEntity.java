@@ -10,38 +10,43 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
 
+/**
+ * A pending one-time code, used when codes are kept in the database. Only a SHA-256 hash of the code
+ * is stored, and there is at most one row per email and purpose.
+ */
 @Entity
 @EntityListeners(AuditingEntityListener.class)
-@Table(name = "user_otp")
+@Table(name = "user_otp", uniqueConstraints = @UniqueConstraint(columnNames = {"email", "purpose"}))
 @Data
 public class UserOtpEntity {
-    
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Setter(AccessLevel.NONE)
     private Long id;
-    
+
     @Column(nullable = false)
     private String email;
-    
-    @Column(nullable = false)
-    private String otp;
-    
+
+    @Column(nullable = false, length = 64)
+    private String codeHash;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
-    
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private OtpPurpose purpose;
-    
+
     @Column(nullable = false)
-    private boolean used = false;
+    private int failedAttempts = 0;
 
     public boolean isExpired() {
-        return createdAt == null ||
-                createdAt.isBefore(LocalDateTime.now().minusMinutes(10));
+        return !expiresAt.isAfter(LocalDateTime.now());
     }
 
 }
-
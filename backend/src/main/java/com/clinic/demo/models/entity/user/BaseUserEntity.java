@@ -4,13 +4,13 @@ import com.clinic.demo.models.entity.RoleEntity;
 import com.clinic.demo.models.enums.GenderEnum;
 import com.clinic.demo.models.enums.PermissionEnum;
 import com.clinic.demo.models.enums.UserTypeEnum;
+import com.clinic.demo.utils.PermissionMask;
 import jakarta.persistence.*;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.time.LocalDate;
@@ -19,7 +19,6 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Data
 @NoArgsConstructor
@@ -153,9 +152,7 @@ public class BaseUserEntity implements UserDetails {
     }
 
     public boolean hasPermission(PermissionEnum permission) {
-        return permission != null && roles.stream()
-                .flatMap(role -> role.getPermissions().stream())
-                .anyMatch(p -> p.equals(permission));
+        return PermissionMask.ofRoles(roles).has(permission);
     }
 
     // Utility Methods
@@ -179,10 +176,7 @@ public class BaseUserEntity implements UserDetails {
     // Spring Security UserDetails Implementation
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return roles.stream()
-                .flatMap(role -> role.getPermissions().stream())
-                .map(permission -> new SimpleGrantedAuthority("ROLE_" + permission.name()))
-                .collect(Collectors.toSet());
+        return PermissionMask.ofRoles(roles).getAuthorities();
     }
 
     @Override
@@ -0,0 +1,8 @@
+package com.clinic.demo.models.enums;
+
+public enum BroadcastStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    CANCELLED
+}
@@ -0,0 +1,8 @@
+package com.clinic.demo.models.enums;
+
+public enum MailStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    FAILED
+}
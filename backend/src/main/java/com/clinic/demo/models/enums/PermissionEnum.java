@@ -43,7 +43,10 @@ public enum PermissionEnum {
     APPOINTMENT_CREATE("appointment:create", "Create appointments"),
     APPOINTMENT_UPDATE("appointment:update", "Update appointments"),
     APPOINTMENT_DELETE("appointment:delete", "Delete appointments"),
-    APPOINTMENT_READ_OWN("appointment:read:own", "Read own appointments");
+    APPOINTMENT_READ_OWN("appointment:read:own", "Read own appointments"),
+
+    // Notifications Domain
+    NOTIFICATION_BROADCAST("notification:broadcast", "Send notifications to all patients");
 
     private final String code;
     private final String description;
@@ -7,5 +7,6 @@ public enum NotificationType {
     LAB_RESULTS,
     MARKETING,
     EMERGENCY_ALERT,
-    SYSTEM_MAINTENANCE
+    SYSTEM_MAINTENANCE,
+    TIME_OFF_DECISION
 }
@@ -1,10 +1,28 @@
 package com.clinic.demo.models.enums.notifications;
 
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
 public enum ReminderFrequency {
         FIFTEEN_MINUTES_BEFORE,
         ONE_HOUR_BEFORE,
         TWO_HOURS_BEFORE,
         ONE_DAY_BEFORE,
         TWO_DAYS_BEFORE,
-        ONE_WEEK_BEFORE
-    }
\ No newline at end of file
+        ONE_WEEK_BEFORE;
+
+        /**
+         * When the reminder for an appointment starting at {@code start} is due. Reminders a day or more ahead
+         * are sent at the patient's preferred time of day; the shorter ones relative to the start.
+         */
+        public LocalDateTime reminderTime(LocalDateTime start, LocalTime preferredTime) {
+            return switch (this) {
+                case FIFTEEN_MINUTES_BEFORE -> start.minusMinutes(15);
+                case ONE_HOUR_BEFORE -> start.minusHours(1);
+                case TWO_HOURS_BEFORE -> start.minusHours(2);
+                case ONE_DAY_BEFORE -> start.toLocalDate().minusDays(1).atTime(preferredTime);
+                case TWO_DAYS_BEFORE -> start.toLocalDate().minusDays(2).atTime(preferredTime);
+                case ONE_WEEK_BEFORE -> start.toLocalDate().minusWeeks(1).atTime(preferredTime);
+            };
+        }
+    }
@@ -1,19 +1,32 @@
 package com.clinic.demo.repository;
 
+import com.clinic.demo.DTO.AppointmentReminderDTO;
 import com.clinic.demo.models.entity.AppointmentEntity;
 import com.clinic.demo.models.entity.user.EmployeeEntity;
 import com.clinic.demo.models.entity.user.PatientEntity;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<AppointmentEntity, Long> {
+    String REMINDER_SELECT = "SELECT new com.clinic.demo.DTO.AppointmentReminderDTO(" +
+            "a.id, a.startDateTime, p.email, p.phoneNumber, p.firstName, d.firstName, d.lastName, " +
+            "p.isEnabled, p.isDeleted, np.appointmentRemindersEnabled, np.emailNotificationsEnabled, " +
+            "np.smsNotificationsEnabled, np.appointmentReminderFrequency, np.preferredNotificationTime, " +
+            "np.appointmentNotificationChannel) " +
+            "FROM AppointmentEntity a JOIN a.patient p JOIN a.doctor d " +
+            "LEFT JOIN NotificationPreferences np ON np.user = p " +
+            "WHERE a.isDone = false AND (a.status IS NULL OR a.status <> 'done') ";
+
     int deleteAppointmentById(UUID id);
     Optional<AppointmentEntity> findById(UUID id);
     Optional<AppointmentEntity> findByStartDateTimeAfterAndPatientAndDoctor(LocalDateTime startDateTime, PatientEntity patient, EmployeeEntity doctor);
@@ -25,6 +38,13 @@ public interface AppointmentRepository extends JpaRepository<AppointmentEntity,
     Optional<AppointmentEntity> findByStartDateTimeIsBefore(LocalDateTime beforeDate);
 
     List<AppointmentEntity> findByPatient_EmailAndStartDateTimeBetween(String patientEmail, LocalDateTime start, LocalDateTime end);
+
+    @Query(REMINDER_SELECT + "AND a.startDateTime > :from AND a.startDateTime <= :to")
+    List<AppointmentReminderDTO> findUpcomingReminders(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query(REMINDER_SELECT + "AND a.id IN :ids")
+    List<AppointmentReminderDTO> findRemindersByAppointmentIds(@Param("ids") Collection<UUID> ids);
+
 //    List<AppointmentEntity> findByPatientEmailAndStartDateTimeBetween(String patientEmail, LocalDateTime localDateTime, LocalDateTime localDateTime1);
 
 }
@@ -0,0 +1,38 @@
+package com.clinic.demo.repository;
+
+import com.clinic.demo.models.entity.AvatarBlobEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface AvatarBlobRepository extends JpaRepository<AvatarBlobEntity, String> {
+
+    /**
+     * Adds a reference, creating the blob's row on its first one. The row stays locked until the caller's
+     * transaction ends, which keeps garbage collection away from the blob meanwhile.
+     */
+    @Query(value = "INSERT INTO avatar_blob (blob_key, size, ref_count, unreferenced_since, created_at) " +
+            "VALUES (:key, :size, 1, NULL, :now) " +
+            "ON CONFLICT (blob_key) DO UPDATE SET ref_count = avatar_blob.ref_count + 1, unreferenced_since = NULL",
+            nativeQuery = true)
+    @Modifying
+    void retain(@Param("key") String key, @Param("size") long size, @Param("now") LocalDateTime now);
+
+    @Query("UPDATE AvatarBlobEntity b SET b.refCount = b.refCount - 1, " +
+            "b.unreferencedSince = CASE WHEN b.refCount = 1 THEN :now ELSE b.unreferencedSince END " +
+            "WHERE b.key = :key AND b.refCount > 0")
+    @Modifying
+    int release(@Param("key") String key, @Param("now") LocalDateTime now);
+
+    // SKIP LOCKED (lock timeout -2): a blob being retained right now is locked and left alone
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT b FROM AvatarBlobEntity b WHERE b.refCount = 0 AND b.unreferencedSince < :unreferencedBefore")
+    List<AvatarBlobEntity> findCollectableForUpdate(@Param("unreferencedBefore") LocalDateTime unreferencedBefore,
+                                                    Pageable pageable);
+}
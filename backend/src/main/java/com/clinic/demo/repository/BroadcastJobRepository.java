@@ -0,0 +1,73 @@
+package com.clinic.demo.repository;
+
+import com.clinic.demo.models.entity.BroadcastJobEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface BroadcastJobRepository extends JpaRepository<BroadcastJobEntity, Long> {
+
+    @Query("SELECT b.id FROM BroadcastJobEntity b WHERE b.status IN (com.clinic.demo.models.enums.BroadcastStatus.PENDING, " +
+            "com.clinic.demo.models.enums.BroadcastStatus.RUNNING) AND (b.leaseUntil IS NULL OR b.leaseUntil < :now)")
+    List<Long> findUnclaimedJobIds(@Param("now") LocalDateTime now);
+
+    /**
+     * @return 1 if this node now holds the job, 0 if another node does or it has finished
+     */
+    @Transactional
+    @Query("UPDATE BroadcastJobEntity b SET b.leaseUntil = :leaseUntil, " +
+            "b.status = com.clinic.demo.models.enums.BroadcastStatus.RUNNING, " +
+            "b.startedAt = COALESCE(b.startedAt, :now) " +
+            "WHERE b.id = :id AND b.status IN (com.clinic.demo.models.enums.BroadcastStatus.PENDING, " +
+            "com.clinic.demo.models.enums.BroadcastStatus.RUNNING) AND (b.leaseUntil IS NULL OR b.leaseUntil < :now)")
+    @Modifying
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Advances the checkpoint past a processed chunk and renews the lease. Only applies if the job is still
+     * running and nobody else advanced it since {@code expectedProcessed} was read, so a cancelled job or one
+     * taken over after its lease expired rolls back instead of queueing the chunk twice.
+     *
+     * @return 1 if the checkpoint moved, 0 otherwise
+     */
+    @Query("UPDATE BroadcastJobEntity b SET b.lastRecipientId = :lastRecipientId, " +
+            "b.processedRecipients = b.processedRecipients + :processed, " +
+            "b.emailsQueued = b.emailsQueued + :emails, b.smsQueued = b.smsQueued + :sms, " +
+            "b.skippedRecipients = b.skippedRecipients + :skipped, b.leaseUntil = :leaseUntil " +
+            "WHERE b.id = :id AND b.status = com.clinic.demo.models.enums.BroadcastStatus.RUNNING " +
+            "AND b.processedRecipients = :expectedProcessed")
+    @Modifying
+    int advance(@Param("id") Long id,
+                @Param("expectedProcessed") long expectedProcessed,
+                @Param("lastRecipientId") UUID lastRecipientId,
+                @Param("processed") long processed,
+                @Param("emails") long emails,
+                @Param("sms") long sms,
+                @Param("skipped") long skipped,
+                @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Query("UPDATE BroadcastJobEntity b SET b.status = com.clinic.demo.models.enums.BroadcastStatus.COMPLETED, " +
+            "b.finishedAt = :now, b.leaseUntil = null " +
+            "WHERE b.id = :id AND b.status = com.clinic.demo.models.enums.BroadcastStatus.RUNNING")
+    @Modifying
+    int complete(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Query("UPDATE BroadcastJobEntity b SET b.status = com.clinic.demo.models.enums.BroadcastStatus.CANCELLED, " +
+            "b.finishedAt = :now, b.leaseUntil = null " +
+            "WHERE b.id = :id AND b.status IN (com.clinic.demo.models.enums.BroadcastStatus.PENDING, " +
+            "com.clinic.demo.models.enums.BroadcastStatus.RUNNING)")
+    @Modifying
+    int cancel(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Query("UPDATE BroadcastJobEntity b SET b.leaseUntil = null, b.lastError = :error WHERE b.id = :id")
+    @Modifying
+    void release(@Param("id") Long id, @Param("error") String error);
+}
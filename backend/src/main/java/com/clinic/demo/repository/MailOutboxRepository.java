@@ -0,0 +1,54 @@
+package com.clinic.demo.repository;
+
+import com.clinic.demo.models.entity.MailOutboxEntity;
+import com.clinic.demo.models.enums.MailStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface MailOutboxRepository extends JpaRepository<MailOutboxEntity, Long> {
+
+    // SKIP LOCKED (lock timeout -2) lets several nodes claim disjoint batches without waiting on each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT m FROM MailOutboxEntity m WHERE m.status = com.clinic.demo.models.enums.MailStatus.PENDING " +
+            "AND m.nextAttemptAt <= :now ORDER BY m.nextAttemptAt")
+    List<MailOutboxEntity> findDueForUpdate(@Param("now") LocalDateTime now, Pageable pageable);
+
+    long countByStatus(MailStatus status);
+
+    @Transactional
+    @Query("UPDATE MailOutboxEntity m SET m.status = com.clinic.demo.models.enums.MailStatus.SENT, " +
+            "m.sentAt = :now, m.lastError = null WHERE m.id = :id")
+    @Modifying
+    void markSent(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Query("UPDATE MailOutboxEntity m SET m.status = :status, m.attempts = :attempts, " +
+            "m.nextAttemptAt = :nextAttemptAt, m.lastError = :error WHERE m.id = :id")
+    @Modifying
+    void markAttemptFailed(@Param("id") Long id,
+                           @Param("status") MailStatus status,
+                           @Param("attempts") int attempts,
+                           @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                           @Param("error") String error);
+
+    // Messages claimed by a node that died mid-batch
+    @Transactional
+    @Query("UPDATE MailOutboxEntity m SET m.status = com.clinic.demo.models.enums.MailStatus.PENDING " +
+            "WHERE m.status = com.clinic.demo.models.enums.MailStatus.SENDING AND m.claimedAt < :claimedBefore")
+    @Modifying
+    int releaseStaleClaims(@Param("claimedBefore") LocalDateTime claimedBefore);
+
+    @Transactional
+    @Query("DELETE FROM MailOutboxEntity m WHERE m.status = com.clinic.demo.models.enums.MailStatus.SENT " +
+            "AND m.sentAt < :sentBefore")
+    @Modifying
+    void deleteSentBefore(@Param("sentBefore") LocalDateTime sentBefore);
+}
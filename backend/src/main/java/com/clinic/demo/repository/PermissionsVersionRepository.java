@@ -0,0 +1,24 @@
+package com.clinic.demo.repository;
+
+import com.clinic.demo.models.entity.PermissionsVersionEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface PermissionsVersionRepository extends JpaRepository<PermissionsVersionEntity, Integer> {
+
+    @Query("SELECT v.version FROM PermissionsVersionEntity v WHERE v.id = " + PermissionsVersionEntity.ID)
+    Optional<Long> findCurrent();
+
+    /**
+     * Joins the caller's transaction, so the new version commits together with the role change.
+     */
+    @Transactional
+    @Query(value = "INSERT INTO permissions_version (id, version) VALUES (" + PermissionsVersionEntity.ID + ", 1) " +
+            "ON CONFLICT (id) DO UPDATE SET version = permissions_version.version + 1", nativeQuery = true)
+    @Modifying
+    void increment();
+}
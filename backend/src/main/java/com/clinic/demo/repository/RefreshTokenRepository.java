@@ -0,0 +1,37 @@
+package com.clinic.demo.repository;
+
+import com.clinic.demo.models.entity.RefreshTokenEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshTokenEntity, Long> {
+
+    // Locked so two concurrent refreshes with the same token cannot both rotate it
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<RefreshTokenEntity> findByTokenHash(String tokenHash);
+
+    @Query("SELECT DISTINCT r.familyId FROM RefreshTokenEntity r " +
+            "WHERE r.userId = :userId AND r.revoked = false AND r.expiresAt > :now")
+    List<String> findActiveFamilyIdsByUserId(@Param("userId") UUID userId, @Param("now") LocalDateTime now);
+
+    @Query("UPDATE RefreshTokenEntity r SET r.revoked = true WHERE r.familyId = :familyId")
+    @Modifying
+    void revokeFamily(@Param("familyId") String familyId);
+
+    @Query("UPDATE RefreshTokenEntity r SET r.revoked = true WHERE r.userId = :userId")
+    @Modifying
+    void revokeAllByUserId(@Param("userId") UUID userId);
+
+    @Query("DELETE FROM RefreshTokenEntity r WHERE r.expiresAt < :now")
+    @Modifying
+    void deleteExpired(@Param("now") LocalDateTime now);
+}
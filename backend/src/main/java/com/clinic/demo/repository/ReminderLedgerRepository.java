@@ -0,0 +1,29 @@
+package com.clinic.demo.repository;
+
+import com.clinic.demo.models.entity.ReminderLedgerEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public interface ReminderLedgerRepository extends JpaRepository<ReminderLedgerEntity, Long> {
+
+    /**
+     * @return 1 if the reminder was recorded now, 0 if it had already been sent
+     */
+    @Query(value = "INSERT INTO reminder_ledger (appointment_id, due_at, sent_at) VALUES (:appointmentId, :dueAt, :sentAt) " +
+            "ON CONFLICT ON CONSTRAINT uk_reminder_ledger_appointment_due DO NOTHING", nativeQuery = true)
+    @Modifying
+    int recordIfAbsent(@Param("appointmentId") UUID appointmentId,
+                       @Param("dueAt") LocalDateTime dueAt,
+                       @Param("sentAt") LocalDateTime sentAt);
+
+    @Transactional
+    @Query("DELETE FROM ReminderLedgerEntity r WHERE r.dueAt < :dueBefore")
+    @Modifying
+    void deleteDueBefore(@Param("dueBefore") LocalDateTime dueBefore);
+}
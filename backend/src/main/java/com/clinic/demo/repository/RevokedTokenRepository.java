@@ -0,0 +1,22 @@
+package com.clinic.demo.repository;
+
+import com.clinic.demo.models.entity.RevokedTokenEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedTokenEntity, Long> {
+
+    boolean existsByTokenId(String tokenId);
+
+    @Query("SELECT r.tokenId FROM RevokedTokenEntity r WHERE r.expiresAt > :now")
+    List<String> findActiveTokenIds(@Param("now") LocalDateTime now);
+
+    @Query("DELETE FROM RevokedTokenEntity r WHERE r.expiresAt < :now")
+    @Modifying
+    void deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -1,16 +1,19 @@
 package com.clinic.demo.repository;
 
+import com.clinic.demo.DTO.calenderDTO.TimeOffDTO;
+import com.clinic.demo.DTO.calenderDTO.TimeOffIntervalDTO;
 import com.clinic.demo.models.entity.TimeOff;
 import com.clinic.demo.models.entity.user.EmployeeEntity;
 import com.clinic.demo.models.enums.TimeOffStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @Repository
 public interface TimeOffRepository extends JpaRepository<TimeOff, Long> {
@@ -21,12 +24,6 @@ public interface TimeOffRepository extends JpaRepository<TimeOff, Long> {
     // Find time offs for a specific employee with a specific status
     List<TimeOff> findByEmployeeAndStatus(EmployeeEntity employee, TimeOffStatus status);
 
-    // Find time offs by status only
-    List<TimeOff> findByStatus(TimeOffStatus status);
-
-    // Find time offs by status ordered by start date (ascending)
-    List<TimeOff> findByStatusOrderByStartDateTimeAsc(TimeOffStatus status);
-
     // Find overlapping time off periods for an employee (APPROVED or PENDING)
     @Query("SELECT t FROM TimeOff t WHERE t.employee = :employee " +
             "AND t.status IN ('APPROVED', 'PENDING') " +
@@ -37,17 +34,52 @@ public interface TimeOffRepository extends JpaRepository<TimeOff, Long> {
             @Param("endDateTime") LocalDateTime endDateTime
     );
 
-    // Better query for hasTimeOffOnDate method
-    @Query("SELECT COUNT(t) > 0 FROM TimeOff t WHERE t.employee = :employee " +
+    // Listing projection: only the employee name and email are joined, no entity (or its EAGER roles) is loaded
+    String LISTING_SELECT = "SELECT new com.clinic.demo.DTO.calenderDTO.TimeOffDTO(" +
+            "t.id, t.startDateTime, t.endDateTime, t.reason, t.status, t.approvedBy, t.approvalNotes, " +
+            "t.createdAt, t.updatedAt, e.email, CONCAT(e.firstName, ' ', e.lastName)) " +
+            "FROM TimeOff t JOIN t.employee e ";
+
+    String KEYSET_AFTER = "AND (t.startDateTime > :afterStartDateTime " +
+            "OR (t.startDateTime = :afterStartDateTime AND t.id > :afterId)) ";
+
+    String KEYSET_ORDER = "ORDER BY t.startDateTime ASC, t.id ASC";
+
+    // First page of time offs with a given status, keyset ordered by (start_date_time, id)
+    @Query(LISTING_SELECT + "WHERE t.status = :status " + KEYSET_ORDER)
+    List<TimeOffDTO> findListingByStatus(@Param("status") TimeOffStatus status, Pageable pageable);
+
+    // Next page of time offs with a given status after the (start_date_time, id) cursor
+    @Query(LISTING_SELECT + "WHERE t.status = :status " + KEYSET_AFTER + KEYSET_ORDER)
+    List<TimeOffDTO> findListingByStatusAfter(
+            @Param("status") TimeOffStatus status,
+            @Param("afterStartDateTime") LocalDateTime afterStartDateTime,
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
+
+    // Approved time offs overlapping a range, with just enough employee data for "who is out" views
+    @Query("SELECT new com.clinic.demo.DTO.calenderDTO.TimeOffIntervalDTO(" +
+            "t.id, e.id, e.email, CONCAT(e.firstName, ' ', e.lastName), t.startDateTime, t.endDateTime, " +
+            "t.reason, t.approvedBy, t.approvalNotes, t.createdAt, t.updatedAt) " +
+            "FROM TimeOff t JOIN t.employee e WHERE t.status = 'APPROVED' " +
+            "AND t.startDateTime <= :endDateTime " +
+            "AND t.endDateTime >= :startDateTime " + KEYSET_ORDER)
+    List<TimeOffIntervalDTO> findApprovedIntervalsInRange(
+            @Param("startDateTime") LocalDateTime startDateTime,
+            @Param("endDateTime") LocalDateTime endDateTime
+    );
+
+    // Check whether an employee has approved time off overlapping a range
+    @Query("SELECT COUNT(t) > 0 FROM TimeOff t WHERE t.employee.id = :employeeId " +
             "AND t.status = 'APPROVED' " +
-            "AND :date BETWEEN DATE(t.startDateTime) AND DATE(t.endDateTime)")
-    boolean hasTimeOffOnDate(@Param("employee") EmployeeEntity employee, @Param("date") LocalDate date);
-
-    // Find currently active time offs (approved and currently ongoing)
-    @Query("SELECT t FROM TimeOff t WHERE t.status = 'APPROVED' " +
-            "AND t.startDateTime <= :currentDateTime " +
-            "AND t.endDateTime >= :currentDateTime")
-    List<TimeOff> findActiveTimeOffs(@Param("currentDateTime") LocalDateTime currentDateTime);
+            "AND t.startDateTime <= :endDateTime " +
+            "AND t.endDateTime >= :startDateTime")
+    boolean hasApprovedTimeOffInRange(
+            @Param("employeeId") UUID employeeId,
+            @Param("startDateTime") LocalDateTime startDateTime,
+            @Param("endDateTime") LocalDateTime endDateTime
+    );
 
     // Find time offs for an employee within a date range
     @Query("SELECT t FROM TimeOff t WHERE t.employee = :employee " +
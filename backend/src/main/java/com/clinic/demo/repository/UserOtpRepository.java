@@ -2,7 +2,9 @@ package com.clinic.demo.repository;
 
 import com.clinic.demo.models.entity.UserOtpEntity;
 import com.clinic.demo.models.enums.OtpPurpose;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -11,9 +13,16 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 
 public interface UserOtpRepository extends JpaRepository<UserOtpEntity, Long> {
-    Optional<UserOtpEntity> findByEmailAndOtpAndPurpose(String email, String Otp, OtpPurpose purpose);
 
-    @Query("DELETE FROM UserOtpEntity u WHERE u.createdAt < :expiredBefore OR u.used = true")
+    // Locked so concurrent guesses are all counted and a code cannot be used twice
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<UserOtpEntity> findByEmailAndPurpose(String email, OtpPurpose purpose);
+
+    @Query("DELETE FROM UserOtpEntity u WHERE u.email = :email AND u.purpose = :purpose")
+    @Modifying
+    void deleteByEmailAndPurpose(@Param("email") String email, @Param("purpose") OtpPurpose purpose);
+
+    @Query("DELETE FROM UserOtpEntity u WHERE u.expiresAt <= :now")
     @Modifying
-    void cleanupExpiredAndUsedOtps(@Param("expiredBefore") LocalDateTime expiredBefore);
+    void deleteExpired(@Param("now") LocalDateTime now);
 }
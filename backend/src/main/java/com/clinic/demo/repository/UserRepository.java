@@ -1,13 +1,24 @@
 package com.clinic.demo.repository;
 
+import com.clinic.demo.DTO.BroadcastRecipientDTO;
+import com.clinic.demo.DTO.UserAvatarDTO;
 import com.clinic.demo.models.entity.user.BaseUserEntity;
 import com.clinic.demo.models.entity.user.EmployeeEntity;
 import com.clinic.demo.models.enums.UserTypeEnum;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<BaseUserEntity, Long> {
@@ -15,8 +26,43 @@ public interface UserRepository extends JpaRepository<BaseUserEntity, Long> {
     Optional<BaseUserEntity> findByEmail(String aEmail);
     Optional<BaseUserEntity> findByPhoneNumber(String aPhoneNumber);
 
+    @Query("SELECT u FROM BaseUserEntity u WHERE u.id = :id")
+    Optional<BaseUserEntity> findByUuid(@Param("id") UUID id);
+
     List<BaseUserEntity> findAllById(Iterable<Long> longs);
 
+    /**
+     * @return the user's avatar path, empty if they have none, or no value if there is no such user
+     */
+    @Query("SELECT COALESCE(u.avatarPath, '') FROM BaseUserEntity u WHERE u.email = :email")
+    Optional<String> findAvatarPathByEmail(@Param("email") String email);
+
+    /**
+     * Avatar paths of every user with one of the ids or emails, in a single query. Either list may be empty.
+     */
+    @Query("SELECT new com.clinic.demo.DTO.UserAvatarDTO(u.id, u.email, u.avatarPath) FROM BaseUserEntity u " +
+            "WHERE u.id IN :ids OR u.email IN :emails")
+    List<UserAvatarDTO> findAvatarPaths(@Param("ids") Collection<UUID> ids, @Param("emails") Collection<String> emails);
+
     List<EmployeeEntity> findALlByUserType(UserTypeEnum userType);
 
+    @Query("SELECT COUNT(p) FROM PatientEntity p WHERE p.isEnabled = true AND p.isDeleted = false")
+    long countActivePatients();
+
+    /**
+     * Active patients with an id after {@code after}, in id order, read through a cursor rather than loaded
+     * at once. The stream must be consumed inside a transaction and closed.
+     */
+    @Query("SELECT new com.clinic.demo.DTO.BroadcastRecipientDTO(" +
+            "p.id, p.email, p.phoneNumber, np.emailNotificationsEnabled, np.smsNotificationsEnabled, " +
+            "np.appointmentRemindersEnabled, np.prescriptionRemindersEnabled, np.labResultsNotificationsEnabled, " +
+            "np.emergencyAlertsEnabled, np.marketingNotificationsEnabled) " +
+            "FROM PatientEntity p LEFT JOIN NotificationPreferences np ON np.user = p " +
+            "WHERE p.isEnabled = true AND p.isDeleted = false AND p.id > :after ORDER BY p.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<BroadcastRecipientDTO> streamActivePatientsAfter(@Param("after") UUID after, Pageable pageable);
+
 }
@@ -0,0 +1,9 @@
+package com.clinic.demo.service;
+
+import java.util.UUID;
+
+/**
+ * Published when an appointment is booked, cancelled or completed, so its reminders can be rescheduled.
+ */
+public record AppointmentChangedEvent(UUID appointmentId) {
+}
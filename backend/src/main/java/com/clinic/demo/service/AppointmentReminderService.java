@@ -0,0 +1,231 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.AppointmentReminderDTO;
+import com.clinic.demo.repository.AppointmentRepository;
+import com.clinic.demo.repository.ReminderLedgerRepository;
+import com.clinic.demo.utils.TimingWheel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.*;
+
+/**
+ * Sends appointment reminders by email and/or SMS, at the time and over the channels chosen in each patient's
+ * {@code NotificationPreferences}.
+ * <p>
+ * Reminders for appointments in the next {@code notifications.reminders.lookahead.days} are kept in a
+ * {@link TimingWheel}, one node per appointment, refreshed from the database every
+ * {@code notifications.reminders.resync.interval.ms} and immediately when an appointment changes here.
+ * Due reminders are sent in batches; each is first recorded in the {@code reminder_ledger}, in the transaction
+ * that queues its email, so a reminder is sent once even across restarts and nodes.
+ */
+@Slf4j
+@Service
+public class AppointmentReminderService {
+
+    private static final DateTimeFormatter SMS_DATE_TIME = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM, FormatStyle.SHORT);
+
+    private final AppointmentRepository appointmentRepository;
+    private final ReminderLedgerRepository ledgerRepository;
+    private final MailService mailService;
+    private final SmsService smsService;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final Duration lookahead;
+    private final int batchSize;
+    private final Counter sentCounter;
+
+    private final TimingWheel<ScheduledReminder> wheel;
+    // Fired reminders stay here until their appointment starts, so a resync does not schedule them again
+    private final Map<UUID, TimingWheel.Timeout<ScheduledReminder>> byAppointment = new HashMap<>();
+
+    private record ScheduledReminder(UUID appointmentId, LocalDateTime dueAt) {
+    }
+
+    @Autowired
+    public AppointmentReminderService(AppointmentRepository appointmentRepository,
+                                      ReminderLedgerRepository ledgerRepository,
+                                      MailService mailService,
+                                      SmsService smsService,
+                                      PlatformTransactionManager transactionManager,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${notifications.reminders.lookahead.days:9}") long lookaheadDays,
+                                      @Value("${notifications.reminders.batch.size:200}") int batchSize,
+                                      @Value("${notifications.reminders.wheel.tick.ms:1000}") long tickMillis) {
+        this(appointmentRepository, ledgerRepository, mailService, smsService, transactionManager, meterRegistry,
+                lookaheadDays, batchSize, tickMillis, Clock.systemDefaultZone());
+    }
+
+    AppointmentReminderService(AppointmentRepository appointmentRepository, ReminderLedgerRepository ledgerRepository,
+                               MailService mailService, SmsService smsService, PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry, long lookaheadDays, int batchSize, long tickMillis, Clock clock) {
+        this.appointmentRepository = appointmentRepository;
+        this.ledgerRepository = ledgerRepository;
+        this.mailService = mailService;
+        this.smsService = smsService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.lookahead = Duration.ofDays(lookaheadDays);
+        this.batchSize = batchSize;
+        this.wheel = new TimingWheel<>(tickMillis, clock.millis());
+        this.sentCounter = Counter.builder("notifications.reminders.sent").register(meterRegistry);
+        meterRegistry.gauge("notifications.reminders.scheduled", this, AppointmentReminderService::scheduledCount);
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.reminders.resync.interval.ms:600000}")
+    public void resync() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        List<AppointmentReminderDTO> upcoming;
+        try {
+            upcoming = appointmentRepository.findUpcomingReminders(now, now.plus(lookahead));
+        } catch (RuntimeException e) {
+            log.warn("Failed to load upcoming appointments, keeping the current reminder schedule: {}", e.getMessage());
+            return;
+        }
+
+        Set<UUID> wanted = new HashSet<>();
+        synchronized (this) {
+            for (AppointmentReminderDTO appointment : upcoming) {
+                if (appointment.wantsReminder()) {
+                    schedule(appointment);
+                    wanted.add(appointment.appointmentId());
+                }
+            }
+            // Appointments that started, were cancelled elsewhere or no longer want a reminder
+            byAppointment.entrySet().removeIf(entry -> {
+                if (wanted.contains(entry.getKey()))
+                    return false;
+                wheel.cancel(entry.getValue());
+                return true;
+            });
+        }
+        log.debug("Reminder schedule synchronized with {} upcoming appointments", wanted.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        Optional<AppointmentReminderDTO> appointment = appointmentRepository
+                .findRemindersByAppointmentIds(List.of(event.appointmentId())).stream()
+                .filter(candidate -> candidate.startDateTime().isAfter(now)
+                        && !candidate.startDateTime().isAfter(now.plus(lookahead))
+                        && candidate.wantsReminder())
+                .findFirst();
+
+        synchronized (this) {
+            if (appointment.isPresent()) {
+                schedule(appointment.get());
+            } else {
+                TimingWheel.Timeout<ScheduledReminder> removed = byAppointment.remove(event.appointmentId());
+                if (removed != null)
+                    wheel.cancel(removed);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.reminders.dispatch.interval.ms:15000}")
+    public void dispatchDue() {
+        List<ScheduledReminder> due = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(clock.millis(), due::add);
+        }
+
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<ScheduledReminder> batch = due.subList(from, Math.min(from + batchSize, due.size()));
+            try {
+                dispatch(batch);
+            } catch (RuntimeException e) {
+                // Unsent reminders are not in the ledger; reschedule them so the next dispatch retries
+                log.error("Failed to send {} appointment reminders, retrying", batch.size(), e);
+                synchronized (this) {
+                    for (ScheduledReminder reminder : batch) {
+                        TimingWheel.Timeout<ScheduledReminder> current = byAppointment.get(reminder.appointmentId());
+                        if (current != null && !current.isPending() && current.payload().equals(reminder))
+                            byAppointment.put(reminder.appointmentId(), wheel.schedule(reminder, toEpochMillis(reminder.dueAt())));
+                    }
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedRate = 3600000)
+    public void cleanupLedger() {
+        // Reminders are never due more than the lookahead before their appointment
+        ledgerRepository.deleteDueBefore(LocalDateTime.now(clock).minus(lookahead).minusDays(1));
+    }
+
+    public synchronized int scheduledCount() {
+        return wheel.size();
+    }
+
+    private void dispatch(List<ScheduledReminder> batch) {
+        Map<UUID, ScheduledReminder> reminders = new HashMap<>();
+        for (ScheduledReminder reminder : batch)
+            reminders.put(reminder.appointmentId(), reminder);
+
+        List<AppointmentReminderDTO> smsRecipients = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now(clock);
+            List<AppointmentReminderDTO> sms = new ArrayList<>();
+            for (AppointmentReminderDTO appointment : appointmentRepository.findRemindersByAppointmentIds(reminders.keySet())) {
+                ScheduledReminder reminder = reminders.get(appointment.appointmentId());
+                // Changed since it was scheduled; the next resync schedules the new reminder time
+                if (!appointment.wantsReminder() || !appointment.startDateTime().isAfter(now)
+                        || !appointment.reminderTime().equals(reminder.dueAt()))
+                    continue;
+                if (ledgerRepository.recordIfAbsent(appointment.appointmentId(), reminder.dueAt(), now) == 0)
+                    continue;
+
+                if (appointment.sendsEmail())
+                    mailService.sendAppointmentReminder(appointment.patientEmail(), appointment.patientFirstName(),
+                            doctorName(appointment), appointment.startDateTime());
+                if (appointment.sendsSms())
+                    sms.add(appointment);
+                sentCounter.increment();
+            }
+            return sms;
+        });
+
+        // SMS cannot join the transaction, so it goes out only once the ledger entry is committed
+        for (AppointmentReminderDTO appointment : smsRecipients) {
+            try {
+                smsService.sendSms(appointment.patientPhoneNumber(), "Reminder: your appointment with Dr. "
+                        + doctorName(appointment) + " is on " + SMS_DATE_TIME.format(appointment.startDateTime()) + ".");
+            } catch (RuntimeException e) {
+                log.warn("Failed to send SMS reminder for appointment {}: {}", appointment.appointmentId(), e.getMessage());
+            }
+        }
+    }
+
+    private void schedule(AppointmentReminderDTO appointment) {
+        LocalDateTime dueAt = appointment.reminderTime();
+        TimingWheel.Timeout<ScheduledReminder> existing = byAppointment.get(appointment.appointmentId());
+        if (existing != null) {
+            if (existing.payload().dueAt().equals(dueAt))
+                return;
+            wheel.cancel(existing);
+        }
+        ScheduledReminder reminder = new ScheduledReminder(appointment.appointmentId(), dueAt);
+        byAppointment.put(appointment.appointmentId(), wheel.schedule(reminder, toEpochMillis(dueAt)));
+    }
+
+    private static String doctorName(AppointmentReminderDTO appointment) {
+        return appointment.doctorFirstName() + " " + appointment.doctorLastName();
+    }
+
+    private long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(clock.getZone()).toInstant().toEpochMilli();
+    }
+}
@@ -1,5 +1,6 @@
 package com.clinic.demo.service;
 
+import com.clinic.demo.DTO.AppointmentReminderDTO;
 import com.clinic.demo.DTO.AppointmentRequestDTO;
 import com.clinic.demo.DTO.FinalizingAppointmentDTO;
 import com.clinic.demo.exception.LocalDateTimeException;
@@ -7,17 +8,23 @@ import com.clinic.demo.models.entity.AppointmentEntity;
 import com.clinic.demo.models.entity.user.EmployeeEntity;
 import com.clinic.demo.models.entity.user.PatientEntity;
 import com.clinic.demo.models.enums.UserTypeEnum;
+import com.clinic.demo.models.enums.notifications.NotificationType;
 import com.clinic.demo.repository.AppointmentRepository;
 import com.clinic.demo.repository.ScheduleRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
@@ -27,6 +34,8 @@ public class AppointmentService {
     private final UserValidationService userValidationService;
     private final TreatmentService treatmentService;
     private final ScheduleRepository scheduleRepository;
+    private final TimeOffSnapshotService timeOffSnapshotService;
+    private final ApplicationEventPublisher eventPublisher;
 
 
     @Value("${appointment.min.hours.in.advance:24}")
@@ -55,16 +64,27 @@ public class AppointmentService {
         if (!isDoctorWorking(doctor, dateTime))
             throw new IllegalArgumentException("Doctor is not working on " + dateTime);
 
+        if (timeOffSnapshotService.isEmployeeOutDuring(doctor.getId(), dateTime, dateTime.plusMinutes(duration)))
+            throw new IllegalArgumentException("Doctor is on time off at the requested time");
+
         if (!isDoctorAvailable(doctor, dateTime, duration))
             throw new IllegalArgumentException("Doctor is not available at the requested time");
 
         AppointmentEntity newAppointment = new AppointmentEntity(doctor, patient, dateTime, duration);
         appointmentRepository.save(newAppointment);
+        eventPublisher.publishEvent(new AppointmentChangedEvent(newAppointment.getId()));
+
+        // Read back with the patient's notification preferences, which the entities don't carry
+        appointmentRepository.findRemindersByAppointmentIds(List.of(newAppointment.getId())).stream()
+                .filter(AppointmentReminderDTO::wantsConfirmationEmail)
+                .findFirst()
+                .ifPresent(this::requestConfirmation);
     }
 
     public void cancelAppointment(String appointmentId) {
         AppointmentEntity appointment = findAppointmentById(appointmentId);
         appointmentRepository.delete(appointment);
+        eventPublisher.publishEvent(new AppointmentChangedEvent(appointment.getId()));
     }
 
     @Transactional
@@ -75,6 +95,17 @@ public class AppointmentService {
 
         appointment.setStatus("done");
         appointmentRepository.save(appointment);
+        eventPublisher.publishEvent(new AppointmentChangedEvent(appointment.getId()));
+    }
+
+    private void requestConfirmation(AppointmentReminderDTO appointment) {
+        Locale locale = LocaleContextHolder.getLocale();
+        String message = String.format("Your appointment with Dr. %s %s on %s at %s is booked.",
+                appointment.doctorFirstName(), appointment.doctorLastName(),
+                DateTimeFormatter.ofLocalizedDate(FormatStyle.FULL).withLocale(locale).format(appointment.startDateTime()),
+                DateTimeFormatter.ofLocalizedTime(FormatStyle.SHORT).withLocale(locale).format(appointment.startDateTime()));
+        eventPublisher.publishEvent(new NotificationRequestedEvent(appointment.patientEmail(),
+                NotificationType.APPOINTMENT_CONFIRMATION, "Appointment booked", message));
     }
 
     private AppointmentEntity findAppointmentById(String appointmentId) {
@@ -3,8 +3,8 @@ package com.clinic.demo.service;
 import com.clinic.demo.DTO.*;
 import com.clinic.demo.DTO.registrationDTO.EmployeeRegistrationDTO;
 import com.clinic.demo.DTO.registrationDTO.RegistrationDTO;
-import com.clinic.demo.Mapper.UserMapper;
 import com.clinic.demo.exception.EmailAlreadyTakenException;
+import com.clinic.demo.exception.PasswordHashingBusyException;
 import com.clinic.demo.models.entity.RoleEntity;
 import com.clinic.demo.models.entity.user.BaseUserEntity;
 import com.clinic.demo.models.entity.user.EmployeeEntity;
@@ -19,7 +19,9 @@ import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
@@ -45,6 +47,8 @@ public class AuthenticationService {
     private final AuthenticationManager authenticationManager;
     private final TokenService tokenService;
     private final OtpService otpService;
+    private final RefreshTokenService refreshTokenService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public void registerUser(RegistrationDTO registrationDTO) {
         String email = registrationDTO.email().toLowerCase();
@@ -115,28 +119,37 @@ public class AuthenticationService {
         String email = loginRequestDTO.email().toLowerCase();
         String password = loginRequestDTO.password();
         try {
-            BaseUserEntity user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+            // The authentication provider loads the user graph once (or takes it from the principal cache),
+            // and the token and profile are both built from that snapshot
+            UserDetailsSnapshot user = (UserDetailsSnapshot) authenticateUser(email, password).getPrincipal();
 
-            if (user.isDeleted()) {
-                logger.error("Attempted login for deleted account: {}", email);
-                throw new RuntimeException("Account has been deleted");
-            }
-
-            String token = tokenService.generateJWT(authenticateUser(email, password));
-            UserProfileDTO userProfile = UserMapper.toUserProfileDTO(user);
-
-            return new LoginResponseDTO(token, userProfile);
+            RefreshTokenService.IssuedTokens tokens = refreshTokenService.startSession(user);
+            return new LoginResponseDTO(tokens.accessToken(), user.getProfile(), tokens.refreshToken());
 
+        } catch (DisabledException e) {
+            logger.error("Attempted login for deleted or disabled account: {}", email);
+            throw new RuntimeException("Login failed: Account has been deleted");
         } catch (AuthenticationException e) {
             logger.error("Authentication failed for email: {}. Reason: {}", email, e.getMessage());
             throw new RuntimeException("Invalid credentials");
+        } catch (PasswordHashingBusyException e) {
+            logger.warn("Login for email: {} shed, password hashing is saturated", email);
+            throw e;
         } catch (RuntimeException e) {
             logger.error("Login error for email: {}. Error: {}", email, e.getMessage());
             throw new RuntimeException("Login failed: " + e.getMessage());
         }
     }
 
+    public LoginResponseDTO refreshToken(RefreshTokenRequestDTO refreshTokenRequestDTO) {
+        RefreshTokenService.IssuedTokens tokens = refreshTokenService.refresh(refreshTokenRequestDTO.refreshToken());
+        return new LoginResponseDTO(tokens.accessToken(), tokens.user().getProfile(), tokens.refreshToken());
+    }
+
+    public void logout(RefreshTokenRequestDTO refreshTokenRequestDTO) {
+        refreshTokenService.logout(refreshTokenRequestDTO.refreshToken());
+    }
+
     private void checkEmailAvailability(String email) {
         email = email.toLowerCase();
         if (userRepository.findByEmail(email).isPresent())
@@ -172,13 +185,9 @@ public class AuthenticationService {
     }
 
     private Authentication authenticateUser(String email, String password) {
-        try {
-            return authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(email, password)
-            );
-        } catch (AuthenticationException e) {
-            throw new RuntimeException("Invalid credentials", e);
-        }
+        return authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(email, password)
+        );
     }
 
     public void resetPassword(ResetPasswordRequestDTO resetPasswordRequestDTO) {
@@ -187,14 +196,7 @@ public class AuthenticationService {
         String newPassword = resetPasswordRequestDTO.newPassword();
         String confirmNewPassword = resetPasswordRequestDTO.confirmNewPassword();
 
-
-        if (!otpService.validateOtpAuthenticity(email, otp, OtpPurpose.PASSWORD_RESET))
-            throw new RuntimeException("Invalid or expired OTP");
-
-        BaseUserEntity user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-
+        // Checked before the code, which is used up once it is verified
         if (!Validations.isValidPassword(newPassword))
             throw new IllegalArgumentException("Password must be 8+ characters with uppercase, lowercase, digit, and special character");
 
@@ -204,8 +206,16 @@ public class AuthenticationService {
         if (!newPassword.equals(confirmNewPassword))
             throw new IllegalArgumentException("Passwords do not match");
 
+        if (!otpService.validateOtpAuthenticity(email, otp, OtpPurpose.PASSWORD_RESET))
+            throw new RuntimeException("Invalid or expired OTP");
+
+        BaseUserEntity user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        refreshTokenService.revokeAllSessions(user.getId());
+        eventPublisher.publishEvent(new UserDetailsChangedEvent(email));
     }
 
     public void sendForgotPasswordOTP(EmailRequestDTO requestDTO) {
@@ -0,0 +1,180 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.BlobMetadata;
+import com.clinic.demo.models.entity.AvatarBlobEntity;
+import com.clinic.demo.repository.AvatarBlobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Avatar files stored once per distinct content, under {@code <sha256>.<extension>}, in {@link BlobStorage} under
+ * keys sharded by the first two bytes of the hash ({@code avatars/ab/cd/abcd....png}) so no directory grows large.
+ * Files derived from a blob, such as thumbnails, are stored next to it under names starting with the same hash.
+ * <p>
+ * Users referencing a blob are counted in {@code avatar_blob}. Releasing the last reference does not delete
+ * anything: a sweep every {@code avatar.storage.gc.interval.ms} removes blobs that have been unreferenced for
+ * {@code avatar.storage.gc.grace.minutes}, and files that never got a row because their upload failed.
+ */
+@Slf4j
+@Service
+public class AvatarBlobStore {
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}\\.[a-z]+");
+    // A blob or a file derived from it; group 1 is the hash, group 2 the extension
+    private static final Pattern BLOB_FILE = Pattern.compile("([0-9a-f]{64})(?:_[0-9]+)?\\.([a-z]+)");
+    // Also where avatars stored before the blob store are, directly under it
+    public static final String PREFIX = "avatars/";
+    private static final int GC_BATCH_SIZE = 100;
+
+    private final AvatarBlobRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final BlobStorage storage;
+    private final Duration gracePeriod;
+
+    public AvatarBlobStore(AvatarBlobRepository repository,
+                           PlatformTransactionManager transactionManager,
+                           BlobStorage storage,
+                           @Value("${avatar.storage.gc.grace.minutes:60}") long graceMinutes) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.storage = storage;
+        this.gracePeriod = Duration.ofMinutes(graceMinutes);
+    }
+
+    public static String key(String sha256, String extension) {
+        return sha256 + "." + extension;
+    }
+
+    public static boolean isKey(String value) {
+        return value != null && KEY.matcher(value).matches();
+    }
+
+    /**
+     * Whether the name is that of a blob or a file derived from one, i.e. whether {@link #storageKey} accepts it.
+     */
+    public static boolean isBlobFileName(String fileName) {
+        return fileName != null && BLOB_FILE.matcher(fileName).matches();
+    }
+
+    /**
+     * The {@link BlobStorage} key of a blob, or of a file derived from it. Does not check that it exists.
+     */
+    public static String storageKey(String fileName) {
+        if (!isBlobFileName(fileName))
+            throw new IllegalArgumentException("Not a blob file name: " + fileName);
+        return PREFIX + fileName.substring(0, 2) + "/" + fileName.substring(2, 4) + "/" + fileName;
+    }
+
+    /**
+     * A new file to write an upload to before {@link #retain}ing it.
+     */
+    public Path createTempFile() throws IOException {
+        return storage.createStagingFile();
+    }
+
+    /**
+     * Adds a reference to a blob, storing the staged file as the blob if it is not stored yet. The caller
+     * deletes the staged file afterwards.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void retain(String key, Path stagedFile, long size) throws IOException {
+        // Locks the row until commit, so garbage collection cannot delete the file we are about to rely on
+        repository.retain(key, size, LocalDateTime.now());
+
+        String storageKey = storageKey(key);
+        if (storage.stat(storageKey) == null)
+            storage.put(storageKey, stagedFile);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(String key) {
+        if (repository.release(key, LocalDateTime.now()) == 0)
+            log.warn("Released avatar blob {} which had no references", key);
+    }
+
+    @Scheduled(fixedDelayString = "${avatar.storage.gc.interval.ms:3600000}")
+    public void collectGarbage() {
+        try {
+            int deleted = 0;
+            int batch;
+            do {
+                batch = transactionTemplate.execute(status -> deleteUnreferenced());
+                deleted += batch;
+            } while (batch == GC_BATCH_SIZE);
+
+            int orphans = deleteOrphans();
+            if (deleted > 0 || orphans > 0)
+                log.info("Deleted {} unreferenced and {} orphaned avatar blobs", deleted, orphans);
+        } catch (RuntimeException | IOException e) {
+            log.warn("Avatar blob garbage collection failed: {}", e.getMessage());
+        }
+    }
+
+    private int deleteUnreferenced() {
+        LocalDateTime unreferencedBefore = LocalDateTime.now().minus(gracePeriod);
+        List<AvatarBlobEntity> collectable = repository.findCollectableForUpdate(unreferencedBefore, PageRequest.ofSize(GC_BATCH_SIZE));
+        for (AvatarBlobEntity blob : collectable) {
+            // Files first: if this fails the row stays and the next sweep tries again
+            deleteFiles(blob.getKey());
+            repository.delete(blob);
+        }
+        return collectable.size();
+    }
+
+    /**
+     * Deletes blob files older than the grace period that have no row, left behind by uploads whose transaction
+     * rolled back after the file was stored.
+     */
+    private int deleteOrphans() throws IOException {
+        Instant modifiedBefore = Instant.now().minus(gracePeriod);
+        Map<String, List<String>> filesByKey = new HashMap<>();
+        for (BlobMetadata file : storage.list(PREFIX)) {
+            String fileName = file.key().substring(file.key().lastIndexOf('/') + 1);
+            Matcher matcher = BLOB_FILE.matcher(fileName);
+            // Avatars from before the blob store are directly under the prefix, not in a shard
+            if (matcher.matches() && file.key().equals(storageKey(fileName)) && file.lastModified().isBefore(modifiedBefore))
+                filesByKey.computeIfAbsent(key(matcher.group(1), matcher.group(2)), key -> new ArrayList<>()).add(file.key());
+        }
+
+        int deleted = 0;
+        List<String> keys = new ArrayList<>(filesByKey.keySet());
+        for (int from = 0; from < keys.size(); from += GC_BATCH_SIZE) {
+            List<String> batch = keys.subList(from, Math.min(from + GC_BATCH_SIZE, keys.size()));
+            Set<String> orphaned = new HashSet<>(batch);
+            repository.findAllById(batch).forEach(blob -> orphaned.remove(blob.getKey()));
+            for (String key : orphaned) {
+                for (String file : filesByKey.get(key))
+                    storage.delete(file);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private void deleteFiles(String key) {
+        String blob = storageKey(key);
+        String hashPrefix = blob.substring(0, blob.lastIndexOf('.'));
+        try {
+            for (BlobMetadata file : storage.list(hashPrefix))
+                storage.delete(file.key());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to delete avatar blob " + key, e);
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.clinic.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Avatar bytes kept off-heap in direct buffers, up to {@code avatar.cache.max-size} bytes in total, so popular
+ * avatars such as those on the doctor list are served from memory without reading storage or growing the heap.
+ * Entries are keyed by storage key; an avatar file is never rewritten under the same key, so entries never go
+ * stale, and those of deleted avatars age out.
+ * <p>
+ * Admission follows W-TinyLFU: new entries go into a small LRU window, and an entry pushed out of it only
+ * displaces entries of the main segmented LRU if a count-min sketch of recent requests says it is requested more
+ * often than they are. A burst of one-off requests, such as paging through the patient list, therefore cannot
+ * flush the avatars that are requested all day. Requests, hits and misses alike, record their access in a read
+ * buffer drained by whoever holds the policy lock next, so a busy lock neither blocks a request nor loses its
+ * access; only a request that finds the buffer full waits for the lock.
+ * <p>
+ * Once the cache is full, an avatar requested for the first time would only lose that comparison when it leaves
+ * the window, so it is not admitted at all: it is served from the heap array it was read into, and only avatars
+ * the sketch has seen before are copied into a direct buffer.
+ */
+@Service
+public class AvatarCache {
+
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+    // Smallest avatar size assumed when sizing the frequency sketch
+    private static final int MIN_ENTRY_BYTES = 4 * 1024;
+    // Requests, counting the current one, before a new avatar is admitted into a full cache
+    private static final int MIN_ADMISSION_FREQUENCY = 2;
+    // Accesses waiting for the policy lock before a request drains them itself
+    private static final int READ_BUFFER_SIZE = 128;
+
+    private final long maxBytes;
+    private final long windowMaxBytes;
+    private final long protectedMaxBytes;
+    private final long maxEntryBytes;
+
+    private final Map<String, Node> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final Queue<Access> readBuffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingReads = new AtomicInteger();
+    // Least recently used first
+    private final LinkedHashMap<String, Node> window = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Node> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Node> protectedSegment = new LinkedHashMap<>();
+    private final FrequencySketch sketch;
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter rejections;
+
+    public AvatarCache(MeterRegistry meterRegistry,
+                       @Value("${avatar.cache.max-size:64MB}") DataSize maxSize,
+                       @Value("${avatar.cache.max-entry-size:512KB}") DataSize maxEntrySize) {
+        this.maxBytes = maxSize.toBytes();
+        this.windowMaxBytes = (long) (maxBytes * WINDOW_SHARE);
+        this.protectedMaxBytes = (long) ((maxBytes - windowMaxBytes) * PROTECTED_SHARE);
+        this.maxEntryBytes = Math.min(maxEntrySize.toBytes(), maxBytes - windowMaxBytes);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(16, maxBytes / MIN_ENTRY_BYTES)));
+
+        this.hits = Counter.builder("avatar.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("avatar.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("avatar.cache.evictions").register(meterRegistry);
+        this.rejections = Counter.builder("avatar.cache.rejections").register(meterRegistry);
+        meterRegistry.gauge("avatar.cache.hit.ratio", this, AvatarCache::hitRatio);
+        meterRegistry.gauge("avatar.cache.entries", entries, Map::size);
+        meterRegistry.gauge("avatar.cache.memory.bytes", this, AvatarCache::memoryBytes);
+    }
+
+    /**
+     * @return the avatar, its buffer positioned at the start, or null if it is not cached
+     */
+    public CachedAvatar get(String key) {
+        Node node = entries.get(key);
+        recordAccess(key, node);
+
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new CachedAvatar(node.content.duplicate(), node.lastModified);
+    }
+
+    /**
+     * Whether an avatar of that many bytes may be cached at all.
+     */
+    public boolean accepts(long size) {
+        return size <= maxEntryBytes;
+    }
+
+    /**
+     * Copies the avatar into a direct buffer and caches it, unless it is too large or not admitted.
+     *
+     * @return the cached copy, or the content itself if it was not cached, to serve now
+     */
+    public CachedAvatar put(String key, byte[] content, Instant lastModified) {
+        if (!accepts(content.length))
+            return onHeap(content, lastModified);
+
+        policyLock.lock();
+        try {
+            // Counts the miss that led here if the lock was busy then
+            drainReads();
+            Node existing = entries.get(key);
+            if (existing != null)
+                return new CachedAvatar(existing.content.duplicate(), existing.lastModified);
+            if (!admits(key, content.length)) {
+                rejections.increment();
+                return onHeap(content, lastModified);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(content.length).put(content).flip().asReadOnlyBuffer();
+            Node node = new Node(key, buffer, lastModified, Segment.WINDOW);
+            entries.put(key, node);
+            window.put(key, node);
+            windowBytes += node.weight();
+            while (windowBytes > windowMaxBytes && !window.isEmpty()) {
+                Node candidate = removeEldest(window);
+                windowBytes -= candidate.weight();
+                admit(candidate);
+            }
+            return new CachedAvatar(buffer.duplicate(), lastModified);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * @param node the entry found, or null for a miss
+     */
+    private void recordAccess(String key, Node node) {
+        readBuffer.offer(new Access(key, node));
+        if (pendingReads.incrementAndGet() >= READ_BUFFER_SIZE)
+            policyLock.lock();
+        else if (!policyLock.tryLock())
+            return; // Drained by the holder or by the next request to take the lock
+        try {
+            drainReads();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void drainReads() {
+        Access access;
+        while ((access = readBuffer.poll()) != null) {
+            pendingReads.decrementAndGet();
+            sketch.increment(access.key());
+            // Unless it was evicted meanwhile
+            if (access.node() != null && entries.get(access.key()) == access.node())
+                onHit(access.node());
+        }
+    }
+
+    /**
+     * Whether a new avatar may enter the window: always while nothing would have to be evicted for it, and
+     * otherwise only if it has been requested before.
+     */
+    private boolean admits(String key, int size) {
+        // Entries leaving the window must fit in the main segments
+        if (windowBytes + probationBytes + protectedBytes + size <= maxBytes - windowMaxBytes)
+            return true;
+        return sketch.frequency(key) >= MIN_ADMISSION_FREQUENCY;
+    }
+
+    private static CachedAvatar onHeap(byte[] content, Instant lastModified) {
+        return new CachedAvatar(ByteBuffer.wrap(content).asReadOnlyBuffer(), lastModified);
+    }
+
+    private void onHit(Node node) {
+        switch (node.segment) {
+            case WINDOW -> moveToEnd(window, node);
+            case PROTECTED -> moveToEnd(protectedSegment, node);
+            case PROBATION -> {
+                probation.remove(node.key);
+                probationBytes -= node.weight();
+                node.segment = Segment.PROTECTED;
+                protectedSegment.put(node.key, node);
+                protectedBytes += node.weight();
+                while (protectedBytes > protectedMaxBytes) {
+                    Node demoted = removeEldest(protectedSegment);
+                    protectedBytes -= demoted.weight();
+                    demoted.segment = Segment.PROBATION;
+                    probation.put(demoted.key, demoted);
+                    probationBytes += demoted.weight();
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves an entry leaving the window into the main segments if there is room, or if it is requested more
+     * often than every entry it would evict, probation first.
+     */
+    private void admit(Node candidate) {
+        long needed = probationBytes + protectedBytes + candidate.weight() - (maxBytes - windowMaxBytes);
+        List<Node> victims = new ArrayList<>();
+        if (needed > 0) {
+            int candidateFrequency = sketch.frequency(candidate.key);
+            Iterator<Node> eldest = concat(probation, protectedSegment);
+            while (needed > 0 && eldest.hasNext()) {
+                Node victim = eldest.next();
+                if (sketch.frequency(victim.key) >= candidateFrequency) {
+                    entries.remove(candidate.key);
+                    rejections.increment();
+                    return;
+                }
+                victims.add(victim);
+                needed -= victim.weight();
+            }
+        }
+
+        for (Node victim : victims) {
+            if (victim.segment == Segment.PROBATION) {
+                probation.remove(victim.key);
+                probationBytes -= victim.weight();
+            } else {
+                protectedSegment.remove(victim.key);
+                protectedBytes -= victim.weight();
+            }
+            entries.remove(victim.key);
+            evictions.increment();
+        }
+        candidate.segment = Segment.PROBATION;
+        probation.put(candidate.key, candidate);
+        probationBytes += candidate.weight();
+    }
+
+    private static Iterator<Node> concat(LinkedHashMap<String, Node> first, LinkedHashMap<String, Node> second) {
+        Iterator<Node> firstNodes = first.values().iterator();
+        Iterator<Node> secondNodes = second.values().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return firstNodes.hasNext() || secondNodes.hasNext();
+            }
+
+            @Override
+            public Node next() {
+                return firstNodes.hasNext() ? firstNodes.next() : secondNodes.next();
+            }
+        };
+    }
+
+    private static void moveToEnd(LinkedHashMap<String, Node> segment, Node node) {
+        segment.remove(node.key);
+        segment.put(node.key, node);
+    }
+
+    private static Node removeEldest(LinkedHashMap<String, Node> segment) {
+        Iterator<Node> nodes = segment.values().iterator();
+        Node eldest = nodes.next();
+        nodes.remove();
+        return eldest;
+    }
+
+    private double hitRatio() {
+        double requests = hits.count() + misses.count();
+        return requests == 0 ? 0 : hits.count() / requests;
+    }
+
+    private double memoryBytes() {
+        policyLock.lock();
+        try {
+            return windowBytes + probationBytes + protectedBytes;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * @param content read-only, positioned at the start of the avatar; each caller gets its own
+     */
+    public record CachedAvatar(ByteBuffer content, Instant lastModified) {
+    }
+
+    private enum Segment {WINDOW, PROBATION, PROTECTED}
+
+    private record Access(String key, Node node) {
+    }
+
+    private static final class Node {
+        final String key;
+        final ByteBuffer content;
+        final Instant lastModified;
+        Segment segment;
+
+        Node(String key, ByteBuffer content, Instant lastModified, Segment segment) {
+            this.key = key;
+            this.content = content;
+            this.lastModified = lastModified;
+            this.segment = segment;
+        }
+
+        int weight() {
+            return content.capacity();
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters, halved every {@code 10 * width} increments so that frequencies
+     * reflect recent requests rather than all-time ones. Not thread-safe.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {0x97cb3127L, 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL};
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(expectedEntries - 1) << 1;
+            this.counters = new byte[SEEDS.length][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+        }
+
+        void increment(String key) {
+            long hash = spread(key);
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int index = index(hash, row);
+                if (counters[row][index] < MAX_COUNT) {
+                    counters[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize)
+                halve();
+        }
+
+        int frequency(String key) {
+            long hash = spread(key);
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < SEEDS.length; row++)
+                frequency = Math.min(frequency, counters[row][index(hash, row)]);
+            return frequency;
+        }
+
+        private void halve() {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++)
+                    row[i] >>= 1;
+            }
+            additions /= 2;
+        }
+
+        private int index(long hash, int row) {
+            long mixed = (hash ^ SEEDS[row]) * 0xbf58476d1ce4e5b9L;
+            return (int) (mixed >>> 32) & mask;
+        }
+
+        private static long spread(String key) {
+            return key.hashCode() * 0x9e3779b97f4a7c15L;
+        }
+    }
+}
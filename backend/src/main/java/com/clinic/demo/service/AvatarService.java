@@ -1,66 +1,108 @@
 package com.clinic.demo.service;
 
+import com.clinic.demo.DTO.BlobMetadata;
 import com.clinic.demo.DTO.FileResponseDTO;
 import com.clinic.demo.DTO.UploadPictureDTO;
+import com.clinic.demo.DTO.UserAvatarDTO;
 import com.clinic.demo.models.entity.user.BaseUserEntity;
+import com.clinic.demo.service.AvatarCache.CachedAvatar;
+import com.clinic.demo.utils.ImageFormat;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
 public class AvatarService {
 
     private static final Logger logger = LoggerFactory.getLogger(AvatarService.class);
+    // Where avatars were stored before the blob store
     private static final String AVATAR_DIRECTORY = "files/avatars/";
-    private static final String DEFAULT_AVATAR_PATH = "src/main/resources/static/default-avatar.png";
+    private static final String DEFAULT_AVATAR_RESOURCE = "static/default-avatar.png";
     private static final long MAX_FILE_SIZE = 5 * 1024 * 1024; // 5MB
     private static final Set<String> ALLOWED_EXTENSIONS = Set.of("jpg", "jpeg", "png", "webp");
+    private static final int COPY_BUFFER_SIZE = 16 * 1024;
+    private static final String AVATAR_CONTENT_URL = "/files/avatar/content/";
+    // Files in the flat avatar directory, from before the blob store
+    private static final Pattern AVATAR_FILE_NAME = Pattern.compile("avatar_[0-9a-f]+_[0-9a-f]+(_[0-9]+)?\\.(jpg|jpeg|png|webp)");
+    private static final FileResponseDTO NOT_FOUND = new FileResponseDTO(null, null, null, null, false, null, null);
+    // Group 2 is the size of a thumbnail variant
+    private static final Pattern CONTENT_HASH = Pattern.compile("(?:avatar_[0-9a-f]+_)?([0-9a-f]{64})(?:_([0-9]+))?\\.[a-z]+");
 
     private final UserService userService;
     private final AuthenticationService authenticationService;
+    private final AvatarThumbnailService thumbnailService;
+    private final AvatarBlobStore blobStore;
+    private final BlobStorage storage;
+    private final AvatarCache avatarCache;
+    // Read once at startup; served from memory like cached avatars
+    private final FileResponseDTO defaultAvatar = loadDefaultAvatar();
+
+    private record StagedAvatar(Path file, String key, long size) {
+    }
 
     // ===== UPLOAD OPERATIONS =====
 
+    /**
+     * Streams the upload to disk, validating its size and format as it arrives, so only a small buffer is
+     * held in memory however large the file is. The picture is stored once however many users upload it.
+     */
     @Transactional
     public void uploadProfilePicture(UploadPictureDTO uploadPictureDTO) {
         String email = uploadPictureDTO.email().toLowerCase();
-        byte[] profilePicture = uploadPictureDTO.profilePicture();
-        String originalFileName = uploadPictureDTO.fileName();
-
-        validateUpload(profilePicture, originalFileName);
+        validateFileName(uploadPictureDTO.fileName());
 
+        StagedAvatar staged = null;
         try {
-            String fileExtension = getFileExtension(originalFileName);
-            String uniqueFileName = generateUniqueFileName(email, fileExtension);
-
-            createAvatarDirectoryIfNeeded();
-
-            String filePath = saveFileToStorage(profilePicture, uniqueFileName);
+            staged = stageUpload(uploadPictureDTO.content());
 
             BaseUserEntity user = userService.findUserByEmail(email);
 
-            deleteOldAvatar(user.getAvatarPath());
+            blobStore.retain(staged.key(), staged.file(), staged.size());
+            releaseAvatar(user.getAvatarPath());
 
-            user.setAvatarPath(filePath);
+            user.setAvatarPath(staged.key());
             userService.save(user);
 
-            logger.info("Profile picture uploaded for user: {} at path: {}", email, filePath);
+            thumbnailService.generateAsync(AvatarBlobStore.storageKey(staged.key()));
+            logger.info("Profile picture uploaded for user: {} as {}", email, staged.key());
 
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error uploading profile picture for user {}: {}", email, e.getMessage(), e);
             throw new RuntimeException("Failed to upload profile picture", e);
+        } finally {
+            if (staged != null)
+                deleteTempFile(staged.file());
         }
     }
 
@@ -70,7 +112,7 @@ public class AvatarService {
         String avatarPath = user.getAvatarPath();
 
         if (avatarPath != null && !avatarPath.trim().isEmpty()) {
-            deleteOldAvatar(avatarPath);
+            releaseAvatar(avatarPath);
             user.setAvatarPath(null);
             userService.save(user);
             logger.info("Profile picture deleted for user: {}", email);
@@ -79,77 +121,215 @@ public class AvatarService {
 
     // ===== SERVING OPERATIONS =====
 
-    public FileResponseDTO getCurrentUserProfilePicture() {
+    /**
+     * @param size the width the picture is displayed at, or null for the original; the nearest larger thumbnail
+     *             is served
+     */
+    public FileResponseDTO getCurrentUserProfilePicture(Integer size) {
         String currentUserEmail = authenticationService.getAuthenticatedUserEmail();
-        BaseUserEntity user = userService.findUserByEmail(currentUserEmail);
-        return getUserProfilePicture(user);
+        return withSize(getProfilePicture(userService.findAvatarPathByEmail(currentUserEmail)), size);
     }
 
-    public FileResponseDTO getUserProfilePicture(String email) {
-        BaseUserEntity user = userService.findUserByEmail(email.toLowerCase());
-        return getUserProfilePicture(user);
+    /**
+     * @param size the width the picture is displayed at, or null for the original; the nearest larger thumbnail
+     *             is served
+     */
+    public FileResponseDTO getUserProfilePicture(String email, Integer size) {
+        return withSize(getProfilePicture(userService.findAvatarPathByEmail(email.toLowerCase())), size);
+    }
+
+    /**
+     * An avatar by file name, as linked by {@link #getAvatarUrl}. A file is never rewritten under the same name,
+     * so this needs no user lookup and its responses can be cached indefinitely. Avatars in {@link AvatarCache}
+     * need no storage access either.
+     */
+    public FileResponseDTO getAvatarContent(String fileName) {
+        String storageKey;
+        if (AvatarBlobStore.isBlobFileName(fileName))
+            storageKey = AvatarBlobStore.storageKey(fileName);
+        else if (AVATAR_FILE_NAME.matcher(fileName).matches())
+            storageKey = AvatarBlobStore.PREFIX + fileName;
+        else
+            return NOT_FOUND;
+
+        try {
+            return getStoredAvatar(storageKey);
+        } catch (IOException e) {
+            return NOT_FOUND;
+        }
+    }
+
+    /**
+     * @return the immutable URL of an avatar file, or null for the default avatar
+     */
+    public String getAvatarUrl(FileResponseDTO avatar) {
+        if (!avatar.exists() || !isStoredAvatar(avatar.fileName()))
+            return null;
+        return AVATAR_CONTENT_URL + avatar.fileName();
+    }
+
+    /**
+     * The immutable URLs of many users' avatars, for list views, from a single query that reads only their avatar
+     * paths. Storage is not touched, so a URL whose file has gone missing answers 404 rather than falling back to
+     * the default avatar the way {@code /files/avatar/{email}} does.
+     *
+     * @return by id and by email, in the order asked for, the URL of each user's avatar, or null for the default
+     * avatar and for users that do not exist, so the answer does not tell which ids and emails are registered
+     */
+    public Map<String, String> getAvatarUrls(Collection<UUID> ids, Collection<String> emails) {
+        List<UUID> requestedIds = ids == null ? List.of() : List.copyOf(new LinkedHashSet<>(ids));
+        List<String> requestedEmails = emails == null ? List.of()
+                : emails.stream().map(String::toLowerCase).distinct().toList();
+        if (requestedIds.isEmpty() && requestedEmails.isEmpty())
+            throw new IllegalArgumentException("At least one id or email is required");
+
+        Map<UUID, String> urlsById = new HashMap<>();
+        Map<String, String> urlsByEmail = new HashMap<>();
+        for (UserAvatarDTO user : userService.findAvatarPaths(requestedIds, requestedEmails)) {
+            String url = getAvatarUrl(user.avatarPath());
+            urlsById.put(user.id(), url);
+            urlsByEmail.put(user.email(), url);
+        }
+
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (UUID id : requestedIds)
+            urls.put(id.toString(), urlsById.get(id));
+        for (String email : requestedEmails)
+            urls.put(email, urlsByEmail.get(email));
+        return urls;
     }
 
     // ===== PRIVATE HELPER METHODS =====
 
-    private FileResponseDTO getUserProfilePicture(BaseUserEntity user) {
-        String avatarPath = user.getAvatarPath();
+    private FileResponseDTO withSize(FileResponseDTO avatar, Integer size) {
+        if (size == null || !avatar.exists() || !isStoredAvatar(avatar.fileName()))
+            return avatar;
+
+        try {
+            String variant = thumbnailService.getVariant(avatar.storageKey(), size);
+            if (variant == null)
+                return avatar;
+            return getStoredAvatar(variant);
+        } catch (IOException e) {
+            return avatar;
+        }
+    }
 
+    private FileResponseDTO getProfilePicture(String avatarPath) {
         if (avatarPath == null || avatarPath.trim().isEmpty())
             return getDefaultAvatarResponse();
 
         try {
-            Path filePath = Paths.get(avatarPath);
+            String storageKey = toStorageKey(avatarPath);
 
-            if (!isFileInAvatarDirectory(filePath)) {
+            if (storageKey == null) {
                 logger.warn("Attempted to access file outside avatar directory: {}", avatarPath);
                 return getDefaultAvatarResponse();
             }
 
-            if (!Files.exists(filePath)) {
-                logger.warn("Avatar file not found: {}", avatarPath);
-                return getDefaultAvatarResponse();
-            }
-
-            Resource resource = new FileSystemResource(filePath);
-            String contentType = determineContentType(filePath);
-            String fileName = filePath.getFileName().toString();
-
-            return new FileResponseDTO(resource, contentType, true, fileName);
+            return getStoredAvatar(storageKey);
 
+        } catch (NoSuchFileException e) {
+            logger.warn("Avatar file not found: {}", avatarPath);
+            return getDefaultAvatarResponse();
         } catch (Exception e) {
             logger.error("Error processing avatar file {}: {}", avatarPath, e.getMessage(), e);
             return getDefaultAvatarResponse();
         }
     }
 
-    private FileResponseDTO getDefaultAvatarResponse() {
+    private String getAvatarUrl(String avatarPath) {
+        if (avatarPath == null || avatarPath.isBlank())
+            return null;
         try {
-            Path defaultAvatarPath = Paths.get(DEFAULT_AVATAR_PATH);
-            if (Files.exists(defaultAvatarPath)) {
-                Resource resource = new FileSystemResource(defaultAvatarPath);
-                return new FileResponseDTO(resource, "image/png", true, "default-avatar.png");
-            }
-        } catch (Exception e) {
+            String storageKey = toStorageKey(avatarPath);
+            return storageKey == null ? null : AVATAR_CONTENT_URL + fileNameOf(storageKey);
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private FileResponseDTO getDefaultAvatarResponse() {
+        return defaultAvatar;
+    }
+
+    private static FileResponseDTO loadDefaultAvatar() {
+        ClassPathResource resource = new ClassPathResource(DEFAULT_AVATAR_RESOURCE);
+        try (InputStream in = resource.getInputStream()) {
+            byte[] content = in.readAllBytes();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(content.length).put(content).flip().asReadOnlyBuffer();
+            String etag = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+            return new FileResponseDTO(null, buffer, Instant.ofEpochMilli(resource.lastModified()), "image/png", true,
+                    "default-avatar.png", etag);
+        } catch (IOException | NoSuchAlgorithmException e) {
             logger.warn("Default avatar not found: {}", e.getMessage());
+            return NOT_FOUND;
         }
+    }
 
-        return new FileResponseDTO(null, null, false, null);
+    /**
+     * A stored avatar from {@link AvatarCache}, read into memory first if it is small enough and served from
+     * there whether or not the cache keeps it. Larger ones are streamed from storage.
+     *
+     * @throws NoSuchFileException if it is not in storage
+     */
+    private FileResponseDTO getStoredAvatar(String storageKey) throws IOException {
+        String fileName = fileNameOf(storageKey);
+        String contentType = determineContentType(fileName);
+
+        CachedAvatar cached = avatarCache.get(storageKey);
+        if (cached == null) {
+            BlobMetadata metadata = storage.stat(storageKey);
+            if (metadata == null)
+                throw new NoSuchFileException(storageKey);
+            if (!avatarCache.accepts(metadata.size()))
+                return new FileResponseDTO(storageKey, null, null, contentType, true, fileName,
+                        getEtag(fileName, metadata.size(), metadata.lastModified()));
+
+            try (InputStream content = storage.open(storageKey)) {
+                cached = avatarCache.put(storageKey, content.readAllBytes(), metadata.lastModified());
+            }
+        }
+
+        String etag = getEtag(fileName, cached.content().remaining(), cached.lastModified());
+        return new FileResponseDTO(storageKey, cached.content(), cached.lastModified(), contentType, true, fileName, etag);
     }
 
-    private String generateUniqueFileName(String userEmail, String extension) {
-        String emailHash = Integer.toHexString(userEmail.hashCode());
-        long timestamp = System.currentTimeMillis();
-        return "avatar_" + emailHash + "_" + timestamp + "." + extension;
+    /**
+     * The content hash for files named after it; older, timestamped files fall back to their size and
+     * modification time, which is as good since they are never rewritten either.
+     */
+    private static String getEtag(String fileName, long size, Instant lastModified) {
+        Matcher hashed = CONTENT_HASH.matcher(fileName);
+        if (hashed.matches())
+            return hashed.group(2) == null ? hashed.group(1) : hashed.group(1) + "-" + hashed.group(2);
+        return Long.toHexString(size) + "-" + Long.toHexString(lastModified.toEpochMilli());
     }
 
-    private void validateUpload(byte[] fileData, String fileName) {
-        if (fileData == null || fileData.length == 0)
-            throw new IllegalArgumentException("Profile picture cannot be empty");
+    /**
+     * Where a user's avatar is in {@link BlobStorage}. Blob keys are looked up in their shard; paths stored
+     * before the blob store, such as {@code files/avatars/avatar_....png}, are looked up by file name directly
+     * under {@link AvatarBlobStore#PREFIX}.
+     *
+     * @return the storage key, or null if the path is outside the avatar directory
+     */
+    private String toStorageKey(String avatarPath) {
+        if (AvatarBlobStore.isKey(avatarPath))
+            return AvatarBlobStore.storageKey(avatarPath);
+
+        Path filePath = Paths.get(avatarPath).toAbsolutePath().normalize();
+        Path avatarDir = Paths.get(AVATAR_DIRECTORY).toAbsolutePath().normalize();
+        String fileName = filePath.getFileName().toString();
+        if (!avatarDir.equals(filePath.getParent()) || !AVATAR_FILE_NAME.matcher(fileName).matches())
+            return null;
+        return AvatarBlobStore.PREFIX + fileName;
+    }
 
-        if (fileData.length > MAX_FILE_SIZE)
-            throw new IllegalArgumentException("File size cannot exceed 5MB");
+    private static String fileNameOf(String storageKey) {
+        return storageKey.substring(storageKey.lastIndexOf('/') + 1);
+    }
 
+    private void validateFileName(String fileName) {
         if (fileName == null || fileName.trim().isEmpty())
             throw new IllegalArgumentException("File name is required");
 
@@ -165,48 +345,102 @@ public class AvatarService {
         return fileName.substring(lastDotIndex + 1).toLowerCase();
     }
 
-    private void createAvatarDirectoryIfNeeded() throws IOException {
-        Path avatarDir = Paths.get(AVATAR_DIRECTORY);
-        if (!Files.exists(avatarDir)) {
-            Files.createDirectories(avatarDir);
-            logger.info("Created avatar directory: {}", AVATAR_DIRECTORY);
+    /**
+     * Copies the upload into a staging file, checking its magic bytes once the first
+     * {@link ImageFormat#SIGNATURE_LENGTH} have arrived and its size with every read, and hashing it on the way.
+     * Its blob key is made of the SHA-256 and the detected format, not the extension it was uploaded with.
+     */
+    private StagedAvatar stageUpload(InputStream content) throws IOException, NoSuchAlgorithmException {
+        Path tempFile = blobStore.createTempFile();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ImageFormat format = null;
+            long size = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                int read;
+                while ((read = content.read(buffer.array(), buffer.position(), buffer.remaining())) != -1) {
+                    size += read;
+                    if (size > MAX_FILE_SIZE)
+                        throw new IllegalArgumentException("File size cannot exceed 5MB");
+                    buffer.position(buffer.position() + read);
+
+                    // Hold back the first bytes until the whole signature is in the buffer
+                    if (format == null) {
+                        if (buffer.position() < ImageFormat.SIGNATURE_LENGTH)
+                            continue;
+                        format = requireImageFormat(buffer.array(), buffer.position());
+                    }
+                    buffer.flip();
+                    digest.update(buffer.array(), 0, buffer.limit());
+                    while (buffer.hasRemaining())
+                        channel.write(buffer);
+                    buffer.clear();
+                }
+
+                if (size == 0)
+                    throw new IllegalArgumentException("Profile picture cannot be empty");
+                if (format == null) {
+                    // Smaller than the longest signature
+                    format = requireImageFormat(buffer.array(), buffer.position());
+                    buffer.flip();
+                    digest.update(buffer.array(), 0, buffer.limit());
+                    while (buffer.hasRemaining())
+                        channel.write(buffer);
+                }
+            }
+
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            return new StagedAvatar(tempFile, AvatarBlobStore.key(contentHash, format.getExtension()), size);
+        } catch (IOException | RuntimeException e) {
+            deleteTempFile(tempFile);
+            throw e;
         }
     }
 
-    private String saveFileToStorage(byte[] fileData, String fileName) throws IOException {
-        Path filePath = Paths.get(AVATAR_DIRECTORY, fileName);
-        Files.write(filePath, fileData, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
-        return filePath.toString();
+    private void deleteTempFile(Path tempFile) {
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            logger.warn("Failed to delete temporary upload {}: {}", tempFile, e.getMessage());
+        }
     }
 
-    private void deleteOldAvatar(String oldAvatarPath) {
-        if (oldAvatarPath != null && !oldAvatarPath.trim().isEmpty()) {
-            try {
-                Path oldPath = Paths.get(oldAvatarPath);
-                if (Files.exists(oldPath)) {
-                    Files.delete(oldPath);
-                    logger.info("Deleted old avatar: {}", oldAvatarPath);
-                }
-            } catch (IOException e) {
-                logger.warn("Failed to delete old avatar {}: {}", oldAvatarPath, e.getMessage());
-            }
-        }
+    private ImageFormat requireImageFormat(byte[] header, int length) {
+        ImageFormat format = ImageFormat.detect(header, length);
+        if (format == null)
+            throw new IllegalArgumentException("Invalid file content. Allowed: " + ALLOWED_EXTENSIONS);
+        return format;
     }
 
+    private void releaseAvatar(String avatarPath) {
+        if (avatarPath == null || avatarPath.trim().isEmpty())
+            return;
+        if (AvatarBlobStore.isKey(avatarPath))
+            blobStore.release(avatarPath);
+        else
+            deleteOldAvatar(avatarPath); // stored before the blob store, never shared
+    }
 
-    private boolean isFileInAvatarDirectory(Path filePath) {
+    private boolean isStoredAvatar(String fileName) {
+        return AvatarBlobStore.isBlobFileName(fileName) || AVATAR_FILE_NAME.matcher(fileName).matches();
+    }
+
+    private void deleteOldAvatar(String oldAvatarPath) {
         try {
-            Path avatarDir = Paths.get(AVATAR_DIRECTORY).toAbsolutePath().normalize();
-            Path fileAbsolutePath = filePath.toAbsolutePath().normalize();
-            return fileAbsolutePath.startsWith(avatarDir);
-        } catch (Exception e) {
-            logger.error("Error checking file directory: {}", e.getMessage());
-            return false;
+            String storageKey = toStorageKey(oldAvatarPath);
+            if (storageKey == null)
+                return;
+            thumbnailService.deleteVariants(storageKey);
+            storage.delete(storageKey);
+            logger.info("Deleted old avatar: {}", oldAvatarPath);
+        } catch (IOException | InvalidPathException e) {
+            logger.warn("Failed to delete old avatar {}: {}", oldAvatarPath, e.getMessage());
         }
     }
 
-    private String determineContentType(Path filePath) {
-        String fileName = filePath.getFileName().toString().toLowerCase();
+    private String determineContentType(String fileName) {
+        fileName = fileName.toLowerCase();
 
         if (fileName.endsWith(".png")) return "image/png";
         if (fileName.endsWith(".jpg") || fileName.endsWith(".jpeg")) return "image/jpeg";
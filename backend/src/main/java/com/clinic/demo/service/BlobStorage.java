@@ -0,0 +1,61 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.BlobMetadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Where uploaded files are kept, addressed by slash-separated keys such as {@code avatars/ab/cd/abcd....png}.
+ * <p>
+ * Selected with {@code storage.backend}: {@code local} (default) keeps files under {@code storage.local.directory}
+ * on this node only, while {@code s3} stores them in a bucket of an S3-compatible service so that every node
+ * sees the same files.
+ */
+public interface BlobStorage {
+
+    /**
+     * A new empty file to write content to before {@link #put}ing it, on the local file system.
+     */
+    Path createStagingFile() throws IOException;
+
+    /**
+     * Stores the content of a file under the key, replacing any blob already there. Readers see either the old
+     * or the new content, never a partial one. A file from {@link #createStagingFile} may be moved by this
+     * call, other files are copied; callers delete the file afterwards if it is still there.
+     */
+    void put(String key, Path file) throws IOException;
+
+    /**
+     * @throws java.nio.file.NoSuchFileException if there is no blob under the key
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * The blob from {@code offset} on. Callers read at most {@code length} bytes of the stream.
+     *
+     * @throws java.nio.file.NoSuchFileException if there is no blob under the key
+     */
+    InputStream open(String key, long offset, long length) throws IOException;
+
+    /**
+     * @return the blob's size and modification time, or null if there is no blob under the key
+     */
+    BlobMetadata stat(String key) throws IOException;
+
+    /** Does nothing if there is no blob under the key. */
+    void delete(String key) throws IOException;
+
+    /** Every blob whose key starts with the prefix. */
+    List<BlobMetadata> list(String prefix) throws IOException;
+
+    /**
+     * The file holding the blob when it is on this node's file system, so it can be handed to sendfile;
+     * null for remote backends. The file may not exist.
+     */
+    default Path localPath(String key) {
+        return null;
+    }
+}
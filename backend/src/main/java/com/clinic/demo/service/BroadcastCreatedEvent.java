@@ -0,0 +1,7 @@
+package com.clinic.demo.service;
+
+/**
+ * Published when a broadcast is created, so it starts as soon as its job row is committed.
+ */
+public record BroadcastCreatedEvent(Long broadcastId) {
+}
@@ -0,0 +1,343 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.BroadcastProgressDTO;
+import com.clinic.demo.DTO.BroadcastRecipientDTO;
+import com.clinic.demo.DTO.BroadcastRequestDTO;
+import com.clinic.demo.DTO.SmsMessage;
+import com.clinic.demo.exception.BroadcastNotFoundException;
+import com.clinic.demo.models.entity.BroadcastJobEntity;
+import com.clinic.demo.models.enums.BroadcastStatus;
+import com.clinic.demo.repository.BroadcastJobRepository;
+import com.clinic.demo.repository.UserRepository;
+import com.clinic.demo.utils.TokenBucket;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Sends one notification to every active patient whose {@code NotificationPreferences} accept its type, over
+ * email and/or SMS.
+ * <p>
+ * Patients are read in id order, {@code notifications.broadcast.chunk.size} at a time, and queued no faster
+ * than {@code notifications.broadcast.rate.per.second}. The rate limit is waited out between reading a chunk
+ * and writing it, so no transaction or connection is held while throttling. Each chunk is then written in one
+ * transaction: its emails go into the mail outbox together with the job's checkpoint (the last patient id)
+ * and counters, so a job interrupted by a crash or restart resumes after the last committed chunk without
+ * emailing anyone twice. SMS for a chunk are handed to {@link SmsService} once it commits.
+ * <p>
+ * A job is run by whichever node holds its lease, renewed with every chunk; jobs whose lease has expired are
+ * picked up every {@code notifications.broadcast.resume.interval.ms}.
+ */
+@Slf4j
+@Service
+public class BroadcastService implements DisposableBean {
+
+    // Postgres orders uuids bytewise, so the nil uuid sorts before every patient id
+    private static final UUID BEFORE_FIRST_PATIENT = new UUID(0, 0);
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final long SMS_QUEUE_RETRY_MILLIS = 200;
+
+    private final BroadcastJobRepository jobRepository;
+    private final UserRepository userRepository;
+    private final NotificationService notificationService;
+    private final SmsService smsService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final int chunkSize;
+    private final Duration lease;
+    private final int burst;
+    private final long nanosPerRecipient;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+    private record Chunk(BroadcastJobEntity job, List<BroadcastRecipientDTO> recipients) {
+    }
+
+    private record ChunkResult(boolean hasMore, List<SmsMessage> sms) {
+    }
+
+    public BroadcastService(BroadcastJobRepository jobRepository,
+                            UserRepository userRepository,
+                            NotificationService notificationService,
+                            SmsService smsService,
+                            ApplicationEventPublisher eventPublisher,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${notifications.broadcast.chunk.size:200}") int chunkSize,
+                            @Value("${notifications.broadcast.lease.seconds:60}") long leaseSeconds,
+                            @Value("${notifications.broadcast.rate.per.second:50}") double recipientsPerSecond,
+                            @Value("${notifications.broadcast.burst:50}") int burst) {
+        this.jobRepository = jobRepository;
+        this.userRepository = userRepository;
+        this.notificationService = notificationService;
+        this.smsService = smsService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.chunkSize = chunkSize;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.burst = burst;
+        this.nanosPerRecipient = (long) (TimeUnit.SECONDS.toNanos(1) / recipientsPerSecond);
+
+        // The lease is renewed once per chunk, so a chunk at the configured rate has to fit well inside it
+        long chunkNanos = nanosPerRecipient * Math.max(chunkSize - burst, 0);
+        if (chunkNanos * 2 > lease.toNanos())
+            throw new IllegalStateException("notifications.broadcast.lease.seconds must be at least twice the time "
+                    + "a chunk of " + chunkSize + " takes at " + recipientsPerSecond + " recipients per second");
+
+        meterRegistry.gaugeCollectionSize("notifications.broadcasts.running", List.of(), running);
+    }
+
+    @Transactional
+    public BroadcastProgressDTO createBroadcast(BroadcastRequestDTO request, String createdBy) {
+        BroadcastJobEntity job = new BroadcastJobEntity();
+        job.setTitle(request.getTitle());
+        job.setMessage(request.getMessage());
+        job.setType(request.getType());
+        job.setCreatedBy(createdBy);
+        job.setTotalRecipients(userRepository.countActivePatients());
+        jobRepository.save(job);
+
+        eventPublisher.publishEvent(new BroadcastCreatedEvent(job.getId()));
+        log.info("Broadcast {} ({}) created by {} for {} patients", job.getId(), job.getType(), createdBy, job.getTotalRecipients());
+        return toDTO(job);
+    }
+
+    public BroadcastProgressDTO getBroadcast(Long broadcastId) {
+        return jobRepository.findById(broadcastId)
+                .map(BroadcastService::toDTO)
+                .orElseThrow(() -> new BroadcastNotFoundException(broadcastId));
+    }
+
+    /**
+     * Stops a broadcast after the chunk in progress; a chunk that has not committed yet is rolled back.
+     * Cancelling a cancelled broadcast does nothing.
+     */
+    public BroadcastProgressDTO cancelBroadcast(Long broadcastId) {
+        if (jobRepository.cancel(broadcastId, LocalDateTime.now()) == 0) {
+            BroadcastProgressDTO broadcast = getBroadcast(broadcastId);
+            if (broadcast.getStatus() == BroadcastStatus.COMPLETED)
+                throw new IllegalArgumentException("Broadcast " + broadcastId + " has already completed");
+        }
+        return getBroadcast(broadcastId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBroadcastCreated(BroadcastCreatedEvent event) {
+        start(event.broadcastId());
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.broadcast.resume.interval.ms:30000}")
+    public void resumeUnclaimed() {
+        List<Long> unclaimed;
+        try {
+            unclaimed = jobRepository.findUnclaimedJobIds(LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.warn("Failed to look for broadcasts to resume: {}", e.getMessage());
+            return;
+        }
+        for (Long broadcastId : unclaimed)
+            start(broadcastId);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // Interrupted chunks roll back; their leases expire and another node (or the next start) resumes them
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void start(Long broadcastId) {
+        if (!running.add(broadcastId))
+            return;
+        try {
+            executor.execute(() -> {
+                try {
+                    run(broadcastId);
+                } finally {
+                    running.remove(broadcastId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.remove(broadcastId);
+        }
+    }
+
+    private void run(Long broadcastId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (jobRepository.claim(broadcastId, now, now.plus(lease)) == 0)
+            return;
+        log.info("Running broadcast {}", broadcastId);
+
+        TokenBucket rateLimit = new TokenBucket(burst, nanosPerRecipient, System.nanoTime());
+        try {
+            ChunkResult result;
+            do {
+                Optional<Chunk> chunk = readOnlyTransactionTemplate.execute(status -> readChunk(broadcastId));
+                if (chunk.isEmpty())
+                    return;
+                for (BroadcastRecipientDTO recipient : chunk.get().recipients()) {
+                    if (isReachable(recipient, chunk.get().job()))
+                        awaitRatePermit(rateLimit);
+                }
+                result = transactionTemplate.execute(status -> writeChunk(broadcastId, chunk.get(), status));
+                queueSms(broadcastId, result.sms());
+            } while (result.hasMore());
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                log.info("Broadcast {} interrupted, it will resume from its last checkpoint", broadcastId);
+                return;
+            }
+            log.error("Broadcast {} failed, it will resume from its last checkpoint", broadcastId, e);
+            try {
+                jobRepository.release(broadcastId, truncate(e.getMessage()));
+            } catch (RuntimeException releaseFailure) {
+                log.warn("Failed to release broadcast {}: {}", broadcastId, releaseFailure.getMessage());
+            }
+        }
+    }
+
+    private Optional<Chunk> readChunk(Long broadcastId) {
+        BroadcastJobEntity job = jobRepository.findById(broadcastId)
+                .orElseThrow(() -> new BroadcastNotFoundException(broadcastId));
+        if (job.getStatus() != BroadcastStatus.RUNNING)
+            return Optional.empty();
+
+        UUID after = job.getLastRecipientId() != null ? job.getLastRecipientId() : BEFORE_FIRST_PATIENT;
+        try (Stream<BroadcastRecipientDTO> recipients = userRepository.streamActivePatientsAfter(after, PageRequest.ofSize(chunkSize))) {
+            return Optional.of(new Chunk(job, recipients.toList()));
+        }
+    }
+
+    private ChunkResult writeChunk(Long broadcastId, Chunk chunk, TransactionStatus status) {
+        BroadcastJobEntity job = chunk.job();
+        UUID last = job.getLastRecipientId();
+        List<SmsMessage> sms = new ArrayList<>();
+        long emails = 0;
+        long skipped = 0;
+        for (BroadcastRecipientDTO recipient : chunk.recipients()) {
+            last = recipient.id();
+            if (!isReachable(recipient, job)) {
+                skipped++;
+                continue;
+            }
+
+            if (recipient.sendsEmail()) {
+                // Never held for a digest: the outbox row must commit with this chunk's checkpoint
+                notificationService.sendImmediately(recipient.email(), job.getTitle(), job.getMessage());
+                emails++;
+            }
+            if (recipient.sendsSms())
+                sms.add(new SmsMessage(recipient.phoneNumber(), job.getTitle() + ": " + job.getMessage()));
+        }
+
+        int read = chunk.recipients().size();
+        // Fails if the job was cancelled or taken over since the chunk was read
+        int advanced = jobRepository.advance(broadcastId, job.getProcessedRecipients(), last, read, emails, sms.size(),
+                skipped, LocalDateTime.now().plus(lease));
+        if (advanced == 0) {
+            status.setRollbackOnly();
+            log.info("Broadcast {} was cancelled or taken over by another node, discarding its last chunk", broadcastId);
+            return new ChunkResult(false, List.of());
+        }
+
+        boolean hasMore = read == chunkSize;
+        if (!hasMore) {
+            jobRepository.complete(broadcastId, LocalDateTime.now());
+            log.info("Broadcast {} completed after {} patients", broadcastId, job.getProcessedRecipients() + read);
+        }
+        return new ChunkResult(hasMore, sms);
+    }
+
+    private static boolean isReachable(BroadcastRecipientDTO recipient, BroadcastJobEntity job) {
+        return recipient.accepts(job.getType()) && (recipient.sendsEmail() || recipient.sendsSms());
+    }
+
+    private void queueSms(Long broadcastId, List<SmsMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            SmsMessage message = messages.get(i);
+            while (true) {
+                try {
+                    smsService.sendSms(message.phoneNumber(), message.text());
+                    break;
+                } catch (IllegalStateException queueFull) {
+                    try {
+                        Thread.sleep(SMS_QUEUE_RETRY_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        log.warn("Broadcast {} dropped {} SMS on shutdown", broadcastId, messages.size() - i);
+                        throw new IllegalStateException("Interrupted while queueing SMS", e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void awaitRatePermit(TokenBucket rateLimit) {
+        long waitNanos;
+        while ((waitNanos = rateLimit.tryAcquire(System.nanoTime())) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while throttling broadcast", e);
+            }
+        }
+    }
+
+    private static String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH)
+            return error;
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private static BroadcastProgressDTO toDTO(BroadcastJobEntity job) {
+        // Patients registered after the broadcast started can push processed past the initial total
+        double percentComplete;
+        if (job.getStatus() == BroadcastStatus.COMPLETED)
+            percentComplete = 100.0;
+        else if (job.getTotalRecipients() == 0)
+            percentComplete = 0.0;
+        else
+            percentComplete = Math.min(99.9, 100.0 * job.getProcessedRecipients() / job.getTotalRecipients());
+        return BroadcastProgressDTO.builder()
+                .id(job.getId())
+                .title(job.getTitle())
+                .type(job.getType())
+                .status(job.getStatus())
+                .totalRecipients(job.getTotalRecipients())
+                .processedRecipients(job.getProcessedRecipients())
+                .emailsQueued(job.getEmailsQueued())
+                .smsQueued(job.getSmsQueued())
+                .skippedRecipients(job.getSkippedRecipients())
+                .percentComplete(percentComplete)
+                .lastError(job.getLastError())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+}
@@ -34,6 +34,7 @@ public class CalendarService {
     private final TimeOffRepository timeOffRepository;
     private final AppointmentService appointmentService;
     private final UserValidationService userValidationService;
+    private final TimeOffSnapshotService timeOffSnapshotService;
 
     /**
      * Get available time slots for a doctor on a specific date
@@ -256,11 +257,11 @@ public class CalendarService {
     }
 
     /**
-     * Check if doctor has time off on a specific date using TimeOffRepository
+     * Check if doctor has time off on a specific date using the shared time off snapshot
      */
     private boolean isDoctorOnTimeOff(EmployeeEntity doctor, LocalDate date) {
         try {
-            return timeOffRepository.hasTimeOffOnDate(doctor, date);
+            return timeOffSnapshotService.isEmployeeOutOnDate(doctor.getId(), date);
         } catch (Exception e) {
             log.warn("Error checking time off for doctor {}: {}", doctor.getEmail(), e.getMessage());
             return false; // Assume no time off if we can't check
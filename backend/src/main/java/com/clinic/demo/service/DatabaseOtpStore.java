@@ -0,0 +1,82 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.models.entity.UserOtpEntity;
+import com.clinic.demo.models.enums.OtpPurpose;
+import com.clinic.demo.repository.UserOtpRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Keeps pending codes in the {@code user_otp} table, so a code sent by one node can be validated by any other.
+ */
+@Component
+@ConditionalOnProperty(name = "security.otp.store", havingValue = "database")
+public class DatabaseOtpStore implements OtpStore {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final UserOtpRepository otpRepository;
+    private final int maxAttempts;
+
+    public DatabaseOtpStore(UserOtpRepository otpRepository,
+                            @Value("${security.otp.max-attempts:5}") int maxAttempts) {
+        this.otpRepository = otpRepository;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    @Transactional
+    public void save(String email, OtpPurpose purpose, byte[] codeHash, Instant expiresAt) {
+        otpRepository.deleteByEmailAndPurpose(email, purpose);
+
+        UserOtpEntity otpEntity = new UserOtpEntity();
+        otpEntity.setEmail(email);
+        otpEntity.setPurpose(purpose);
+        otpEntity.setCodeHash(HEX.formatHex(codeHash));
+        otpEntity.setExpiresAt(LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault()));
+        otpRepository.save(otpEntity);
+    }
+
+    /**
+     * Runs in its own transaction: callers fail theirs on a wrong code, which must not roll back the attempt
+     * count or the deletion of a code that has been guessed at too often.
+     */
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean verify(String email, OtpPurpose purpose, byte[] codeHash) {
+        Optional<UserOtpEntity> otpEntity = otpRepository.findByEmailAndPurpose(email, purpose);
+        if (otpEntity.isEmpty())
+            return false;
+
+        UserOtpEntity pending = otpEntity.get();
+        if (pending.isExpired()) {
+            otpRepository.delete(pending);
+            return false;
+        }
+        if (MessageDigest.isEqual(HEX.parseHex(pending.getCodeHash()), codeHash)) {
+            otpRepository.delete(pending);
+            return true;
+        }
+
+        pending.setFailedAttempts(pending.getFailedAttempts() + 1);
+        if (pending.getFailedAttempts() >= maxAttempts)
+            otpRepository.delete(pending);
+        return false;
+    }
+
+    @Override
+    @Transactional
+    public void removeExpired() {
+        otpRepository.deleteExpired(LocalDateTime.now());
+    }
+}
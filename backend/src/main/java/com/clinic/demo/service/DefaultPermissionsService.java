@@ -4,6 +4,7 @@ import com.clinic.demo.models.enums.PermissionEnum;
 import com.clinic.demo.models.enums.UserTypeEnum;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -12,7 +13,14 @@ import java.util.Set;
 @Service
 public class DefaultPermissionsService {
 
+    // The defaults are constant, so the map is built once rather than on every lookup
+    private static final Map<UserTypeEnum, Set<PermissionEnum>> DEFAULT_PERMISSIONS = buildDefaultPermissionsMap();
+
     public Map<UserTypeEnum, Set<PermissionEnum>> getDefaultPermissionsMap() {
+        return DEFAULT_PERMISSIONS;
+    }
+
+    private static Map<UserTypeEnum, Set<PermissionEnum>> buildDefaultPermissionsMap() {
         Map<UserTypeEnum, Set<PermissionEnum>> permissionsMap = new EnumMap<>(UserTypeEnum.class);
 
         // ADMIN - System administration and user management
@@ -40,7 +48,10 @@ public class DefaultPermissionsService {
             // Appointments (administrative view)
             PermissionEnum.APPOINTMENT_READ,
             PermissionEnum.APPOINTMENT_CREATE,
-            PermissionEnum.APPOINTMENT_UPDATE
+            PermissionEnum.APPOINTMENT_UPDATE,
+
+            // Notifications
+            PermissionEnum.NOTIFICATION_BROADCAST
         ));
 
         // DOCTOR - Clinical care and patient management
@@ -159,11 +170,11 @@ public class DefaultPermissionsService {
             PermissionEnum.VIEW_TEST_RESULTS
         ));
 
-        return permissionsMap;
+        return Collections.unmodifiableMap(permissionsMap);
     }
 
     public Set<PermissionEnum> getDefaultPermissionsForUserType(UserTypeEnum userType) {
-        return getDefaultPermissionsMap().getOrDefault(userType, new HashSet<>());
+        return DEFAULT_PERMISSIONS.getOrDefault(userType, Set.of());
     }
 
     public boolean isPermissionDefaultForUserType(UserTypeEnum userType, PermissionEnum permission) {
@@ -173,9 +184,7 @@ public class DefaultPermissionsService {
 
     public Set<UserTypeEnum> getUserTypesWithPermission(PermissionEnum permission) {
         Set<UserTypeEnum> userTypes = new HashSet<>();
-        Map<UserTypeEnum, Set<PermissionEnum>> permissionsMap = getDefaultPermissionsMap();
-
-        for (Map.Entry<UserTypeEnum, Set<PermissionEnum>> entry : permissionsMap.entrySet()) {
+        for (Map.Entry<UserTypeEnum, Set<PermissionEnum>> entry : DEFAULT_PERMISSIONS.entrySet()) {
             if (entry.getValue().contains(permission)) {
                 userTypes.add(entry.getKey());
             }
@@ -0,0 +1,74 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.models.enums.OtpPurpose;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps pending codes in an expiring map on this node, so validating one needs no database access.
+ * Codes are lost on restart and are only valid on the node that sent them; use the database store when
+ * requests are not pinned to a node.
+ */
+@Component
+@ConditionalOnProperty(name = "security.otp.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+
+    private final Map<Key, PendingCode> codes = new ConcurrentHashMap<>();
+    private final int maxAttempts;
+
+    public InMemoryOtpStore(@Value("${security.otp.max-attempts:5}") int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public void save(String email, OtpPurpose purpose, byte[] codeHash, Instant expiresAt) {
+        codes.put(new Key(email, purpose), new PendingCode(codeHash, expiresAt));
+    }
+
+    @Override
+    public boolean verify(String email, OtpPurpose purpose, byte[] codeHash) {
+        Key key = new Key(email, purpose);
+        PendingCode pending = codes.get(key);
+        if (pending == null)
+            return false;
+
+        if (pending.isExpired(Instant.now())) {
+            codes.remove(key, pending);
+            return false;
+        }
+        if (MessageDigest.isEqual(pending.codeHash(), codeHash))
+            // Only the caller that removes the code gets to use it
+            return codes.remove(key, pending);
+
+        if (pending.failedAttempts().incrementAndGet() >= maxAttempts)
+            codes.remove(key, pending);
+        return false;
+    }
+
+    @Override
+    public void removeExpired() {
+        Instant now = Instant.now();
+        codes.values().removeIf(pending -> pending.isExpired(now));
+    }
+
+    private record Key(String email, OtpPurpose purpose) {
+    }
+
+    private record PendingCode(byte[] codeHash, Instant expiresAt, AtomicInteger failedAttempts) {
+
+        PendingCode(byte[] codeHash, Instant expiresAt) {
+            this(codeHash, expiresAt, new AtomicInteger());
+        }
+
+        boolean isExpired(Instant now) {
+            return !expiresAt.isAfter(now);
+        }
+    }
+}
@@ -1,19 +1,53 @@
 package com.clinic.demo.service;
 
+import com.clinic.demo.DTO.UserDetailsSnapshot;
+import com.clinic.demo.models.entity.user.BaseUserEntity;
 import com.clinic.demo.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @RequiredArgsConstructor
 @Service
-public class LoadUserByUsernameService implements UserDetailsService {
+public class LoadUserByUsernameService implements UserDetailsService, UserDetailsPasswordService {
     private final UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
+    private final RolePermissionCache rolePermissionCache;
+    private final ApplicationEventPublisher eventPublisher;
+
     @Override
+    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        return userRepository.findByEmail(email)
+        UserDetailsSnapshot cached = userDetailsCache.get(email);
+        if (cached != null)
+            return cached;
+
+        long generation = userDetailsCache.currentGeneration();
+        UserDetailsSnapshot snapshot = userRepository.findByEmail(email)
+                .map(rolePermissionCache::principalFor)
                 .orElseThrow(() -> new UsernameNotFoundException("No user with that email"));
+
+        userDetailsCache.put(email, snapshot, generation);
+        return snapshot;
+    }
+
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newEncodedPassword) {
+        BaseUserEntity entity = userRepository.findByEmail(user.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("No user with that email"));
+
+        entity.setPassword(newEncodedPassword);
+        userRepository.save(entity);
+        eventPublisher.publishEvent(new UserDetailsChangedEvent(entity.getEmail()));
+
+        return user instanceof UserDetailsSnapshot snapshot
+                ? snapshot.withPassword(newEncodedPassword)
+                : rolePermissionCache.principalFor(entity);
     }
 }
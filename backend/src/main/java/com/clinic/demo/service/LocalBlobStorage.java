@@ -0,0 +1,134 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.BlobMetadata;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps blobs as files under {@code storage.local.directory}, the key being the path relative to it. Files are
+ * only visible to this node, so running several nodes needs the S3 backend or a shared file system.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStorage implements BlobStorage {
+
+    // Under the root so staged files can be renamed into place; never a prefix of a key
+    private static final String STAGING_DIRECTORY = ".staging";
+
+    private final Path root;
+    private final Path staging;
+
+    public LocalBlobStorage(@Value("${storage.local.directory:files}") String directory) {
+        this.root = Paths.get(directory).toAbsolutePath().normalize();
+        this.staging = root.resolve(STAGING_DIRECTORY);
+    }
+
+    @Override
+    public Path createStagingFile() throws IOException {
+        Files.createDirectories(staging);
+        return Files.createTempFile(staging, "blob_", ".tmp");
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+
+        if (file.toAbsolutePath().normalize().startsWith(staging)) {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        }
+
+        Path copy = createStagingFile();
+        try {
+            Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(copy, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        try {
+            return Channels.newInputStream(channel.position(offset));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public BlobMetadata stat(String key) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resolve(key), BasicFileAttributes.class);
+            return new BlobMetadata(key, attributes.size(), attributes.lastModifiedTime().toInstant());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public List<BlobMetadata> list(String prefix) throws IOException {
+        // Walk only the deepest directory the prefix names
+        int slash = prefix.lastIndexOf('/');
+        Path directory = slash < 0 ? root : resolve(prefix.substring(0, slash));
+        if (!Files.isDirectory(directory))
+            return List.of();
+
+        List<BlobMetadata> blobs = new ArrayList<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                return dir.equals(staging) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                String key = root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                if (attributes.isRegularFile() && key.startsWith(prefix))
+                    blobs.add(new BlobMetadata(key, attributes.size(), attributes.lastModifiedTime().toInstant()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE; // deleted while walking
+            }
+        });
+        return blobs;
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return resolve(key);
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root) || path.equals(root) || path.startsWith(staging))
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        return path;
+    }
+}
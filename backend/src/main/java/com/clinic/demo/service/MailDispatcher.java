@@ -0,0 +1,290 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.models.entity.MailOutboxEntity;
+import com.clinic.demo.models.enums.MailStatus;
+import com.clinic.demo.repository.MailOutboxRepository;
+import com.clinic.demo.utils.SmtpTransportPool;
+import com.clinic.demo.utils.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers the mail outbox. Due messages are claimed in batches ({@code FOR UPDATE SKIP LOCKED}, so nodes never
+ * claim the same row) and sent on virtual threads over a small pool of long-lived SMTP connections, throttled to
+ * {@code mail.send.rate.per.second}. A failed message is retried with exponential backoff and jitter until
+ * {@code mail.outbox.max.attempts} is reached; rejected addresses fail at once.
+ * <p>
+ * The dispatcher wakes up as soon as a message is queued, and polls every {@code mail.outbox.poll.interval.ms}
+ * for retries and for messages queued on other nodes.
+ */
+@Slf4j
+@Service
+public class MailDispatcher implements DisposableBean {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final MailOutboxRepository outboxRepository;
+    private final JavaMailSenderImpl mailSender;
+    private final BlobStorage blobStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final SmtpTransportPool transportPool;
+    private final TokenBucket sendRate;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialRetryDelay;
+    private final Duration maxRetryDelay;
+    private final Duration staleClaimTimeout;
+    private final Duration sentRetention;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean wakeRequested = new AtomicBoolean();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer sendTimer;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+
+    public MailDispatcher(MailOutboxRepository outboxRepository,
+                          JavaMailSenderImpl mailSender,
+                          BlobStorage blobStorage,
+                          PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry,
+                          @Value("${mail.smtp.pool.size:4}") int poolSize,
+                          @Value("${mail.smtp.idle.timeout.seconds:60}") long idleTimeoutSeconds,
+                          @Value("${mail.send.rate.per.second:5}") double sendRatePerSecond,
+                          @Value("${mail.send.burst:10}") int sendBurst,
+                          @Value("${mail.outbox.batch.size:50}") int batchSize,
+                          @Value("${mail.outbox.max.attempts:8}") int maxAttempts,
+                          @Value("${mail.outbox.retry.initial.delay.seconds:30}") long initialRetryDelaySeconds,
+                          @Value("${mail.outbox.retry.max.delay.minutes:60}") long maxRetryDelayMinutes,
+                          @Value("${mail.outbox.stale.claim.minutes:10}") long staleClaimMinutes,
+                          @Value("${mail.outbox.retention.days:7}") long retentionDays) {
+        this.outboxRepository = outboxRepository;
+        this.mailSender = mailSender;
+        this.blobStorage = blobStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transportPool = new SmtpTransportPool(mailSender, poolSize, Duration.ofSeconds(idleTimeoutSeconds));
+        this.sendRate = new TokenBucket(sendBurst, (long) (TimeUnit.SECONDS.toNanos(1) / sendRatePerSecond), System.nanoTime());
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialRetryDelay = Duration.ofSeconds(initialRetryDelaySeconds);
+        this.maxRetryDelay = Duration.ofMinutes(maxRetryDelayMinutes);
+        this.staleClaimTimeout = Duration.ofMinutes(staleClaimMinutes);
+        this.sentRetention = Duration.ofDays(retentionDays);
+
+        this.sendTimer = Timer.builder("mail.send.time").register(meterRegistry);
+        this.sentCounter = Counter.builder("mail.outbox.sent").register(meterRegistry);
+        this.retriedCounter = Counter.builder("mail.outbox.retried").register(meterRegistry);
+        this.failedCounter = Counter.builder("mail.outbox.failed").register(meterRegistry);
+        meterRegistry.gauge("mail.outbox.pending", pendingCount);
+        meterRegistry.gauge("mail.outbox.in.flight", inFlight);
+        meterRegistry.gauge("mail.smtp.idle.connections", transportPool, SmtpTransportPool::idleConnections);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMailQueued(MailQueuedEvent event) {
+        wakeUp();
+    }
+
+    @Scheduled(fixedDelayString = "${mail.outbox.poll.interval.ms:5000}")
+    public void poll() {
+        int released = outboxRepository.releaseStaleClaims(LocalDateTime.now().minus(staleClaimTimeout));
+        if (released > 0)
+            log.warn("Released {} outbox messages left claimed by a stopped dispatcher", released);
+        pendingCount.set(outboxRepository.countByStatus(MailStatus.PENDING));
+        wakeUp();
+    }
+
+    @Scheduled(fixedRate = 3600000)
+    public void cleanupSentMail() {
+        outboxRepository.deleteSentBefore(LocalDateTime.now().minus(sentRetention));
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // Messages still claimed are picked up again once their claim goes stale
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+        transportPool.destroy();
+    }
+
+    private void wakeUp() {
+        wakeRequested.set(true);
+        if (!workers.isShutdown() && draining.compareAndSet(false, true))
+            workers.execute(this::drain);
+    }
+
+    private void drain() {
+        try {
+            while (wakeRequested.getAndSet(false)) {
+                List<MailOutboxEntity> batch;
+                while (!(batch = claimBatch()).isEmpty())
+                    deliver(batch);
+            }
+        } catch (RuntimeException e) {
+            log.error("Mail dispatch failed, retrying on next poll", e);
+        } finally {
+            draining.set(false);
+        }
+        // A wake-up that arrived after the last check but before the flag was cleared
+        if (wakeRequested.get())
+            wakeUp();
+    }
+
+    private List<MailOutboxEntity> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<MailOutboxEntity> due = outboxRepository.findDueForUpdate(now, PageRequest.of(0, batchSize));
+            for (MailOutboxEntity message : due) {
+                message.setStatus(MailStatus.SENDING);
+                message.setClaimedAt(now);
+            }
+            return due;
+        });
+    }
+
+    private void deliver(List<MailOutboxEntity> batch) {
+        List<Future<?>> sends = new ArrayList<>(batch.size());
+        for (MailOutboxEntity message : batch)
+            sends.add(workers.submit(() -> deliver(message)));
+
+        for (Future<?> send : sends) {
+            try {
+                send.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Unexpected error while delivering mail", e);
+            }
+        }
+    }
+
+    private void deliver(MailOutboxEntity message) {
+        inFlight.incrementAndGet();
+        try {
+            awaitSendPermit();
+            MimeMessage mimeMessage = toMimeMessage(message);
+            long start = System.nanoTime();
+            transportPool.send(mimeMessage);
+            sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            outboxRepository.markSent(message.getId(), LocalDateTime.now());
+            sentCounter.increment();
+            deleteAttachment(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            recordFailure(message, e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void awaitSendPermit() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = sendRate.tryAcquire(System.nanoTime())) > 0)
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+
+    private MimeMessage toMimeMessage(MailOutboxEntity message) throws Exception {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, message.getAttachmentKey() != null);
+
+        helper.setTo(message.getRecipient());
+        helper.setSubject(message.getSubject());
+        helper.setText(message.getHtmlContent(), true);
+
+        String attachmentKey = message.getAttachmentKey();
+        if (attachmentKey != null) {
+            if (blobStorage.stat(attachmentKey) == null)
+                throw new FileNotFoundException("Attachment not found: " + attachmentKey);
+            String fileName = attachmentKey.substring(attachmentKey.lastIndexOf('/') + 1);
+            // Opened again for each attempt, streamed into the message as it is written
+            helper.addAttachment(fileName, () -> blobStorage.open(attachmentKey));
+        }
+        return mimeMessage;
+    }
+
+    private void deleteAttachment(MailOutboxEntity message) {
+        if (message.getAttachmentKey() == null)
+            return;
+        try {
+            blobStorage.delete(message.getAttachmentKey());
+        } catch (IOException e) {
+            log.warn("Failed to delete attachment {} of mail {}: {}", message.getAttachmentKey(), message.getId(), e.getMessage());
+        }
+    }
+
+    private void recordFailure(MailOutboxEntity message, Exception e) {
+        int attempts = message.getAttempts() + 1;
+        String error = truncate(e.getClass().getSimpleName() + ": " + e.getMessage());
+
+        if (isPermanent(e) || attempts >= maxAttempts) {
+            log.error("Giving up on mail {} to {} after {} attempt(s): {}", message.getId(), message.getRecipient(), attempts, error);
+            outboxRepository.markAttemptFailed(message.getId(), MailStatus.FAILED, attempts, message.getNextAttemptAt(), error);
+            failedCounter.increment();
+            deleteAttachment(message);
+            return;
+        }
+
+        LocalDateTime nextAttemptAt = LocalDateTime.now().plus(retryDelay(attempts));
+        log.warn("Mail {} to {} failed (attempt {}), retrying at {}: {}", message.getId(), message.getRecipient(), attempts, nextAttemptAt, error);
+        outboxRepository.markAttemptFailed(message.getId(), MailStatus.PENDING, attempts, nextAttemptAt, error);
+        retriedCounter.increment();
+    }
+
+    // initial * 2^(attempts - 1), capped, with full jitter over its upper half so retries from one outage spread out
+    private Duration retryDelay(int attempts) {
+        long initialMillis = initialRetryDelay.toMillis();
+        long maxMillis = maxRetryDelay.toMillis();
+        long delayMillis = maxMillis;
+        if (attempts - 1 < Long.numberOfLeadingZeros(initialMillis) - 1)
+            delayMillis = Math.min(initialMillis << (attempts - 1), maxMillis);
+        return Duration.ofMillis(delayMillis / 2 + ThreadLocalRandom.current().nextLong(delayMillis / 2 + 1));
+    }
+
+    private static boolean isPermanent(Exception e) {
+        return e instanceof AddressException
+                || e instanceof FileNotFoundException
+                || (e instanceof SendFailedException sendFailed && sendFailed.getInvalidAddresses() != null
+                        && sendFailed.getInvalidAddresses().length > 0);
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,8 @@
+package com.clinic.demo.service;
+
+/**
+ * Published when a message is added to the mail outbox, so the dispatcher can pick it up without waiting
+ * for its next poll.
+ */
+public record MailQueuedEvent(Long mailId) {
+}
@@ -1,106 +1,170 @@
 package com.clinic.demo.service;
 
-import jakarta.mail.internet.MimeMessage;
-import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import com.clinic.demo.DTO.NotificationMessage;
+import com.clinic.demo.models.entity.MailOutboxEntity;
+import com.clinic.demo.repository.MailOutboxRepository;
+import com.clinic.demo.service.MailTemplateService.RenderedMail;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
-
-import java.io.File;
-
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Sends templated emails. Templates are rendered in the locale of the current request (its
+ * {@code Accept-Language}) unless one is passed in, see {@link MailTemplateService}.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class MailService {
 
-    private final JavaMailSender mailSender;
+    private static final String ATTACHMENT_PREFIX = "mail-attachments/";
+
+    private final MailOutboxRepository outboxRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MailTemplateService templateService;
+    private final BlobStorage blobStorage;
+    private final long otpTtlMinutes;
+
+    public MailService(MailOutboxRepository outboxRepository,
+                       ApplicationEventPublisher eventPublisher,
+                       MailTemplateService templateService,
+                       BlobStorage blobStorage,
+                       @Value("${security.otp.ttl.minutes:10}") long otpTtlMinutes) {
+        this.outboxRepository = outboxRepository;
+        this.eventPublisher = eventPublisher;
+        this.templateService = templateService;
+        this.blobStorage = blobStorage;
+        this.otpTtlMinutes = otpTtlMinutes;
+    }
 
     public void sendPasswordResetOtp(String email, String otp) {
-        String subject = "Password Reset - One Time Passcode";
-        String htmlContent = String.format("""
-            <div style="font-family: Arial, sans-serif; max-width: 600px;">
-                <h3>Password Reset Request</h3>
-                <p>You have requested to reset your password. Please use the following OTP code:</p>
-                <div style="background: #f0f0f0; padding: 15px; text-align: center; border-radius: 5px;">
-                    <span style="font-size: 24px; font-weight: bold; color: #d73502; letter-spacing: 3px;">%s</span>
-                </div>
-                <p><small>This code expires in 10 minutes</small></p>
-            </div>
-            """, otp);
-
-        sendEmail(email, subject, htmlContent);
+        sendOtp(email, "password-reset", otp);
     }
 
     public void sendEmailVerificationOtp(String email, String otp) {
-        String subject = "Email Verification Code";
-        String htmlContent = String.format("""
-            <div style="font-family: Arial, sans-serif; max-width: 600px;">
-                <h3>Email Verification</h3>
-                <p>Please verify your email using this code:</p>
-                <div style="background: #f0f0f0; padding: 15px; text-align: center; border-radius: 5px;">
-                    <span style="font-size: 24px; font-weight: bold; color: #007bff; letter-spacing: 3px;">%s</span>
-                </div>
-                <p><small>This code expires in 10 minutes</small></p>
-            </div>
-            """, otp);
-
-        sendEmail(email, subject, htmlContent);
+        sendOtp(email, "email-verification", otp);
     }
 
     public void sendTwoFactorOtp(String email, String otp) {
-        String subject = "Two-Factor Authentication Code";
-        String htmlContent = String.format("""
-            <div style="font-family: Arial, sans-serif; max-width: 600px;">
-                <h3>Security Code</h3>
-                <p>Your login verification code:</p>
-                <div style="background: #f0f0f0; padding: 15px; text-align: center; border-radius: 5px;">
-                    <span style="font-size: 24px; font-weight: bold; color: #28a745; letter-spacing: 3px;">%s</span>
-                </div>
-                <p><small>This code expires in 10 minutes</small></p>
-            </div>
-            """, otp);
-
-        sendEmail(email, subject, htmlContent);
+        sendOtp(email, "two-factor", otp);
     }
 
-    public void sendNotification(String email, String title, String message) {
-        String subject = "Notification - " + title;
-        String htmlContent = String.format("""
-        <div style="font-family: Arial, sans-serif; max-width: 600px;">
-            <h3>%s</h3>
-            <div style="background: #e7f3ff; padding: 15px; border-left: 4px solid #007bff; border-radius: 5px;">
-                <p style="margin: 0; color: #333;">%s</p>
-            </div>
-            <br>
-            <p><small>This is an automated notification from our system.</small></p>
-        </div>
-        """, title, message);
-
-        sendEmail(email, subject, htmlContent);
+    /**
+     * @param locale locale the notification was requested in, since it may be sent from another thread
+     */
+    public void sendNotification(String email, Locale locale, String title, String message) {
+        sendTemplate(email, "notification", locale, Map.of("title", title, "message", message));
     }
 
-    public void sendEmailWithAttachment(String email, String subject, String htmlContent, String filePath) {
-        try {
-            MimeMessage mimeMessage = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true);
+    /**
+     * Sends several notifications as one email.
+     */
+    public void sendNotificationDigest(String email, Locale locale, List<NotificationMessage> notifications) {
+        StringBuilder items = new StringBuilder();
+        for (NotificationMessage notification : notifications)
+            items.append(templateService.renderFragment("notification-digest-item", locale,
+                    Map.of("title", notification.title(), "message", notification.message())));
+
+        sendTemplate(email, "notification-digest", locale, Map.of("count", notifications.size(), "items", items));
+    }
 
-            helper.setTo(email);
-            helper.setSubject(subject);
-            helper.setText(htmlContent, true);
+    public void sendAppointmentReminder(String email, String patientName, String doctorName, LocalDateTime startDateTime) {
+        Locale locale = LocaleContextHolder.getLocale();
+        sendTemplate(email, "appointment-reminder", Map.of(
+                "patientName", patientName,
+                "doctorName", doctorName,
+                "date", DateTimeFormatter.ofLocalizedDate(FormatStyle.FULL).withLocale(locale).format(startDateTime),
+                "time", DateTimeFormatter.ofLocalizedTime(FormatStyle.SHORT).withLocale(locale).format(startDateTime)));
+    }
+
+    /**
+     * Queues the message in the mail outbox; {@link MailDispatcher} delivers it once the caller's transaction
+     * commits. The attachment is copied to {@link BlobStorage} first, so whichever node sends the message can
+     * read it and the caller may delete its file right away; it is deleted again if the message is never queued.
+     */
+    public void sendEmailWithAttachment(String email, String subject, String htmlContent, Path attachment) {
+        MailOutboxEntity message = new MailOutboxEntity();
+        message.setRecipient(email);
+        message.setSubject(subject);
+        message.setHtmlContent(htmlContent);
+        if (attachment != null)
+            message.setAttachmentKey(storeAttachment(attachment));
+        message.setNextAttemptAt(LocalDateTime.now());
+
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (inTransaction && message.getAttachmentKey() != null)
+            deleteAttachmentOnRollback(message.getAttachmentKey());
+
+        MailOutboxEntity queued;
+        try {
+            queued = outboxRepository.save(message);
+        } catch (RuntimeException e) {
+            if (!inTransaction && message.getAttachmentKey() != null)
+                deleteAttachment(message.getAttachmentKey());
+            throw e;
+        }
+        eventPublisher.publishEvent(new MailQueuedEvent(queued.getId()));
+    }
 
-            if (filePath != null) {
-                FileSystemResource file = new FileSystemResource(new File(filePath));
-                helper.addAttachment(file.getFilename(), file);
+    /**
+     * The outbox row referencing the blob is only written with the caller's transaction, so the blob must not
+     * outlive a rollback.
+     */
+    private void deleteAttachmentOnRollback(String key) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK)
+                    deleteAttachment(key);
             }
+        });
+    }
 
-            mailSender.send(mimeMessage);
+    private void deleteAttachment(String key) {
+        try {
+            blobStorage.delete(key);
+        } catch (IOException e) {
+            log.warn("Failed to delete attachment {} of unsent mail: {}", key, e.getMessage());
+        }
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to send email", e);
+    private String storeAttachment(Path attachment) {
+        String key = ATTACHMENT_PREFIX + UUID.randomUUID() + "/" + attachment.getFileName();
+        try {
+            blobStorage.put(key, attachment);
+            return key;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store attachment " + attachment.getFileName(), e);
         }
     }
 
+    private void sendOtp(String email, String template, String otp) {
+        sendTemplate(email, template, Map.of("otp", otp, "expiryMinutes", otpTtlMinutes));
+    }
+
+    private void sendTemplate(String email, String template, Map<String, ?> values) {
+        sendTemplate(email, template, LocaleContextHolder.getLocale(), values);
+    }
+
+    private void sendTemplate(String email, String template, Locale locale, Map<String, ?> values) {
+        RenderedMail mail = templateService.render(template, locale, values);
+        sendEmail(email, mail.subject(), mail.html());
+    }
+
     private void sendEmail(String email, String subject, String htmlContent) {
         sendEmailWithAttachment(email, subject, htmlContent, null);
     }
-}
\ No newline at end of file
+}
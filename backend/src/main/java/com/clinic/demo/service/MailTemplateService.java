@@ -0,0 +1,118 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.utils.MailTemplate;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Email templates, compiled once at startup from {@code classpath:mail-templates/}.
+ * <p>
+ * Each template is a file named {@code <name>.html}, with optional localized variants such as
+ * {@code <name>_de.html} or {@code <name>_de_AT.html}. Its first line is {@code Subject: <subject>}, followed
+ * by a blank line and the HTML body. Both may contain {@code {{placeholder}}}s; values are HTML-escaped in the
+ * body unless written as {@code {{{placeholder}}}}. The most specific variant for the requested locale is used,
+ * falling back to the unlocalized file.
+ * <p>
+ * Fragments in {@code mail-templates/fragments/} follow the same rules without the subject line. They render
+ * repeated parts of a message, which are then passed to its template as raw placeholders.
+ */
+@Service
+public class MailTemplateService {
+
+    private static final String LOCATION = "classpath*:mail-templates/*.html";
+    private static final String FRAGMENT_LOCATION = "classpath*:mail-templates/fragments/*.html";
+    private static final String SUBJECT_HEADER = "Subject:";
+    private static final int MAX_RETAINED_BUFFER = 32 * 1024;
+
+    public record RenderedMail(String subject, String html) {
+    }
+
+    private record CompiledMail(MailTemplate subject, MailTemplate body) {
+    }
+
+    // template name -> locale suffix ("" for the default variant) -> template
+    private final Map<String, Map<String, CompiledMail>> templates;
+    private final Map<String, Map<String, MailTemplate>> fragments;
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+
+    public MailTemplateService() {
+        this.templates = load(LOCATION, MailTemplateService::compile);
+        this.fragments = load(FRAGMENT_LOCATION, (fileName, source) -> MailTemplate.compile(fileName, source.strip(), true));
+    }
+
+    public RenderedMail render(String name, Locale locale, Map<String, ?> values) {
+        CompiledMail template = resolve(templates, name, locale);
+        return new RenderedMail(render(template.subject(), values), render(template.body(), values));
+    }
+
+    public String renderFragment(String name, Locale locale, Map<String, ?> values) {
+        return render(resolve(fragments, name, locale), values);
+    }
+
+    private String render(MailTemplate template, Map<String, ?> values) {
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        template.renderTo(buffer, values);
+        String rendered = buffer.toString();
+        // Don't pin an unusually large buffer to the thread
+        if (buffer.capacity() > MAX_RETAINED_BUFFER)
+            buffers.remove();
+        return rendered;
+    }
+
+    private static <T> T resolve(Map<String, Map<String, T>> templates, String name, Locale locale) {
+        Map<String, T> variants = templates.get(name);
+        if (variants == null)
+            throw new IllegalArgumentException("Unknown mail template: " + name);
+
+        if (locale != null) {
+            T variant = variants.get(locale.getLanguage() + "_" + locale.getCountry());
+            if (variant == null)
+                variant = variants.get(locale.getLanguage());
+            if (variant != null)
+                return variant;
+        }
+        T fallback = variants.get("");
+        if (fallback == null)
+            throw new IllegalStateException("Mail template " + name + " has no default variant");
+        return fallback;
+    }
+
+    private static <T> Map<String, Map<String, T>> load(String location, BiFunction<String, String, T> compiler) {
+        Map<String, Map<String, T>> loaded = new HashMap<>();
+        try {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(location)) {
+                String fileName = resource.getFilename();
+                String baseName = fileName.substring(0, fileName.length() - ".html".length());
+                int localeStart = baseName.indexOf('_');
+                String name = localeStart < 0 ? baseName : baseName.substring(0, localeStart);
+                String localeSuffix = localeStart < 0 ? "" : baseName.substring(localeStart + 1);
+
+                String source = resource.getContentAsString(StandardCharsets.UTF_8);
+                loaded.computeIfAbsent(name, key -> new HashMap<>()).put(localeSuffix, compiler.apply(fileName, source));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load mail templates", e);
+        }
+        return loaded;
+    }
+
+    private static CompiledMail compile(String fileName, String source) {
+        int lineEnd = source.indexOf('\n');
+        if (!source.startsWith(SUBJECT_HEADER) || lineEnd < 0)
+            throw new IllegalStateException("Mail template " + fileName + " must start with a '" + SUBJECT_HEADER + "' line");
+
+        String subject = source.substring(SUBJECT_HEADER.length(), lineEnd).trim();
+        String body = source.substring(lineEnd + 1).stripLeading();
+        return new CompiledMail(MailTemplate.compile(fileName, subject, false), MailTemplate.compile(fileName, body, true));
+    }
+}
@@ -0,0 +1,10 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.models.enums.notifications.NotificationType;
+
+/**
+ * Asks {@link NotificationService} to notify {@code email} once the publishing transaction commits, so a
+ * rolled-back change never produces a notification.
+ */
+public record NotificationRequestedEvent(String email, NotificationType type, String title, String message) {
+}
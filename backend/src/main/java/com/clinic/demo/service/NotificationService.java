@@ -1,15 +1,176 @@
 package com.clinic.demo.service;
 
-import lombok.RequiredArgsConstructor;
+import com.clinic.demo.DTO.NotificationMessage;
+import com.clinic.demo.configuration.NotificationDigestProperties;
+import com.clinic.demo.models.enums.notifications.NotificationType;
+import com.clinic.demo.utils.TimingWheel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.Clock;
+import java.util.*;
+
+/**
+ * Sends notification emails, coalescing bursts to the same recipient into one digest.
+ * <p>
+ * A notification waits up to its type's window ({@code notifications.digest.windows}) for others to the same
+ * address; the digest goes out when the earliest of those windows closes, or as soon as it holds
+ * {@code notifications.digest.max-items}. A lone notification is sent as a regular notification email.
+ * Bypass types such as {@link NotificationType#EMERGENCY_ALERT} are never held. Pending digests live in memory
+ * only and are flushed on shutdown.
+ * <p>
+ * Producers publish a {@link NotificationRequestedEvent}, handled after their transaction commits. Digests are
+ * flushed on the scheduler thread, so each one keeps the locale of the request that queued its first notification.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
-public class NotificationService {
-    // TODO
+public class NotificationService implements DisposableBean {
+
+    private static final long TICK_MILLIS = 1000;
 
     private final MailService mailService;
+    private final NotificationDigestProperties properties;
+    private final Clock clock;
+    private final TimingWheel<PendingDigest> wheel;
+    private final Map<String, PendingDigest> pending = new HashMap<>();
+    private final Counter receivedCounter;
+    private final Counter sentCounter;
+
+    @Autowired
+    public NotificationService(MailService mailService, NotificationDigestProperties properties, MeterRegistry meterRegistry) {
+        this(mailService, properties, meterRegistry, Clock.systemUTC());
+    }
+
+    NotificationService(MailService mailService, NotificationDigestProperties properties, MeterRegistry meterRegistry,
+                        Clock clock) {
+        this.mailService = mailService;
+        this.properties = properties;
+        this.clock = clock;
+        this.wheel = new TimingWheel<>(TICK_MILLIS, clock.millis());
+        this.receivedCounter = Counter.builder("notifications.received").register(meterRegistry);
+        this.sentCounter = Counter.builder("notifications.emails.sent").register(meterRegistry);
+        meterRegistry.gauge("notifications.digests.pending", this, NotificationService::pendingDigests);
+    }
+
+    private static final class PendingDigest {
+        private final String email;
+        private final Locale locale;
+        private final List<NotificationMessage> notifications = new ArrayList<>();
+        private long flushAtMillis = Long.MAX_VALUE;
+        private TimingWheel.Timeout<PendingDigest> timeout;
+
+        private PendingDigest(String email, Locale locale) {
+            this.email = email;
+            this.locale = locale;
+        }
+    }
+
+    // A new transaction: the publisher's has already committed and can no longer take the outbox row
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onNotificationRequested(NotificationRequestedEvent event) {
+        sendNotification(event.email(), event.type(), event.title(), event.message());
+    }
+
+    public void sendNotification(String email, NotificationType type, String title, String message) {
+        receivedCounter.increment();
+        NotificationMessage notification = new NotificationMessage(type, title, message);
+        Locale locale = LocaleContextHolder.getLocale();
+        if (!properties.isBuffered(type)) {
+            send(email, locale, List.of(notification));
+            return;
+        }
+
+        PendingDigest full = null;
+        long now = clock.millis();
+        synchronized (this) {
+            PendingDigest digest = pending.computeIfAbsent(key(email), key -> new PendingDigest(email, locale));
+            digest.notifications.add(notification);
+
+            if (digest.notifications.size() >= properties.getMaxItems()) {
+                full = remove(digest);
+            } else {
+                long flushAt = now + properties.windowFor(type).toMillis();
+                if (flushAt < digest.flushAtMillis) {
+                    if (digest.timeout != null)
+                        wheel.cancel(digest.timeout);
+                    digest.flushAtMillis = flushAt;
+                    digest.timeout = wheel.schedule(digest, flushAt);
+                }
+            }
+        }
+        if (full != null)
+            send(full.email, full.locale, full.notifications);
+    }
+
+    /**
+     * Queues the notification right away in the caller's transaction, never as part of a digest, for producers
+     * that commit it together with their own progress. Unlike {@link #sendNotification}, failures propagate.
+     */
+    public void sendImmediately(String email, String title, String message) {
+        receivedCounter.increment();
+        mailService.sendNotification(email, LocaleContextHolder.getLocale(), title, message);
+        sentCounter.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.digest.flush-interval-ms:1000}")
+    public void flushDue() {
+        List<PendingDigest> due = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(clock.millis(), due::add);
+            for (PendingDigest digest : due)
+                pending.remove(key(digest.email));
+        }
+        for (PendingDigest digest : due)
+            send(digest.email, digest.locale, digest.notifications);
+    }
+
+    @Override
+    public void destroy() {
+        List<PendingDigest> remaining;
+        synchronized (this) {
+            remaining = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        for (PendingDigest digest : remaining)
+            send(digest.email, digest.locale, digest.notifications);
+    }
+
+    public synchronized int pendingDigests() {
+        return pending.size();
+    }
 
+    private PendingDigest remove(PendingDigest digest) {
+        if (digest.timeout != null)
+            wheel.cancel(digest.timeout);
+        pending.remove(key(digest.email));
+        return digest;
+    }
 
+    private void send(String email, Locale locale, List<NotificationMessage> notifications) {
+        try {
+            if (notifications.size() == 1) {
+                NotificationMessage notification = notifications.get(0);
+                mailService.sendNotification(email, locale, notification.title(), notification.message());
+            } else {
+                mailService.sendNotificationDigest(email, locale, notifications);
+            }
+            sentCounter.increment();
+        } catch (RuntimeException e) {
+            log.error("Failed to send {} notification(s) to {}", notifications.size(), email, e);
+        }
+    }
 
+    private static String key(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
 }
@@ -1,64 +1,77 @@
 package com.clinic.demo.service;
 
 import com.clinic.demo.DTO.GenerateOtpRequest;
-import com.clinic.demo.models.entity.UserOtpEntity;
 import com.clinic.demo.models.enums.OtpPurpose;
-import com.clinic.demo.repository.UserOtpRepository;
-import jakarta.transaction.Transactional;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.util.Optional;
-import java.util.Random;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
 
 @Service
-@RequiredArgsConstructor
-@Transactional
 public class OtpService {
-    
-    private final UserOtpRepository otpRepository;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final OtpStore otpStore;
     private final MailService mailService;
-    
+    private final Duration otpTtl;
+
+    public OtpService(OtpStore otpStore,
+                      MailService mailService,
+                      @Value("${security.otp.ttl.minutes:10}") long otpTtlMinutes) {
+        this.otpStore = otpStore;
+        this.mailService = mailService;
+        this.otpTtl = Duration.ofMinutes(otpTtlMinutes);
+    }
+
     public void generateAndSendOtp(GenerateOtpRequest generateOtpRequest) {
         // Generate 6-digit OTP
-        String otp = String.format("%06d", new Random().nextInt(1000000));
+        String otp = String.format("%06d", RANDOM.nextInt(1000000));
 
         String email = generateOtpRequest.email();
         OtpPurpose purpose = generateOtpRequest.purpose();
 
-        UserOtpEntity otpEntity = new UserOtpEntity();
-        otpEntity.setEmail(email);
-        otpEntity.setOtp(otp);
-        otpEntity.setPurpose(purpose);
-        
-        otpRepository.save(otpEntity);
-        
+        String normalizedEmail = normalize(email);
+        otpStore.save(normalizedEmail, purpose, hash(normalizedEmail, purpose, otp), Instant.now().plus(otpTtl));
+
         switch (purpose) {
             case PASSWORD_RESET -> mailService.sendPasswordResetOtp(email, otp);
             case EMAIL_VERIFICATION -> mailService.sendEmailVerificationOtp(email, otp);
             case TWO_FACTOR_AUTH -> mailService.sendTwoFactorOtp(email, otp);
         }
     }
-    
-    public boolean validateOtpAuthenticity(String email, String otp, OtpPurpose purpose) {
-        Optional<UserOtpEntity> otpEntity = otpRepository
-            .findByEmailAndOtpAndPurpose(email, otp, purpose);
-
-        if (otpEntity.isEmpty() || otpEntity.get().isExpired())
-            return false;
 
-        if (!otpEntity.get().getEmail().equals(email))
+    public boolean validateOtpAuthenticity(String email, String otp, OtpPurpose purpose) {
+        if (email == null || otp == null)
             return false;
 
-        otpEntity.get().setUsed(true);
-        otpRepository.save(otpEntity.get());
-        return true;
+        String normalizedEmail = normalize(email);
+        return otpStore.verify(normalizedEmail, purpose, hash(normalizedEmail, purpose, otp));
     }
-    
-    @Scheduled(fixedRate = 3600000)
+
+    @Scheduled(fixedDelayString = "${security.otp.cleanup.interval.ms:60000}")
     public void cleanupExpiredOtps() {
-        otpRepository.cleanupExpiredAndUsedOtps(LocalDateTime.now().minusMinutes(10));
+        otpStore.removeExpired();
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Bound to the recipient and purpose so a stored hash only ever matches the code it was issued for
+    private static byte[] hash(String email, OtpPurpose purpose, String otp) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return digest.digest((purpose.name() + ':' + email + ':' + otp).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,23 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.models.enums.OtpPurpose;
+
+import java.time.Instant;
+
+/**
+ * Pending one-time codes, at most one per email and purpose. Only a hash of each code is kept. A code stops
+ * working once it is used, once it expires, or after {@code security.otp.max-attempts} wrong guesses.
+ * <p>
+ * Selected with {@code security.otp.store}: {@code memory} (default) keeps codes on this node only, while
+ * {@code database} stores them in {@code user_otp} so that any node can validate a code another one sent.
+ */
+public interface OtpStore {
+
+    /** Stores a new code, replacing any code still pending for the same email and purpose. */
+    void save(String email, OtpPurpose purpose, byte[] codeHash, Instant expiresAt);
+
+    /** Consumes the pending code if it matches; every mismatch counts as a failed attempt. */
+    boolean verify(String email, OtpPurpose purpose, byte[] codeHash);
+
+    void removeExpired();
+}
@@ -8,7 +8,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Service for checking permissions across the application.
@@ -19,6 +18,8 @@ import java.util.stream.Collectors;
 @Slf4j
 public class PermissionService {
 
+    private final RolePermissionCache rolePermissionCache;
+
     /**
      * Check if a user has a specific permission
      */
@@ -28,9 +29,7 @@ public class PermissionService {
             return false;
         }
 
-        return user.getRoles().stream()
-                .filter(role -> Boolean.TRUE.equals(role.getActive()))
-                .anyMatch(role -> role.hasPermission(permission));
+        return rolePermissionCache.maskFor(user.getRoles()).has(permission);
     }
 
     /**
@@ -41,12 +40,7 @@ public class PermissionService {
             return false;
         }
 
-        for (PermissionEnum permission : permissions) {
-            if (hasPermission(user, permission)) {
-                return true;
-            }
-        }
-        return false;
+        return rolePermissionCache.maskFor(user.getRoles()).hasAny(permissions);
     }
 
     /**
@@ -57,12 +51,7 @@ public class PermissionService {
             return false;
         }
 
-        for (PermissionEnum permission : permissions) {
-            if (!hasPermission(user, permission)) {
-                return false;
-            }
-        }
-        return true;
+        return rolePermissionCache.maskFor(user.getRoles()).hasAll(permissions);
     }
 
     /**
@@ -73,10 +62,7 @@ public class PermissionService {
             return Set.of();
         }
 
-        return user.getRoles().stream()
-                .filter(role -> Boolean.TRUE.equals(role.getActive()))
-                .flatMap(role -> role.getPermissions().stream())
-                .collect(Collectors.toSet());
+        return rolePermissionCache.maskFor(user.getRoles()).toEnumSet();
     }
 
     /**
@@ -87,9 +73,7 @@ public class PermissionService {
             return false;
         }
 
-        return roles.stream()
-                .filter(role -> Boolean.TRUE.equals(role.getActive()))
-                .anyMatch(role -> role.hasPermission(permission));
+        return rolePermissionCache.maskFor(roles).has(permission);
     }
 
     /**
@@ -100,10 +84,7 @@ public class PermissionService {
             return Set.of();
         }
 
-        return roles.stream()
-                .filter(role -> Boolean.TRUE.equals(role.getActive()))
-                .flatMap(role -> role.getPermissions().stream())
-                .collect(Collectors.toSet());
+        return rolePermissionCache.maskFor(roles).toEnumSet();
     }
 
     /**
@@ -0,0 +1,143 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.UserDetailsSnapshot;
+import com.clinic.demo.exception.AuthenticationFailedException;
+import com.clinic.demo.models.entity.RefreshTokenEntity;
+import com.clinic.demo.repository.RefreshTokenRepository;
+import com.clinic.demo.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Login sessions backed by rotating refresh tokens. Each refresh consumes the presented token and returns
+ * a new one; presenting an already used token means it leaked, so the whole session is revoked.
+ */
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final TokenService tokenService;
+    private final TokenRevocationService tokenRevocationService;
+    private final RolePermissionCache rolePermissionCache;
+    private final long refreshTokenTtlDays;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               UserRepository userRepository,
+                               TokenService tokenService,
+                               TokenRevocationService tokenRevocationService,
+                               RolePermissionCache rolePermissionCache,
+                               @Value("${security.jwt.refresh.token.ttl.days:14}") long refreshTokenTtlDays) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.tokenService = tokenService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.rolePermissionCache = rolePermissionCache;
+        this.refreshTokenTtlDays = refreshTokenTtlDays;
+    }
+
+    public record IssuedTokens(String accessToken, String refreshToken, UserDetailsSnapshot user) {
+    }
+
+    @Transactional
+    public IssuedTokens startSession(UserDetailsSnapshot user) {
+        String sessionId = UUID.randomUUID().toString();
+        return issue(user, sessionId);
+    }
+
+    @Transactional(noRollbackFor = AuthenticationFailedException.class)
+    public IssuedTokens refresh(String refreshToken) {
+        RefreshTokenEntity current = refreshTokenRepository.findByTokenHash(hash(refreshToken))
+                .orElseThrow(() -> new AuthenticationFailedException("Invalid refresh token"));
+
+        if (current.isUsed() || current.isRevoked()) {
+            // A consumed token coming back means someone else holds a copy; end the session for both
+            if (!current.isRevoked())
+                log.warn("Refresh token reuse detected for user {}, revoking session", current.getUserId());
+            revokeSession(current.getFamilyId());
+            throw new AuthenticationFailedException("Invalid refresh token");
+        }
+        if (current.isExpired())
+            throw new AuthenticationFailedException("Refresh token has expired");
+
+        UserDetailsSnapshot user = userRepository.findByUuid(current.getUserId())
+                .map(rolePermissionCache::principalFor)
+                .filter(snapshot -> snapshot.isEnabled() && snapshot.isAccountNonLocked())
+                .orElse(null);
+        if (user == null) {
+            revokeSession(current.getFamilyId());
+            throw new AuthenticationFailedException("Account is no longer active");
+        }
+
+        current.setUsed(true);
+        refreshTokenRepository.save(current);
+        return issue(user, current.getFamilyId());
+    }
+
+    @Transactional
+    public void logout(String refreshToken) {
+        refreshTokenRepository.findByTokenHash(hash(refreshToken))
+                .ifPresent(token -> revokeSession(token.getFamilyId()));
+    }
+
+    /**
+     * Ends every session of the user, e.g. after a password or role change, so no token with the old state
+     * outlives the change.
+     */
+    @Transactional
+    public void revokeAllSessions(UUID userId) {
+        for (String sessionId : refreshTokenRepository.findActiveFamilyIdsByUserId(userId, LocalDateTime.now()))
+            tokenRevocationService.revokeSession(sessionId);
+        refreshTokenRepository.revokeAllByUserId(userId);
+    }
+
+    @Scheduled(fixedRate = 3600000)
+    @Transactional
+    public void cleanupExpiredRefreshTokens() {
+        refreshTokenRepository.deleteExpired(LocalDateTime.now());
+    }
+
+    private void revokeSession(String sessionId) {
+        refreshTokenRepository.revokeFamily(sessionId);
+        tokenRevocationService.revokeSession(sessionId);
+    }
+
+    private IssuedTokens issue(UserDetailsSnapshot user, String sessionId) {
+        byte[] secret = new byte[32];
+        RANDOM.nextBytes(secret);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+
+        RefreshTokenEntity entity = new RefreshTokenEntity();
+        entity.setTokenHash(hash(refreshToken));
+        entity.setFamilyId(sessionId);
+        entity.setUserId(user.getId());
+        entity.setExpiresAt(LocalDateTime.now().plusDays(refreshTokenTtlDays));
+        refreshTokenRepository.save(entity);
+
+        return new IssuedTokens(tokenService.generateJWT(user, sessionId), refreshToken, user);
+    }
+
+    private static String hash(String refreshToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(refreshToken.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
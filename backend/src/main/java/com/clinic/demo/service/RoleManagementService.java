@@ -6,9 +6,11 @@ import com.clinic.demo.models.enums.UserTypeEnum;
 import com.clinic.demo.repository.RoleRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -20,6 +22,7 @@ public class RoleManagementService {
 
     private final RoleRepository roleRepository;
     private final DefaultPermissionsService defaultPermissionsService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public void initializeSystemRoles() {
@@ -36,12 +39,13 @@ public class RoleManagementService {
                         .name(roleName)
                         .description("System role for " + userType.getDisplayName())
                         .userType(userType)
-                        .permissions(defaultPermissions)
+                        .permissions(new HashSet<>(defaultPermissions)) // defaults are shared and immutable
                         .systemRole(true)
                         .active(true)
                         .build();
 
                 roleRepository.save(role);
+                eventPublisher.publishEvent(new RolePermissionsChangedEvent(role.getId()));
                 log.info("Created system role: {} with {} permissions",
                         roleName, defaultPermissions.size());
             }
@@ -65,6 +69,7 @@ public class RoleManagementService {
                 .build();
 
         RoleEntity savedRole = roleRepository.save(role);
+        eventPublisher.publishEvent(new RolePermissionsChangedEvent(savedRole.getId()));
         log.info("Created custom role: {} with {} permissions", name, permissions.size());
 
         return savedRole;
@@ -88,6 +93,8 @@ public class RoleManagementService {
         }
 
         RoleEntity savedRole = roleRepository.save(role);
+        eventPublisher.publishEvent(new RolePermissionsChangedEvent(savedRole.getId()));
+        eventPublisher.publishEvent(UserDetailsChangedEvent.allUsers());
         log.info("Updated role: {}", savedRole.getName());
 
         return savedRole;
@@ -102,6 +109,8 @@ public class RoleManagementService {
         role.setPermissions(permissions);
 
         RoleEntity savedRole = roleRepository.save(role);
+        eventPublisher.publishEvent(new RolePermissionsChangedEvent(savedRole.getId()));
+        eventPublisher.publishEvent(UserDetailsChangedEvent.allUsers());
         log.info("Updated role {} permissions: {} -> {} (System role: {})",
                 role.getName(), oldPermissions.size(), permissions.size(), role.getSystemRole());
 
@@ -119,6 +128,8 @@ public class RoleManagementService {
 
         role.addPermission(permission);
         RoleEntity savedRole = roleRepository.save(role);
+        eventPublisher.publishEvent(new RolePermissionsChangedEvent(savedRole.getId()));
+        eventPublisher.publishEvent(UserDetailsChangedEvent.allUsers());
         log.info("Added permission {} to role {} (System role: {})",
                 permission, role.getName(), role.getSystemRole());
 
@@ -147,6 +158,8 @@ public class RoleManagementService {
 
         role.removePermission(permission);
         RoleEntity savedRole = roleRepository.save(role);
+        eventPublisher.publishEvent(new RolePermissionsChangedEvent(savedRole.getId()));
+        eventPublisher.publishEvent(UserDetailsChangedEvent.allUsers());
         log.info("Removed permission {} from role {} (System role: {})",
                 permission, role.getName(), role.getSystemRole());
 
@@ -163,6 +176,8 @@ public class RoleManagementService {
 
         role.setActive(active);
         RoleEntity savedRole = roleRepository.save(role);
+        eventPublisher.publishEvent(new RolePermissionsChangedEvent(savedRole.getId()));
+        eventPublisher.publishEvent(UserDetailsChangedEvent.allUsers());
         log.info("{} role: {}", active ? "Activated" : "Deactivated", role.getName());
 
         return savedRole;
@@ -176,6 +191,8 @@ public class RoleManagementService {
             throw new IllegalArgumentException("Cannot delete system role: " + role.getName());
 
         roleRepository.delete(role);
+        eventPublisher.publishEvent(new RolePermissionsChangedEvent(roleId));
+        eventPublisher.publishEvent(UserDetailsChangedEvent.allUsers());
         log.info("Deleted role: {}", role.getName());
     }
 
@@ -212,6 +229,8 @@ public class RoleManagementService {
 
         role.setPermissions(defaultPermissions);
         RoleEntity savedRole = roleRepository.save(role);
+        eventPublisher.publishEvent(new RolePermissionsChangedEvent(savedRole.getId()));
+        eventPublisher.publishEvent(UserDetailsChangedEvent.allUsers());
         log.info("Reset system role {} to default permissions ({})",
                 role.getName(), defaultPermissions.size());
 
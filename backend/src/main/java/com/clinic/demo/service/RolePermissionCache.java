@@ -0,0 +1,154 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.UserDetailsSnapshot;
+import com.clinic.demo.models.entity.RoleEntity;
+import com.clinic.demo.models.entity.user.BaseUserEntity;
+import com.clinic.demo.repository.PermissionsVersionRepository;
+import com.clinic.demo.repository.RoleRepository;
+import com.clinic.demo.utils.PermissionAuthenticationToken;
+import com.clinic.demo.utils.PermissionMask;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Application-wide role name → permission mask table, loaded once at startup and rebuilt whenever
+ * {@link RoleManagementService} changes a role. Permission checks read it by role name only, so they never
+ * touch {@code RoleEntity} permissions or Hibernate.
+ * <p>
+ * Each rebuild produces a new {@link Snapshot}, published with a single volatile write: readers see either the old
+ * table or the new one, never a mix, and the masks combined per role set are held by the snapshot so they are
+ * invalidated together with it. Other nodes pick changes up on the periodic reload.
+ * <p>
+ * The snapshot's version is the {@code permissions_version} row, bumped in the same transaction as every role
+ * change, so it means the same on every node. Access tokens carry the version their mask was built from and
+ * are rejected once this node has loaded a newer one; clients then refresh and get a token with the new mask.
+ */
+@Slf4j
+@Service
+public class RolePermissionCache {
+
+    private final RoleRepository roleRepository;
+    private final PermissionsVersionRepository permissionsVersionRepository;
+    private final UserDetailsCache userDetailsCache;
+    private volatile Snapshot snapshot = new Snapshot(0, Map.of());
+
+    public RolePermissionCache(RoleRepository roleRepository, PermissionsVersionRepository permissionsVersionRepository,
+                               UserDetailsCache userDetailsCache) {
+        this.roleRepository = roleRepository;
+        this.permissionsVersionRepository = permissionsVersionRepository;
+        this.userDetailsCache = userDetailsCache;
+    }
+
+    /**
+     * Principal for the user with the mask and version taken from the same snapshot, so a token issued from it
+     * never pairs an old mask with a new version.
+     */
+    public UserDetailsSnapshot principalFor(BaseUserEntity user) {
+        Snapshot current = snapshot;
+        Set<String> roleNames = user.getRoles() == null
+                ? Set.of()
+                : user.getRoles().stream().map(RoleEntity::getName).collect(Collectors.toUnmodifiableSet());
+        PermissionMask mask = roleNames.isEmpty() ? PermissionMask.EMPTY : current.maskFor(roleNames);
+        return UserDetailsSnapshot.from(user, mask, current.version());
+    }
+
+    /**
+     * Union of the permissions of the given roles that are active.
+     */
+    public PermissionMask maskFor(Collection<RoleEntity> roles) {
+        if (roles == null || roles.isEmpty())
+            return PermissionMask.EMPTY;
+        return maskForRoleNames(roles.stream().map(RoleEntity::getName).collect(Collectors.toUnmodifiableSet()));
+    }
+
+    public PermissionMask maskForRoleNames(Set<String> roleNames) {
+        if (roleNames == null || roleNames.isEmpty())
+            return PermissionMask.EMPTY;
+        return snapshot.maskFor(roleNames);
+    }
+
+    public long getVersion() {
+        return snapshot.version();
+    }
+
+    /**
+     * Whether the token's mask was built from a permission table older than the one loaded here. Tokens
+     * without a version predate it and are treated as stale.
+     */
+    public boolean isStale(Jwt jwt) {
+        Object version = jwt.getClaims().get(PermissionAuthenticationToken.PERMISSIONS_VERSION_CLAIM);
+        return !(version instanceof Number number) || number.longValue() < snapshot.version();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            // Checks deny everything until the scheduled reload succeeds
+            log.error("Could not load role permissions at startup: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${security.permissions.cache.refresh.interval.ms:60000}")
+    public void scheduledReload() {
+        reload();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onRolePermissionsChanging(RolePermissionsChangedEvent event) {
+        permissionsVersionRepository.increment();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRolePermissionsChanged(RolePermissionsChangedEvent event) {
+        reload();
+    }
+
+    public synchronized void reload() {
+        long version = permissionsVersionRepository.findCurrent().orElse(0L);
+        Map<String, PermissionMask> masksByRole = new HashMap<>();
+        for (RoleEntity role : roleRepository.findAll()) {
+            // Inactive roles grant nothing
+            if (Boolean.TRUE.equals(role.getActive()))
+                masksByRole.put(role.getName(), PermissionMask.of(role.getPermissions()));
+        }
+
+        if (version == snapshot.version() && masksByRole.equals(snapshot.masksByRole()))
+            return;
+        snapshot = new Snapshot(version, Map.copyOf(masksByRole));
+        // Cached principals may hold masks and versions from the previous table
+        userDetailsCache.evictAll();
+        log.info("Role permission cache rebuilt: version {}, {} active roles", snapshot.version(), masksByRole.size());
+    }
+
+    private record Snapshot(long version, Map<String, PermissionMask> masksByRole,
+                            Map<Set<String>, PermissionMask> masksByRoleSet) {
+
+        Snapshot(long version, Map<String, PermissionMask> masksByRole) {
+            this(version, masksByRole, new ConcurrentHashMap<>());
+        }
+
+        PermissionMask maskFor(Set<String> roleNames) {
+            PermissionMask cached = masksByRoleSet.get(roleNames);
+            if (cached != null)
+                return cached;
+
+            PermissionMask mask = PermissionMask.EMPTY;
+            for (String roleName : roleNames)
+                mask = mask.or(masksByRole.getOrDefault(roleName, PermissionMask.EMPTY));
+            masksByRoleSet.put(roleNames, mask);
+            return mask;
+        }
+    }
+}
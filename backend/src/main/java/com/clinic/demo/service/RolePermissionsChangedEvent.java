@@ -0,0 +1,7 @@
+package com.clinic.demo.service;
+
+/**
+ * Published when a role is created, renamed, deleted, (de)activated or has its permissions changed.
+ */
+public record RolePermissionsChangedEvent(Long roleId) {
+}
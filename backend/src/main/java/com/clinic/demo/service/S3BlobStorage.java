@@ -0,0 +1,402 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.BlobMetadata;
+import com.clinic.demo.utils.AwsV4Signer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Keeps blobs in a bucket of an S3-compatible service (AWS S3, MinIO, Ceph...), so every node reads and writes
+ * the same files. Requests are signed with SigV4 and sent with the JDK HTTP client; {@code storage.s3.endpoint}
+ * and {@code storage.s3.path-style} point it at a local stand-in such as MinIO for development.
+ * <p>
+ * Files larger than {@code storage.s3.part-size} are sent as a multipart upload, one part in memory at a time.
+ * Downloads are streamed, except for blobs of at most {@code storage.s3.cache.max-object-size}: those are read
+ * whole and kept in an LRU cache bounded to {@code storage.s3.cache.max-size} bytes, which also answers
+ * {@link #stat} for them. Entries are only invalidated by writes through this node, which is safe for the
+ * content-addressed and uniquely named keys the application writes.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+public class S3BlobStorage implements BlobStorage {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final HttpClient client;
+    private final AwsV4Signer signer;
+    private final URI endpoint;
+    private final String bucket;
+    private final boolean pathStyle;
+    private final int partSize;
+    private final Duration requestTimeout;
+    private final BlobCache cache;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    public S3BlobStorage(MeterRegistry meterRegistry,
+                         @Value("${storage.s3.endpoint}") String endpoint,
+                         @Value("${storage.s3.region:us-east-1}") String region,
+                         @Value("${storage.s3.bucket}") String bucket,
+                         @Value("${storage.s3.access-key}") String accessKey,
+                         @Value("${storage.s3.secret-key}") String secretKey,
+                         @Value("${storage.s3.path-style:true}") boolean pathStyle,
+                         @Value("${storage.s3.part-size:8MB}") DataSize partSize,
+                         @Value("${storage.s3.timeout:30s}") Duration requestTimeout,
+                         @Value("${storage.s3.cache.max-size:64MB}") DataSize cacheSize,
+                         @Value("${storage.s3.cache.max-object-size:1MB}") DataSize cacheObjectSize) {
+        // S3 rejects parts under 5MB, except the last
+        if (partSize.toBytes() < DataSize.ofMegabytes(5).toBytes() || partSize.toBytes() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("storage.s3.part-size must be between 5MB and 2GB");
+
+        this.client = HttpClient.newBuilder().connectTimeout(requestTimeout).build();
+        this.signer = new AwsV4Signer(accessKey, secretKey, region, "s3");
+        this.endpoint = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+        this.bucket = bucket;
+        this.pathStyle = pathStyle;
+        this.partSize = (int) partSize.toBytes();
+        this.requestTimeout = requestTimeout;
+        this.cache = new BlobCache(cacheSize.toBytes(), cacheObjectSize.toBytes());
+
+        this.cacheHits = Counter.builder("storage.s3.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.cacheMisses = Counter.builder("storage.s3.cache.requests").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("storage.s3.cache.size", cache, BlobCache::size);
+    }
+
+    @Override
+    public Path createStagingFile() throws IOException {
+        return Files.createTempFile("blob_", ".tmp");
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        long size = Files.size(file);
+        try {
+            if (size <= partSize) {
+                HttpResponse<String> response = send("PUT", objectUri(key, null), HttpRequest.BodyPublishers.ofFile(file),
+                        HttpResponse.BodyHandlers.ofString());
+                expectSuccess(response, "PUT", key);
+            } else {
+                multipartUpload(key, file, size);
+            }
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        CachedBlob cached = cache.get(key);
+        if (cached != null) {
+            cacheHits.increment();
+            return new ByteArrayInputStream(cached.content());
+        }
+        cacheMisses.increment();
+
+        HttpResponse<InputStream> response = send("GET", objectUri(key, null), HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        expectFound(response, "GET", key);
+
+        long length = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        if (length < 0 || !cache.accepts(length))
+            return response.body();
+
+        byte[] content;
+        try (InputStream body = response.body()) {
+            content = body.readAllBytes();
+        }
+        cache.put(key, new CachedBlob(new BlobMetadata(key, content.length, lastModified(response)), content));
+        return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        CachedBlob cached = cache.get(key);
+        if (cached != null) {
+            cacheHits.increment();
+            int from = (int) Math.min(offset, cached.content().length);
+            return new ByteArrayInputStream(cached.content(), from, cached.content().length - from);
+        }
+        cacheMisses.increment();
+        if (length <= 0)
+            return InputStream.nullInputStream();
+
+        HttpResponse<InputStream> response = send("GET", objectUri(key, null), HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.ofInputStream(), "Range", "bytes=" + offset + "-" + (offset + length - 1));
+        expectFound(response, "GET", key);
+
+        InputStream body = response.body();
+        if (response.statusCode() == 200)
+            body.skipNBytes(offset); // the range was ignored
+        return body;
+    }
+
+    @Override
+    public BlobMetadata stat(String key) throws IOException {
+        CachedBlob cached = cache.get(key);
+        if (cached != null)
+            return cached.metadata();
+
+        HttpResponse<Void> response = send("HEAD", objectUri(key, null), HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404)
+            return null;
+        if (response.statusCode() != 200)
+            throw new IOException("S3 HEAD " + key + " failed with status " + response.statusCode());
+
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(0);
+        return new BlobMetadata(key, size, lastModified(response));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            HttpResponse<String> response = send("DELETE", objectUri(key, null), HttpRequest.BodyPublishers.noBody(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 404)
+                expectSuccess(response, "DELETE", key);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public List<BlobMetadata> list(String prefix) throws IOException {
+        List<BlobMetadata> blobs = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            String query = "list-type=2&prefix=" + AwsV4Signer.encode(prefix, false);
+            if (continuationToken != null)
+                query += "&continuation-token=" + AwsV4Signer.encode(continuationToken, false);
+
+            HttpResponse<String> response = send("GET", bucketUri(query), HttpRequest.BodyPublishers.noBody(),
+                    HttpResponse.BodyHandlers.ofString());
+            expectSuccess(response, "LIST", prefix);
+
+            Element result = parse(response.body());
+            NodeList contents = result.getElementsByTagName("Contents");
+            for (int i = 0; i < contents.getLength(); i++) {
+                Element content = (Element) contents.item(i);
+                blobs.add(new BlobMetadata(
+                        text(content, "Key"),
+                        Long.parseLong(text(content, "Size")),
+                        Instant.parse(text(content, "LastModified"))));
+            }
+            continuationToken = "true".equals(text(result, "IsTruncated")) ? text(result, "NextContinuationToken") : null;
+        } while (continuationToken != null);
+        return blobs;
+    }
+
+    private void multipartUpload(String key, Path file, long size) throws IOException {
+        HttpResponse<String> created = send("POST", objectUri(key, "uploads"), HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.ofString());
+        expectSuccess(created, "CreateMultipartUpload", key);
+        String uploadId = text(parse(created.body()), "UploadId");
+        String uploadQuery = "uploadId=" + AwsV4Signer.encode(uploadId, false);
+
+        try {
+            StringBuilder completion = new StringBuilder("<CompleteMultipartUpload>");
+            byte[] part = new byte[partSize];
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                int partNumber = 1;
+                for (long offset = 0; offset < size; offset += partSize, partNumber++) {
+                    int length = (int) Math.min(partSize, size - offset);
+                    readFully(channel, part, length, offset);
+
+                    HttpResponse<String> uploaded = send("PUT", objectUri(key, "partNumber=" + partNumber + "&" + uploadQuery),
+                            HttpRequest.BodyPublishers.ofByteArray(part, 0, length), HttpResponse.BodyHandlers.ofString());
+                    expectSuccess(uploaded, "UploadPart", key);
+                    String etag = uploaded.headers().firstValue("ETag")
+                            .orElseThrow(() -> new IOException("S3 UploadPart of " + key + " returned no ETag"));
+                    completion.append("<Part><PartNumber>").append(partNumber).append("</PartNumber><ETag>")
+                            .append(etag.replace("&", "&amp;").replace("<", "&lt;")).append("</ETag></Part>");
+                }
+            }
+            completion.append("</CompleteMultipartUpload>");
+
+            HttpResponse<String> completed = send("POST", objectUri(key, uploadQuery),
+                    HttpRequest.BodyPublishers.ofString(completion.toString()), HttpResponse.BodyHandlers.ofString(),
+                    "Content-Type", "application/xml");
+            expectSuccess(completed, "CompleteMultipartUpload", key);
+            // Failures after the response has started are reported in a 200 body
+            if ("Error".equals(parse(completed.body()).getTagName()))
+                throw new IOException("S3 CompleteMultipartUpload of " + key + " failed: " + truncate(completed.body()));
+        } catch (IOException | RuntimeException e) {
+            abortMultipartUpload(key, uploadQuery);
+            throw e;
+        }
+    }
+
+    private void abortMultipartUpload(String key, String uploadQuery) {
+        try {
+            send("DELETE", objectUri(key, uploadQuery), HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            // The bucket's lifecycle rules remove abandoned uploads eventually
+            log.warn("Failed to abort multipart upload of {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static void readFully(FileChannel channel, byte[] buffer, int length, long position) throws IOException {
+        ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0)
+                throw new IOException("File shrank while uploading");
+        }
+    }
+
+    private <T> HttpResponse<T> send(String method, URI uri, HttpRequest.BodyPublisher body,
+                                     HttpResponse.BodyHandler<T> handler, String... headers) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(requestTimeout).method(method, body);
+        signer.sign(method, uri, Instant.now()).forEach(request::header);
+        for (int i = 0; i < headers.length; i += 2)
+            request.header(headers[i], headers[i + 1]);
+
+        try {
+            return client.send(request.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during S3 " + method + " " + uri.getRawPath());
+        }
+    }
+
+    private URI objectUri(String key, String query) {
+        String path = "/" + AwsV4Signer.encode(key, true);
+        return uri(pathStyle ? "/" + AwsV4Signer.encode(bucket, false) + path : path, query);
+    }
+
+    private URI bucketUri(String query) {
+        return uri(pathStyle ? "/" + AwsV4Signer.encode(bucket, false) : "/", query);
+    }
+
+    private URI uri(String rawPath, String rawQuery) {
+        String authority = pathStyle ? endpoint.getRawAuthority() : bucket + "." + endpoint.getRawAuthority();
+        return URI.create(endpoint.getScheme() + "://" + authority + rawPath + (rawQuery == null ? "" : "?" + rawQuery));
+    }
+
+    private static void expectSuccess(HttpResponse<String> response, String operation, String key) throws IOException {
+        if (response.statusCode() / 100 != 2)
+            throw new IOException("S3 " + operation + " " + key + " failed with status " + response.statusCode()
+                    + ": " + truncate(response.body()));
+    }
+
+    private static void expectFound(HttpResponse<InputStream> response, String operation, String key) throws IOException {
+        if (response.statusCode() / 100 == 2)
+            return;
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 404)
+                throw new NoSuchFileException(key);
+            String error = new String(body.readNBytes(MAX_ERROR_LENGTH), StandardCharsets.UTF_8);
+            throw new IOException("S3 " + operation + " " + key + " failed with status " + response.statusCode() + ": " + error);
+        }
+    }
+
+    private static Instant lastModified(HttpResponse<?> response) {
+        return response.headers().firstValue("Last-Modified")
+                .map(value -> ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant())
+                .orElse(Instant.EPOCH);
+    }
+
+    private static Element parse(String xml) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+            return document.getDocumentElement();
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Malformed S3 response: " + truncate(xml), e);
+        }
+    }
+
+    private static String text(Element parent, String tagName) {
+        NodeList nodes = parent.getElementsByTagName(tagName);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+    }
+
+    private static String truncate(String body) {
+        return body.length() <= MAX_ERROR_LENGTH ? body : body.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private record CachedBlob(BlobMetadata metadata, byte[] content) {
+    }
+
+    /**
+     * Least recently used blobs, up to a total number of bytes.
+     */
+    private static final class BlobCache {
+
+        private final long maxBytes;
+        private final long maxObjectBytes;
+        private final LinkedHashMap<String, CachedBlob> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        BlobCache(long maxBytes, long maxObjectBytes) {
+            this.maxBytes = maxBytes;
+            this.maxObjectBytes = Math.min(maxObjectBytes, maxBytes);
+        }
+
+        boolean accepts(long size) {
+            return size <= maxObjectBytes;
+        }
+
+        synchronized CachedBlob get(String key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(String key, CachedBlob blob) {
+            CachedBlob previous = entries.put(key, blob);
+            if (previous != null)
+                bytes -= previous.content().length;
+            bytes += blob.content().length;
+
+            Iterator<CachedBlob> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().content().length;
+                eldest.remove();
+            }
+        }
+
+        synchronized void invalidate(String key) {
+            CachedBlob removed = entries.remove(key);
+            if (removed != null)
+                bytes -= removed.content().length;
+        }
+
+        synchronized double size() {
+            return bytes;
+        }
+    }
+}
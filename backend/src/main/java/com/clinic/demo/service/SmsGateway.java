@@ -0,0 +1,19 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.SmsMessage;
+
+import java.util.List;
+
+/**
+ * An SMS provider. {@link SmsService} sends through the gateway named by {@code sms.provider}, in batches of at
+ * most {@code sms.providers.<name>.max-batch-size} messages and within that provider's rate limit.
+ */
+public interface SmsGateway {
+
+    String getName();
+
+    /**
+     * Sends one batch, called from a virtual thread so it may block on I/O. Throwing fails the whole batch.
+     */
+    void send(List<SmsMessage> batch) throws Exception;
+}
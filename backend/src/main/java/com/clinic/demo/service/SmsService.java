@@ -1,17 +1,171 @@
 package com.clinic.demo.service;
 
-import jakarta.mail.internet.MimeMessage;
-import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import com.clinic.demo.DTO.SmsMessage;
+import com.clinic.demo.configuration.SmsProperties;
+import com.clinic.demo.utils.Ticker;
+import com.clinic.demo.utils.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
 
+/**
+ * Sends SMS asynchronously through the configured {@link SmsGateway}. Messages are queued in memory and
+ * coalesced into batches of up to the provider's batch size, waiting at most {@code sms.linger} for a batch
+ * to fill. Batches are sent on virtual threads, at most {@code sms.max-concurrent-batches} at a time, and
+ * held to the provider's rate by a token bucket. A failed batch is retried twice before it is dropped.
+ * <p>
+ * Unlike mail, queued SMS are not persisted and are lost on shutdown.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
-public class SmsService {
-    // TODO
+public class SmsService implements DisposableBean {
 
-}
\ No newline at end of file
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final SmsGateway gateway;
+    private final Ticker ticker;
+    private final TokenBucket rateLimit;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<SmsMessage> queue;
+    private final Semaphore batchPermits;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+    private final DistributionSummary batchSizes;
+
+    @Autowired
+    public SmsService(List<SmsGateway> gateways, SmsProperties properties, MeterRegistry meterRegistry) {
+        this(gateways, properties, meterRegistry, Ticker.SYSTEM);
+    }
+
+    SmsService(List<SmsGateway> gateways, SmsProperties properties, MeterRegistry meterRegistry, Ticker ticker) {
+        this.ticker = ticker;
+        this.gateway = gateways.stream()
+                .filter(candidate -> candidate.getName().equals(properties.getProvider()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No SMS gateway named " + properties.getProvider()));
+
+        SmsProperties.ProviderLimits limits = properties.limitsFor(gateway.getName());
+        // Also checked when the properties are bound; the default limits of an unlisted provider are not bound
+        if (!(limits.getMessagesPerSecond() > 0) || limits.getMaxBatchSize() <= 0)
+            throw new IllegalStateException("SMS provider " + gateway.getName() + " needs a positive messages-per-second and max-batch-size");
+        this.rateLimit = new TokenBucket(limits.getBurst(),
+                (long) (TimeUnit.SECONDS.toNanos(1) / limits.getMessagesPerSecond()), ticker.nanoTime());
+        this.maxBatchSize = limits.getMaxBatchSize();
+        this.lingerNanos = properties.getLinger().toNanos();
+        this.queue = new LinkedBlockingQueue<>(properties.getQueueCapacity());
+        this.batchPermits = new Semaphore(properties.getMaxConcurrentBatches());
+
+        this.sentCounter = Counter.builder("sms.sent").tag("provider", gateway.getName()).register(meterRegistry);
+        this.failedCounter = Counter.builder("sms.failed").tag("provider", gateway.getName()).register(meterRegistry);
+        this.rejectedCounter = Counter.builder("sms.rejected").tag("provider", gateway.getName()).register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("sms.batch.size").tag("provider", gateway.getName()).register(meterRegistry);
+        meterRegistry.gaugeCollectionSize("sms.queue.size", List.of(), queue);
+
+        executor.execute(this::batchLoop);
+    }
+
+    /**
+     * Queues a message for sending.
+     *
+     * @throws IllegalStateException if the queue is full
+     */
+    public void sendSms(String phoneNumber, String message) {
+        if (!queue.offer(new SmsMessage(phoneNumber, message))) {
+            rejectedCounter.increment();
+            throw new IllegalStateException("Too many SMS waiting to be sent, please try again shortly");
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        if (!queue.isEmpty())
+            log.warn("Discarding {} unsent SMS on shutdown", queue.size());
+    }
+
+    private void batchLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<SmsMessage> batch = nextBatch();
+                for (int i = 0; i < batch.size(); i++)
+                    awaitRatePermit();
+
+                batchPermits.acquire();
+                executor.execute(() -> {
+                    try {
+                        sendBatch(batch);
+                    } finally {
+                        batchPermits.release();
+                    }
+                });
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private List<SmsMessage> nextBatch() throws InterruptedException {
+        List<SmsMessage> batch = new ArrayList<>(maxBatchSize);
+        batch.add(queue.take());
+
+        long deadline = ticker.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - ticker.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0)
+                break;
+            SmsMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null)
+                break;
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void awaitRatePermit() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = rateLimit.tryAcquire(ticker.nanoTime())) > 0)
+            ticker.sleep(waitNanos);
+    }
+
+    private void sendBatch(List<SmsMessage> batch) {
+        batchSizes.record(batch.size());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                gateway.send(batch);
+                sentCounter.increment(batch.size());
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    log.error("Dropping batch of {} SMS after {} attempts", batch.size(), attempt, e);
+                    failedCounter.increment(batch.size());
+                    return;
+                }
+                log.warn("Sending {} SMS through {} failed (attempt {}): {}", batch.size(), gateway.getName(), attempt, e.getMessage());
+                try {
+                    ticker.sleep(TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY_MILLIS * attempt));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.SmsMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offline SMS provider for development and load tests. It counts the messages it receives and, when
+ * {@code sms.stub.file} is set, appends them to that file. {@code sms.stub.latency} simulates a provider's
+ * per-batch round trip.
+ */
+@Slf4j
+@Component
+public class StubSmsGateway implements SmsGateway {
+
+    private final Path file;
+    private final Duration latency;
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong batchesSent = new AtomicLong();
+
+    public StubSmsGateway(@Value("${sms.stub.file:}") String file,
+                          @Value("${sms.stub.latency:0ms}") Duration latency) {
+        this.file = file.isBlank() ? null : Path.of(file);
+        this.latency = latency;
+    }
+
+    @Override
+    public String getName() {
+        return "stub";
+    }
+
+    @Override
+    public void send(List<SmsMessage> batch) throws IOException, InterruptedException {
+        if (!latency.isZero())
+            Thread.sleep(latency);
+
+        if (file != null) {
+            StringBuilder lines = new StringBuilder();
+            String sentAt = Instant.now().toString();
+            for (SmsMessage message : batch)
+                lines.append(sentAt).append('\t').append(message.phoneNumber()).append('\t')
+                        .append(message.text().replace('\n', ' ')).append('\n');
+            synchronized (this) {
+                Files.writeString(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        } else {
+            log.debug("Stub SMS batch of {} messages", batch.size());
+        }
+        batchesSent.incrementAndGet();
+        messagesSent.addAndGet(batch.size());
+    }
+
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    public long getBatchesSent() {
+        return batchesSent.get();
+    }
+}
@@ -0,0 +1,7 @@
+package com.clinic.demo.service;
+
+/**
+ * Published when the set of approved time offs changes, so cached views of it can be rebuilt.
+ */
+public record TimeOffChangedEvent(Long timeOffId) {
+}
@@ -2,6 +2,8 @@ package com.clinic.demo.service;
 
 import com.clinic.demo.DTO.calenderDTO.TimeOffApprovalDTO;
 import com.clinic.demo.DTO.calenderDTO.TimeOffDTO;
+import com.clinic.demo.DTO.calenderDTO.TimeOffIntervalDTO;
+import com.clinic.demo.DTO.calenderDTO.TimeOffPageDTO;
 import com.clinic.demo.exception.TimeOffNotFoundException;
 import com.clinic.demo.exception.TimeOffOverlapException;
 import com.clinic.demo.exception.TimeOffValidationException;
@@ -9,16 +11,23 @@ import com.clinic.demo.models.entity.TimeOff;
 import com.clinic.demo.models.entity.user.BaseUserEntity;
 import com.clinic.demo.models.entity.user.EmployeeEntity;
 import com.clinic.demo.models.enums.TimeOffStatus;
+import com.clinic.demo.models.enums.notifications.NotificationType;
 import com.clinic.demo.repository.TimeOffRepository;
 import com.clinic.demo.utils.Validations;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -28,9 +37,12 @@ import java.util.stream.Collectors;
 public class TimeOffService {
 
     private static final Logger logger = LoggerFactory.getLogger(TimeOffService.class);
+    private static final int MAX_PAGE_SIZE = 200;
 
     private final TimeOffRepository timeOffRepository;
     private final UserService userService;
+    private final TimeOffSnapshotService timeOffSnapshotService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public TimeOffDTO createTimeOff(String employeeEmail, TimeOffDTO timeOffDTO) {
@@ -66,6 +78,10 @@ public class TimeOffService {
         timeOff.setApprovalNotes(approvalDTO.getApprovalNotes());
 
         TimeOff updatedTimeOff = timeOffRepository.save(timeOff);
+        if (updatedTimeOff.getStatus() == TimeOffStatus.APPROVED)
+            eventPublisher.publishEvent(new TimeOffChangedEvent(timeOffId));
+        eventPublisher.publishEvent(decisionNotification(updatedTimeOff));
+
         logger.info("Time off {} by admin: {} for request id: {}",
                 approvalDTO.getStatus().name().toLowerCase(), adminEmail, timeOffId);
 
@@ -136,28 +152,35 @@ public class TimeOffService {
 
     public boolean hasTimeOffOnDateTime(String employeeEmail, LocalDateTime dateTime) {
         EmployeeEntity employee = validateAndGetEmployee(employeeEmail);
-        return timeOffRepository.hasTimeOffOnDate(employee, dateTime.toLocalDate());
+        return timeOffSnapshotService.isEmployeeOutOnDate(employee.getId(), dateTime.toLocalDate());
     }
 
-    public List<TimeOffDTO> getAllActiveTimeOffs() {
-        List<TimeOff> activeTimeOffs = timeOffRepository.findActiveTimeOffs(LocalDateTime.now());
-        return activeTimeOffs.stream()
-                .map(timeOff -> mapToDTO(timeOff, timeOff.getEmployee()))
-                .collect(Collectors.toList());
+    public TimeOffPageDTO getAllActiveTimeOffs(LocalDateTime afterStartDateTime, Long afterId, int size) {
+        validatePageRequest(afterStartDateTime, afterId, size);
+
+        // Served from the in-memory snapshot, which is already ordered by (start_date_time, id)
+        List<TimeOffDTO> rows = timeOffSnapshotService.getEmployeesOutAt(LocalDateTime.now()).stream()
+                .filter(interval -> afterId == null || isAfterCursor(interval, afterStartDateTime, afterId))
+                .limit(size + 1L)
+                .map(this::mapToDTO)
+                .toList();
+        return toPage(rows, size);
     }
 
-    public List<TimeOffDTO> getPendingTimeOffs() {
-        List<TimeOff> pendingTimeOffs = timeOffRepository.findByStatusOrderByStartDateTimeAsc(TimeOffStatus.PENDING);
-        return pendingTimeOffs.stream()
-                .map(timeOff -> mapToDTO(timeOff, timeOff.getEmployee()))
-                .collect(Collectors.toList());
+    public TimeOffPageDTO getPendingTimeOffs(LocalDateTime afterStartDateTime, Long afterId, int size) {
+        return getTimeOffsByStatus(TimeOffStatus.PENDING, afterStartDateTime, afterId, size);
     }
 
-    public List<TimeOffDTO> getTimeOffsByStatus(TimeOffStatus status) {
-        List<TimeOff> timeOffs = timeOffRepository.findByStatus(status);
-        return timeOffs.stream()
-                .map(timeOff -> mapToDTO(timeOff, timeOff.getEmployee()))
-                .collect(Collectors.toList());
+    public TimeOffPageDTO getTimeOffsByStatus(TimeOffStatus status, LocalDateTime afterStartDateTime,
+                                              Long afterId, int size) {
+        validatePageRequest(afterStartDateTime, afterId, size);
+
+        // Fetch one extra row to know whether a next page exists without a count query
+        Pageable limit = PageRequest.ofSize(size + 1);
+        List<TimeOffDTO> rows = afterId == null
+                ? timeOffRepository.findListingByStatus(status, limit)
+                : timeOffRepository.findListingByStatusAfter(status, afterStartDateTime, afterId, limit);
+        return toPage(rows, size);
     }
 
     // Helper methods
@@ -206,6 +229,44 @@ public class TimeOffService {
 
     }
 
+    private void validatePageRequest(LocalDateTime afterStartDateTime, Long afterId, int size) {
+        if ((afterStartDateTime == null) != (afterId == null))
+            throw new TimeOffValidationException("Both afterStartDateTime and afterId are required to fetch the next page");
+
+        if (size < 1 || size > MAX_PAGE_SIZE)
+            throw new TimeOffValidationException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+    }
+
+    private boolean isAfterCursor(TimeOffIntervalDTO interval, LocalDateTime afterStartDateTime, Long afterId) {
+        int byStart = interval.startDateTime().compareTo(afterStartDateTime);
+        return byStart > 0 || (byStart == 0 && interval.id() > afterId);
+    }
+
+    private TimeOffPageDTO toPage(List<TimeOffDTO> rows, int size) {
+        boolean hasNext = rows.size() > size;
+        List<TimeOffDTO> content = hasNext ? rows.subList(0, size) : rows;
+        TimeOffDTO last = hasNext ? content.get(content.size() - 1) : null;
+
+        return TimeOffPageDTO.builder()
+                .content(content)
+                .hasNext(hasNext)
+                .nextStartDateTime(last != null ? last.getStartDateTime() : null)
+                .nextId(last != null ? last.getId() : null)
+                .build();
+    }
+
+    private static NotificationRequestedEvent decisionNotification(TimeOff timeOff) {
+        DateTimeFormatter format = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM, FormatStyle.SHORT)
+                .withLocale(LocaleContextHolder.getLocale());
+        String decision = timeOff.getStatus().getDisplayName().toLowerCase();
+        String message = String.format("Your time off from %s to %s was %s.", format.format(timeOff.getStartDateTime()),
+                format.format(timeOff.getEndDateTime()), decision);
+        if (timeOff.getApprovalNotes() != null && !timeOff.getApprovalNotes().isBlank())
+            message += " Notes: " + timeOff.getApprovalNotes();
+        return new NotificationRequestedEvent(timeOff.getEmployee().getEmail(), NotificationType.TIME_OFF_DECISION,
+                "Time off " + decision, message);
+    }
+
     private void validateApprovalRequest(TimeOffApprovalDTO approvalDTO) {
         if (approvalDTO.getStatus() == TimeOffStatus.PENDING)
             throw new TimeOffValidationException("Cannot update status to PENDING");
@@ -231,6 +292,22 @@ public class TimeOffService {
         timeOff.setReason(timeOffDTO.getReason());
     }
 
+    private TimeOffDTO mapToDTO(TimeOffIntervalDTO interval) {
+        return TimeOffDTO.builder()
+                .id(interval.id())
+                .startDateTime(interval.startDateTime())
+                .endDateTime(interval.endDateTime())
+                .reason(interval.reason())
+                .status(TimeOffStatus.APPROVED)
+                .approvedBy(interval.approvedBy())
+                .approvalNotes(interval.approvalNotes())
+                .createdAt(interval.createdAt())
+                .updatedAt(interval.updatedAt())
+                .employeeEmail(interval.employeeEmail())
+                .employeeName(interval.employeeName())
+                .build();
+    }
+
     private TimeOffDTO mapToDTO(TimeOff timeOff, EmployeeEntity employee) {
         return TimeOffDTO.builder()
                 .id(timeOff.getId())
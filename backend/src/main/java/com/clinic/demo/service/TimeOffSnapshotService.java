@@ -0,0 +1,174 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.calenderDTO.TimeOffIntervalDTO;
+import com.clinic.demo.repository.TimeOffRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Clinic-wide "who is out" index of approved time offs over the next few weeks.
+ * The index is rebuilt periodically and whenever a time off is approved, and swapped in as a whole,
+ * so readers never lock. Queries outside the indexed window fall back to the database.
+ */
+@Service
+public class TimeOffSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimeOffSnapshotService.class);
+
+    private final TimeOffRepository timeOffRepository;
+    private final Clock clock;
+
+    @Value("${timeoff.snapshot.horizon.weeks:8}")
+    private int horizonWeeks;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    @Autowired
+    public TimeOffSnapshotService(TimeOffRepository timeOffRepository) {
+        this(timeOffRepository, Clock.systemDefaultZone());
+    }
+
+    TimeOffSnapshotService(TimeOffRepository timeOffRepository, Clock clock) {
+        this.timeOffRepository = timeOffRepository;
+        this.clock = clock;
+    }
+
+    @Scheduled(fixedDelayString = "${timeoff.snapshot.refresh.interval.ms:300000}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTimeOffChanged(TimeOffChangedEvent event) {
+        refresh();
+    }
+
+    public synchronized void refresh() {
+        LocalDateTime windowStart = LocalDate.now(clock).atStartOfDay();
+        LocalDateTime windowEnd = windowStart.plusWeeks(horizonWeeks);
+        try {
+            List<TimeOffIntervalDTO> intervals = timeOffRepository.findApprovedIntervalsInRange(windowStart, windowEnd);
+            snapshot = Snapshot.build(windowStart, windowEnd, intervals);
+            logger.debug("Time off snapshot rebuilt with {} intervals up to {}", intervals.size(), windowEnd);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to rebuild time off snapshot, keeping the previous one: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Approved time offs that cover the given instant, ordered by (start, id)
+     */
+    public List<TimeOffIntervalDTO> getEmployeesOutAt(LocalDateTime instant) {
+        return getEmployeesOutDuring(instant, instant);
+    }
+
+    /**
+     * Approved time offs that overlap the given range, ordered by (start, id)
+     */
+    public List<TimeOffIntervalDTO> getEmployeesOutDuring(LocalDateTime from, LocalDateTime to) {
+        Snapshot current = snapshot;
+        if (!current.covers(from, to))
+            return timeOffRepository.findApprovedIntervalsInRange(from, to);
+
+        return current.all.overlapping(from, to);
+    }
+
+    public boolean isEmployeeOutDuring(UUID employeeId, LocalDateTime from, LocalDateTime to) {
+        Snapshot current = snapshot;
+        if (!current.covers(from, to))
+            return timeOffRepository.hasApprovedTimeOffInRange(employeeId, from, to);
+
+        IntervalIndex employeeIndex = current.byEmployee.get(employeeId);
+        return employeeIndex != null && employeeIndex.anyOverlapping(from, to);
+    }
+
+    public boolean isEmployeeOutOnDate(UUID employeeId, LocalDate date) {
+        return isEmployeeOutDuring(employeeId, date.atStartOfDay(), date.atTime(LocalTime.MAX));
+    }
+
+    private record Snapshot(LocalDateTime windowStart, LocalDateTime windowEnd,
+                            IntervalIndex all, Map<UUID, IntervalIndex> byEmployee) {
+
+        // Covers nothing, so every query goes to the database until the first refresh
+        static final Snapshot EMPTY = new Snapshot(LocalDateTime.MAX, LocalDateTime.MIN,
+                new IntervalIndex(List.of()), Map.of());
+
+        static Snapshot build(LocalDateTime windowStart, LocalDateTime windowEnd, List<TimeOffIntervalDTO> intervals) {
+            Map<UUID, List<TimeOffIntervalDTO>> grouped = new HashMap<>();
+            for (TimeOffIntervalDTO interval : intervals)
+                grouped.computeIfAbsent(interval.employeeId(), id -> new ArrayList<>()).add(interval);
+
+            Map<UUID, IntervalIndex> byEmployee = new HashMap<>();
+            grouped.forEach((employeeId, employeeIntervals) ->
+                    byEmployee.put(employeeId, new IntervalIndex(employeeIntervals)));
+
+            return new Snapshot(windowStart, windowEnd, new IntervalIndex(intervals), Map.copyOf(byEmployee));
+        }
+
+        boolean covers(LocalDateTime from, LocalDateTime to) {
+            return !from.isBefore(windowStart) && !to.isAfter(windowEnd);
+        }
+    }
+
+    /**
+     * Intervals sorted by start with a running maximum of end times, so an overlap scan can walk back
+     * from the last interval starting before the range and stop as soon as nothing earlier can reach it.
+     */
+    private static final class IntervalIndex {
+        private final TimeOffIntervalDTO[] intervals;
+        private final LocalDateTime[] maxEndUpTo;
+
+        IntervalIndex(List<TimeOffIntervalDTO> source) {
+            intervals = source.toArray(new TimeOffIntervalDTO[0]);
+            Arrays.sort(intervals, Comparator.comparing(TimeOffIntervalDTO::startDateTime)
+                    .thenComparing(TimeOffIntervalDTO::id));
+
+            maxEndUpTo = new LocalDateTime[intervals.length];
+            for (int i = 0; i < intervals.length; i++) {
+                LocalDateTime end = intervals[i].endDateTime();
+                maxEndUpTo[i] = i == 0 || end.isAfter(maxEndUpTo[i - 1]) ? end : maxEndUpTo[i - 1];
+            }
+        }
+
+        List<TimeOffIntervalDTO> overlapping(LocalDateTime from, LocalDateTime to) {
+            Deque<TimeOffIntervalDTO> result = new ArrayDeque<>();
+            for (int i = lastStartingAtOrBefore(to); i >= 0 && !maxEndUpTo[i].isBefore(from); i--) {
+                if (intervals[i].overlaps(from, to))
+                    result.addFirst(intervals[i]);
+            }
+            return List.copyOf(result);
+        }
+
+        boolean anyOverlapping(LocalDateTime from, LocalDateTime to) {
+            for (int i = lastStartingAtOrBefore(to); i >= 0 && !maxEndUpTo[i].isBefore(from); i--) {
+                if (intervals[i].overlaps(from, to))
+                    return true;
+            }
+            return false;
+        }
+
+        private int lastStartingAtOrBefore(LocalDateTime instant) {
+            int low = 0;
+            int high = intervals.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (intervals[mid].startDateTime().isAfter(instant))
+                    high = mid - 1;
+                else
+                    low = mid + 1;
+            }
+            return high;
+        }
+    }
+}
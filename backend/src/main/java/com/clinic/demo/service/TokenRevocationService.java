@@ -0,0 +1,127 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.models.entity.RevokedTokenEntity;
+import com.clinic.demo.repository.RevokedTokenRepository;
+import com.clinic.demo.utils.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rejects access tokens whose id ({@code jti}) or session ({@code sid}) has been revoked.
+ * <p>
+ * Revoked ids live in the {@code revoked_token} table until the tokens they cover have expired. Each node keeps
+ * an immutable snapshot of them: a Bloom filter answers the common "not revoked" case with a few bit probes and
+ * no allocation, and only its positives are confirmed against the exact set. The snapshot is rebuilt from the
+ * database every {@code security.jwt.revocation.sync.interval.ms}, and for revocations made here as soon as they
+ * commit.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final Duration accessTokenTtl;
+    private final double falsePositiveProbability;
+
+    private volatile Snapshot snapshot = Snapshot.of(List.of(), 0.01);
+    // Revoked here while a sync was reading the table, so possibly missing from its result
+    private Set<String> revokedDuringSync = new HashSet<>();
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  @Value("${security.jwt.token.ttl.minutes:15}") long accessTokenTtlMinutes,
+                                  @Value("${security.jwt.revocation.bloom.fpp:0.01}") double falsePositiveProbability) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.accessTokenTtl = Duration.ofMinutes(accessTokenTtlMinutes);
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    public boolean isRevoked(Jwt jwt) {
+        Snapshot current = snapshot;
+        if (current.isEmpty())
+            return false;
+        return current.contains(jwt.getId()) || current.contains(jwt.getClaimAsString("sid"));
+    }
+
+    /**
+     * Revokes every access token of a session. They are issued for at most one access token TTL after the
+     * session's refresh tokens are revoked, so the entry is kept that long.
+     */
+    @Transactional
+    public void revokeSession(String sessionId) {
+        revoke(sessionId, Instant.now().plus(accessTokenTtl));
+    }
+
+    private void revoke(String tokenId, Instant expiresAt) {
+        if (!revokedTokenRepository.existsByTokenId(tokenId))
+            revokedTokenRepository.save(new RevokedTokenEntity(tokenId, LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault())));
+
+        // Only once the row is committed: a revocation that rolls back must not block the token here either
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addLocally(List.of(tokenId));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addLocally(List.of(tokenId));
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwt.revocation.sync.interval.ms:30000}")
+    @Transactional
+    public void sync() {
+        synchronized (this) {
+            revokedDuringSync = new HashSet<>();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        revokedTokenRepository.deleteExpired(now);
+        replaceSnapshot(revokedTokenRepository.findActiveTokenIds(now));
+    }
+
+    private synchronized void addLocally(Collection<String> tokenIds) {
+        revokedDuringSync.addAll(tokenIds);
+        Set<String> ids = new HashSet<>(snapshot.tokenIds());
+        if (ids.addAll(tokenIds))
+            snapshot = Snapshot.of(ids, falsePositiveProbability);
+    }
+
+    private synchronized void replaceSnapshot(Collection<String> tokenIds) {
+        Set<String> ids = new HashSet<>(tokenIds);
+        ids.addAll(revokedDuringSync);
+        snapshot = Snapshot.of(ids, falsePositiveProbability);
+        log.debug("Token revocation list synced: {} ids", ids.size());
+    }
+
+    private record Snapshot(BloomFilter filter, Set<String> tokenIds) {
+
+        static Snapshot of(Collection<String> tokenIds, double falsePositiveProbability) {
+            BloomFilter filter = new BloomFilter(tokenIds.size(), falsePositiveProbability);
+            tokenIds.forEach(filter::add);
+            return new Snapshot(filter, Set.copyOf(tokenIds));
+        }
+
+        boolean isEmpty() {
+            return tokenIds.isEmpty();
+        }
+
+        boolean contains(String tokenId) {
+            return tokenId != null && filter.mightContain(tokenId) && tokenIds.contains(tokenId);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.clinic.demo.service;
 
-import com.clinic.demo.models.entity.RoleEntity;
+import com.clinic.demo.DTO.UserDetailsSnapshot;
 import com.clinic.demo.models.entity.user.BaseUserEntity;
+import com.clinic.demo.utils.PermissionAuthenticationToken;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.JwtClaimsSet;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
@@ -12,47 +14,66 @@ import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 @Service
 public class TokenService {
     private final JwtEncoder jwtEncoder;
     private final JwtDecoder jwtDecoder;
+    private final RolePermissionCache rolePermissionCache;
+
+    @Value("${security.jwt.token.ttl.minutes:15}")
+    private long tokenTtlMinutes;
 
     @Autowired
-    public TokenService(JwtEncoder jwtEncoder, JwtDecoder jwtDecoder) {
+    public TokenService(JwtEncoder jwtEncoder, JwtDecoder jwtDecoder, RolePermissionCache rolePermissionCache) {
         this.jwtEncoder = jwtEncoder;
         this.jwtDecoder = jwtDecoder;
+        this.rolePermissionCache = rolePermissionCache;
     }
 
     public String generateJWT(Authentication auth) {
-        BaseUserEntity user = (BaseUserEntity) auth.getPrincipal();
-        return generateJWT(user);
+        if (auth.getPrincipal() instanceof UserDetailsSnapshot user)
+            return generateJWT(user);
+        return generateJWT((BaseUserEntity) auth.getPrincipal());
     }
 
     public String generateJWT(BaseUserEntity user) {
-        return createTokenFromUser(user);
+        return createTokenFromUser(rolePermissionCache.principalFor(user), null);
+    }
+
+    public String generateJWT(UserDetailsSnapshot user) {
+        return createTokenFromUser(user, null);
+    }
+
+    /**
+     * Access token tied to a refresh token session, so revoking the session ({@code sid}) revokes it too.
+     */
+    public String generateJWT(UserDetailsSnapshot user, String sessionId) {
+        return createTokenFromUser(user, sessionId);
     }
 
-    private String createTokenFromUser(BaseUserEntity user) {
+    private String createTokenFromUser(UserDetailsSnapshot user, String sessionId) {
         Instant now = Instant.now();
 
-        String roles = user.getRoles().stream()
-                .map(RoleEntity::getName) // Assuming RoleEntity has getName() method
-                .collect(Collectors.joining(","));
+        String roles = String.join(",", user.getRoleNames());
 
-        JwtClaimsSet claims = JwtClaimsSet.builder()
+        JwtClaimsSet.Builder claims = JwtClaimsSet.builder()
+                .id(UUID.randomUUID().toString())
                 .issuer("clinic-app")
                 .issuedAt(now)
-                .expiresAt(now.plus(60, ChronoUnit.MINUTES))
+                .expiresAt(now.plus(tokenTtlMinutes, ChronoUnit.MINUTES))
                 .subject(user.getId().toString())
                 .claim("email", user.getEmail())
                 .claim("userType", user.getUserType().name())
                 .claim("firstName", user.getFirstName())
                 .claim("lastName", user.getLastName())
                 .claim("roles", roles)
-                .build();
+                .claim(PermissionAuthenticationToken.PERMISSIONS_CLAIM, user.getPermissions().encode())
+                .claim(PermissionAuthenticationToken.PERMISSIONS_VERSION_CLAIM, user.getPermissionsVersion());
+        if (sessionId != null)
+            claims.claim("sid", sessionId);
 
-        return jwtEncoder.encode(JwtEncoderParameters.from(claims)).getTokenValue();
+        return jwtEncoder.encode(JwtEncoderParameters.from(claims.build())).getTokenValue();
     }
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.UserDetailsSnapshot;
+import com.clinic.demo.utils.Ticker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-lived cache of authentication principals keyed by lower-cased email.
+ * Entries are dropped when a {@link UserDetailsChangedEvent} commits; the generation counter keeps a
+ * load that raced with such a change from putting its stale snapshot back.
+ */
+@Component
+public class UserDetailsCache {
+
+    private final Map<String, CachedUserDetails> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final Ticker ticker;
+
+    @Value("${security.user.details.cache.ttl.seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${security.user.details.cache.max.size:10000}")
+    private int maxSize;
+
+    public UserDetailsCache() {
+        this(Ticker.SYSTEM);
+    }
+
+    UserDetailsCache(Ticker ticker) {
+        this.ticker = ticker;
+    }
+
+    public UserDetailsSnapshot get(String email) {
+        CachedUserDetails cached = entries.get(email.toLowerCase());
+        if (cached == null)
+            return null;
+
+        if (cached.isExpired(ticker.nanoTime())) {
+            entries.remove(email.toLowerCase(), cached);
+            return null;
+        }
+        return cached.snapshot();
+    }
+
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    public void put(String email, UserDetailsSnapshot snapshot, long loadedAtGeneration) {
+        if (entries.size() >= maxSize) {
+            evictExpired();
+            if (entries.size() >= maxSize)
+                return;
+        }
+
+        long expiresAt = ticker.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds);
+        entries.put(email.toLowerCase(), new CachedUserDetails(snapshot, expiresAt));
+
+        // A change was committed while this snapshot was being loaded, so it may already be stale
+        if (generation.get() != loadedAtGeneration)
+            entries.remove(email.toLowerCase());
+    }
+
+    public void evict(String email) {
+        generation.incrementAndGet();
+        entries.remove(email.toLowerCase());
+    }
+
+    public void evictAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDetailsChanged(UserDetailsChangedEvent event) {
+        if (event.email() == null)
+            evictAll();
+        else
+            evict(event.email());
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long now = ticker.nanoTime();
+        entries.values().removeIf(cached -> cached.isExpired(now));
+    }
+
+    private record CachedUserDetails(UserDetailsSnapshot snapshot, long expiresAtNanos) {
+        boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
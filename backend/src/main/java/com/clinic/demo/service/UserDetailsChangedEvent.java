@@ -0,0 +1,12 @@
+package com.clinic.demo.service;
+
+/**
+ * Published when a user's password, roles, profile or account status changes, or when a role's
+ * permissions change. A null email means every cached user is affected.
+ */
+public record UserDetailsChangedEvent(String email) {
+
+    public static UserDetailsChangedEvent allUsers() {
+        return new UserDetailsChangedEvent(null);
+    }
+}
@@ -6,6 +6,7 @@ import com.clinic.demo.models.enums.PermissionEnum;
 import com.clinic.demo.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,6 +20,9 @@ public class
 UserRoleService {
 
     private final UserRepository userRepository;
+    private final RefreshTokenService refreshTokenService;
+    private final RolePermissionCache rolePermissionCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public void addRole(BaseUserEntity user, RoleEntity role) {
@@ -33,6 +37,8 @@ UserRoleService {
 
         user.addRole(role);
         userRepository.save(user);
+        refreshTokenService.revokeAllSessions(user.getId());
+        eventPublisher.publishEvent(new UserDetailsChangedEvent(user.getEmail()));
         log.info("Added role '{}' to user {}", role.getName(), user.getEmail());
     }
 
@@ -50,6 +56,8 @@ UserRoleService {
 
         user.removeRole(role);
         userRepository.save(user);
+        refreshTokenService.revokeAllSessions(user.getId());
+        eventPublisher.publishEvent(new UserDetailsChangedEvent(user.getEmail()));
         log.info("Removed role '{}' from user {}", role.getName(), user.getEmail());
     }
 
@@ -64,6 +72,8 @@ UserRoleService {
         user.getRoles().clear();
         user.getRoles().addAll(newRoles);
         userRepository.save(user);
+        refreshTokenService.revokeAllSessions(user.getId());
+        eventPublisher.publishEvent(new UserDetailsChangedEvent(user.getEmail()));
         log.info("Replaced roles for user {}", user.getEmail());
     }
 
@@ -77,6 +87,8 @@ UserRoleService {
                 user.addRole(role);
         }
         userRepository.save(user);
+        refreshTokenService.revokeAllSessions(user.getId());
+        eventPublisher.publishEvent(new UserDetailsChangedEvent(user.getEmail()));
         log.info("Added roles to user {}", user.getEmail());
     }
 
@@ -90,6 +102,8 @@ UserRoleService {
                 user.removeRole(role);
         }
         userRepository.save(user);
+        refreshTokenService.revokeAllSessions(user.getId());
+        eventPublisher.publishEvent(new UserDetailsChangedEvent(user.getEmail()));
         log.info("Removed roles from user {}", user.getEmail());
     }
 
@@ -97,19 +111,14 @@ UserRoleService {
         if (user == null || permission == null)
             return false;
 
-        return user.getRoles().stream()
-                .filter(RoleEntity::getActive)
-                .anyMatch(role -> role.hasPermission(permission));
+        return rolePermissionCache.maskFor(user.getRoles()).has(permission);
     }
 
     public Set<PermissionEnum> getUserPermissions(BaseUserEntity user) {
         if (user == null)
             return Set.of();
 
-        return user.getRoles().stream()
-                .filter(RoleEntity::getActive)
-                .flatMap(role -> role.getPermissions().stream())
-                .collect(Collectors.toSet());
+        return rolePermissionCache.maskFor(user.getRoles()).toEnumSet();
     }
 
     public boolean canAssignRole(BaseUserEntity user, RoleEntity role) {
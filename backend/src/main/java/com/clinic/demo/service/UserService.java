@@ -1,5 +1,6 @@
 package com.clinic.demo.service;
 
+import com.clinic.demo.DTO.UserAvatarDTO;
 import com.clinic.demo.DTO.UserUpdatePasswordDTO;
 import com.clinic.demo.DTO.userDTO.UserInfoDTO;
 import com.clinic.demo.Mapper.UserMapper;
@@ -16,6 +17,7 @@ import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -24,10 +26,12 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @AllArgsConstructor(onConstructor = @__(@Autowired))
@@ -40,6 +44,8 @@ public class UserService {
     private final UserRepository userRepository;
     private final AuthenticationService authenticationService;
     private final PasswordEncoder encoder;
+    private final RefreshTokenService refreshTokenService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<UserInfoDTO> findAllUsers() {
         List<BaseUserEntity> users = userRepository.findAll();
@@ -58,6 +64,27 @@ public class UserService {
         return typeCastUserToType(userOptional);
     }
 
+    /**
+     * Reads only the avatar path, without loading the user.
+     *
+     * @return the path, or null if the user has no avatar
+     */
+    public String findAvatarPathByEmail(String email) {
+        if (email == null || email.trim().isEmpty())
+            throw new IllegalArgumentException("Email cannot be null or empty");
+
+        String avatarPath = userRepository.findAvatarPathByEmail(email)
+                .orElseThrow(() -> new UserNotFoundException(email + " User not found"));
+        return avatarPath.isEmpty() ? null : avatarPath;
+    }
+
+    /**
+     * Reads only the avatar paths of the users with these ids or emails, in one query.
+     */
+    public List<UserAvatarDTO> findAvatarPaths(Collection<UUID> ids, Collection<String> emails) {
+        return userRepository.findAvatarPaths(ids, emails);
+    }
+
     public BaseUserEntity findByPhone(String phoneNumber) {
         if (phoneNumber == null || phoneNumber.trim().isEmpty()) {
             throw new IllegalArgumentException("Phone number cannot be null or empty");
@@ -85,6 +112,7 @@ public class UserService {
         try {
             updateProperties(user, updates);
             userRepository.save(user);
+            eventPublisher.publishEvent(new UserDetailsChangedEvent(userEmail));
             logger.info("Profile updated successfully for user: {}", userEmail);
         } catch (Exception e) {
             logger.error("Error updating user {}: {}", userEmail, e.getMessage(), e);
@@ -113,6 +141,8 @@ public class UserService {
 
         user.setPassword(encoder.encode(userUpdatePasswordDTO.newPassword()));
         userRepository.save(user);
+        refreshTokenService.revokeAllSessions(user.getId());
+        eventPublisher.publishEvent(new UserDetailsChangedEvent(authenticatedUserEmail));
 
         logger.info("Password updated successfully for user: {}", authenticatedUserEmail);
     }
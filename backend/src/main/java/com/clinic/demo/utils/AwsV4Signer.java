@@ -0,0 +1,145 @@
+package com.clinic.demo.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Signs requests to S3-compatible APIs with AWS Signature Version 4, in the {@code Authorization} header.
+ * Payloads are sent as {@code UNSIGNED-PAYLOAD} so bodies can be streamed without being read twice; TLS protects
+ * them in transit instead.
+ * <p>
+ * The URI must already be in canonical form: every path segment and query parameter encoded with
+ * {@link #encode}.
+ */
+public final class AwsV4Signer {
+
+    public static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String SIGNED_HEADERS = "host;x-amz-content-sha256;x-amz-date";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final String accessKey;
+    private final String secretKey;
+    private final String region;
+    private final String service;
+
+    public AwsV4Signer(String accessKey, String secretKey, String region, String service) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+        this.service = service;
+    }
+
+    /**
+     * @return the headers to add to the request
+     */
+    public Map<String, String> sign(String method, URI uri, Instant now) {
+        return sign(method, uri, now, UNSIGNED_PAYLOAD);
+    }
+
+    /**
+     * @param payloadHash hex SHA-256 of the body, or {@link #UNSIGNED_PAYLOAD}
+     * @return the headers to add to the request
+     */
+    public Map<String, String> sign(String method, URI uri, Instant now, String payloadHash) {
+        String amzDate = AMZ_DATE.format(now);
+        String date = amzDate.substring(0, 8);
+
+        String canonicalRequest = String.join("\n",
+                method,
+                uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath(),
+                canonicalQuery(uri.getRawQuery()),
+                "host:" + hostHeader(uri),
+                "x-amz-content-sha256:" + payloadHash,
+                "x-amz-date:" + amzDate,
+                "",
+                SIGNED_HEADERS,
+                payloadHash);
+
+        String scope = date + "/" + region + "/" + service + "/aws4_request";
+        String stringToSign = String.join("\n", ALGORITHM, amzDate, scope, sha256Hex(canonicalRequest));
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, service);
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+
+        return Map.of(
+                "x-amz-date", amzDate,
+                "x-amz-content-sha256", payloadHash,
+                "Authorization", ALGORITHM + " Credential=" + accessKey + "/" + scope
+                        + ", SignedHeaders=" + SIGNED_HEADERS + ", Signature=" + signature);
+    }
+
+    /**
+     * Percent-encodes everything but RFC 3986 unreserved characters, and also {@code /} when
+     * {@code keepSlashes} is set, as SigV4 expects of object keys.
+     */
+    public static String encode(String value, boolean keepSlashes) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (keepSlashes && c == '/'))
+                encoded.append(c);
+            else
+                encoded.append('%').append(HexFormat.of().withUpperCase().toHexDigits(b));
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * The Host header the JDK HTTP client sends, which omits the port when it is the scheme's default.
+     */
+    private static String hostHeader(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort = port == -1
+                || ("https".equalsIgnoreCase(uri.getScheme()) && port == 443)
+                || ("http".equalsIgnoreCase(uri.getScheme()) && port == 80);
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    private static String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty())
+            return "";
+        // Sorted by name, then value
+        return Arrays.stream(rawQuery.split("&"))
+                .map(parameter -> parameter.contains("=") ? parameter.split("=", 2) : new String[]{parameter, ""})
+                .sorted(Comparator.<String[], String>comparing(parameter -> parameter[0]).thenComparing(parameter -> parameter[1]))
+                .map(parameter -> parameter[0] + "=" + parameter[1])
+                .collect(Collectors.joining("&"));
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String value) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
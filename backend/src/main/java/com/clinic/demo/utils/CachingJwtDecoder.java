@@ -0,0 +1,116 @@
+package com.clinic.demo.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Remembers tokens that already passed signature and claim validation until they expire, so a client
+ * reusing its token across requests pays for the signature check only once.
+ * Entries are keyed by a SHA-256 of the raw token and the cache never grows beyond {@code maxSize}: once full,
+ * each new entry displaces the oldest one. Tokens are all issued with the same lifetime, so the oldest are also
+ * the first to expire, and making room costs O(1) rather than a scan of the cache on the request path.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+    private final int maxSize;
+    private final Map<String, Jwt> verifiedTokens = new ConcurrentHashMap<>();
+    // Every entry put in verifiedTokens, oldest first; may still hold entries since evicted, expired or replaced
+    private final Queue<CachedToken> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Counter hits;
+    private final Counter misses;
+
+    public CachingJwtDecoder(JwtDecoder delegate, int maxSize, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.hits = Counter.builder("jwt.decode.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("jwt.decode.cache").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gaugeMapSize("jwt.decode.cache.size", List.of(), verifiedTokens);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = hash(token);
+        Jwt cached = verifiedTokens.get(key);
+        if (cached != null) {
+            if (isUnexpired(cached, Instant.now())) {
+                hits.increment();
+                return cached;
+            }
+            verifiedTokens.remove(key, cached);
+        }
+
+        misses.increment();
+        Jwt jwt = delegate.decode(token); // throws for bad signatures or expired tokens, which are never cached
+        if (jwt.getExpiresAt() != null)
+            cache(key, jwt);
+        return jwt;
+    }
+
+    public void evict(String token) {
+        verifiedTokens.remove(hash(token));
+    }
+
+    public void evictIf(Predicate<Jwt> predicate) {
+        verifiedTokens.values().removeIf(predicate);
+    }
+
+    public void evictAll() {
+        verifiedTokens.clear();
+    }
+
+    public int size() {
+        return verifiedTokens.size();
+    }
+
+    private void cache(String key, Jwt jwt) {
+        if (verifiedTokens.putIfAbsent(key, jwt) != null)
+            return;
+        insertionOrder.add(new CachedToken(key, jwt));
+
+        // Every cached token has a queue entry, so bounding the queue bounds the cache; each entry is polled once
+        int size = queued.incrementAndGet();
+        while (size > maxSize) {
+            CachedToken oldest = insertionOrder.poll();
+            if (oldest == null)
+                break;
+            size = queued.decrementAndGet();
+            // Only if still the mapping it was queued for: a token evicted and cached again since has a newer
+            // Jwt, equal to this one, and its own queue entry
+            verifiedTokens.computeIfPresent(oldest.key(), (oldestKey, current) -> current == oldest.jwt() ? null : current);
+        }
+    }
+
+    private static boolean isUnexpired(Jwt jwt, Instant now) {
+        return jwt.getExpiresAt() != null && now.isBefore(jwt.getExpiresAt());
+    }
+
+    private record CachedToken(String key, Jwt jwt) {
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
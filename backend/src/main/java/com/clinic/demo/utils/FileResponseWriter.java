@@ -0,0 +1,225 @@
+package com.clinic.demo.utils;
+
+import com.clinic.demo.DTO.BlobMetadata;
+import com.clinic.demo.service.BlobStorage;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Writes a file or a blob as an HTTP response with conditional request and single byte-range support.
+ * <p>
+ * {@code If-None-Match} is answered before the file is even stat'ed, so a revalidation costs no I/O. Bodies are
+ * handed to Tomcat's sendfile when the connector supports it, so the kernel copies the file to the socket;
+ * otherwise they are copied with {@link FileChannel#transferTo}. Blobs in remote storage are streamed from it,
+ * fetching only the requested range, and bytes already in memory are written from their buffer.
+ */
+public final class FileResponseWriter {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final int COPY_BUFFER_SIZE = 16 * 1024;
+    private static final boolean TOMCAT_PRESENT =
+            ClassUtils.isPresent("org.apache.catalina.connector.CoyoteOutputStream", FileResponseWriter.class.getClassLoader());
+
+    private FileResponseWriter() {
+    }
+
+    /**
+     * @param etag strong validator for the file's content, without quotes
+     */
+    public static void write(HttpServletRequest request, HttpServletResponse response, Path file, String contentType,
+                             String etag, String cacheControl) throws IOException {
+        write(request, response, () -> {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new BlobMetadata(null, attributes.size(), attributes.lastModifiedTime().toInstant());
+        }, (start, end) -> sendFile(request, response, file, start, end), contentType, etag, cacheControl);
+    }
+
+    /**
+     * Writes a blob, with sendfile when the storage has it as a local file and streamed from the storage
+     * otherwise.
+     *
+     * @param etag strong validator for the blob's content, without quotes
+     * @throws NoSuchFileException if there is no blob under the key
+     */
+    public static void write(HttpServletRequest request, HttpServletResponse response, BlobStorage storage, String key,
+                             String contentType, String etag, String cacheControl) throws IOException {
+        Path file = storage.localPath(key);
+        if (file != null) {
+            write(request, response, file, contentType, etag, cacheControl);
+            return;
+        }
+
+        write(request, response, () -> {
+            BlobMetadata metadata = storage.stat(key);
+            if (metadata == null)
+                throw new NoSuchFileException(key);
+            return metadata;
+        }, (start, end) -> {
+            try (InputStream content = storage.open(key, start, end + 1 - start)) {
+                copy(content, response.getOutputStream(), end + 1 - start);
+            }
+        }, contentType, etag, cacheControl);
+    }
+
+    /**
+     * Writes bytes held in memory, such as a cached avatar, straight to the response channel.
+     *
+     * @param content positioned at the start of the file; it is not modified
+     * @param etag    strong validator for the content, without quotes
+     */
+    public static void write(HttpServletRequest request, HttpServletResponse response, ByteBuffer content,
+                             Instant lastModified, String contentType, String etag, String cacheControl) throws IOException {
+        write(request, response, () -> new BlobMetadata(null, content.remaining(), lastModified), (start, end) -> {
+            ByteBuffer body = content.duplicate();
+            body.position(body.position() + (int) start).limit(body.position() + (int) (end + 1 - start));
+            writeBuffer(response.getOutputStream(), body);
+        }, contentType, etag, cacheControl);
+    }
+
+    private static void write(HttpServletRequest request, HttpServletResponse response, MetadataSource metadata,
+                              BodyWriter body, String contentType, String etag, String cacheControl) throws IOException {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+
+        // If-None-Match takes precedence over If-Modified-Since, and needs nothing but the ETag
+        boolean hasEtagCondition = request.getHeader(HttpHeaders.IF_NONE_MATCH) != null;
+        if (hasEtagCondition && webRequest.checkNotModified(etag))
+            return;
+
+        BlobMetadata attributes = metadata.get();
+        long length = attributes.size();
+        long lastModified = attributes.lastModified().toEpochMilli();
+        if (!hasEtagCondition && webRequest.checkNotModified(etag, lastModified))
+            return;
+        if (!response.containsHeader(HttpHeaders.LAST_MODIFIED))
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = requestedRange(request, etag);
+        if (range != null) {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            if (start >= length || start > end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0)
+            return;
+
+        body.write(start, end);
+    }
+
+    private static void sendFile(HttpServletRequest request, HttpServletResponse response, Path file, long start,
+                                 long end) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat sends the file once the handler returns
+            request.setAttribute(SENDFILE_FILENAME, file.toRealPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long transferred = channel.transferTo(position, end + 1 - position, out);
+                // transferTo returns 0 at end of file, i.e. when the file was truncated since it was stat'ed
+                if (transferred == 0)
+                    throw new EOFException("File ended " + (end + 1 - position) + " bytes early");
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * Tomcat copies a buffer into its own output buffer directly, from a direct buffer without a heap copy;
+     * {@link Channels#newChannel} would go through a temporary byte array in chunks.
+     */
+    private static void writeBuffer(OutputStream out, ByteBuffer body) throws IOException {
+        if (TOMCAT_PRESENT && out instanceof CoyoteOutputStream coyote) {
+            coyote.write(body);
+            return;
+        }
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (body.hasRemaining())
+            channel.write(body);
+    }
+
+    private static void copy(InputStream in, OutputStream out, long count) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long remaining = count;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0)
+                throw new EOFException("Blob ended " + remaining + " bytes early");
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    /**
+     * @return the single range to send, or null to send the whole file: when there is no {@code Range}, it is
+     * malformed, {@code If-Range} no longer matches, or it asks for several ranges (avatars are small enough that
+     * a multipart/byteranges body isn't worth it)
+     */
+    private static HttpRange requestedRange(HttpServletRequest request, String etag) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null)
+            return null;
+
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals("\"" + etag + "\""))
+            return null;
+
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException malformed) {
+            return null;
+        }
+    }
+
+    private interface MetadataSource {
+        BlobMetadata get() throws IOException;
+    }
+
+    private interface BodyWriter {
+        void write(long start, long end) throws IOException;
+    }
+}
@@ -0,0 +1,56 @@
+package com.clinic.demo.utils;
+
+/**
+ * Image formats accepted for avatars, recognized by their leading magic bytes rather than the file name.
+ */
+public enum ImageFormat {
+    JPEG("jpg", "image/jpeg"),
+    PNG("png", "image/png"),
+    WEBP("webp", "image/webp");
+
+    /**
+     * Bytes needed to tell every format apart; WebP's signature ends at offset 12.
+     */
+    public static final int SIGNATURE_LENGTH = 12;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final String extension;
+    private final String contentType;
+
+    ImageFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @param header the first {@code length} bytes of the file
+     * @return the format, or null if the bytes match none of them
+     */
+    public static ImageFormat detect(byte[] header, int length) {
+        if (length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF)
+            return JPEG;
+        if (length >= PNG_SIGNATURE.length && startsWith(header, 0, PNG_SIGNATURE))
+            return PNG;
+        if (length >= SIGNATURE_LENGTH && startsWith(header, 0, new byte[]{'R', 'I', 'F', 'F'})
+                && startsWith(header, 8, new byte[]{'W', 'E', 'B', 'P'}))
+            return WEBP;
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, int offset, byte[] signature) {
+        for (int i = 0; i < signature.length; i++) {
+            if (header[offset + i] != signature[i])
+                return false;
+        }
+        return true;
+    }
+}
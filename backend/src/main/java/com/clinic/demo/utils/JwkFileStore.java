@@ -0,0 +1,111 @@
+package com.clinic.demo.utils;
+
+import com.nimbusds.jose.jwk.JWK;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps private signing JWKs as one {@code <kid>.json} file each in a directory that every node can read,
+ * e.g. a shared volume or a secret mounted into each container.
+ * Files are written to a temp file and moved into place, so readers never see a half-written key,
+ * and changes to the set of keys are serialized across nodes with a lock file.
+ */
+@Slf4j
+public class JwkFileStore {
+
+    private static final String KEY_SUFFIX = ".json";
+    private static final String LOCK_FILE = ".lock";
+
+    // File locks are held by the whole JVM, so stores in one process on the same directory queue up here first
+    private static final ConcurrentMap<Path, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+
+    public JwkFileStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public List<JWK> loadAll() {
+        List<JWK> keys = new ArrayList<>();
+        if (!Files.isDirectory(directory))
+            return keys;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + KEY_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    JWK key = JWK.parse(Files.readString(file, StandardCharsets.UTF_8));
+                    if (key.isPrivate() && key.getKeyID() != null && key.getAlgorithm() != null)
+                        keys.add(key);
+                    else
+                        log.warn("Ignoring JWT key file {}: not a private key with a key id and algorithm", file);
+                } catch (IOException | ParseException e) {
+                    log.warn("Ignoring unreadable JWT key file {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot list JWT keys in " + directory, e);
+        }
+        return keys;
+    }
+
+    public void save(JWK key) {
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, key.getKeyID(), ".tmp");
+            restrictToOwner(temp);
+            Files.writeString(temp, key.toJSONString(), StandardCharsets.UTF_8);
+            Files.move(temp, directory.resolve(key.getKeyID() + KEY_SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write JWT key " + key.getKeyID() + " to " + directory, e);
+        }
+    }
+
+    public void delete(String keyId) {
+        try {
+            Files.deleteIfExists(directory.resolve(keyId + KEY_SUFFIX));
+        } catch (IOException e) {
+            log.warn("Cannot delete retired JWT key {}: {}", keyId, e.getMessage());
+        }
+    }
+
+    /**
+     * Runs {@code action} while holding an exclusive lock on the key directory, so only one node
+     * generates or deletes keys at a time.
+     */
+    public <T> T withLock(Supplier<T> action) {
+        ReentrantLock localLock = LOCAL_LOCKS.computeIfAbsent(directory.toAbsolutePath().normalize(),
+                dir -> new ReentrantLock());
+        localLock.lock();
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                return action.get();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot lock JWT key directory " + directory, e);
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    private static void restrictToOwner(Path file) throws IOException {
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix"))
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+    }
+}
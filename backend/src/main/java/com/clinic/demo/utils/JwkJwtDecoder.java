@@ -0,0 +1,104 @@
+package com.clinic.demo.utils;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.Ed25519Verifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.MappedJwtClaimSetConverter;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Verifies tokens against public JWKs looked up by the {@code kid} header, caching one verifier per key id.
+ * Covers RSA, EC and Ed25519 keys; {@code NimbusJwtDecoder}'s key selection cannot handle Ed25519.
+ * Standard claim validation (exp, nbf) is applied after the signature check.
+ */
+public class JwkJwtDecoder implements JwtDecoder {
+
+    private final Function<String, JWK> keyLookup;
+    private final Map<String, JWSVerifier> verifiersByKeyId = new ConcurrentHashMap<>();
+    private final Converter<Map<String, Object>, Map<String, Object>> claimSetConverter =
+            MappedJwtClaimSetConverter.withDefaults(Collections.emptyMap());
+    private final OAuth2TokenValidator<Jwt> validator = JwtValidators.createDefault();
+
+    /**
+     * @param keyLookup public key for a key id, or {@code null} once the key is unknown or retired
+     */
+    public JwkJwtDecoder(Function<String, JWK> keyLookup) {
+        this.keyLookup = keyLookup;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        SignedJWT signedJwt;
+        Map<String, Object> claims;
+        try {
+            signedJwt = SignedJWT.parse(token);
+            claims = signedJwt.getJWTClaimsSet().getClaims();
+        } catch (ParseException e) {
+            throw new BadJwtException("Malformed token", e);
+        }
+
+        String keyId = signedJwt.getHeader().getKeyID();
+        JWK key = keyId == null ? null : keyLookup.apply(keyId);
+        if (key == null) {
+            if (keyId != null)
+                verifiersByKeyId.remove(keyId);
+            throw new BadJwtException("Unknown signing key");
+        }
+        if (!key.getAlgorithm().getName().equals(signedJwt.getHeader().getAlgorithm().getName()))
+            throw new BadJwtException("Unexpected signing algorithm " + signedJwt.getHeader().getAlgorithm());
+
+        JWSVerifier verifier = verifiersByKeyId.computeIfAbsent(keyId, id -> createVerifier(key));
+
+        try {
+            if (!signedJwt.verify(verifier))
+                throw new BadJwtException("Invalid signature");
+        } catch (JOSEException e) {
+            throw new BadJwtException("Failed to verify the token signature", e);
+        }
+
+        Jwt jwt = Jwt.withTokenValue(token)
+                .headers(headers -> headers.putAll(signedJwt.getHeader().toJSONObject()))
+                .claims(values -> values.putAll(claimSetConverter.convert(claims)))
+                .build();
+
+        OAuth2TokenValidatorResult result = validator.validate(jwt);
+        if (result.hasErrors())
+            throw new JwtValidationException("Invalid token claims", result.getErrors());
+        return jwt;
+    }
+
+    private static JWSVerifier createVerifier(JWK key) {
+        try {
+            if (key instanceof RSAKey rsaKey)
+                return new RSASSAVerifier(rsaKey);
+            if (key instanceof ECKey ecKey)
+                return new ECDSAVerifier(ecKey);
+            if (key instanceof OctetKeyPair octetKeyPair)
+                return new Ed25519Verifier(octetKeyPair.toPublicJWK());
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Cannot create verifier for key " + key.getKeyID(), e);
+        }
+        throw new IllegalArgumentException("Unsupported key type " + key.getKeyType());
+    }
+}
@@ -0,0 +1,91 @@
+package com.clinic.demo.utils;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.factories.DefaultJWSSignerFactory;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtEncodingException;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Signs tokens with whichever JWK {@code currentKey} returns, building the signer only when the key changes.
+ * Unlike {@code NimbusJwtEncoder}, which only selects RSA and EC keys, this also handles Ed25519 (OKP) keys.
+ */
+public class JwkJwtEncoder implements JwtEncoder {
+
+    private final Supplier<JWK> currentKey;
+    private volatile KeySigner keySigner;
+
+    public JwkJwtEncoder(Supplier<JWK> currentKey) {
+        this.currentKey = currentKey;
+    }
+
+    @Override
+    public Jwt encode(JwtEncoderParameters parameters) throws JwtEncodingException {
+        KeySigner signer = signerFor(currentKey.get());
+        if (parameters.getJwsHeader() != null && parameters.getJwsHeader().getAlgorithm() != null
+                && !signer.header().getAlgorithm().getName().equals(parameters.getJwsHeader().getAlgorithm().getName()))
+            throw new JwtEncodingException("Signing key only supports " + signer.header().getAlgorithm().getName());
+
+        JwtClaimsSet claims = parameters.getClaims();
+        SignedJWT signedJwt = new SignedJWT(signer.header(), toNimbusClaims(claims));
+        try {
+            signedJwt.sign(signer.signer());
+        } catch (JOSEException e) {
+            throw new JwtEncodingException("Failed to sign the JWT", e);
+        }
+
+        return Jwt.withTokenValue(signedJwt.serialize())
+                .headers(headers -> headers.putAll(signer.header().toJSONObject()))
+                .claims(values -> values.putAll(claims.getClaims()))
+                .build();
+    }
+
+    private KeySigner signerFor(JWK key) {
+        KeySigner cached = keySigner;
+        if (cached != null && cached.keyId().equals(key.getKeyID()))
+            return cached;
+
+        JWSAlgorithm algorithm = JwtSigningAlgorithm.fromName(key.getAlgorithm().getName()).getJwsAlgorithm();
+        JWSHeader header = new JWSHeader.Builder(algorithm)
+                .type(JOSEObjectType.JWT)
+                .keyID(key.getKeyID())
+                .build();
+        try {
+            cached = new KeySigner(key.getKeyID(), header, new DefaultJWSSignerFactory().createJWSSigner(key, algorithm));
+        } catch (JOSEException e) {
+            throw new JwtEncodingException("Cannot create " + algorithm.getName() + " signer for key " + key.getKeyID(), e);
+        }
+        keySigner = cached;
+        return cached;
+    }
+
+    private static JWTClaimsSet toNimbusClaims(JwtClaimsSet claims) {
+        JWTClaimsSet.Builder builder = new JWTClaimsSet.Builder();
+        for (Map.Entry<String, Object> claim : claims.getClaims().entrySet()) {
+            Object value = claim.getValue();
+            if (value instanceof Instant instant)
+                value = Date.from(instant);
+            else if (value instanceof java.net.URL url)
+                value = url.toExternalForm();
+            builder.claim(claim.getKey(), value);
+        }
+        return builder.build();
+    }
+
+    private record KeySigner(String keyId, JWSHeader header, JWSSigner signer) {
+    }
+}
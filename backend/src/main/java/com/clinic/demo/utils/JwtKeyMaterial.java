@@ -0,0 +1,182 @@
+package com.clinic.demo.utils;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Signing keys for issued JWTs, persisted in {@code security.jwt.keys.dir} so tokens survive restarts
+ * and every node that shares the directory signs and verifies with the same keys.
+ * <p>
+ * A new key for {@code security.jwt.algorithm} is generated every {@code security.jwt.keys.rotation.interval.hours}.
+ * It is published (JWKS, verification) straight away but only used for signing after an activation delay,
+ * which gives other nodes time to pick it up. A superseded key stays valid for verification until the tokens
+ * it signed have expired, after which its file is deleted.
+ */
+@Slf4j
+@Component
+public class JwtKeyMaterial {
+
+    private static final Duration MIN_RELOAD_INTERVAL = Duration.ofSeconds(5);
+
+    private final JwtSigningAlgorithm algorithm;
+    private final JwkFileStore store;
+    private final Clock clock;
+    private final Duration rotationInterval;
+    private final Duration activationDelay;
+    private final Duration retentionAfterSuperseded;
+
+    private volatile KeyRing keyRing;
+    private volatile Instant lastReload = Instant.EPOCH;
+
+    @Autowired
+    public JwtKeyMaterial(@Value("${security.jwt.algorithm:RS256}") String algorithm,
+                          @Value("${security.jwt.keys.dir:keys/jwt}") String keysDirectory,
+                          @Value("${security.jwt.keys.rotation.interval.hours:168}") long rotationIntervalHours,
+                          @Value("${security.jwt.keys.activation.delay.seconds:120}") long activationDelaySeconds,
+                          @Value("${security.jwt.token.ttl.minutes:15}") long tokenTtlMinutes) {
+        this(algorithm, keysDirectory, rotationIntervalHours, activationDelaySeconds, tokenTtlMinutes, Clock.systemUTC());
+    }
+
+    JwtKeyMaterial(String algorithm, String keysDirectory, long rotationIntervalHours,
+                   long activationDelaySeconds, long tokenTtlMinutes, Clock clock) {
+        this.algorithm = JwtSigningAlgorithm.fromName(algorithm);
+        this.store = new JwkFileStore(Path.of(keysDirectory));
+        this.clock = clock;
+        this.rotationInterval = Duration.ofHours(rotationIntervalHours);
+        this.activationDelay = Duration.ofSeconds(activationDelaySeconds);
+        // Tokens signed just before the switch live for one TTL; allow for clock skew between nodes on top
+        this.retentionAfterSuperseded = Duration.ofMinutes(tokenTtlMinutes).plus(activationDelay);
+
+        reload();
+        if (keyRing.signingKey() == null || needsRotation(keyRing, clock.instant()))
+            rotate();
+    }
+
+    public JWK getSigningKey() {
+        return keyRing.signingKey();
+    }
+
+    /**
+     * Public key for {@code keyId}, re-reading the key directory (at most every few seconds) when the id is
+     * unknown, in case another node has just rotated.
+     */
+    public JWK findVerificationKey(String keyId) {
+        JWK key = keyRing.verificationKeys().get(keyId);
+        if (key == null && clock.instant().isAfter(lastReload.plus(MIN_RELOAD_INTERVAL))) {
+            reload();
+            key = keyRing.verificationKeys().get(keyId);
+        }
+        return key;
+    }
+
+    public JWKSet getPublicJwkSet() {
+        return keyRing.publicJwkSet();
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwt.keys.refresh.interval.ms:60000}")
+    public void refresh() {
+        reload();
+        Instant now = clock.instant();
+        if (needsRotation(keyRing, now) || !retiredKeyIds(keyRing.allKeys(), now).isEmpty())
+            rotate();
+    }
+
+    /**
+     * Generates a new key if one is due and deletes retired ones, holding the directory lock and re-reading
+     * the directory first so two nodes never rotate at once.
+     */
+    private synchronized void rotate() {
+        store.withLock(() -> {
+            Instant now = clock.instant();
+            List<JWK> keys = store.loadAll();
+            KeyRing current = KeyRing.of(keys, List.of(), now);
+
+            if (current.signingKey() == null || needsRotation(current, now)) {
+                // Nothing can sign yet, so there is nobody to wait for
+                Instant activatesAt = current.signingKey() == null ? now : now.plus(activationDelay);
+                JWK key = KeyGeneratorUtility.generateSigningKey(algorithm, now, activatesAt);
+                store.save(key);
+                keys.add(key);
+                log.info("Generated {} JWT signing key {} (active from {})", algorithm.getName(), key.getKeyID(), activatesAt);
+            }
+
+            for (String keyId : retiredKeyIds(keys, now)) {
+                store.delete(keyId);
+                log.info("Deleted retired JWT signing key {}", keyId);
+            }
+            return null;
+        });
+        reload();
+    }
+
+    private void reload() {
+        Instant now = clock.instant();
+        List<JWK> keys = store.loadAll();
+        keyRing = KeyRing.of(keys, retiredKeyIds(keys, now), now);
+        lastReload = now;
+    }
+
+    private boolean needsRotation(KeyRing ring, Instant now) {
+        JWK newest = ring.newestKey();
+        return newest == null
+                || !algorithm.getName().equals(newest.getAlgorithm().getName())
+                || issuedAt(newest).plus(rotationInterval).isBefore(now);
+    }
+
+    /**
+     * Keys whose successor has been signing for longer than any token lives.
+     */
+    private List<String> retiredKeyIds(List<JWK> keys, Instant now) {
+        List<JWK> byActivation = new ArrayList<>(keys);
+        byActivation.sort(Comparator.comparing(JwtKeyMaterial::activatesAt));
+
+        List<String> retired = new ArrayList<>();
+        for (int i = 0; i < byActivation.size() - 1; i++) {
+            Instant supersededAt = activatesAt(byActivation.get(i + 1));
+            if (supersededAt.plus(retentionAfterSuperseded).isBefore(now))
+                retired.add(byActivation.get(i).getKeyID());
+        }
+        return retired;
+    }
+
+    private static Instant issuedAt(JWK key) {
+        return key.getIssueTime() != null ? key.getIssueTime().toInstant() : Instant.EPOCH;
+    }
+
+    private static Instant activatesAt(JWK key) {
+        return key.getNotBeforeTime() != null ? key.getNotBeforeTime().toInstant() : issuedAt(key);
+    }
+
+    private record KeyRing(JWK signingKey, JWK newestKey, List<JWK> allKeys,
+                           Map<String, JWK> verificationKeys, JWKSet publicJwkSet) {
+
+        static KeyRing of(List<JWK> keys, List<String> retiredKeyIds, Instant now) {
+            List<JWK> byActivation = new ArrayList<>(keys);
+            byActivation.sort(Comparator.comparing(JwtKeyMaterial::activatesAt));
+
+            JWK signingKey = null;
+            Map<String, JWK> verificationKeys = new HashMap<>();
+            for (JWK key : byActivation) {
+                if (!activatesAt(key).isAfter(now))
+                    signingKey = key;
+                if (!retiredKeyIds.contains(key.getKeyID()))
+                    verificationKeys.put(key.getKeyID(), key.toPublicJWK());
+            }
+
+            JWK newestKey = byActivation.isEmpty() ? null : byActivation.getLast();
+            return new KeyRing(signingKey, newestKey, List.copyOf(byActivation), Map.copyOf(verificationKeys),
+                    new JWKSet(new ArrayList<>(verificationKeys.values())));
+        }
+    }
+}
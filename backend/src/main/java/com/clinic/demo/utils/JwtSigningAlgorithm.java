@@ -0,0 +1,34 @@
+package com.clinic.demo.utils;
+
+import com.nimbusds.jose.JWSAlgorithm;
+
+/**
+ * JWT signing algorithms the application can issue and verify tokens with.
+ */
+public enum JwtSigningAlgorithm {
+    RS256(JWSAlgorithm.RS256),  // RSA-2048 with SHA-256
+    ES256(JWSAlgorithm.ES256),  // ECDSA on P-256 with SHA-256
+    EDDSA(JWSAlgorithm.EdDSA);  // Ed25519
+
+    private final JWSAlgorithm jwsAlgorithm;
+
+    JwtSigningAlgorithm(JWSAlgorithm jwsAlgorithm) {
+        this.jwsAlgorithm = jwsAlgorithm;
+    }
+
+    public JWSAlgorithm getJwsAlgorithm() {
+        return jwsAlgorithm;
+    }
+
+    public String getName() {
+        return jwsAlgorithm.getName();
+    }
+
+    public static JwtSigningAlgorithm fromName(String name) {
+        for (JwtSigningAlgorithm algorithm : values()) {
+            if (algorithm.getName().equalsIgnoreCase(name) || algorithm.name().equalsIgnoreCase(name))
+                return algorithm;
+        }
+        throw new IllegalArgumentException("Unsupported JWT signing algorithm: " + name);
+    }
+}
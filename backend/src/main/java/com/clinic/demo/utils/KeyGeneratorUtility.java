@@ -1,24 +1,36 @@
 package com.clinic.demo.utils;
 
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.JWKGenerator;
+import com.nimbusds.jose.jwk.gen.OctetKeyPairGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
 
-public class KeyGeneratorUtility {
-     public static KeyPair generateRSAKey() {
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
 
-         KeyPair keyPair;
+public class KeyGeneratorUtility {
+     public static JWK generateSigningKey(JwtSigningAlgorithm algorithm, Instant issuedAt, Instant activatesAt) {
+         JWKGenerator<? extends JWK> generator = switch (algorithm) {
+             case RS256 -> new RSAKeyGenerator(2048);
+             case ES256 -> new ECKeyGenerator(Curve.P_256);
+             case EDDSA -> new OctetKeyPairGenerator(Curve.Ed25519);
+         };
 
          try {
-             KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-             keyPairGenerator.initialize(2048);
-             keyPair = keyPairGenerator.generateKeyPair();
-         } catch (NoSuchAlgorithmException e) {
-             throw new RuntimeException("Error generating RSA key pair. Algorithm not found.", e);
-         }
-         catch (Exception e) {
-             throw new RuntimeException("Error generating RSA key pair.", e);
+             return generator
+                     .keyID(UUID.randomUUID().toString())
+                     .keyUse(KeyUse.SIGNATURE)
+                     .algorithm(algorithm.getJwsAlgorithm())
+                     .issueTime(Date.from(issuedAt))
+                     .notBeforeTime(Date.from(activatesAt))
+                     .generate();
+         } catch (JOSEException e) {
+             throw new RuntimeException("Error generating " + algorithm.getName() + " signing key.", e);
          }
-         return keyPair;
      }
 }
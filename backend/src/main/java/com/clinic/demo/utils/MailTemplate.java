@@ -0,0 +1,103 @@
+package com.clinic.demo.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template compiled once into alternating literal segments and {@code {{name}}} placeholders, so rendering is
+ * a single pass of appends with no parsing or format-string interpretation. {@code {{{name}}}} inserts its value
+ * unescaped, for markup rendered elsewhere.
+ */
+public final class MailTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    private static final String RAW_OPEN = "{{{";
+    private static final String RAW_CLOSE = "}}}";
+
+    // literals.length == placeholders.length + 1; placeholder i sits between literal i and literal i + 1
+    private final String[] literals;
+    private final String[] placeholders;
+    private final boolean[] raw;
+    private final boolean escapeHtml;
+    private final int literalLength;
+
+    private MailTemplate(String[] literals, String[] placeholders, boolean[] raw, boolean escapeHtml) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+        this.raw = raw;
+        this.escapeHtml = escapeHtml;
+        int length = 0;
+        for (String literal : literals)
+            length += literal.length();
+        this.literalLength = length;
+    }
+
+    /**
+     * @param escapeHtml whether placeholder values are HTML-escaped; literal text is always copied as is
+     */
+    public static MailTemplate compile(String name, String source, boolean escapeHtml) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        List<Boolean> raw = new ArrayList<>();
+
+        int position = 0;
+        int open;
+        while ((open = source.indexOf(OPEN, position)) >= 0) {
+            boolean unescaped = source.startsWith(RAW_OPEN, open);
+            String openToken = unescaped ? RAW_OPEN : OPEN;
+            String closeToken = unescaped ? RAW_CLOSE : CLOSE;
+            int close = source.indexOf(closeToken, open + openToken.length());
+            if (close < 0)
+                throw new IllegalStateException("Unterminated placeholder in mail template " + name + " at offset " + open);
+            String placeholder = source.substring(open + openToken.length(), close).trim();
+            if (placeholder.isEmpty())
+                throw new IllegalStateException("Empty placeholder in mail template " + name + " at offset " + open);
+
+            literals.add(source.substring(position, open));
+            placeholders.add(placeholder);
+            raw.add(unescaped);
+            position = close + closeToken.length();
+        }
+        literals.add(source.substring(position));
+
+        boolean[] rawFlags = new boolean[raw.size()];
+        for (int i = 0; i < rawFlags.length; i++)
+            rawFlags[i] = raw.get(i);
+        return new MailTemplate(literals.toArray(String[]::new), placeholders.toArray(String[]::new), rawFlags, escapeHtml);
+    }
+
+    /**
+     * Appends the rendered template to {@code out}. A placeholder without a value is an error rather than
+     * silently rendering as empty.
+     */
+    public void renderTo(StringBuilder out, Map<String, ?> values) {
+        out.ensureCapacity(out.length() + literalLength + placeholders.length * 16);
+        out.append(literals[0]);
+        for (int i = 0; i < placeholders.length; i++) {
+            Object value = values.get(placeholders[i]);
+            if (value == null)
+                throw new IllegalArgumentException("No value for placeholder " + placeholders[i]);
+            if (escapeHtml && !raw[i])
+                appendEscaped(out, value.toString());
+            else
+                out.append(value);
+            out.append(literals[i + 1]);
+        }
+    }
+
+    private static void appendEscaped(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.clinic.demo.utils;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Benchmarks Argon2 on the current host to pick the highest iteration count that still hashes within a latency
+ * target. The result never exceeds the given maximum, which is the configured cost, so calibration can only make
+ * hashing cheaper than configured.
+ * <p>
+ * bcrypt is not calibrated: each strength step doubles its cost, and the usual strength of 10 is also the
+ * lowest one worth using, which leaves nothing to choose from.
+ */
+public class PasswordHashCalibrator {
+
+    public static final int ARGON2_SALT_LENGTH = 16;
+    public static final int ARGON2_HASH_LENGTH = 32;
+
+    private static final String SAMPLE_PASSWORD = "Calibration#Passw0rd";
+    private static final int SAMPLES = 3;
+
+    public static int calibrateArgon2Iterations(long targetMillis, int memoryKib, int parallelism,
+                                                int minIterations, int maxIterations) {
+        return calibrateIterations(targetMillis, minIterations, maxIterations,
+                iterations -> medianEncodeMillis(argon2(memoryKib, parallelism, iterations)));
+    }
+
+    /**
+     * @param encodeMillis how long hashing takes with that many iterations
+     */
+    static int calibrateIterations(long targetMillis, int minIterations, int maxIterations, IntToLongFunction encodeMillis) {
+        // Argon2 cost is linear in the iteration count, so extrapolate from the cheapest setting and verify
+        long baseMillis = Math.max(1, encodeMillis.applyAsLong(minIterations));
+        int iterations = (int) Math.min(maxIterations, Math.max(minIterations, targetMillis * minIterations / baseMillis));
+
+        while (iterations > minIterations && encodeMillis.applyAsLong(iterations) > targetMillis)
+            iterations--;
+
+        return iterations;
+    }
+
+    public static Argon2PasswordEncoder argon2(int memoryKib, int parallelism, int iterations) {
+        return new Argon2PasswordEncoder(ARGON2_SALT_LENGTH, ARGON2_HASH_LENGTH, parallelism, memoryKib, iterations);
+    }
+
+    private static long medianEncodeMillis(PasswordEncoder encoder) {
+        encoder.encode(SAMPLE_PASSWORD); // warm up
+
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            samples[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+}
@@ -0,0 +1,30 @@
+package com.clinic.demo.utils;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+/**
+ * JWT authentication carrying the permission mask decoded from the token's {@code perms} claim, so
+ * authorization checks are bit tests with no database or entity access. The {@code pv} claim records the
+ * version of the role permission table the mask was built from; see {@code RolePermissionCache#isStale}.
+ */
+public class PermissionAuthenticationToken extends JwtAuthenticationToken {
+
+    public static final String PERMISSIONS_CLAIM = "perms";
+    public static final String PERMISSIONS_VERSION_CLAIM = "pv";
+
+    private final PermissionMask permissions;
+
+    public PermissionAuthenticationToken(Jwt jwt, PermissionMask permissions) {
+        super(jwt, permissions.getAuthorities());
+        this.permissions = permissions;
+    }
+
+    public static PermissionAuthenticationToken from(Jwt jwt) {
+        return new PermissionAuthenticationToken(jwt, PermissionMask.decode(jwt.getClaimAsString(PERMISSIONS_CLAIM)));
+    }
+
+    public PermissionMask getPermissions() {
+        return permissions;
+    }
+}
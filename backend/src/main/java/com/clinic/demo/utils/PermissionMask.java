@@ -0,0 +1,150 @@
+package com.clinic.demo.utils;
+
+import com.clinic.demo.models.entity.RoleEntity;
+import com.clinic.demo.models.enums.PermissionEnum;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable set of permissions stored as a bitmask indexed by {@link PermissionEnum#ordinal()}.
+ * Checks are a single bit test; {@link #encode()} gives the compact form carried in the JWT {@code perms} claim.
+ * <p>
+ * The encoding depends on the enum's declaration order, so new permissions must be appended at the end.
+ */
+public final class PermissionMask {
+
+    private static final PermissionEnum[] PERMISSIONS = PermissionEnum.values();
+    private static final int WORDS = (PERMISSIONS.length + 63) >>> 6;
+    public static final PermissionMask EMPTY = new PermissionMask(new long[WORDS]);
+
+    // Few distinct masks exist (one per role combination), so their authority sets are built once and shared
+    private static final Map<PermissionMask, Set<GrantedAuthority>> AUTHORITIES = new ConcurrentHashMap<>();
+
+    private final long[] words;
+
+    private PermissionMask(long[] words) {
+        this.words = words;
+    }
+
+    public static PermissionMask of(Collection<PermissionEnum> permissions) {
+        long[] words = new long[WORDS];
+        for (PermissionEnum permission : permissions)
+            words[permission.ordinal() >>> 6] |= 1L << permission.ordinal();
+        return new PermissionMask(words);
+    }
+
+    /**
+     * Union of the permissions of the active roles.
+     */
+    public static PermissionMask ofRoles(Collection<RoleEntity> roles) {
+        long[] words = new long[WORDS];
+        for (RoleEntity role : roles) {
+            if (!Boolean.TRUE.equals(role.getActive()) || role.getPermissions() == null)
+                continue;
+            for (PermissionEnum permission : role.getPermissions())
+                words[permission.ordinal() >>> 6] |= 1L << permission.ordinal();
+        }
+        return new PermissionMask(words);
+    }
+
+    /**
+     * Parses the output of {@link #encode()}; anything malformed yields {@link #EMPTY}.
+     */
+    public static PermissionMask decode(String encoded) {
+        if (encoded == null || encoded.isEmpty())
+            return EMPTY;
+        String[] parts = encoded.split("\\.");
+        if (parts.length != WORDS)
+            return EMPTY;
+
+        long[] words = new long[WORDS];
+        try {
+            for (int i = 0; i < WORDS; i++)
+                words[i] = Long.parseUnsignedLong(parts[i], 16);
+        } catch (NumberFormatException e) {
+            return EMPTY;
+        }
+        return new PermissionMask(words);
+    }
+
+    public String encode() {
+        StringJoiner joiner = new StringJoiner(".");
+        for (long word : words)
+            joiner.add(Long.toHexString(word));
+        return joiner.toString();
+    }
+
+    public boolean has(PermissionEnum permission) {
+        return permission != null && (words[permission.ordinal() >>> 6] & (1L << permission.ordinal())) != 0;
+    }
+
+    public boolean hasAny(PermissionEnum... permissions) {
+        for (PermissionEnum permission : permissions) {
+            if (has(permission))
+                return true;
+        }
+        return false;
+    }
+
+    public boolean hasAll(PermissionEnum... permissions) {
+        for (PermissionEnum permission : permissions) {
+            if (!has(permission))
+                return false;
+        }
+        return true;
+    }
+
+    public PermissionMask or(PermissionMask other) {
+        long[] union = words.clone();
+        for (int i = 0; i < WORDS; i++)
+            union[i] |= other.words[i];
+        return new PermissionMask(union);
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0)
+                return false;
+        }
+        return true;
+    }
+
+    public Set<PermissionEnum> toEnumSet() {
+        EnumSet<PermissionEnum> permissions = EnumSet.noneOf(PermissionEnum.class);
+        for (PermissionEnum permission : PERMISSIONS) {
+            if (has(permission))
+                permissions.add(permission);
+        }
+        return permissions;
+    }
+
+    /**
+     * {@code ROLE_<PERMISSION>} authorities, as {@code BaseUserEntity#getAuthorities} has always exposed them.
+     */
+    public Set<GrantedAuthority> getAuthorities() {
+        return AUTHORITIES.computeIfAbsent(this, mask -> {
+            Set<GrantedAuthority> authorities = new HashSet<>();
+            for (PermissionEnum permission : mask.toEnumSet())
+                authorities.add(new SimpleGrantedAuthority("ROLE_" + permission.name()));
+            return Set.copyOf(authorities);
+        });
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof PermissionMask other && Arrays.equals(words, other.words));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        return toEnumSet().toString();
+    }
+}
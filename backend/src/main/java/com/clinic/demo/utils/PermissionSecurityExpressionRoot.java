@@ -0,0 +1,94 @@
+package com.clinic.demo.utils;
+
+import com.clinic.demo.DTO.UserDetailsSnapshot;
+import com.clinic.demo.models.enums.PermissionEnum;
+import org.springframework.security.access.expression.SecurityExpressionRoot;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.core.Authentication;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Expression root for {@code @PreAuthorize} that adds permission checks answered from the caller's
+ * {@link PermissionMask}, e.g. {@code @PreAuthorize("hasPermission('PATIENT_READ')")} or
+ * {@code @PreAuthorize("hasAnyPermission('APPOINTMENT_UPDATE', 'APPOINTMENT_DELETE')")}.
+ * Permissions are named by their {@link PermissionEnum} constant; a name that matches none fails the check.
+ */
+public class PermissionSecurityExpressionRoot extends SecurityExpressionRoot implements MethodSecurityExpressionOperations {
+
+    // Unlike valueOf, a misspelled name in an expression denies access instead of failing the request with a 400
+    private static final Map<String, PermissionEnum> PERMISSIONS_BY_NAME = Arrays.stream(PermissionEnum.values())
+            .collect(Collectors.toUnmodifiableMap(PermissionEnum::name, Function.identity()));
+
+    private Object filterObject;
+    private Object returnObject;
+    private Object target;
+
+    public PermissionSecurityExpressionRoot(Supplier<Authentication> authentication) {
+        super(authentication);
+    }
+
+    public boolean hasPermission(String permission) {
+        return getPermissions().has(PERMISSIONS_BY_NAME.get(permission));
+    }
+
+    public boolean hasAnyPermission(String... permissions) {
+        PermissionMask mask = getPermissions();
+        for (String permission : permissions) {
+            if (mask.has(PERMISSIONS_BY_NAME.get(permission)))
+                return true;
+        }
+        return false;
+    }
+
+    public boolean hasAllPermissions(String... permissions) {
+        PermissionMask mask = getPermissions();
+        for (String permission : permissions) {
+            if (!mask.has(PERMISSIONS_BY_NAME.get(permission)))
+                return false;
+        }
+        return true;
+    }
+
+    private PermissionMask getPermissions() {
+        Authentication authentication = getAuthentication();
+        if (authentication instanceof PermissionAuthenticationToken token)
+            return token.getPermissions();
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetailsSnapshot user)
+            return user.getPermissions();
+        return PermissionMask.EMPTY;
+    }
+
+    @Override
+    public void setFilterObject(Object filterObject) {
+        this.filterObject = filterObject;
+    }
+
+    @Override
+    public Object getFilterObject() {
+        return filterObject;
+    }
+
+    @Override
+    public void setReturnObject(Object returnObject) {
+        this.returnObject = returnObject;
+    }
+
+    @Override
+    public Object getReturnObject() {
+        return returnObject;
+    }
+
+    public void setThis(Object target) {
+        this.target = target;
+    }
+
+    @Override
+    public Object getThis() {
+        return target;
+    }
+}
@@ -0,0 +1,96 @@
+package com.clinic.demo.utils;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Keeps up to {@code size} SMTP connections open between messages, so a burst of mail pays for the TCP, TLS
+ * and AUTH handshakes once per connection instead of once per message as {@link JavaMailSenderImpl#send} does.
+ * Callers block while all connections are busy, which also caps how many messages are in flight.
+ */
+@Slf4j
+public class SmtpTransportPool implements DisposableBean {
+
+    private final JavaMailSenderImpl mailSender;
+    private final long maxIdleNanos;
+    private final Semaphore permits;
+    private final BlockingQueue<PooledTransport> idle = new LinkedBlockingQueue<>();
+
+    public SmtpTransportPool(JavaMailSenderImpl mailSender, int size, Duration maxIdle) {
+        this.mailSender = mailSender;
+        this.maxIdleNanos = maxIdle.toNanos();
+        this.permits = new Semaphore(size, true);
+    }
+
+    public void send(MimeMessage message) throws MessagingException, InterruptedException {
+        permits.acquire();
+        try {
+            Transport transport = borrow();
+            try {
+                if (message.getSentDate() == null)
+                    message.setSentDate(new Date());
+                message.saveChanges();
+                transport.sendMessage(message, message.getAllRecipients());
+            } finally {
+                // A rejected recipient leaves the connection usable; a dropped one does not
+                if (transport.isConnected())
+                    idle.offer(new PooledTransport(transport, System.nanoTime()));
+                else
+                    closeQuietly(transport);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int idleConnections() {
+        return idle.size();
+    }
+
+    @Override
+    public void destroy() {
+        PooledTransport pooled;
+        while ((pooled = idle.poll()) != null)
+            closeQuietly(pooled.transport());
+    }
+
+    private Transport borrow() throws MessagingException {
+        PooledTransport pooled;
+        while ((pooled = idle.poll()) != null) {
+            // Servers drop idle sessions, so long-idle connections are replaced instead of reused
+            if (System.nanoTime() - pooled.lastUsedNanos() < maxIdleNanos && pooled.transport().isConnected())
+                return pooled.transport();
+            closeQuietly(pooled.transport());
+        }
+
+        Session session = mailSender.getSession();
+        String protocol = mailSender.getProtocol() != null
+                ? mailSender.getProtocol()
+                : session.getProperty("mail.transport.protocol");
+        Transport transport = session.getTransport(protocol != null ? protocol : JavaMailSenderImpl.DEFAULT_PROTOCOL);
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        return transport;
+    }
+
+    private static void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Failed to close SMTP connection", e);
+        }
+    }
+
+    private record PooledTransport(Transport transport, long lastUsedNanos) {
+    }
+}
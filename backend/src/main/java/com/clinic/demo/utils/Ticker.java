@@ -0,0 +1,26 @@
+package com.clinic.demo.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Monotonic time and sleeping, {@link System#nanoTime} and {@link Thread#sleep} unless a test substitutes its
+ * own to control how time passes.
+ */
+public interface Ticker {
+
+    Ticker SYSTEM = new Ticker() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleep(long nanos) throws InterruptedException {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    };
+
+    long nanoTime();
+
+    void sleep(long nanos) throws InterruptedException;
+}
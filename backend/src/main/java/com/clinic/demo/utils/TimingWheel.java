@@ -0,0 +1,142 @@
+package com.clinic.demo.utils;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: {@value #LEVELS} levels of {@value #SLOTS} slots, each level's slot spanning a
+ * full rotation of the level below. A timeout is linked into the one slot its deadline falls in, so scheduling
+ * and cancelling are O(1) and memory is one small node per timeout no matter how far out it is. Timeouts move
+ * down a level only when time reaches their slot.
+ * <p>
+ * Deadlines are rounded up to whole ticks, so a timeout never expires early. Not thread-safe; callers synchronize.
+ */
+public final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 5;
+
+    private final long tickMillis;
+    private final long startMillis;
+    // heads[level * SLOTS + slot] is the first timeout of that slot's doubly linked list
+    private final Timeout<T>[] heads;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.startMillis = nowMillis;
+        this.heads = (Timeout<T>[]) new Timeout[LEVELS * SLOTS];
+    }
+
+    public static final class Timeout<T> {
+        private final T payload;
+        private final long deadlineTick;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private int bucket = -1;
+
+        private Timeout(T payload, long deadlineTick) {
+            this.payload = payload;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T payload() {
+            return payload;
+        }
+
+        /** Whether the timeout is still waiting, i.e. neither expired nor cancelled. */
+        public boolean isPending() {
+            return bucket >= 0;
+        }
+    }
+
+    /**
+     * Schedules {@code payload} to expire at {@code deadlineMillis}. A deadline already in the past expires
+     * on the next {@link #advance}.
+     */
+    public Timeout<T> schedule(T payload, long deadlineMillis) {
+        long deadlineTick = Math.max(0, Math.ceilDiv(deadlineMillis - startMillis, tickMillis));
+        Timeout<T> timeout = new Timeout<>(payload, deadlineTick);
+        link(timeout);
+        size++;
+        return timeout;
+    }
+
+    public boolean cancel(Timeout<T> timeout) {
+        if (!timeout.isPending())
+            return false;
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Expires, in deadline order at tick granularity, every timeout due at or before {@code nowMillis}.
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long targetTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        while (currentTick <= targetTick) {
+            cascade();
+            int bucket = (int) (currentTick & SLOT_MASK);
+            Timeout<T> timeout;
+            while ((timeout = heads[bucket]) != null) {
+                unlink(timeout);
+                size--;
+                expired.accept(timeout.payload);
+            }
+            currentTick++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // When the lower levels wrap, the next slot of each higher level is redistributed downwards
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+                return;
+            int bucket = level * SLOTS + (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            Timeout<T> timeout = heads[bucket];
+            heads[bucket] = null;
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                timeout.prev = timeout.next = null;
+                link(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    private void link(Timeout<T> timeout) {
+        long tick = Math.max(timeout.deadlineTick, currentTick);
+        // The level is the highest 6-bit group in which the deadline still differs from the current tick
+        long differing = tick ^ currentTick;
+        int level = differing == 0 ? 0 : (63 - Long.numberOfLeadingZeros(differing)) / SLOT_BITS;
+        if (level >= LEVELS)
+            throw new IllegalArgumentException("Deadline is too far in the future for this timing wheel");
+
+        int bucket = level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        timeout.bucket = bucket;
+        timeout.prev = null;
+        timeout.next = heads[bucket];
+        if (heads[bucket] != null)
+            heads[bucket].prev = timeout;
+        heads[bucket] = timeout;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null)
+            timeout.prev.next = timeout.next;
+        else
+            heads[timeout.bucket] = timeout.next;
+        if (timeout.next != null)
+            timeout.next.prev = timeout.prev;
+        timeout.prev = timeout.next = null;
+        timeout.bucket = -1;
+    }
+}
@@ -0,0 +1,45 @@
+package com.clinic.demo.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket holding up to {@code capacity} tokens and regaining one every {@code refillPeriodNanos}.
+ * Implemented as the generic cell rate algorithm: the whole state is one "theoretical arrival time" updated
+ * with a CAS, so there is no lock and no separate refill step.
+ */
+public final class TokenBucket {
+
+    private final long refillPeriodNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public TokenBucket(int capacity, long refillPeriodNanos, long nowNanos) {
+        this.refillPeriodNanos = refillPeriodNanos;
+        this.burstToleranceNanos = refillPeriodNanos * (Math.max(capacity, 1) - 1);
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return 0 when a token was taken, otherwise how many nanoseconds until the next one is available
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long start = arrival - nowNanos > 0 ? arrival : nowNanos;
+            long wait = start - nowNanos - burstToleranceNanos;
+            if (wait > 0)
+                return wait;
+            if (theoreticalArrival.compareAndSet(arrival, start + refillPeriodNanos))
+                return 0;
+        }
+    }
+
+    /**
+     * A full bucket behaves exactly like a new one, so it can be dropped without changing any decision.
+     */
+    public boolean isFull(long nowNanos) {
+        return theoreticalArrival.get() - nowNanos <= 0;
+    }
+}
@@ -0,0 +1,21 @@
+package com.clinic.demo;
+
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Base for tests that need the real database: queries using PostgreSQL features (row locks, ON CONFLICT) or
+ * whose statements are counted. The container is started once for the whole run, so cached application
+ * contexts stay connected to it; tests are skipped where Docker is unavailable.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class PostgresContainerTest {
+
+    @ServiceConnection
+    protected static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    static {
+        POSTGRES.start();
+    }
+}
@@ -0,0 +1,55 @@
+package com.clinic.demo.benchmark;
+
+import com.clinic.demo.models.enums.PermissionEnum;
+import com.clinic.demo.utils.JwkJwtEncoder;
+import com.clinic.demo.utils.JwtSigningAlgorithm;
+import com.clinic.demo.utils.KeyGeneratorUtility;
+import com.clinic.demo.utils.PermissionAuthenticationToken;
+import com.clinic.demo.utils.PermissionMask;
+import com.nimbusds.jose.jwk.JWK;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumSet;
+import java.util.UUID;
+
+/**
+ * Keys and access tokens shaped like the ones {@code TokenService} issues, for the benchmarks.
+ */
+final class BenchmarkTokens {
+
+    private BenchmarkTokens() {
+    }
+
+    static JWK signingKey(JwtSigningAlgorithm algorithm) {
+        Instant now = Instant.now();
+        return KeyGeneratorUtility.generateSigningKey(algorithm, now, now);
+    }
+
+    static JwtClaimsSet accessTokenClaims() {
+        Instant now = Instant.now();
+        return JwtClaimsSet.builder()
+                .id(UUID.randomUUID().toString())
+                .issuer("clinic-app")
+                .issuedAt(now)
+                .expiresAt(now.plus(15, ChronoUnit.MINUTES))
+                .subject(UUID.randomUUID().toString())
+                .claim("email", "jane.doe@clinic.example")
+                .claim("userType", "DOCTOR")
+                .claim("firstName", "Jane")
+                .claim("lastName", "Doe")
+                .claim("roles", "DOCTOR")
+                .claim(PermissionAuthenticationToken.PERMISSIONS_CLAIM,
+                        PermissionMask.of(EnumSet.allOf(PermissionEnum.class)).encode())
+                .build();
+    }
+
+    static String[] accessTokens(JwkJwtEncoder encoder, int count) {
+        String[] tokens = new String[count];
+        for (int i = 0; i < count; i++)
+            tokens[i] = encoder.encode(JwtEncoderParameters.from(accessTokenClaims())).getTokenValue();
+        return tokens;
+    }
+}
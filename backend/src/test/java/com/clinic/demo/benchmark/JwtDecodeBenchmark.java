@@ -0,0 +1,80 @@
+package com.clinic.demo.benchmark;
+
+import com.clinic.demo.utils.CachingJwtDecoder;
+import com.clinic.demo.utils.JwkJwtDecoder;
+import com.clinic.demo.utils.JwkJwtEncoder;
+import com.clinic.demo.utils.JwtSigningAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authentication cost of one page load, i.e. {@code callsPerPageLoad} API calls with the same access token,
+ * with and without {@link CachingJwtDecoder}. Divide by {@code callsPerPageLoad} for the cost per request.
+ * <ul>
+ *     <li>{@code uncached}: every call verifies the signature, as before the cache.</li>
+ *     <li>{@code cachedFirstPageLoad}: the first page load with a new token, one verification then hits.</li>
+ *     <li>{@code cached}: any later page load, during which the token stays cached.</li>
+ * </ul>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtDecodeBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtDecodeBenchmark {
+
+    private static final int TOKENS = 1024;
+
+    @Param({"5", "20"})
+    private int callsPerPageLoad;
+
+    @Param({"RS256"})
+    private String algorithm;
+
+    private JwkJwtDecoder verifyingDecoder;
+    private CachingJwtDecoder cachingDecoder;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        JWK key = BenchmarkTokens.signingKey(JwtSigningAlgorithm.fromName(algorithm));
+        tokens = BenchmarkTokens.accessTokens(new JwkJwtEncoder(() -> key), TOKENS);
+        verifyingDecoder = new JwkJwtDecoder(keyId -> keyId.equals(key.getKeyID()) ? key.toPublicJWK() : null);
+        cachingDecoder = new CachingJwtDecoder(verifyingDecoder, 10_000, new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public void uncached(Blackhole blackhole) {
+        String token = nextToken();
+        for (int i = 0; i < callsPerPageLoad; i++)
+            blackhole.consume(verifyingDecoder.decode(token));
+    }
+
+    @Benchmark
+    public void cachedFirstPageLoad(Blackhole blackhole) {
+        String token = nextToken();
+        cachingDecoder.evict(token);
+        for (int i = 0; i < callsPerPageLoad; i++)
+            blackhole.consume(cachingDecoder.decode(token));
+    }
+
+    @Benchmark
+    public void cached(Blackhole blackhole) {
+        String token = nextToken();
+        for (int i = 0; i < callsPerPageLoad; i++)
+            blackhole.consume(cachingDecoder.decode(token));
+    }
+
+    private String nextToken() {
+        String token = tokens[next];
+        next = (next + 1) % tokens.length;
+        return token;
+    }
+}
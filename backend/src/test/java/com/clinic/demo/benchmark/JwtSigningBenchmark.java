@@ -0,0 +1,81 @@
+package com.clinic.demo.benchmark;
+
+import com.clinic.demo.utils.JwkJwtDecoder;
+import com.clinic.demo.utils.JwkJwtEncoder;
+import com.clinic.demo.utils.JwtSigningAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sign and verify throughput of each {@link JwtSigningAlgorithm} on this host, for an access token with the
+ * claims {@code TokenService} issues. {@code sign} is paid once per login or refresh, {@code verify} once per
+ * request whose token is not in the decode cache. The size of the serialized token is reported next to the
+ * scores as the {@code tokenBytes} and {@code signatureBytes} secondary results, since it is sent with every request.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtSigningBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtSigningBenchmark {
+
+    @Param({"RS256", "ES256", "EdDSA"})
+    private String algorithm;
+
+    private JwkJwtEncoder encoder;
+    private JwkJwtDecoder decoder;
+    private JwtEncoderParameters parameters;
+    private String token;
+    private int tokenBytes;
+    private int signatureBytes;
+
+    @Setup
+    public void setUp() {
+        JWK key = BenchmarkTokens.signingKey(JwtSigningAlgorithm.fromName(algorithm));
+        JWK publicKey = key.toPublicJWK();
+        encoder = new JwkJwtEncoder(() -> key);
+        decoder = new JwkJwtDecoder(keyId -> keyId.equals(key.getKeyID()) ? publicKey : null);
+
+        JwtClaimsSet claims = BenchmarkTokens.accessTokenClaims();
+        parameters = JwtEncoderParameters.from(claims);
+        token = encoder.encode(parameters).getTokenValue();
+        tokenBytes = token.length();
+        signatureBytes = tokenBytes - token.lastIndexOf('.') - 1;
+    }
+
+    @Benchmark
+    public Jwt sign(TokenSize tokenSize) {
+        tokenSize.record(tokenBytes, signatureBytes);
+        return encoder.encode(parameters);
+    }
+
+    @Benchmark
+    public Jwt verify(TokenSize tokenSize) {
+        tokenSize.record(tokenBytes, signatureBytes);
+        return decoder.decode(token);
+    }
+
+    /**
+     * JMH zeroes these at the start of every iteration, so they are set from the benchmark methods; two field
+     * writes are noise next to a signature. Assigned rather than added up, they are reported as plain values.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class TokenSize {
+        public long tokenBytes;
+        public long signatureBytes;
+
+        void record(long tokenBytes, long signatureBytes) {
+            this.tokenBytes = tokenBytes;
+            this.signatureBytes = signatureBytes;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.clinic.demo.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private final RateLimitProperties properties = new RateLimitProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RateLimitFilter filter;
+
+    RateLimitFilterTest() {
+        properties.setMaxBodyBytes(64);
+        properties.setRoutes(List.of(
+                route("login", "/auth/login", limit(3, Duration.ofSeconds(2)), limit(2, Duration.ofMinutes(1))),
+                route("register", "/auth/register", limit(1, Duration.ofSeconds(30)), null)));
+        filter = new RateLimitFilter(properties, meterRegistry, new ObjectMapper());
+    }
+
+    @Test
+    void passesRequestsToOtherPathsAndMethodsThrough() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThat(send(request("POST", "/auth/logout", "10.0.0.1", null)).response().getStatus()).isEqualTo(200);
+            assertThat(send(request("GET", "/auth/register", "10.0.0.1", null)).response().getStatus()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void limitsEachIpSeparatelyAndSaysWhenToRetry() throws Exception {
+        assertThat(send(request("POST", "/auth/register", "10.0.0.1", null)).passed()).isTrue();
+
+        Result rejected = send(request("POST", "/auth/register", "10.0.0.1", null));
+
+        assertThat(rejected.passed()).isFalse();
+        assertThat(rejected.response().getStatus()).isEqualTo(429);
+        assertThat(rejected.response().getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("30");
+        assertThat(rejected.response().getContentAsString()).contains("30 seconds");
+        assertThat(meterRegistry.counter("http.server.requests.throttled", "route", "register", "key", "ip").count())
+                .isEqualTo(1);
+        assertThat(send(request("POST", "/auth/register", "10.0.0.2", null)).passed()).isTrue();
+    }
+
+    @Test
+    void limitsEachEmailAcrossIps() throws Exception {
+        assertThat(send(request("POST", "/auth/login", "10.0.0.1", "{\"email\":\"a@example.com\"}")).passed()).isTrue();
+        // The same address, however it is written
+        assertThat(send(request("POST", "/auth/login", "10.0.0.2", "{\"email\":\" A@Example.com \"}")).passed()).isTrue();
+
+        Result rejected = send(request("POST", "/auth/login", "10.0.0.3", "{\"email\":\"a@example.com\"}"));
+
+        assertThat(rejected.response().getStatus()).isEqualTo(429);
+        assertThat(rejected.response().getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("60");
+        assertThat(meterRegistry.counter("http.server.requests.throttled", "route", "login", "key", "email").count())
+                .isEqualTo(1);
+        assertThat(send(request("POST", "/auth/login", "10.0.0.4", "{\"email\":\"b@example.com\"}")).passed()).isTrue();
+    }
+
+    @Test
+    void replaysTheBufferedBodyToTheController() throws Exception {
+        String body = "{\"email\":\"a@example.com\",\"password\":\"secret\"}";
+
+        Result result = send(request("POST", "/auth/login", "10.0.0.1", body));
+
+        assertThat(result.passed()).isTrue();
+        assertThat(new String(result.chain().getRequest().getInputStream().readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo(body);
+    }
+
+    @Test
+    void onlyLimitsByIpWhenTheEmailCannotBeRead() throws Exception {
+        String large = "{\"email\":\"a@example.com\",\"padding\":\"" + "x".repeat(100) + "\"}";
+        for (String body : new String[]{"not json", "{\"email\":42}", large}) {
+            Result result = send(request("POST", "/auth/login", "10.0.0.9", body));
+            assertThat(result.passed()).as(body).isTrue();
+            assertThat(new String(result.chain().getRequest().getInputStream().readAllBytes(), StandardCharsets.UTF_8))
+                    .as(body).isEqualTo(body);
+        }
+        // The IP allows three in a burst, the unreadable emails none of which counted against a@example.com
+        assertThat(send(request("POST", "/auth/login", "10.0.0.9", "{}")).response().getStatus()).isEqualTo(429);
+        assertThat(send(request("POST", "/auth/login", "10.0.0.1", "{\"email\":\"a@example.com\"}")).passed()).isTrue();
+    }
+
+    @Test
+    void doesNothingWhenDisabled() throws Exception {
+        properties.setEnabled(false);
+
+        for (int i = 0; i < 5; i++)
+            assertThat(send(request("POST", "/auth/register", "10.0.0.1", null)).passed()).isTrue();
+    }
+
+    @Test
+    void theShippedConfigurationLimitsPasswordResetsPerEmail() throws IOException {
+        StandardEnvironment environment = new StandardEnvironment();
+        new YamlPropertySourceLoader().load("application", new ClassPathResource("application.yml"))
+                .forEach(environment.getPropertySources()::addLast);
+
+        RateLimitProperties shipped = Binder.get(environment)
+                .bind("security.rate-limit", RateLimitProperties.class).get();
+
+        assertThat(shipped.getRoutes()).filteredOn(route -> route.getPath().equals("/auth/reset-password"))
+                .singleElement()
+                .satisfies(route -> {
+                    assertThat(route.getMethod()).isEqualTo("POST");
+                    assertThat(route.getPerIp()).isNotNull();
+                    assertThat(route.getPerEmail()).isNotNull();
+                });
+    }
+
+    private Result send(MockHttpServletRequest request) throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        return new Result(response, chain);
+    }
+
+    private static MockHttpServletRequest request(String method, String path, String ip, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRemoteAddr(ip);
+        if (body != null) {
+            request.setContentType("application/json");
+            request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return request;
+    }
+
+    private static RateLimitProperties.Route route(String name, String path, RateLimitProperties.Limit perIp,
+                                                   RateLimitProperties.Limit perEmail) {
+        RateLimitProperties.Route route = new RateLimitProperties.Route();
+        route.setName(name);
+        route.setPath(path);
+        route.setPerIp(perIp);
+        route.setPerEmail(perEmail);
+        return route;
+    }
+
+    private static RateLimitProperties.Limit limit(int capacity, Duration refillPeriod) {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setCapacity(capacity);
+        limit.setRefillPeriod(refillPeriod);
+        return limit;
+    }
+
+    private record Result(MockHttpServletResponse response, MockFilterChain chain) {
+        boolean passed() {
+            return chain.getRequest() != null;
+        }
+    }
+}
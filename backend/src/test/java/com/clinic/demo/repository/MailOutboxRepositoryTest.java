@@ -0,0 +1,173 @@
+package com.clinic.demo.repository;
+
+import com.clinic.demo.PostgresContainerTest;
+import com.clinic.demo.models.entity.MailOutboxEntity;
+import com.clinic.demo.models.enums.MailStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Claims run in real, overlapping transactions (the test itself is not transactional), the way two dispatcher
+ * nodes would run them.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MailOutboxRepositoryTest extends PostgresContainerTest {
+
+    @Autowired
+    private MailOutboxRepository outboxRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void overlappingClaimsNeverReturnTheSameRow() throws Exception {
+        queue(10);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        CountDownLatch firstClaimed = new CountDownLatch(1);
+        CountDownLatch secondClaimed = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // The first dispatcher keeps its rows locked until the second has claimed as well
+            Future<List<Long>> first = executor.submit(() -> transaction.execute(status -> {
+                List<Long> ids = claim(4);
+                firstClaimed.countDown();
+                await(secondClaimed);
+                return ids;
+            }));
+            Future<List<Long>> second = executor.submit(() -> {
+                await(firstClaimed);
+                List<Long> ids = transaction.execute(status -> claim(10));
+                secondClaimed.countDown();
+                return ids;
+            });
+
+            List<Long> firstIds = first.get(30, TimeUnit.SECONDS);
+            List<Long> secondIds = second.get(30, TimeUnit.SECONDS);
+
+            assertThat(firstIds).hasSize(4);
+            assertThat(secondIds).hasSize(6).doesNotContainAnyElementsOf(firstIds);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(outboxRepository.countByStatus(MailStatus.SENDING)).isEqualTo(10);
+        assertThat(claimInTransaction(10)).isEmpty();
+    }
+
+    @Test
+    void manyConcurrentDispatchersClaimEveryRowExactlyOnce() throws Exception {
+        queue(200);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<Long> claimed = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<?>> dispatchers = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                dispatchers.add(executor.submit(() -> {
+                    List<Long> batch;
+                    while (!(batch = transaction.execute(status -> claim(7))).isEmpty())
+                        claimed.addAll(batch);
+                }));
+            }
+            for (Future<?> dispatcher : dispatchers)
+                dispatcher.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(claimed).hasSize(200).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void staleClaimsAreReleasedAndCanBeClaimedAgain() {
+        queue(2);
+        List<Long> ids = claimInTransaction(2);
+        assertThat(ids).hasSize(2);
+
+        // One dispatcher died an hour ago; the other claim is still fresh
+        MailOutboxEntity stale = outboxRepository.findById(ids.get(0)).orElseThrow();
+        stale.setClaimedAt(LocalDateTime.now().minusHours(1));
+        outboxRepository.save(stale);
+
+        int released = outboxRepository.releaseStaleClaims(LocalDateTime.now().minusMinutes(10));
+
+        assertThat(released).isEqualTo(1);
+        assertThat(outboxRepository.findById(ids.get(0)).orElseThrow().getStatus()).isEqualTo(MailStatus.PENDING);
+        assertThat(outboxRepository.findById(ids.get(1)).orElseThrow().getStatus()).isEqualTo(MailStatus.SENDING);
+        assertThat(claimInTransaction(2)).containsExactly(ids.get(0));
+    }
+
+    @Test
+    void messagesAreNotClaimedBeforeTheyAreDue() {
+        MailOutboxEntity later = message();
+        later.setNextAttemptAt(LocalDateTime.now().plusMinutes(5));
+        outboxRepository.save(later);
+
+        assertThat(claimInTransaction(10)).isEmpty();
+    }
+
+    private List<Long> claimInTransaction(int batchSize) {
+        return new TransactionTemplate(transactionManager).execute(status -> claim(batchSize));
+    }
+
+    // What MailDispatcher#claimBatch does inside its transaction
+    private List<Long> claim(int batchSize) {
+        LocalDateTime now = LocalDateTime.now();
+        List<MailOutboxEntity> due = outboxRepository.findDueForUpdate(now, PageRequest.of(0, batchSize));
+        List<Long> ids = new ArrayList<>();
+        for (MailOutboxEntity message : due) {
+            message.setStatus(MailStatus.SENDING);
+            message.setClaimedAt(now);
+            ids.add(message.getId());
+        }
+        return ids;
+    }
+
+    private void queue(int count) {
+        List<MailOutboxEntity> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            messages.add(message());
+        outboxRepository.saveAll(messages);
+    }
+
+    private static MailOutboxEntity message() {
+        MailOutboxEntity message = new MailOutboxEntity();
+        message.setRecipient("patient@example.com");
+        message.setSubject("Appointment reminder");
+        message.setHtmlContent("<p>See you soon</p>");
+        message.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        return message;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(30, TimeUnit.SECONDS))
+                throw new IllegalStateException("Timed out waiting for the other dispatcher");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.clinic.demo.repository;
+
+import com.clinic.demo.DTO.UserAvatarDTO;
+import com.clinic.demo.PostgresContainerTest;
+import com.clinic.demo.models.entity.RoleEntity;
+import com.clinic.demo.models.entity.user.EmployeeEntity;
+import com.clinic.demo.models.enums.GenderEnum;
+import com.clinic.demo.models.enums.UserTypeEnum;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class UserRepositoryTest extends PostgresContainerTest {
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManager entityManager;
+
+    private EmployeeEntity withAvatar;
+    private EmployeeEntity withoutAvatar;
+
+    @BeforeEach
+    void setUp() {
+        RoleEntity role = new RoleEntity("DOCTOR");
+        entityManager.persist(role);
+        withAvatar = employee("with-avatar@clinic.test", role);
+        withAvatar.setAvatarPath("a".repeat(64) + ".png");
+        withoutAvatar = employee("without-avatar@clinic.test", role);
+        employee("someone-else@clinic.test", role);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void findsAvatarPathsByIdWhenNoEmailsAreGiven() {
+        List<UserAvatarDTO> avatars = userRepository.findAvatarPaths(
+                List.of(withAvatar.getId(), withoutAvatar.getId(), UUID.randomUUID()), List.of());
+
+        assertThat(avatars).containsExactlyInAnyOrder(
+                new UserAvatarDTO(withAvatar.getId(), "with-avatar@clinic.test", "a".repeat(64) + ".png"),
+                new UserAvatarDTO(withoutAvatar.getId(), "without-avatar@clinic.test", null));
+    }
+
+    @Test
+    void findsAvatarPathsByEmailWhenNoIdsAreGiven() {
+        List<UserAvatarDTO> avatars = userRepository.findAvatarPaths(
+                List.of(), List.of("with-avatar@clinic.test", "nobody@clinic.test"));
+
+        assertThat(avatars).containsExactly(
+                new UserAvatarDTO(withAvatar.getId(), "with-avatar@clinic.test", "a".repeat(64) + ".png"));
+    }
+
+    @Test
+    void returnsAUserMatchedByBothIdAndEmailOnce() {
+        List<UserAvatarDTO> avatars = userRepository.findAvatarPaths(
+                List.of(withAvatar.getId()), List.of("with-avatar@clinic.test", "without-avatar@clinic.test"));
+
+        assertThat(avatars).extracting(UserAvatarDTO::id)
+                .containsExactlyInAnyOrder(withAvatar.getId(), withoutAvatar.getId());
+    }
+
+    @Test
+    void findsNothingWhenBothListsAreEmpty() {
+        assertThat(userRepository.findAvatarPaths(List.of(), List.of())).isEmpty();
+    }
+
+    private EmployeeEntity employee(String email, RoleEntity role) {
+        EmployeeEntity employee = new EmployeeEntity("First", "Last", email, null, null, GenderEnum.M,
+                UserTypeEnum.DOCTOR, "hash", LocalDate.of(1980, 1, 1), 0, Set.of(role));
+        entityManager.persist(employee);
+        return employee;
+    }
+}
@@ -0,0 +1,178 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.AppointmentReminderDTO;
+import com.clinic.demo.models.enums.notifications.NotificationChannel;
+import com.clinic.demo.models.enums.notifications.ReminderFrequency;
+import com.clinic.demo.repository.AppointmentRepository;
+import com.clinic.demo.repository.ReminderLedgerRepository;
+import com.clinic.demo.utils.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AppointmentReminderServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 2, 12, 0);
+
+    private final AppointmentRepository appointmentRepository = mock(AppointmentRepository.class);
+    private final ReminderLedgerRepository ledgerRepository = mock(ReminderLedgerRepository.class);
+    private final MailService mailService = mock(MailService.class);
+    private final SmsService smsService = mock(SmsService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final MutableClock clock = new MutableClock(START.minusHours(4).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+    // Stands in for reminder_ledger: entries recorded in a rolled back transaction disappear again
+    private final Set<List<Object>> ledger = new HashSet<>();
+    private final List<List<Object>> uncommitted = new ArrayList<>();
+
+    private final UUID appointmentId = UUID.randomUUID();
+    private List<AppointmentReminderDTO> appointments;
+    private AppointmentReminderService service;
+
+    @BeforeEach
+    void setUp() {
+        appointments = List.of(appointment(START));
+        when(appointmentRepository.findUpcomingReminders(any(), any())).thenAnswer(invocation -> appointments);
+        when(appointmentRepository.findRemindersByAppointmentIds(any())).thenAnswer(invocation -> appointments);
+
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        doAnswer(invocation -> {
+            uncommitted.clear();
+            return null;
+        }).when(transactionManager).commit(any());
+        doAnswer(invocation -> {
+            uncommitted.forEach(ledger::remove);
+            uncommitted.clear();
+            return null;
+        }).when(transactionManager).rollback(any());
+        when(ledgerRepository.recordIfAbsent(any(), any(), any())).thenAnswer(invocation -> {
+            List<Object> entry = List.of(invocation.getArgument(0), invocation.getArgument(1));
+            if (!ledger.add(entry))
+                return 0;
+            uncommitted.add(entry);
+            return 1;
+        });
+
+        service = new AppointmentReminderService(appointmentRepository, ledgerRepository, mailService, smsService,
+                transactionManager, new SimpleMeterRegistry(), 9, 200, 1000, clock);
+    }
+
+    @Test
+    void sendsTheReminderOnceWhenItIsDue() {
+        service.resync();
+        service.dispatchDue();
+        verifyNoInteractions(mailService, smsService);
+
+        clock.set(START.minusHours(1).plusSeconds(1).toInstant(ZoneOffset.UTC));
+        service.dispatchDue();
+        service.resync();
+        service.dispatchDue();
+        service.onAppointmentChanged(new AppointmentChangedEvent(appointmentId));
+        service.dispatchDue();
+
+        verify(mailService).sendAppointmentReminder("patient@example.com", "Pat", "Dana Doe", START);
+        verify(smsService).sendSms(eq("+15550100"), anyString());
+        assertThat(ledger).containsExactly(List.of(appointmentId, START.minusHours(1)));
+    }
+
+    @Test
+    void skipsAReminderAnotherNodeAlreadySent() {
+        ledger.add(List.of(appointmentId, START.minusHours(1)));
+        service.resync();
+
+        clock.set(START.minusHours(1).plusSeconds(1).toInstant(ZoneOffset.UTC));
+        service.dispatchDue();
+
+        verifyNoInteractions(mailService, smsService);
+    }
+
+    @Test
+    void retriesTheReminderWhenQueueingItFails() {
+        doThrow(new QueryTimeoutException("mail_outbox insert timed out"))
+                .doNothing()
+                .when(mailService).sendAppointmentReminder(any(), any(), any(), any());
+        service.resync();
+
+        clock.set(START.minusHours(1).plusSeconds(1).toInstant(ZoneOffset.UTC));
+        service.dispatchDue();
+
+        verify(transactionManager).rollback(any());
+        assertThat(ledger).isEmpty();
+        verifyNoInteractions(smsService);
+
+        clock.advance(Duration.ofSeconds(15));
+        service.dispatchDue();
+
+        verify(mailService, times(2)).sendAppointmentReminder(any(), any(), any(), any());
+        verify(smsService).sendSms(eq("+15550100"), anyString());
+        assertThat(ledger).hasSize(1);
+    }
+
+    @Test
+    void doesNotResendTheEmailWhenTheSmsGatewayFails() {
+        doThrow(new IllegalStateException("SMS gateway unavailable")).when(smsService).sendSms(any(), any());
+        service.resync();
+
+        clock.set(START.minusHours(1).plusSeconds(1).toInstant(ZoneOffset.UTC));
+        service.dispatchDue();
+        clock.advance(Duration.ofSeconds(15));
+        service.resync();
+        service.dispatchDue();
+
+        verify(mailService).sendAppointmentReminder(any(), any(), any(), any());
+        verify(smsService).sendSms(any(), any());
+    }
+
+    @Test
+    void movesTheReminderWhenTheAppointmentIsRescheduled() {
+        service.resync();
+
+        LocalDateTime newStart = START.plusHours(3);
+        appointments = List.of(appointment(newStart));
+        service.onAppointmentChanged(new AppointmentChangedEvent(appointmentId));
+
+        clock.set(START.minusHours(1).plusSeconds(1).toInstant(ZoneOffset.UTC));
+        service.dispatchDue();
+        verifyNoInteractions(mailService, smsService);
+        assertThat(service.scheduledCount()).isEqualTo(1);
+
+        clock.set(newStart.minusHours(1).plusSeconds(1).toInstant(ZoneOffset.UTC));
+        service.dispatchDue();
+
+        verify(mailService).sendAppointmentReminder("patient@example.com", "Pat", "Dana Doe", newStart);
+        assertThat(ledger).containsExactly(List.of(appointmentId, newStart.minusHours(1)));
+    }
+
+    @Test
+    void dropsTheReminderWhenTheAppointmentIsCancelled() {
+        service.resync();
+        assertThat(service.scheduledCount()).isEqualTo(1);
+
+        appointments = List.of();
+        service.onAppointmentChanged(new AppointmentChangedEvent(appointmentId));
+
+        assertThat(service.scheduledCount()).isZero();
+        clock.set(START.minusHours(1).plusSeconds(1).toInstant(ZoneOffset.UTC));
+        service.dispatchDue();
+        verifyNoInteractions(mailService, smsService);
+    }
+
+    private AppointmentReminderDTO appointment(LocalDateTime start) {
+        return new AppointmentReminderDTO(appointmentId, start, "patient@example.com", "+15550100", "Pat",
+                "Dana", "Doe", true, false, true, true, true,
+                ReminderFrequency.ONE_HOUR_BEFORE, null, NotificationChannel.BOTH);
+    }
+}
@@ -0,0 +1,118 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.GenerateOtpRequest;
+import com.clinic.demo.DTO.ResetPasswordRequestDTO;
+import com.clinic.demo.PostgresContainerTest;
+import com.clinic.demo.models.entity.UserOtpEntity;
+import com.clinic.demo.models.enums.OtpPurpose;
+import com.clinic.demo.repository.UserOtpRepository;
+import com.clinic.demo.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Guesses go through {@link AuthenticationService}, whose transaction rolls back on every wrong code, so the
+ * attempt limit only holds if the store records attempts in a transaction of its own. The test is not
+ * transactional itself, so that each call commits or rolls back as it would for a real request.
+ */
+@DataJpaTest(properties = {"security.otp.store=database", "security.otp.max-attempts=3"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({AuthenticationService.class, OtpService.class, DatabaseOtpStore.class})
+class AuthenticationServiceOtpTest extends PostgresContainerTest {
+
+    private static final String EMAIL = "patient@example.com";
+    private static final String PASSWORD = "N3wPassw0rd#";
+
+    @MockBean
+    private UserRepository userRepository;
+    @MockBean
+    private PasswordEncoder passwordEncoder;
+    @MockBean
+    private AuthenticationManager authenticationManager;
+    @MockBean
+    private TokenService tokenService;
+    @MockBean
+    private RefreshTokenService refreshTokenService;
+    @MockBean
+    private MailService mailService;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+    @Autowired
+    private OtpService otpService;
+    @Autowired
+    private UserOtpRepository otpRepository;
+
+    @AfterEach
+    void cleanUp() {
+        otpRepository.deleteAll();
+    }
+
+    @Test
+    void wrongCodesAreCountedAlthoughTheResetRollsBack() {
+        String otp = issueOtp();
+
+        assertThatThrownBy(() -> resetPassword(wrong(otp))).hasMessage("Invalid or expired OTP");
+
+        assertThat(pending()).singleElement().extracting(UserOtpEntity::getFailedAttempts).isEqualTo(1);
+    }
+
+    @Test
+    void theCodeIsDiscardedOnceTheAttemptsAreUsedUp() {
+        String otp = issueOtp();
+
+        for (int attempt = 0; attempt < 3; attempt++)
+            assertThatThrownBy(() -> resetPassword(wrong(otp))).hasMessage("Invalid or expired OTP");
+
+        assertThat(pending()).isEmpty();
+        assertThatThrownBy(() -> resetPassword(otp)).hasMessage("Invalid or expired OTP");
+    }
+
+    @Test
+    void aMismatchedPasswordDoesNotUseUpTheCode() {
+        String otp = issueOtp();
+
+        assertThatThrownBy(() -> authenticationService.resetPassword(
+                new ResetPasswordRequestDTO(EMAIL, otp, PASSWORD, PASSWORD + "x")))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(pending()).singleElement().extracting(UserOtpEntity::getFailedAttempts).isEqualTo(0);
+    }
+
+    private String issueOtp() {
+        otpService.generateAndSendOtp(new GenerateOtpRequest(EMAIL, OtpPurpose.PASSWORD_RESET));
+        ArgumentCaptor<String> otp = ArgumentCaptor.forClass(String.class);
+        verify(mailService).sendPasswordResetOtp(eq(EMAIL), otp.capture());
+        return otp.getValue();
+    }
+
+    private void resetPassword(String otp) {
+        authenticationService.resetPassword(new ResetPasswordRequestDTO(EMAIL, otp, PASSWORD, PASSWORD));
+    }
+
+    private List<UserOtpEntity> pending() {
+        return otpRepository.findAll();
+    }
+
+    private static String wrong(String otp) {
+        return otp.equals("000000") ? "000001" : "000000";
+    }
+}
@@ -0,0 +1,293 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.PostgresContainerTest;
+import com.clinic.demo.DTO.BlobMetadata;
+import com.clinic.demo.models.entity.AvatarBlobEntity;
+import com.clinic.demo.repository.AvatarBlobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against the real database and files in a temporary directory, in real transactions (the test itself is
+ * not transactional). The grace period is an hour; tests move time forward by backdating rows and files.
+ */
+@DataJpaTest(properties = "avatar.storage.gc.grace.minutes=60")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({AvatarBlobStore.class, AvatarBlobStoreTest.Storage.class})
+class AvatarBlobStoreTest extends PostgresContainerTest {
+
+    private static final String SHARED = AvatarBlobStore.key("a".repeat(64), "png");
+    private static final String OTHER = AvatarBlobStore.key("b".repeat(64), "jpg");
+
+    @TestConfiguration
+    static class Storage {
+        @Bean
+        BlobStorage blobStorage() throws IOException {
+            return new LocalBlobStorage(Files.createTempDirectory("avatar-blobs").toString());
+        }
+    }
+
+    @Autowired
+    private AvatarBlobStore store;
+    @Autowired
+    private AvatarBlobRepository repository;
+    @Autowired
+    private BlobStorage storage;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        repository.deleteAll();
+        for (BlobMetadata file : storage.list(AvatarBlobStore.PREFIX))
+            storage.delete(file.key());
+    }
+
+    @Test
+    void retainingTheSameContentTwiceStoresOneBlobWithTwoReferences() {
+        retain(SHARED);
+        retain(SHARED);
+
+        AvatarBlobEntity blob = repository.findById(SHARED).orElseThrow();
+        assertThat(blob.getRefCount()).isEqualTo(2);
+        assertThat(blob.getSize()).isEqualTo(4);
+        assertThat(blob.getUnreferencedSince()).isNull();
+        assertThat(files()).containsExactly(AvatarBlobStore.storageKey(SHARED));
+    }
+
+    @Test
+    void releasingTheLastReferenceMarksTheBlobAndRetainingItAgainClearsTheMark() {
+        retain(SHARED);
+        retain(SHARED);
+
+        release(SHARED);
+        assertThat(repository.findById(SHARED).orElseThrow().getUnreferencedSince()).isNull();
+
+        release(SHARED);
+        AvatarBlobEntity released = repository.findById(SHARED).orElseThrow();
+        assertThat(released.getRefCount()).isZero();
+        assertThat(released.getUnreferencedSince()).isNotNull();
+
+        retain(SHARED);
+        AvatarBlobEntity retained = repository.findById(SHARED).orElseThrow();
+        assertThat(retained.getRefCount()).isEqualTo(1);
+        assertThat(retained.getUnreferencedSince()).isNull();
+    }
+
+    @Test
+    void releasingAnUnreferencedBlobDoesNotGoNegative() {
+        retain(SHARED);
+        release(SHARED);
+
+        int released = new TransactionTemplate(transactionManager)
+                .execute(status -> repository.release(SHARED, LocalDateTime.now()));
+
+        assertThat(released).isZero();
+        assertThat(repository.findById(SHARED).orElseThrow().getRefCount()).isZero();
+    }
+
+    @Test
+    void aSharedBlobSurvivesWhileOneReferenceRemains() throws IOException {
+        retain(SHARED);
+        retain(SHARED);
+        release(SHARED);
+        backdateFiles(2);
+
+        store.collectGarbage();
+
+        assertThat(repository.findById(SHARED)).isPresent();
+        assertThat(files()).containsExactly(AvatarBlobStore.storageKey(SHARED));
+    }
+
+    @Test
+    void aReleasedBlobIsKeptUntilTheGracePeriodEnds() throws IOException {
+        retain(SHARED);
+        storeDerived(SHARED.replace(".png", "_64.png"));
+        release(SHARED);
+        backdateFiles(2);
+
+        store.collectGarbage();
+        assertThat(repository.findById(SHARED)).isPresent();
+        assertThat(files()).hasSize(2);
+
+        backdateUnreferencedSince(SHARED, 61);
+        store.collectGarbage();
+
+        assertThat(repository.findById(SHARED)).isEmpty();
+        assertThat(files()).isEmpty();
+    }
+
+    @Test
+    void collectorsSkipBlobsLockedByAnotherTransaction() throws Exception {
+        retain(SHARED);
+        retain(OTHER);
+        release(SHARED);
+        release(OTHER);
+        backdateUnreferencedSince(SHARED, 61);
+        backdateUnreferencedSince(OTHER, 61);
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        LocalDateTime unreferencedBefore = LocalDateTime.now().minusMinutes(60);
+        CountDownLatch firstLocked = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // One collector holds the rows it found until the other has looked as well
+            Future<List<String>> first = executor.submit(() -> transaction.execute(status -> {
+                List<String> keys = keys(repository.findCollectableForUpdate(unreferencedBefore, PageRequest.ofSize(1)));
+                firstLocked.countDown();
+                await(secondDone);
+                return keys;
+            }));
+            Future<List<String>> second = executor.submit(() -> {
+                await(firstLocked);
+                List<String> keys = transaction.execute(status ->
+                        keys(repository.findCollectableForUpdate(unreferencedBefore, PageRequest.ofSize(10))));
+                secondDone.countDown();
+                return keys;
+            });
+
+            List<String> firstKeys = first.get(30, TimeUnit.SECONDS);
+            List<String> secondKeys = second.get(30, TimeUnit.SECONDS);
+
+            assertThat(firstKeys).hasSize(1);
+            assertThat(secondKeys).hasSize(1).doesNotContainAnyElementsOf(firstKeys);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void garbageCollectionLeavesABlobBeingRetainedAlone() throws Exception {
+        retain(SHARED);
+        release(SHARED);
+        backdateUnreferencedSince(SHARED, 61);
+
+        CountDownLatch retaining = new CountDownLatch(1);
+        CountDownLatch collected = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // An upload of the same content has locked the row but not committed yet
+            Future<?> upload = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                repository.retain(SHARED, 4, LocalDateTime.now());
+                retaining.countDown();
+                await(collected);
+            }));
+            await(retaining);
+
+            store.collectGarbage();
+            collected.countDown();
+            upload.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(repository.findById(SHARED).orElseThrow().getRefCount()).isEqualTo(1);
+        assertThat(files()).containsExactly(AvatarBlobStore.storageKey(SHARED));
+    }
+
+    @Test
+    void theOrphanSweepDeletesOnlyOldFilesWithoutARow() throws IOException {
+        retain(SHARED);
+        String orphan = AvatarBlobStore.key("c".repeat(64), "png");
+        String recentOrphan = AvatarBlobStore.key("d".repeat(64), "png");
+        String legacy = AvatarBlobStore.PREFIX + "e".repeat(64) + ".png";
+        storeDerived(orphan);
+        storeDerived(orphan.replace(".png", "_128.png"));
+        storage.put(legacy, staged());
+        backdateFiles(2);
+        storeDerived(recentOrphan);
+
+        store.collectGarbage();
+
+        assertThat(files()).containsExactlyInAnyOrder(
+                AvatarBlobStore.storageKey(SHARED),
+                AvatarBlobStore.storageKey(recentOrphan),
+                legacy);
+        assertThat(repository.findById(SHARED).orElseThrow().getRefCount()).isEqualTo(1);
+    }
+
+    private void retain(String key) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try {
+                store.retain(key, staged(), 4);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void release(String key) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> store.release(key));
+    }
+
+    private Path staged() throws IOException {
+        Path file = store.createTempFile();
+        Files.write(file, new byte[]{1, 2, 3, 4});
+        return file;
+    }
+
+    private void storeDerived(String fileName) throws IOException {
+        storage.put(AvatarBlobStore.storageKey(fileName), staged());
+    }
+
+    private void backdateUnreferencedSince(String key, long minutes) {
+        AvatarBlobEntity blob = repository.findById(key).orElseThrow();
+        blob.setUnreferencedSince(LocalDateTime.now().minusMinutes(minutes));
+        repository.save(blob);
+    }
+
+    private void backdateFiles(long hours) throws IOException {
+        FileTime modified = FileTime.from(Instant.now().minus(hours, ChronoUnit.HOURS));
+        for (String key : files())
+            Files.setLastModifiedTime(storage.localPath(key), modified);
+    }
+
+    private List<String> files() {
+        try {
+            return storage.list(AvatarBlobStore.PREFIX).stream().map(BlobMetadata::key).toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> keys(List<AvatarBlobEntity> blobs) {
+        return blobs.stream().map(AvatarBlobEntity::getKey).toList();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(30, TimeUnit.SECONDS))
+                throw new IllegalStateException("Timed out waiting for the other transaction");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
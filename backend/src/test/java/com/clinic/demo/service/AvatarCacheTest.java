@@ -0,0 +1,171 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.service.AvatarCache.CachedAvatar;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvatarCacheTest {
+
+    private static final int AVATAR_SIZE = 10 * 1024;
+    private static final int CAPACITY = 100;
+    // Exactly CAPACITY avatars fit, so the frequency sketch is sized as for a cache of that many entries
+    private static final DataSize MAX_SIZE = DataSize.ofKilobytes(1020);
+    private static final Instant LAST_MODIFIED = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AvatarCache cache = new AvatarCache(meterRegistry, MAX_SIZE, DataSize.ofKilobytes(32));
+
+    @Test
+    void admitsEveryAvatarWhileThereIsRoom() {
+        for (int i = 0; i < CAPACITY; i++) {
+            CachedAvatar avatar = miss("avatars/" + i);
+
+            assertThat(avatar.content().isDirect()).isTrue();
+            assertThat(bytes(avatar.content())).isEqualTo(content(i));
+        }
+
+        for (int i = 0; i < CAPACITY; i++)
+            assertThat(cache.get("avatars/" + i)).isNotNull();
+        assertThat(rejections()).isZero();
+    }
+
+    @Test
+    void servesFirstRequestsFromTheHeapOnceTheCacheIsFull() {
+        fill();
+
+        CachedAvatar avatar = miss("avatars/new");
+
+        assertThat(avatar.content().isDirect()).isFalse();
+        assertThat(avatar.content().isReadOnly()).isTrue();
+        assertThat(bytes(avatar.content())).isEqualTo(content(99));
+        assertThat(avatar.lastModified()).isEqualTo(LAST_MODIFIED);
+        assertThat(rejections()).isEqualTo(1);
+        for (int i = 0; i < CAPACITY; i++)
+            assertThat(cache.get("avatars/" + i)).as("avatars/" + i).isNotNull();
+    }
+
+    @Test
+    void admitsAnAvatarRequestedAgainIntoAFullCache() {
+        fill();
+        miss("avatars/new");
+
+        CachedAvatar avatar = miss("avatars/new");
+
+        assertThat(avatar.content().isDirect()).isTrue();
+        assertThat(cache.get("avatars/new")).isNotNull();
+    }
+
+    @Test
+    void countsRequestsThatFindThePolicyLockBusy() throws Exception {
+        fill();
+        ReentrantLock policyLock = (ReentrantLock) ReflectionTestUtils.getField(cache, "policyLock");
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            policyLock.lock();
+            try {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                policyLock.unlock();
+            }
+        });
+        holder.start();
+        assertThat(locked.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Requested twice while, say, another avatar is being put; neither request waits
+        assertThat(cache.get("avatars/new")).isNull();
+        assertThat(cache.get("avatars/new")).isNull();
+        release.countDown();
+        holder.join(5_000);
+
+        CachedAvatar avatar = cache.put("avatars/new", content(99), LAST_MODIFIED);
+
+        assertThat(avatar.content().isDirect()).isTrue();
+        assertThat(cache.get("avatars/new")).isNotNull();
+    }
+
+    @Test
+    void aBurstOfOneOffRequestsDoesNotFlushPopularAvatars() {
+        fill();
+        for (int i = 0; i < CAPACITY; i++) {
+            for (int request = 0; request < 3; request++)
+                cache.get("avatars/" + i);
+        }
+
+        for (int i = 0; i < 3 * CAPACITY; i++)
+            miss("patients/" + i);
+
+        // The sketch overestimates the odd one-off whose counters all collide with popular avatars' ones
+        long kept = IntStream.range(0, CAPACITY).filter(i -> cache.get("avatars/" + i) != null).count();
+        assertThat(kept).isGreaterThanOrEqualTo(CAPACITY - 3);
+        assertThat(rejections()).isGreaterThanOrEqualTo(3 * CAPACITY - 3);
+    }
+
+    @Test
+    void servesTooLargeAvatarsFromTheHeapWithoutCachingThem() {
+        byte[] large = new byte[(int) DataSize.ofKilobytes(33).toBytes()];
+
+        assertThat(cache.accepts(large.length)).isFalse();
+        CachedAvatar avatar = cache.put("avatars/large", large, LAST_MODIFIED);
+
+        assertThat(avatar.content().isDirect()).isFalse();
+        assertThat(avatar.content().remaining()).isEqualTo(large.length);
+        assertThat(cache.get("avatars/large")).isNull();
+    }
+
+    @Test
+    void returnsTheCachedCopyWhenTheAvatarWasCachedMeanwhile() {
+        CachedAvatar first = miss("avatars/0");
+
+        CachedAvatar second = cache.put("avatars/0", content(0), LAST_MODIFIED);
+
+        assertThat(second.content().isDirect()).isTrue();
+        assertThat(second.content()).isEqualTo(first.content());
+        assertThat(second.content()).isNotSameAs(first.content());
+    }
+
+    private void fill() {
+        for (int i = 0; i < CAPACITY; i++)
+            miss("avatars/" + i);
+    }
+
+    /**
+     * Looks the avatar up and, as {@link AvatarService} does on a miss, puts it.
+     */
+    private CachedAvatar miss(String key) {
+        assertThat(cache.get(key)).isNull();
+        int seed = key.startsWith("avatars/") && !key.equals("avatars/new") ? Integer.parseInt(key.substring(8)) : 99;
+        return cache.put(key, content(seed), LAST_MODIFIED);
+    }
+
+    private double rejections() {
+        return meterRegistry.counter("avatar.cache.rejections").count();
+    }
+
+    private static byte[] content(int seed) {
+        byte[] content = new byte[AVATAR_SIZE];
+        Arrays.fill(content, (byte) seed);
+        return content;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,283 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.BlobMetadata;
+import com.clinic.demo.DTO.FileResponseDTO;
+import com.clinic.demo.DTO.UploadPictureDTO;
+import com.clinic.demo.DTO.UserAvatarDTO;
+import com.clinic.demo.models.entity.user.PatientEntity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class AvatarServiceTest {
+
+    private static final String BLOB_KEY = "a".repeat(64) + ".png";
+
+    private static final byte[] CONTENT = {(byte) 0x89, 'P', 'N', 'G', 1, 2, 3, 4};
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final Instant LAST_MODIFIED = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final UserService userService = mock(UserService.class);
+    private final BlobStorage storage = mock(BlobStorage.class);
+    private final AvatarBlobStore blobStore = mock(AvatarBlobStore.class);
+    private final AvatarCache avatarCache = new AvatarCache(new SimpleMeterRegistry(), DataSize.ofMegabytes(1),
+            DataSize.ofKilobytes(4));
+    private final AvatarService avatarService = new AvatarService(userService, mock(AuthenticationService.class),
+            mock(AvatarThumbnailService.class), blobStore, storage, avatarCache);
+
+    @TempDir
+    Path stagingDirectory;
+
+    @Test
+    void readsAnAvatarFromStorageOnceThenServesItFromMemory() throws IOException {
+        String storageKey = AvatarBlobStore.storageKey(BLOB_KEY);
+        when(storage.stat(storageKey)).thenReturn(new BlobMetadata(storageKey, CONTENT.length, LAST_MODIFIED));
+        when(storage.open(storageKey)).thenReturn(new ByteArrayInputStream(CONTENT));
+
+        FileResponseDTO miss = avatarService.getAvatarContent(BLOB_KEY);
+        FileResponseDTO hit = avatarService.getAvatarContent(BLOB_KEY);
+
+        for (FileResponseDTO avatar : List.of(miss, hit)) {
+            assertThat(avatar.exists()).isTrue();
+            assertThat(avatar.content().isDirect()).isTrue();
+            assertThat(bytes(avatar.content())).isEqualTo(CONTENT);
+            assertThat(avatar.lastModified()).isEqualTo(LAST_MODIFIED);
+            assertThat(avatar.contentType()).isEqualTo("image/png");
+            assertThat(avatar.etag()).isEqualTo("a".repeat(64));
+        }
+        verify(storage, times(1)).stat(storageKey);
+        verify(storage, times(1)).open(storageKey);
+    }
+
+    @Test
+    void leavesAvatarsTooLargeForTheCacheToBeStreamed() throws IOException {
+        String storageKey = AvatarBlobStore.storageKey(BLOB_KEY);
+        when(storage.stat(storageKey)).thenReturn(new BlobMetadata(storageKey, 5 * 1024, LAST_MODIFIED));
+
+        FileResponseDTO avatar = avatarService.getAvatarContent(BLOB_KEY);
+
+        assertThat(avatar.exists()).isTrue();
+        assertThat(avatar.content()).isNull();
+        assertThat(avatar.storageKey()).isEqualTo(storageKey);
+        verify(storage, never()).open(any());
+    }
+
+    @Test
+    void servesTheDefaultAvatarFromMemory() {
+        when(userService.findAvatarPathByEmail("nopicture@clinic.test")).thenReturn(null);
+
+        FileResponseDTO first = avatarService.getUserProfilePicture("NoPicture@Clinic.test", null);
+        bytes(first.content());
+        FileResponseDTO second = avatarService.getUserProfilePicture("nopicture@clinic.test", 64);
+
+        assertThat(second.exists()).isTrue();
+        assertThat(second.fileName()).isEqualTo("default-avatar.png");
+        assertThat(second.contentType()).isEqualTo("image/png");
+        assertThat(second.content().isReadOnly()).isTrue();
+        assertThat(second.content().remaining()).isEqualTo(first.content().capacity());
+        verifyNoInteractions(storage);
+    }
+
+    @Test
+    void fallsBackToTheDefaultAvatarWhenTheFileIsGone() {
+        when(userService.findAvatarPathByEmail("patient@clinic.test")).thenReturn(BLOB_KEY);
+
+        FileResponseDTO avatar = avatarService.getUserProfilePicture("patient@clinic.test", null);
+
+        assertThat(avatar.fileName()).isEqualTo("default-avatar.png");
+        assertThat(avatar.content()).isNotNull();
+    }
+
+    @Test
+    void answersEveryIdAndEmailInTheOrderAskedOnce() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        when(userService.findAvatarPaths(any(), any())).thenReturn(List.of(
+                new UserAvatarDTO(first, "first@clinic.test", BLOB_KEY),
+                new UserAvatarDTO(second, "second@clinic.test", null)));
+
+        Map<String, String> urls = avatarService.getAvatarUrls(List.of(second, first, second),
+                List.of("Second@Clinic.test", "first@clinic.test", "second@clinic.test"));
+
+        verify(userService).findAvatarPaths(List.of(second, first), List.of("second@clinic.test", "first@clinic.test"));
+        assertThat(urls.keySet()).containsExactly(second.toString(), first.toString(), "second@clinic.test", "first@clinic.test");
+        assertThat(urls.get(first.toString())).isEqualTo("/files/avatar/content/" + BLOB_KEY);
+        assertThat(urls.get("first@clinic.test")).isEqualTo("/files/avatar/content/" + BLOB_KEY);
+    }
+
+    @Test
+    void answersNullForTheDefaultAvatar() {
+        UUID none = UUID.randomUUID();
+        UUID blank = UUID.randomUUID();
+        UUID outside = UUID.randomUUID();
+        when(userService.findAvatarPaths(any(), any())).thenReturn(List.of(
+                new UserAvatarDTO(none, "none@clinic.test", null),
+                new UserAvatarDTO(blank, "blank@clinic.test", " "),
+                new UserAvatarDTO(outside, "outside@clinic.test", "/etc/passwd")));
+
+        Map<String, String> urls = avatarService.getAvatarUrls(List.of(none, blank, outside), List.of());
+
+        assertThat(urls).containsOnlyKeys(none.toString(), blank.toString(), outside.toString());
+        assertThat(urls.values()).containsOnlyNulls();
+    }
+
+    @Test
+    void resolvesAvatarsStoredBeforeTheBlobStore() {
+        UUID legacy = UUID.randomUUID();
+        when(userService.findAvatarPaths(any(), any())).thenReturn(List.of(
+                new UserAvatarDTO(legacy, "legacy@clinic.test", "files/avatars/avatar_1a2b_3c4d.jpg")));
+
+        Map<String, String> urls = avatarService.getAvatarUrls(List.of(), List.of("legacy@clinic.test"));
+
+        assertThat(urls).containsExactly(Map.entry("legacy@clinic.test", "/files/avatar/content/avatar_1a2b_3c4d.jpg"));
+    }
+
+    @Test
+    void answersNullForUnknownUsersLikeForTheDefaultAvatar() {
+        UUID known = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+        when(userService.findAvatarPaths(any(), any())).thenReturn(List.of(
+                new UserAvatarDTO(known, "known@clinic.test", null)));
+
+        Map<String, String> urls = avatarService.getAvatarUrls(List.of(known, unknown), List.of("nobody@clinic.test"));
+
+        assertThat(urls).containsOnlyKeys(known.toString(), unknown.toString(), "nobody@clinic.test");
+        assertThat(urls.values()).containsOnlyNulls();
+    }
+
+    @Test
+    void rejectsARequestWithNeitherIdsNorEmails() {
+        assertThatThrownBy(() -> avatarService.getAvatarUrls(List.of(), List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> avatarService.getAvatarUrls(null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void stopsReadingAnOversizeUploadAtTheLimitAndDeletesTheStagedFile() throws IOException {
+        Path staged = stagingFile();
+        EndlessPng upload = new EndlessPng();
+
+        assertThatThrownBy(() -> avatarService.uploadProfilePicture(new UploadPictureDTO("patient@clinic.test", upload, "me.png")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("5MB");
+
+        // At most one copy buffer past the limit is read before the upload is rejected
+        assertThat(upload.bytesRead).isBetween(5L * 1024 * 1024, 5L * 1024 * 1024 + 16 * 1024);
+        assertThat(staged).doesNotExist();
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void rejectsContentThatIsNotAnImageAndDeletesTheStagedFile() throws IOException {
+        Path staged = stagingFile();
+        InputStream upload = new ByteArrayInputStream("<?php system($_GET['c']); ?>".getBytes());
+
+        assertThatThrownBy(() -> avatarService.uploadProfilePicture(new UploadPictureDTO("patient@clinic.test", upload, "me.png")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid file content");
+
+        assertThat(staged).doesNotExist();
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void rejectsAnEmptyUpload() throws IOException {
+        Path staged = stagingFile();
+
+        assertThatThrownBy(() -> avatarService.uploadProfilePicture(
+                new UploadPictureDTO("patient@clinic.test", InputStream.nullInputStream(), "me.png")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("empty");
+
+        assertThat(staged).doesNotExist();
+    }
+
+    @Test
+    void keysAnUploadByItsHashAndDetectedFormat() throws Exception {
+        Path staged = stagingFile();
+        byte[] png = pngOfSize(40_000);
+        when(userService.findUserByEmail("patient@clinic.test")).thenReturn(new PatientEntity());
+
+        // Uploaded as .jpg, stored as what the bytes say it is
+        avatarService.uploadProfilePicture(new UploadPictureDTO("Patient@Clinic.test", new ByteArrayInputStream(png), "me.jpg"));
+
+        String key = sha256(png) + ".png";
+        verify(blobStore).retain(eq(key), eq(staged), eq((long) png.length));
+        assertThat(staged).doesNotExist();
+    }
+
+    private Path stagingFile() throws IOException {
+        Path staged = Files.createTempFile(stagingDirectory, "upload", ".tmp");
+        when(blobStore.createTempFile()).thenReturn(staged);
+        return staged;
+    }
+
+    private static byte[] pngOfSize(int size) {
+        byte[] png = new byte[size];
+        System.arraycopy(PNG_SIGNATURE, 0, png, 0, PNG_SIGNATURE.length);
+        for (int i = PNG_SIGNATURE.length; i < size; i++)
+            png[i] = (byte) i;
+        return png;
+    }
+
+    private static String sha256(byte[] content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    // A PNG header followed by as many bytes as are asked for, counting them
+    private static class EndlessPng extends InputStream {
+        long bytesRead;
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            read(one, 0, 1);
+            return one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                long position = bytesRead + i;
+                buffer[offset + i] = position < PNG_SIGNATURE.length ? PNG_SIGNATURE[(int) position] : (byte) position;
+            }
+            bytesRead += length;
+            return length;
+        }
+    }
+
+    // Reads the buffer the way the response writer does, from a duplicate
+    private static byte[] bytes(ByteBuffer content) {
+        ByteBuffer copy = content.duplicate();
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,321 @@
+package com.clinic.demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AvatarThumbnailServiceTest {
+
+    private static final int[] SIZES = {32, 64, 128};
+
+    @TempDir
+    Path directory;
+
+    private final List<AvatarThumbnailService> services = new ArrayList<>();
+    private final AtomicInteger opens = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean blockReads;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        services.forEach(AvatarThumbnailService::destroy);
+    }
+
+    @Test
+    void picksTheSmallestVariantAtLeastAsLargeAsRequested() {
+        AvatarThumbnailService service = service(2_000);
+
+        assertThat(service.nearestSize(1)).isEqualTo(32);
+        assertThat(service.nearestSize(32)).isEqualTo(32);
+        assertThat(service.nearestSize(33)).isEqualTo(64);
+        assertThat(service.nearestSize(128)).isEqualTo(128);
+        assertThat(service.nearestSize(129)).isEqualTo(-1);
+    }
+
+    @Test
+    void generatesEveryVariantKeepingTheAspectRatio() throws IOException {
+        AvatarThumbnailService service = service(5_000);
+        store("avatars/a.png", png(400, 200, Color.RED, Color.BLUE));
+
+        assertThat(service.getVariant("avatars/a.png", 50)).isEqualTo("avatars/a_64.png");
+
+        assertThat(dimensions("avatars/a_128.png")).containsExactly(128, 64);
+        assertThat(dimensions("avatars/a_64.png")).containsExactly(64, 32);
+        assertThat(dimensions("avatars/a_32.png")).containsExactly(32, 16);
+    }
+
+    @Test
+    void servesTheOriginalForSizesAboveTheLargestVariantOrImagesItCannotDecode() throws IOException {
+        AvatarThumbnailService service = service(5_000);
+        store("avatars/a.png", png(400, 200, Color.RED, Color.BLUE));
+        store("avatars/b.webp", "RIFF\0\0\0\0WEBPVP8 ".getBytes());
+
+        assertThat(service.getVariant("avatars/a.png", 512)).isNull();
+        assertThat(service.getVariant("avatars/b.webp", 64)).isNull();
+        assertThat(Files.exists(directory.resolve("avatars/a_128.png"))).isFalse();
+        assertThatThrownBy(() -> service.getVariant("avatars/a.png", 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void doesNotUpscaleSmallImages() {
+        BufferedImage scaled = AvatarThumbnailService.scaleToFit(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB), 64, false);
+
+        assertThat(scaled.getWidth()).isEqualTo(20);
+        assertThat(scaled.getHeight()).isEqualTo(10);
+    }
+
+    @Test
+    void decodesLargeImagesSubsampled() throws IOException {
+        AvatarThumbnailService service = service(5_000);
+        store("avatars/large.jpg", jpeg(png(2_000, 1_200, Color.RED, Color.BLUE), null));
+
+        BufferedImage decoded = service.decode("avatars/large.jpg", 256);
+
+        // Every 4th pixel: the shorter side stays between the target and twice the target
+        assertThat(decoded.getWidth()).isEqualTo(500);
+        assertThat(decoded.getHeight()).isEqualTo(300);
+    }
+
+    @Test
+    void appliesTheExifOrientationOfJpegs() throws IOException {
+        AvatarThumbnailService service = service(5_000);
+        // Red on the left; a camera held upright stores the sensor's landscape pixels with orientation 6
+        BufferedImage sensor = png(200, 100, Color.RED, Color.BLUE);
+        store("avatars/rotated.jpg", jpeg(sensor, exif(6, false)));
+        store("avatars/ccw.jpg", jpeg(sensor, exif(8, true)));
+        store("avatars/upright.jpg", jpeg(sensor, null));
+
+        assertThat(service.getVariant("avatars/rotated.jpg", 64)).isEqualTo("avatars/rotated_64.jpg");
+        assertThat(service.getVariant("avatars/ccw.jpg", 64)).isEqualTo("avatars/ccw_64.jpg");
+        assertThat(service.getVariant("avatars/upright.jpg", 64)).isEqualTo("avatars/upright_64.jpg");
+
+        BufferedImage rotated = read("avatars/rotated_64.jpg");
+        assertThat(rotated.getWidth()).isEqualTo(32);
+        assertThat(rotated.getHeight()).isEqualTo(64);
+        assertThat(isRed(rotated.getRGB(16, 4))).isTrue();
+        assertThat(isRed(rotated.getRGB(16, 60))).isFalse();
+
+        BufferedImage counterClockwise = read("avatars/ccw_64.jpg");
+        assertThat(counterClockwise.getWidth()).isEqualTo(32);
+        assertThat(isRed(counterClockwise.getRGB(16, 60))).isTrue();
+        assertThat(isRed(counterClockwise.getRGB(16, 4))).isFalse();
+
+        BufferedImage upright = read("avatars/upright_64.jpg");
+        assertThat(upright.getWidth()).isEqualTo(64);
+        assertThat(upright.getHeight()).isEqualTo(32);
+    }
+
+    @Test
+    void mapsEveryOrientation() {
+        // 2x1: red, blue
+        BufferedImage source = png(2, 1, Color.RED, Color.BLUE);
+
+        assertThat(pixels(AvatarThumbnailService.orient(source, 1))).isEqualTo("RB");
+        assertThat(pixels(AvatarThumbnailService.orient(source, 2))).isEqualTo("BR");
+        assertThat(pixels(AvatarThumbnailService.orient(source, 3))).isEqualTo("BR");
+        assertThat(pixels(AvatarThumbnailService.orient(source, 4))).isEqualTo("RB");
+        // Portrait from here on, read top to bottom
+        assertThat(pixels(AvatarThumbnailService.orient(source, 5))).isEqualTo("RB");
+        assertThat(pixels(AvatarThumbnailService.orient(source, 6))).isEqualTo("RB");
+        assertThat(pixels(AvatarThumbnailService.orient(source, 7))).isEqualTo("BR");
+        assertThat(pixels(AvatarThumbnailService.orient(source, 8))).isEqualTo("BR");
+    }
+
+    @Test
+    void ignoresMissingOrMalformedExif() throws IOException {
+        byte[] truncated = jpeg(png(20, 10, Color.RED, Color.BLUE), exif(6, false));
+        truncated = Arrays.copyOf(truncated, 20);
+
+        assertThat(orientationOf(jpeg(png(20, 10, Color.RED, Color.BLUE), null))).isEqualTo(1);
+        assertThat(orientationOf(jpeg(png(20, 10, Color.RED, Color.BLUE), exif(6, false)))).isEqualTo(6);
+        assertThat(orientationOf(jpeg(png(20, 10, Color.RED, Color.BLUE), exif(9, false)))).isEqualTo(1);
+        assertThat(orientationOf(truncated)).isEqualTo(1);
+        assertThat(orientationOf("not an image".getBytes())).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentRequestsShareOneGeneration() throws Exception {
+        AvatarThumbnailService service = service(5_000);
+        store("avatars/a.png", png(400, 200, Color.RED, Color.BLUE));
+        blockReads = true;
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> variants = new ArrayList<>();
+            for (int i = 0; i < 4; i++)
+                variants.add(callers.submit(() -> service.getVariant("avatars/a.png", 64)));
+            // Give every caller time to find the generation in flight
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<String> variant : variants)
+                assertThat(variant.get(5, TimeUnit.SECONDS)).isEqualTo("avatars/a_64.png");
+        } finally {
+            callers.shutdownNow();
+        }
+        assertThat(opens.get()).isEqualTo(1);
+    }
+
+    @Test
+    void fallsBackToTheOriginalWhenGenerationTakesTooLong() throws Exception {
+        AvatarThumbnailService service = service(50);
+        store("avatars/a.png", png(400, 200, Color.RED, Color.BLUE));
+        blockReads = true;
+
+        assertThat(service.getVariant("avatars/a.png", 64)).isNull();
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Files.exists(directory.resolve("avatars/a_64.png")) && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        // The generation carried on in the background
+        assertThat(service.getVariant("avatars/a.png", 64)).isEqualTo("avatars/a_64.png");
+    }
+
+    private AvatarThumbnailService service(long waitMillis) {
+        BlobStorage storage = new LocalBlobStorage(directory.toString()) {
+            @Override
+            public InputStream open(String key) throws IOException {
+                opens.incrementAndGet();
+                InputStream content = super.open(key);
+                if (!blockReads)
+                    return content;
+                return new FilterInputStream(content) {
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException(e);
+                        }
+                        return super.read(buffer, offset, length);
+                    }
+                };
+            }
+        };
+        AvatarThumbnailService service = new AvatarThumbnailService(new SimpleMeterRegistry(), storage, SIZES, 1, 10, waitMillis);
+        services.add(service);
+        return service;
+    }
+
+    private void store(String key, BufferedImage image) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        store(key, bytes.toByteArray());
+    }
+
+    private void store(String key, byte[] content) throws IOException {
+        Path file = directory.resolve(key);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+
+    private BufferedImage read(String key) throws IOException {
+        return ImageIO.read(directory.resolve(key).toFile());
+    }
+
+    private List<Integer> dimensions(String key) throws IOException {
+        BufferedImage image = read(key);
+        return List.of(image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Left half one color, right half the other.
+     */
+    private static BufferedImage png(int width, int height, Color left, Color right) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(left);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.setColor(right);
+        graphics.fillRect(width / 2, 0, width - width / 2, height);
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * Encodes the image as a JPEG with the APP1 segment, if any, inserted right after SOI.
+     */
+    private static byte[] jpeg(BufferedImage image, byte[] app1) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", encoded);
+        byte[] plain = encoded.toByteArray();
+        if (app1 == null)
+            return plain;
+
+        ByteArrayOutputStream withExif = new ByteArrayOutputStream();
+        withExif.write(plain, 0, 2);
+        withExif.write(app1);
+        withExif.write(plain, 2, plain.length - 2);
+        return withExif.toByteArray();
+    }
+
+    /**
+     * An APP1 segment holding a TIFF header and one IFD entry, the Orientation.
+     */
+    private static byte[] exif(int orientation, boolean littleEndian) {
+        ByteBuffer tiff = ByteBuffer.allocate(26)
+                .order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        tiff.put(littleEndian ? (byte) 'I' : (byte) 'M').put(littleEndian ? (byte) 'I' : (byte) 'M')
+                .putShort((short) 42).putInt(8)
+                .putShort((short) 1)
+                .putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0)
+                .putInt(0);
+
+        ByteBuffer segment = ByteBuffer.allocate(2 + 2 + 6 + tiff.capacity());
+        segment.putShort((short) 0xFFE1).putShort((short) (2 + 6 + tiff.capacity()))
+                .put("Exif\0\0".getBytes()).put(tiff.array());
+        return segment.array();
+    }
+
+    private static int orientationOf(byte[] content) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            int orientation = AvatarThumbnailService.readExifOrientation(input);
+            assertThat(input.getStreamPosition()).isZero();
+            return orientation;
+        }
+    }
+
+    private static String pixels(BufferedImage image) {
+        StringBuilder pixels = new StringBuilder();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++)
+                pixels.append(isRed(image.getRGB(x, y)) ? 'R' : 'B');
+        }
+        return pixels.toString();
+    }
+
+    private static boolean isRed(int rgb) {
+        Color color = new Color(rgb);
+        return color.getRed() > 128 && color.getBlue() < 128;
+    }
+}
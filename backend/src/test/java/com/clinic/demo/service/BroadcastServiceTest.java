@@ -0,0 +1,141 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.BroadcastRecipientDTO;
+import com.clinic.demo.models.entity.BroadcastJobEntity;
+import com.clinic.demo.models.enums.BroadcastStatus;
+import com.clinic.demo.models.enums.notifications.NotificationType;
+import com.clinic.demo.repository.BroadcastJobRepository;
+import com.clinic.demo.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BroadcastServiceTest {
+
+    private static final long BROADCAST_ID = 1L;
+    private static final int CHUNK_SIZE = 4;
+
+    private final BroadcastJobRepository jobRepository = mock(BroadcastJobRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final RecordingTransactionManager transactionManager = new RecordingTransactionManager();
+    // One recipient queued at once, then two per second
+    private final BroadcastService broadcastService = new BroadcastService(jobRepository, userRepository,
+            notificationService, mock(SmsService.class), mock(ApplicationEventPublisher.class), transactionManager,
+            new SimpleMeterRegistry(), CHUNK_SIZE, 60, 2, 1);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        broadcastService.destroy();
+    }
+
+    @Test
+    void throttlesBeforeTheChunkTransactionInsteadOfInsideIt() {
+        BroadcastJobEntity job = job(NotificationType.SYSTEM_MAINTENANCE);
+        when(jobRepository.claim(eq(BROADCAST_ID), any(), any())).thenReturn(1);
+        when(jobRepository.findById(BROADCAST_ID)).thenReturn(Optional.of(job));
+        when(jobRepository.advance(eq(BROADCAST_ID), anyLong(), any(), anyLong(), anyLong(), anyLong(), anyLong(), any()))
+                .thenReturn(1);
+        when(userRepository.streamActivePatientsAfter(any(), any()))
+                .thenReturn(Stream.of(recipient(null), recipient(null), recipient(null), recipient(null)), Stream.empty());
+        List<Boolean> sentInWriteTransaction = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> sentInWriteTransaction.add(transactionManager.inWriteTransaction()))
+                .when(notificationService).sendImmediately(any(), any(), any());
+
+        long start = System.nanoTime();
+        broadcastService.onBroadcastCreated(new BroadcastCreatedEvent(BROADCAST_ID));
+        verify(jobRepository, timeout(10_000)).complete(eq(BROADCAST_ID), any());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(sentInWriteTransaction).containsExactly(true, true, true, true);
+        // Four recipients at one immediately plus two per second take 1.5 s, none of it inside a transaction
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(1_400);
+        assertThat(transactionManager.longestWriteTransactionMillis).isLessThan(500);
+    }
+
+    @Test
+    void marketingRespectsTheOptOut() {
+        BroadcastJobEntity job = job(NotificationType.MARKETING);
+        when(jobRepository.claim(eq(BROADCAST_ID), any(), any())).thenReturn(1);
+        when(jobRepository.findById(BROADCAST_ID)).thenReturn(Optional.of(job));
+        when(jobRepository.advance(eq(BROADCAST_ID), anyLong(), any(), anyLong(), anyLong(), anyLong(), anyLong(), any()))
+                .thenReturn(1);
+        when(userRepository.streamActivePatientsAfter(any(), any()))
+                .thenReturn(Stream.of(recipient(false), recipient(true), recipient(null)));
+
+        broadcastService.onBroadcastCreated(new BroadcastCreatedEvent(BROADCAST_ID));
+        verify(jobRepository, timeout(10_000)).complete(eq(BROADCAST_ID), any());
+
+        verify(notificationService, times(2)).sendImmediately(any(), any(), any());
+        // processed 3, emails 2, sms 0, skipped 1
+        verify(jobRepository).advance(eq(BROADCAST_ID), eq(0L), any(), eq(3L), eq(2L), eq(0L), eq(1L), any());
+    }
+
+    private static BroadcastJobEntity job(NotificationType type) {
+        BroadcastJobEntity job = new BroadcastJobEntity();
+        job.setTitle("Closed on Friday");
+        job.setMessage("The clinic is closed this Friday.");
+        job.setType(type);
+        job.setStatus(BroadcastStatus.RUNNING);
+        return job;
+    }
+
+    private static BroadcastRecipientDTO recipient(Boolean marketingNotificationsEnabled) {
+        UUID id = UUID.randomUUID();
+        return new BroadcastRecipientDTO(id, id + "@example.com", null, null, null, null, null, null, null,
+                marketingNotificationsEnabled);
+    }
+
+    /**
+     * Records how long each read-write transaction stays open, and whether one is open right now.
+     */
+    private static final class RecordingTransactionManager implements PlatformTransactionManager {
+
+        private final ThreadLocal<Long> writeStartedAt = new ThreadLocal<>();
+        private volatile long longestWriteTransactionMillis;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            if (definition == null || !definition.isReadOnly())
+                writeStartedAt.set(System.nanoTime());
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            end();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            end();
+        }
+
+        boolean inWriteTransaction() {
+            return writeStartedAt.get() != null;
+        }
+
+        private void end() {
+            Long startedAt = writeStartedAt.get();
+            if (startedAt == null)
+                return;
+            writeStartedAt.remove();
+            longestWriteTransactionMillis = Math.max(longestWriteTransactionMillis, (System.nanoTime() - startedAt) / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.PostgresContainerTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+@DataJpaTest(properties = {"security.otp.store=database", "security.otp.max-attempts=" + OtpStoreContract.MAX_ATTEMPTS})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(DatabaseOtpStore.class)
+class DatabaseOtpStoreTest extends PostgresContainerTest implements OtpStoreContract {
+
+    @Autowired
+    private DatabaseOtpStore store;
+
+    @Override
+    public OtpStore store() {
+        return store;
+    }
+}
@@ -0,0 +1,50 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.models.enums.OtpPurpose;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryOtpStoreTest implements OtpStoreContract {
+
+    private final InMemoryOtpStore store = new InMemoryOtpStore(MAX_ATTEMPTS);
+
+    @Override
+    public OtpStore store() {
+        return store;
+    }
+
+    @Test
+    void concurrentCallersCannotBothUseTheCode() throws Exception {
+        byte[] codeHash = {1, 2, 3};
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 200; round++) {
+                store.save(EMAIL, OtpPurpose.PASSWORD_RESET, codeHash, Instant.now().plusSeconds(60));
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return store.verify(EMAIL, OtpPurpose.PASSWORD_RESET, codeHash);
+                    }));
+                }
+                start.countDown();
+
+                int accepted = 0;
+                for (Future<Boolean> result : results) {
+                    if (result.get(10, TimeUnit.SECONDS))
+                        accepted++;
+                }
+                assertThat(accepted).isEqualTo(1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.BlobMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class LocalBlobStorageTest {
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+    private LocalBlobStorage storage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createDirectory(directory.resolve("files"));
+        storage = new LocalBlobStorage(root.toString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"../secret.txt", "avatars/../../secret.txt", "avatars/../../files-other/x.png",
+            "/etc/passwd", "", ".", "avatars/..", ".staging/blob_1.tmp", "avatars/../.staging/blob_1.tmp"})
+    void rejectsKeysOutsideTheBlobDirectory(String key) throws IOException {
+        Files.writeString(directory.resolve("secret.txt"), "secret");
+
+        assertThatThrownBy(() -> storage.open(key)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> storage.stat(key)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> storage.delete(key)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> storage.localPath(key)).isInstanceOf(IllegalArgumentException.class);
+        Path file = storage.createStagingFile();
+        assertThatThrownBy(() -> storage.put(key, file)).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(directory.resolve("secret.txt")).hasContent("secret");
+    }
+
+    @Test
+    void acceptsKeysThatNormalizeInsideTheBlobDirectory() throws IOException {
+        storage.put("avatars/a.png", file("a"));
+
+        assertThat(storage.localPath("avatars/../avatars/a.png")).isEqualTo(root.resolve("avatars/a.png"));
+        assertThat(read("avatars/./a.png")).isEqualTo("a");
+    }
+
+    @Test
+    void movesAStagedFileIntoPlace() throws IOException {
+        Path staged = storage.createStagingFile();
+        Files.writeString(staged, "avatar");
+
+        storage.put("avatars/ab/cd/abcd.png", staged);
+
+        assertThat(staged).doesNotExist();
+        assertThat(root.resolve("avatars/ab/cd/abcd.png")).hasContent("avatar");
+        assertThat(stagingFiles()).isEmpty();
+    }
+
+    @Test
+    void copiesAnyOtherFileAndLeavesItInPlace() throws IOException {
+        Path source = file("report");
+
+        storage.put("attachments/report.pdf", source);
+
+        assertThat(source).hasContent("report");
+        assertThat(root.resolve("attachments/report.pdf")).hasContent("report");
+        assertThat(stagingFiles()).isEmpty();
+    }
+
+    @Test
+    void replacesAnExistingBlob() throws IOException {
+        storage.put("avatars/a.png", file("old"));
+        Path staged = storage.createStagingFile();
+        Files.writeString(staged, "new");
+
+        storage.put("avatars/a.png", staged);
+
+        assertThat(read("avatars/a.png")).isEqualTo("new");
+    }
+
+    @Test
+    void listsBlobsUnderAPrefixButNotStagedFiles() throws IOException {
+        storage.put("avatars/ab/one.png", file("1"));
+        storage.put("avatars/ab/two.png", file("22"));
+        storage.put("avatars/abc.png", file("333"));
+        storage.put("avatars/cd/three.png", file("4444"));
+        storage.put("attachments/ab.pdf", file("55555"));
+        Files.writeString(storage.createStagingFile(), "pending");
+
+        assertThat(storage.list("avatars/ab")).extracting(BlobMetadata::key)
+                .containsExactlyInAnyOrder("avatars/ab/one.png", "avatars/ab/two.png", "avatars/abc.png");
+        assertThat(storage.list("avatars/ab/")).extracting(BlobMetadata::key, BlobMetadata::size)
+                .containsExactlyInAnyOrder(
+                        tuple("avatars/ab/one.png", 1L),
+                        tuple("avatars/ab/two.png", 2L));
+        assertThat(storage.list("")).hasSize(5);
+        assertThat(storage.list("thumbnails/")).isEmpty();
+        assertThatThrownBy(() -> storage.list("../files/")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void readsFromAnOffset() throws IOException {
+        storage.put("attachments/a.txt", file("0123456789"));
+
+        try (InputStream in = storage.open("attachments/a.txt", 4, 3)) {
+            assertThat(new String(in.readNBytes(3), StandardCharsets.UTF_8)).isEqualTo("456");
+        }
+    }
+
+    @Test
+    void reportsMissingBlobs() throws IOException {
+        assertThat(storage.stat("avatars/missing.png")).isNull();
+        assertThatThrownBy(() -> storage.open("avatars/missing.png")).isInstanceOf(NoSuchFileException.class);
+        storage.delete("avatars/missing.png");
+    }
+
+    private Path file(String content) throws IOException {
+        Path file = Files.createTempFile(directory, "source", ".bin");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private String read(String key) throws IOException {
+        try (InputStream in = storage.open(key)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private List<Path> stagingFiles() throws IOException {
+        try (Stream<Path> files = Files.list(root.resolve(".staging"))) {
+            return files.toList();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.PostgresContainerTest;
+import com.clinic.demo.models.entity.MailOutboxEntity;
+import com.clinic.demo.models.enums.MailStatus;
+import com.clinic.demo.repository.MailOutboxRepository;
+import com.clinic.demo.utils.FakeSmtpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Delivers the outbox to an in-process SMTP server, in real transactions (the test itself is not transactional).
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MailDispatcherTest extends PostgresContainerTest {
+
+    private static final int POOL_SIZE = 2;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long INITIAL_RETRY_DELAY_SECONDS = 30;
+
+    @Autowired
+    private MailOutboxRepository outboxRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @MockBean
+    private BlobStorage blobStorage;
+
+    private FakeSmtpServer server;
+    private MailDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeSmtpServer();
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(server.getPort());
+        dispatcher = new MailDispatcher(outboxRepository, mailSender, blobStorage, transactionManager,
+                new SimpleMeterRegistry(), POOL_SIZE, 60, 1000, 100, 50, MAX_ATTEMPTS,
+                INITIAL_RETRY_DELAY_SECONDS, 60, 10, 7);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        dispatcher.destroy();
+        server.close();
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void deliversTheOutboxOverPooledConnections() throws InterruptedException {
+        List<Long> first = queue(10, "patient@example.com");
+
+        dispatcher.poll();
+        awaitStatus(first, MailStatus.SENT);
+
+        List<Long> second = queue(5, "patient@example.com");
+        dispatcher.poll();
+        awaitStatus(second, MailStatus.SENT);
+
+        assertThat(server.getMessages()).hasSize(15);
+        assertThat(server.getMessages().get(0)).contains("Subject: Appointment reminder");
+        // Connections from the first batch were kept and reused for the second
+        assertThat(server.getConnections()).isBetween(1, POOL_SIZE);
+        assertThat(outboxRepository.findById(first.get(0)).orElseThrow().getSentAt()).isNotNull();
+    }
+
+    @Test
+    void retriesATransientFailureWithBackoff() throws InterruptedException {
+        server.failNextMessages(1);
+        Long id = queue(1, "patient@example.com").get(0);
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.poll();
+        MailOutboxEntity failed = awaitStatus(List.of(id), message -> message.getAttempts() == 1).get(0);
+
+        assertThat(failed.getStatus()).isEqualTo(MailStatus.PENDING);
+        assertThat(failed.getLastError()).contains("451");
+        // Half to all of the initial delay, jittered
+        assertThat(failed.getNextAttemptAt())
+                .isAfterOrEqualTo(before.plusSeconds(INITIAL_RETRY_DELAY_SECONDS / 2))
+                .isBefore(LocalDateTime.now().plusSeconds(INITIAL_RETRY_DELAY_SECONDS + 1));
+        assertThat(server.getMessages()).isEmpty();
+
+        // Not retried before it is due
+        dispatcher.poll();
+        Thread.sleep(200);
+        assertThat(outboxRepository.findById(id).orElseThrow().getStatus()).isEqualTo(MailStatus.PENDING);
+
+        makeDue(id);
+        dispatcher.poll();
+        MailOutboxEntity sent = awaitStatus(List.of(id), MailStatus.SENT).get(0);
+
+        assertThat(sent.getAttempts()).isEqualTo(1);
+        assertThat(server.getMessages()).hasSize(1);
+    }
+
+    @Test
+    void failsAMessageOnceItRunsOutOfAttempts() throws InterruptedException {
+        server.failNextMessages(MAX_ATTEMPTS);
+        Long id = queue(1, "patient@example.com").get(0);
+
+        for (int attempt = 1; attempt < MAX_ATTEMPTS; attempt++) {
+            dispatcher.poll();
+            int attempts = attempt;
+            awaitStatus(List.of(id), message -> message.getAttempts() == attempts);
+            makeDue(id);
+        }
+        dispatcher.poll();
+        MailOutboxEntity failed = awaitStatus(List.of(id), MailStatus.FAILED).get(0);
+
+        assertThat(failed.getAttempts()).isEqualTo(MAX_ATTEMPTS);
+        assertThat(server.getMessages()).isEmpty();
+    }
+
+    @Test
+    void failsARejectedRecipientAtOnce() throws InterruptedException {
+        server.rejectRecipient("gone@example.com");
+        Long rejected = queue(1, "gone@example.com").get(0);
+        Long delivered = queue(1, "patient@example.com").get(0);
+
+        dispatcher.poll();
+        MailOutboxEntity failed = awaitStatus(List.of(rejected), MailStatus.FAILED).get(0);
+        awaitStatus(List.of(delivered), MailStatus.SENT);
+
+        assertThat(failed.getAttempts()).isEqualTo(1);
+        assertThat(failed.getLastError()).contains("SendFailedException");
+        assertThat(server.getMessages()).hasSize(1);
+    }
+
+    private List<Long> queue(int count, String recipient) {
+        List<MailOutboxEntity> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MailOutboxEntity message = new MailOutboxEntity();
+            message.setRecipient(recipient);
+            message.setSubject("Appointment reminder");
+            message.setHtmlContent("<p>See you soon</p>");
+            message.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+            messages.add(message);
+        }
+        return outboxRepository.saveAll(messages).stream().map(MailOutboxEntity::getId).toList();
+    }
+
+    private void makeDue(Long id) {
+        MailOutboxEntity message = outboxRepository.findById(id).orElseThrow();
+        message.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        outboxRepository.save(message);
+    }
+
+    private List<MailOutboxEntity> awaitStatus(List<Long> ids, MailStatus status) throws InterruptedException {
+        return awaitStatus(ids, message -> message.getStatus() == status);
+    }
+
+    private List<MailOutboxEntity> awaitStatus(List<Long> ids, Predicate<MailOutboxEntity> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            List<MailOutboxEntity> messages = outboxRepository.findAllById(ids);
+            if (messages.size() == ids.size() && messages.stream().allMatch(condition))
+                return messages;
+            assertThat(System.nanoTime()).as("Outbox messages %s never got there: %s", ids, messages).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.repository.MailOutboxRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MailServiceTest {
+
+    private final MailOutboxRepository outboxRepository = mock(MailOutboxRepository.class);
+    private final BlobStorage blobStorage = mock(BlobStorage.class);
+    private final MailService mailService = new MailService(outboxRepository, mock(ApplicationEventPublisher.class),
+            new MailTemplateService(), blobStorage, 10);
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void deletesTheStoredAttachmentWhenTheTransactionRollsBack() throws IOException {
+        when(outboxRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        TransactionSynchronizationManager.initSynchronization();
+
+        mailService.sendEmailWithAttachment("a@example.com", "Report", "<p>Attached</p>", attachment());
+        String key = storedKey();
+        verify(blobStorage, never()).delete(any());
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        verify(blobStorage).delete(key);
+    }
+
+    @Test
+    void keepsTheStoredAttachmentWhenTheTransactionCommits() throws IOException {
+        when(outboxRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        TransactionSynchronizationManager.initSynchronization();
+
+        mailService.sendEmailWithAttachment("a@example.com", "Report", "<p>Attached</p>", attachment());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        verify(blobStorage, never()).delete(any());
+    }
+
+    @Test
+    void deletesTheStoredAttachmentWhenQueueingFailsOutsideATransaction() throws IOException {
+        when(outboxRepository.save(any())).thenThrow(new DataIntegrityViolationException("recipient too long"));
+
+        assertThatThrownBy(() -> mailService.sendEmailWithAttachment("a@example.com", "Report", "<p>Attached</p>", attachment()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+
+        String key = storedKey();
+        verify(blobStorage).delete(key);
+    }
+
+    @Test
+    void storesNothingWithoutAnAttachment() throws IOException {
+        when(outboxRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        TransactionSynchronizationManager.initSynchronization();
+
+        mailService.sendEmailWithAttachment("a@example.com", "Hello", "<p>Hi</p>", null);
+
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).isEmpty();
+        verifyNoInteractions(blobStorage);
+    }
+
+    private Path attachment() throws IOException {
+        return Files.writeString(directory.resolve("report.pdf"), "%PDF-1.7");
+    }
+
+    private String storedKey() throws IOException {
+        ArgumentCaptor<String> key = ArgumentCaptor.forClass(String.class);
+        verify(blobStorage).put(key.capture(), eq(directory.resolve("report.pdf")));
+        assertThat(key.getValue()).startsWith("mail-attachments/").endsWith("/report.pdf");
+        return key.getValue();
+    }
+
+    private static void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+            synchronization.afterCompletion(status);
+    }
+}
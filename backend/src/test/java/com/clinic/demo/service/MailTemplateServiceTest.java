@@ -0,0 +1,53 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.service.MailTemplateService.RenderedMail;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MailTemplateServiceTest {
+
+    private final MailTemplateService templateService = new MailTemplateService();
+
+    @Test
+    void digestItemsAreEscapedInTheFragmentAndInsertedRawIntoTheDigest() {
+        String item = templateService.renderFragment("notification-digest-item", Locale.ENGLISH,
+                Map.of("title", "Lab <results>", "message", "Ready & waiting"));
+        RenderedMail digest = templateService.render("notification-digest", Locale.ENGLISH,
+                Map.of("count", 2, "items", item + item));
+
+        assertThat(item).contains("Lab &lt;results&gt;").contains("Ready &amp; waiting");
+        // The fragment's markup survives, and its escaped values are not escaped a second time
+        assertThat(digest.html()).contains(item + item).doesNotContain("&amp;lt;").doesNotContain("&lt;div");
+        assertThat(digest.subject()).isEqualTo("You have 2 new notifications");
+    }
+
+    @Test
+    void subjectsAreNotHtmlEscaped() {
+        RenderedMail mail = templateService.render("notification", Locale.ENGLISH,
+                Map.of("title", "Q&A", "message", "<b>hi</b>"));
+
+        assertThat(mail.subject()).isEqualTo("Notification - Q&A");
+        assertThat(mail.html()).contains("Q&amp;A").contains("&lt;b&gt;hi&lt;/b&gt;");
+    }
+
+    @Test
+    void picksTheMostSpecificLocalizedVariant() {
+        Map<String, String> values = Map.of("title", "Termin", "message", "Bestätigt");
+
+        assertThat(templateService.render("notification", Locale.GERMAN, values).subject()).isEqualTo("Benachrichtigung - Termin");
+        assertThat(templateService.render("notification", Locale.GERMANY, values).subject()).isEqualTo("Benachrichtigung - Termin");
+        assertThat(templateService.render("notification", Locale.FRENCH, values).subject()).isEqualTo("Notification - Termin");
+        assertThat(templateService.render("notification", null, values).subject()).isEqualTo("Notification - Termin");
+    }
+
+    @Test
+    void unknownTemplatesAreRejected() {
+        assertThatThrownBy(() -> templateService.render("no-such-template", Locale.ENGLISH, Map.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
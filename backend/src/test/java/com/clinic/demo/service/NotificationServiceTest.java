@@ -0,0 +1,113 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.NotificationMessage;
+import com.clinic.demo.configuration.NotificationDigestProperties;
+import com.clinic.demo.models.enums.notifications.NotificationType;
+import com.clinic.demo.utils.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.i18n.LocaleContextHolder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NotificationServiceTest {
+
+    private static final String EMAIL = "patient@example.com";
+
+    private final MailService mailService = mock(MailService.class);
+    private final NotificationDigestProperties properties = new NotificationDigestProperties();
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-03-02T09:00:00.250Z"), ZoneOffset.UTC);
+    private final NotificationService notificationService =
+            new NotificationService(mailService, properties, new SimpleMeterRegistry(), clock);
+
+    @AfterEach
+    void resetLocale() {
+        LocaleContextHolder.resetLocaleContext();
+    }
+
+    @Test
+    void bypassTypesAreSentAtOnce() {
+        LocaleContextHolder.setLocale(Locale.GERMAN);
+
+        notificationService.sendNotification(EMAIL, NotificationType.EMERGENCY_ALERT, "Closed", "Clinic closed today");
+
+        verify(mailService).sendNotification(EMAIL, Locale.GERMAN, "Closed", "Clinic closed today");
+        assertThat(notificationService.pendingDigests()).isZero();
+    }
+
+    @Test
+    void burstsToOneRecipientBecomeOneDigestInTheLocaleTheyWereQueuedIn() {
+        LocaleContextHolder.setLocale(Locale.GERMAN);
+        notificationService.sendNotification(EMAIL, NotificationType.LAB_RESULTS, "Lab", "Results ready");
+        notificationService.sendNotification(EMAIL.toUpperCase(), NotificationType.APPOINTMENT_CONFIRMATION, "Booked", "See you");
+        verifyNoInteractions(mailService);
+        assertThat(notificationService.pendingDigests()).isEqualTo(1);
+
+        // Flushed from another thread, whose locale is not the request's
+        LocaleContextHolder.setLocale(Locale.FRENCH);
+        notificationService.destroy();
+
+        verify(mailService).sendNotificationDigest(EMAIL, Locale.GERMAN, List.of(
+                new NotificationMessage(NotificationType.LAB_RESULTS, "Lab", "Results ready"),
+                new NotificationMessage(NotificationType.APPOINTMENT_CONFIRMATION, "Booked", "See you")));
+        assertThat(notificationService.pendingDigests()).isZero();
+    }
+
+    @Test
+    void aLoneNotificationIsSentAsARegularNotification() {
+        notificationService.sendNotification(EMAIL, NotificationType.LAB_RESULTS, "Lab", "Results ready");
+
+        notificationService.destroy();
+
+        verify(mailService).sendNotification(eq(EMAIL), any(), eq("Lab"), eq("Results ready"));
+        verify(mailService, never()).sendNotificationDigest(any(), any(), any());
+    }
+
+    @Test
+    void aFullDigestIsSentWithoutWaitingForItsWindow() {
+        properties.setMaxItems(3);
+        for (int i = 0; i < 3; i++)
+            notificationService.sendNotification(EMAIL, NotificationType.MARKETING, "Offer " + i, "Details");
+
+        verify(mailService).sendNotificationDigest(eq(EMAIL), any(), argThat(list -> list.size() == 3));
+        assertThat(notificationService.pendingDigests()).isZero();
+    }
+
+    @Test
+    void flushesWhenTheEarliestWindowCloses() {
+        properties.setWindows(new EnumMap<>(Map.of(
+                NotificationType.APPOINTMENT_CONFIRMATION, Duration.ofSeconds(1))));
+        notificationService.sendNotification(EMAIL, NotificationType.MARKETING, "Offer", "Details");
+        notificationService.sendNotification(EMAIL, NotificationType.APPOINTMENT_CONFIRMATION, "Booked", "See you");
+
+        notificationService.flushDue();
+        clock.advance(Duration.ofMillis(900));
+        notificationService.flushDue();
+        verifyNoInteractions(mailService);
+
+        // Windows close at tick granularity, so within a second of the deadline
+        clock.advance(Duration.ofMillis(1_100));
+        notificationService.flushDue();
+        verify(mailService).sendNotificationDigest(eq(EMAIL), any(), argThat(list -> list.size() == 2));
+    }
+
+    @Test
+    void immediateSendsPropagateFailures() {
+        doThrow(new IllegalStateException("outbox down")).when(mailService).sendNotification(any(), any(), any(), any());
+
+        assertThatThrownBy(() -> notificationService.sendImmediately(EMAIL, "Offer", "Details"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
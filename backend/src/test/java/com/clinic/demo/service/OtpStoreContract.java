@@ -0,0 +1,100 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.models.enums.OtpPurpose;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Behaviour every {@link OtpStore} must share, run against each implementation. Stores under test allow
+ * {@link #MAX_ATTEMPTS} wrong guesses.
+ */
+interface OtpStoreContract {
+
+    int MAX_ATTEMPTS = 3;
+    String EMAIL = "patient@example.com";
+
+    OtpStore store();
+
+    @Test
+    default void acceptsTheCodeOnce() {
+        store().save(EMAIL, OtpPurpose.PASSWORD_RESET, hash("123456"), inMinutes(5));
+
+        assertThat(store().verify(EMAIL, OtpPurpose.PASSWORD_RESET, hash("123456"))).isTrue();
+        assertThat(store().verify(EMAIL, OtpPurpose.PASSWORD_RESET, hash("123456"))).isFalse();
+    }
+
+    @Test
+    default void codesAreKeptPerEmailAndPurpose() {
+        store().save(EMAIL, OtpPurpose.PASSWORD_RESET, hash("111111"), inMinutes(5));
+        store().save(EMAIL, OtpPurpose.EMAIL_VERIFICATION, hash("222222"), inMinutes(5));
+
+        assertThat(store().verify("other@example.com", OtpPurpose.PASSWORD_RESET, hash("111111"))).isFalse();
+        assertThat(store().verify(EMAIL, OtpPurpose.PASSWORD_RESET, hash("222222"))).isFalse();
+        assertThat(store().verify(EMAIL, OtpPurpose.EMAIL_VERIFICATION, hash("222222"))).isTrue();
+        assertThat(store().verify(EMAIL, OtpPurpose.PASSWORD_RESET, hash("111111"))).isTrue();
+    }
+
+    @Test
+    default void aNewCodeReplacesThePendingOne() {
+        store().save(EMAIL, OtpPurpose.TWO_FACTOR_AUTH, hash("111111"), inMinutes(5));
+        store().save(EMAIL, OtpPurpose.TWO_FACTOR_AUTH, hash("222222"), inMinutes(5));
+
+        assertThat(store().verify(EMAIL, OtpPurpose.TWO_FACTOR_AUTH, hash("111111"))).isFalse();
+        assertThat(store().verify(EMAIL, OtpPurpose.TWO_FACTOR_AUTH, hash("222222"))).isTrue();
+    }
+
+    @Test
+    default void expiredCodesAreRejected() {
+        store().save(EMAIL, OtpPurpose.PASSWORD_RESET, hash("123456"), Instant.now().minusSeconds(1));
+
+        assertThat(store().verify(EMAIL, OtpPurpose.PASSWORD_RESET, hash("123456"))).isFalse();
+    }
+
+    @Test
+    default void tooManyWrongGuessesBurnTheCode() {
+        store().save(EMAIL, OtpPurpose.PASSWORD_RESET, hash("123456"), inMinutes(5));
+
+        for (int i = 0; i < MAX_ATTEMPTS; i++)
+            assertThat(store().verify(EMAIL, OtpPurpose.PASSWORD_RESET, hash("000000"))).isFalse();
+
+        assertThat(store().verify(EMAIL, OtpPurpose.PASSWORD_RESET, hash("123456"))).isFalse();
+    }
+
+    @Test
+    default void wrongGuessesBelowTheLimitLeaveTheCodeUsable() {
+        store().save(EMAIL, OtpPurpose.PASSWORD_RESET, hash("123456"), inMinutes(5));
+
+        for (int i = 0; i < MAX_ATTEMPTS - 1; i++)
+            store().verify(EMAIL, OtpPurpose.PASSWORD_RESET, hash("000000"));
+
+        assertThat(store().verify(EMAIL, OtpPurpose.PASSWORD_RESET, hash("123456"))).isTrue();
+    }
+
+    @Test
+    default void removeExpiredKeepsPendingCodes() {
+        store().save(EMAIL, OtpPurpose.PASSWORD_RESET, hash("111111"), Instant.now().minusSeconds(1));
+        store().save(EMAIL, OtpPurpose.EMAIL_VERIFICATION, hash("222222"), inMinutes(5));
+
+        store().removeExpired();
+
+        assertThat(store().verify(EMAIL, OtpPurpose.EMAIL_VERIFICATION, hash("222222"))).isTrue();
+    }
+
+    private static Instant inMinutes(long minutes) {
+        return Instant.now().plusSeconds(minutes * 60);
+    }
+
+    private static byte[] hash(String code) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(code.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.models.entity.RoleEntity;
+import com.clinic.demo.models.enums.PermissionEnum;
+import com.clinic.demo.repository.PermissionsVersionRepository;
+import com.clinic.demo.repository.RoleRepository;
+import com.clinic.demo.utils.PermissionAuthenticationToken;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class RolePermissionCacheTest {
+
+    private final RoleRepository roleRepository = mock(RoleRepository.class);
+    private final PermissionsVersionRepository permissionsVersionRepository = mock(PermissionsVersionRepository.class);
+    private final UserDetailsCache userDetailsCache = mock(UserDetailsCache.class);
+    private final RolePermissionCache cache =
+            new RolePermissionCache(roleRepository, permissionsVersionRepository, userDetailsCache);
+
+    @Test
+    void takesTheVersionFromTheDatabaseSoItMatchesOnEveryNode() {
+        RoleEntity role = RoleEntity.builder().name("ROLE_DOCTOR").permissions(Set.of(PermissionEnum.values()[0])).build();
+        when(roleRepository.findAll()).thenReturn(List.of(role));
+        when(permissionsVersionRepository.findCurrent()).thenReturn(Optional.of(7L));
+
+        cache.reload();
+
+        assertThat(cache.getVersion()).isEqualTo(7);
+        assertThat(cache.maskForRoleNames(Set.of("ROLE_DOCTOR")).has(PermissionEnum.values()[0])).isTrue();
+        verify(userDetailsCache).evictAll();
+    }
+
+    @Test
+    void aNewVersionAloneEvictsCachedPrincipals() {
+        when(roleRepository.findAll()).thenReturn(List.of());
+        when(permissionsVersionRepository.findCurrent()).thenReturn(Optional.of(1L), Optional.of(1L), Optional.of(2L));
+
+        cache.reload();
+        cache.reload();
+        verify(userDetailsCache, times(1)).evictAll();
+
+        cache.reload();
+        verify(userDetailsCache, times(2)).evictAll();
+    }
+
+    @Test
+    void rejectsTokensBuiltFromAnOlderVersionOrWithoutOne() {
+        when(roleRepository.findAll()).thenReturn(List.of());
+        when(permissionsVersionRepository.findCurrent()).thenReturn(Optional.of(3L));
+        cache.reload();
+
+        assertThat(cache.isStale(token(2L))).isTrue();
+        assertThat(cache.isStale(token(null))).isTrue();
+        assertThat(cache.isStale(token(3L))).isFalse();
+        // Minted by a node that reloaded first
+        assertThat(cache.isStale(token(4L))).isFalse();
+    }
+
+    private static Jwt token(Long permissionsVersion) {
+        Jwt.Builder builder = Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .subject("user")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(60));
+        if (permissionsVersion != null)
+            builder.claim(PermissionAuthenticationToken.PERMISSIONS_VERSION_CLAIM, permissionsVersion);
+        return builder.build();
+    }
+}
@@ -0,0 +1,204 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.BlobMetadata;
+import com.clinic.demo.utils.AwsV4Signer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Runs against a real MinIO, so multipart uploads, ranges and error responses are those of an S3 implementation
+ * rather than of a stub.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class S3BlobStorageTest {
+
+    private static final String BUCKET = "blobs";
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+    // Three parts, the last one short
+    private static final byte[] LARGE = randomBytes(2 * PART_SIZE + 123_457);
+
+    @Container
+    private static final MinIOContainer MINIO = new MinIOContainer("minio/minio:RELEASE.2023-09-04T19-57-37Z");
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void createBucket() throws Exception {
+        HttpResponse<String> response = s3("PUT", URI.create(MINIO.getS3URL() + "/" + BUCKET));
+        assertThat(response.statusCode()).as(response.body()).isEqualTo(200);
+    }
+
+    @Test
+    void uploadsLargeFilesInPartsAndReadsThemBack() throws IOException {
+        S3BlobStorage storage = storage(MINIO.getS3URL());
+
+        storage.put("multipart/large.bin", file(LARGE));
+
+        assertThat(storage.stat("multipart/large.bin").size()).isEqualTo(LARGE.length);
+        try (InputStream content = storage.open("multipart/large.bin")) {
+            assertThat(content.readAllBytes()).isEqualTo(LARGE);
+        }
+        assertThat(storage.list("multipart/")).extracting(BlobMetadata::key, BlobMetadata::size)
+                .containsExactly(tuple("multipart/large.bin", (long) LARGE.length));
+    }
+
+    @Test
+    void abortsTheMultipartUploadWhenAPartFails() throws Exception {
+        // The connection is cut in the middle of the second part; the abort goes out on a new one
+        try (CuttingProxy proxy = new CuttingProxy(URI.create(MINIO.getS3URL()), PART_SIZE + PART_SIZE / 2)) {
+            S3BlobStorage storage = storage("http://localhost:" + proxy.port());
+
+            assertThatThrownBy(() -> storage.put("aborted/large.bin", file(LARGE))).isInstanceOf(IOException.class);
+
+            assertThat(proxy.cut()).isTrue();
+            assertThat(storage.stat("aborted/large.bin")).isNull();
+        }
+        HttpResponse<String> uploads = s3("GET", URI.create(MINIO.getS3URL() + "/" + BUCKET + "?uploads&prefix=aborted%2Flarge.bin"));
+        assertThat(uploads.statusCode()).as(uploads.body()).isEqualTo(200);
+        assertThat(uploads.body()).doesNotContain("<Upload>");
+    }
+
+    @Test
+    void fetchesOnlyTheRequestedRange() throws IOException {
+        S3BlobStorage storage = storage(MINIO.getS3URL());
+        storage.put("ranged/large.bin", file(LARGE));
+
+        // Across the boundary between the first two parts
+        try (InputStream range = storage.open("ranged/large.bin", PART_SIZE - 3, 6)) {
+            assertThat(range.readAllBytes()).isEqualTo(Arrays.copyOfRange(LARGE, PART_SIZE - 3, PART_SIZE + 3));
+        }
+        // Past the end, the server sends what there is
+        try (InputStream tail = storage.open("ranged/large.bin", LARGE.length - 4, 100)) {
+            assertThat(tail.readAllBytes()).isEqualTo(Arrays.copyOfRange(LARGE, LARGE.length - 4, LARGE.length));
+        }
+    }
+
+    @Test
+    void fetchesRangesOfSmallBlobsThatAreNotCachedYet() throws IOException {
+        S3BlobStorage storage = storage(MINIO.getS3URL());
+        byte[] small = "0123456789".getBytes();
+        storage.put("ranged/small.txt", file(small));
+
+        try (InputStream range = storage.open("ranged/small.txt", 2, 4)) {
+            assertThat(range.readNBytes(4)).isEqualTo("2345".getBytes());
+        }
+        assertThatThrownBy(() -> storage.open("ranged/missing.txt", 0, 4)).isInstanceOf(NoSuchFileException.class);
+    }
+
+    private Path file(byte[] content) throws IOException {
+        return Files.write(Files.createTempFile(directory, "blob_", ".tmp"), content);
+    }
+
+    private static S3BlobStorage storage(String endpoint) {
+        return new S3BlobStorage(new SimpleMeterRegistry(), endpoint, "us-east-1", BUCKET, MINIO.getUserName(),
+                MINIO.getPassword(), true, DataSize.ofBytes(PART_SIZE), Duration.ofSeconds(10), DataSize.ofMegabytes(1),
+                DataSize.ofKilobytes(64));
+    }
+
+    private static HttpResponse<String> s3(String method, URI uri) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).method(method, HttpRequest.BodyPublishers.noBody());
+        new AwsV4Signer(MINIO.getUserName(), MINIO.getPassword(), "us-east-1", "s3")
+                .sign(method, uri, Instant.now()).forEach(request::header);
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Forwards TCP connections to the target, and closes the one carrying the request byte past the limit,
+     * once.
+     */
+    private static final class CuttingProxy implements AutoCloseable {
+
+        private final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        private final URI target;
+        private final AtomicLong bytesBeforeCut;
+        private volatile boolean cut;
+
+        CuttingProxy(URI target, long bytesBeforeCut) throws IOException {
+            this.target = target;
+            this.bytesBeforeCut = new AtomicLong(bytesBeforeCut);
+            Thread.ofPlatform().daemon().start(this::accept);
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        boolean cut() {
+            return cut;
+        }
+
+        private void accept() {
+            while (!server.isClosed()) {
+                try {
+                    Socket client = server.accept();
+                    Socket upstream = new Socket(target.getHost(), target.getPort());
+                    Thread.ofPlatform().daemon().start(() -> pump(client, upstream, true));
+                    Thread.ofPlatform().daemon().start(() -> pump(upstream, client, false));
+                } catch (IOException closed) {
+                    return;
+                }
+            }
+        }
+
+        private void pump(Socket from, Socket to, boolean request) {
+            byte[] buffer = new byte[64 * 1024];
+            try (from; to) {
+                InputStream in = from.getInputStream();
+                OutputStream out = to.getOutputStream();
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    if (request && !cut && bytesBeforeCut.addAndGet(-read) < 0) {
+                        cut = true;
+                        return;
+                    }
+                    out.write(buffer, 0, read);
+                }
+            } catch (IOException closed) {
+                // Either side went away; closing both ends tells the other
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.SmsMessage;
+import com.clinic.demo.configuration.SmsProperties;
+import com.clinic.demo.utils.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Linger is waited for in real time; rate limit waits and retry backoff only advance {@link FakeTicker}, which
+ * records them instead of sleeping.
+ */
+class SmsServiceTest {
+
+    private final RecordingGateway gateway = new RecordingGateway();
+    private final FakeTicker ticker = new FakeTicker();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SmsService service;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (service != null)
+            service.destroy();
+    }
+
+    @Test
+    void coalescesQueuedMessagesIntoBatchesOfTheProvidersSize() throws InterruptedException {
+        service = service(limits(3, 1000, 100), Duration.ofMillis(200));
+
+        for (int i = 0; i < 7; i++)
+            service.sendSms("+1555000000" + i, "Reminder " + i);
+
+        List<List<SmsMessage>> batches = gateway.awaitMessages(7);
+        assertThat(batches).extracting(List::size).containsExactly(3, 3, 1);
+        assertThat(batches.stream().flatMap(List::stream).map(SmsMessage::text))
+                .containsExactly("Reminder 0", "Reminder 1", "Reminder 2", "Reminder 3", "Reminder 4", "Reminder 5", "Reminder 6");
+        assertThat(awaitCount("sms.sent", 7)).isEqualTo(7);
+    }
+
+    @Test
+    void aPartialBatchIsSentOnceTheLingerHasPassed() throws InterruptedException {
+        service = service(limits(10, 1000, 100), Duration.ofMillis(150));
+
+        long start = System.nanoTime();
+        service.sendSms("+15550000000", "First");
+        Thread.sleep(50);
+        service.sendSms("+15550000001", "Second");
+
+        List<List<SmsMessage>> batches = gateway.awaitMessages(2);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(gateway.firstSentAt() - start)).isGreaterThanOrEqualTo(150);
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).extracting(SmsMessage::text).containsExactly("First", "Second");
+    }
+
+    @Test
+    void holdsMessagesToTheProvidersRateAfterTheBurst() throws InterruptedException {
+        long start = ticker.nanoTime();
+        service = service(limits(1, 10, 2), Duration.ZERO);
+
+        for (int i = 0; i < 5; i++)
+            service.sendSms("+1555000000" + i, "Reminder " + i);
+        gateway.awaitMessages(5);
+
+        // Two at once, then one every 100ms
+        List<Long> sentAt = gateway.sentAt();
+        for (int i = 1; i < sentAt.size(); i++)
+            assertThat(sentAt.get(i) - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100) * (i - 1));
+        assertThat(ticker.slept()).allMatch(nanos -> nanos <= TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(ticker.slept().stream().mapToLong(Long::longValue).sum()).isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    void retriesAFailedBatchWithAGrowingDelay() throws InterruptedException {
+        gateway.failures.set(2);
+        service = service(limits(10, 1000, 100), Duration.ZERO);
+
+        service.sendSms("+15550000000", "Reminder");
+
+        gateway.awaitMessages(1);
+        assertThat(gateway.attempts.get()).isEqualTo(3);
+        assertThat(ticker.slept()).containsExactly(TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(2));
+        assertThat(awaitCount("sms.sent", 1)).isEqualTo(1);
+        assertThat(meterRegistry.get("sms.failed").counter().count()).isZero();
+    }
+
+    @Test
+    void dropsABatchAfterThreeAttempts() throws InterruptedException {
+        gateway.failures.set(Integer.MAX_VALUE);
+        service = service(limits(10, 1000, 100), Duration.ZERO);
+
+        service.sendSms("+15550000000", "Reminder");
+
+        assertThat(awaitCount("sms.failed", 1)).isEqualTo(1);
+        assertThat(meterRegistry.get("sms.sent").counter().count()).isZero();
+        assertThat(gateway.attempts.get()).isEqualTo(3);
+        assertThat(ticker.slept()).containsExactly(TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    void rejectsMessagesBeyondTheQueueCapacity() throws InterruptedException {
+        gateway.blocked = true;
+        SmsProperties properties = properties(limits(1, 1000, 100), Duration.ZERO);
+        properties.setQueueCapacity(2);
+        service = new SmsService(List.of(gateway), properties, meterRegistry, ticker);
+
+        // One being sent, one waiting for a batch permit, two queued
+        for (int i = 0; i < 2; i++)
+            service.sendSms("+1555000000" + i, "Reminder");
+        Thread.sleep(100);
+        for (int i = 2; i < 4; i++)
+            service.sendSms("+1555000000" + i, "Reminder");
+
+        assertThatThrownBy(() -> service.sendSms("+15550000009", "Reminder")).isInstanceOf(IllegalStateException.class);
+        assertThat(meterRegistry.get("sms.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void refusesANonPositiveRate() {
+        assertThatThrownBy(() -> service(limits(10, 0, 10), Duration.ZERO)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> service(limits(10, -1, 10), Duration.ZERO)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> service(limits(0, 10, 10), Duration.ZERO)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void bindingRejectsANonPositiveRate() {
+        ApplicationContextRunner runner = new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(ConfigurationPropertiesAutoConfiguration.class))
+                .withUserConfiguration(Properties.class);
+
+        runner.withPropertyValues("sms.providers.twilio.messages-per-second=0.5")
+                .run(context -> assertThat(context).hasNotFailed());
+        runner.withPropertyValues("sms.providers.twilio.messages-per-second=0")
+                .run(context -> assertThat(context).hasFailed());
+        runner.withPropertyValues("sms.providers.twilio.max-batch-size=-1")
+                .run(context -> assertThat(context).hasFailed());
+    }
+
+    @EnableConfigurationProperties(SmsProperties.class)
+    static class Properties {
+    }
+
+    // Counters are updated after the gateway returns, so they can lag behind what it recorded
+    private double awaitCount(String counter, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get(counter).counter().count() < expected && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        return meterRegistry.get(counter).counter().count();
+    }
+
+    private SmsService service(SmsProperties.ProviderLimits limits, Duration linger) {
+        return new SmsService(List.of(gateway), properties(limits, linger), meterRegistry, ticker);
+    }
+
+    private static SmsProperties properties(SmsProperties.ProviderLimits limits, Duration linger) {
+        SmsProperties properties = new SmsProperties();
+        properties.setProvider("recording");
+        properties.setLinger(linger);
+        // One batch at a time, so the gateway sees them in order
+        properties.setMaxConcurrentBatches(1);
+        properties.getProviders().put("recording", limits);
+        return properties;
+    }
+
+    private static SmsProperties.ProviderLimits limits(int maxBatchSize, double messagesPerSecond, int burst) {
+        SmsProperties.ProviderLimits limits = new SmsProperties.ProviderLimits();
+        limits.setMaxBatchSize(maxBatchSize);
+        limits.setMessagesPerSecond(messagesPerSecond);
+        limits.setBurst(burst);
+        return limits;
+    }
+
+    /**
+     * Real monotonic time plus however long the code under test has "slept".
+     */
+    private static class FakeTicker implements Ticker {
+        private final AtomicLong offset = new AtomicLong();
+        private final List<Long> slept = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime() + offset.get();
+        }
+
+        @Override
+        public void sleep(long nanos) {
+            slept.add(nanos);
+            offset.addAndGet(nanos);
+        }
+
+        List<Long> slept() {
+            synchronized (slept) {
+                return List.copyOf(slept);
+            }
+        }
+    }
+
+    private class RecordingGateway implements SmsGateway {
+        private final List<List<SmsMessage>> batches = new ArrayList<>();
+        private final List<Long> sentAt = new ArrayList<>();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger attempts = new AtomicInteger();
+        private volatile boolean blocked;
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public void send(List<SmsMessage> batch) throws Exception {
+            attempts.incrementAndGet();
+            if (blocked)
+                Thread.sleep(Long.MAX_VALUE);
+            if (failures.getAndDecrement() > 0)
+                throw new IllegalStateException("Provider unavailable");
+            synchronized (this) {
+                batches.add(List.copyOf(batch));
+                sentAt.add(ticker.nanoTime());
+                notifyAll();
+            }
+        }
+
+        synchronized List<List<SmsMessage>> awaitMessages(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (batches.stream().mapToInt(List::size).sum() < count) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0)
+                    throw new AssertionError("Timed out waiting for " + count + " messages, got " + batches);
+                wait(remaining);
+            }
+            return List.copyOf(batches);
+        }
+
+        synchronized List<Long> sentAt() {
+            return List.copyOf(sentAt);
+        }
+
+        synchronized long firstSentAt() {
+            return sentAt.get(0);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.calenderDTO.TimeOffPageDTO;
+import com.clinic.demo.PostgresContainerTest;
+import com.clinic.demo.models.entity.RoleEntity;
+import com.clinic.demo.models.entity.TimeOff;
+import com.clinic.demo.models.entity.user.EmployeeEntity;
+import com.clinic.demo.models.enums.GenderEnum;
+import com.clinic.demo.models.enums.TimeOffStatus;
+import com.clinic.demo.models.enums.UserTypeEnum;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Guards the time-off listings against N+1 queries: a page must cost one statement however many employees it
+ * spans, and must not load any employee (or, through it, their EAGER roles).
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TimeOffService.class)
+class TimeOffServiceStatementCountTest extends PostgresContainerTest {
+
+    private static final int EMPLOYEES = 5;
+    private static final int TIME_OFFS_PER_EMPLOYEE = 6;
+
+    @MockBean
+    private UserService userService;
+    @MockBean
+    private TimeOffSnapshotService timeOffSnapshotService;
+
+    @Autowired
+    private TimeOffService timeOffService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        RoleEntity role = new RoleEntity("DOCTOR");
+        entityManager.persist(role);
+
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withNano(0);
+        for (int i = 0; i < EMPLOYEES; i++) {
+            EmployeeEntity employee = new EmployeeEntity("First" + i, "Last" + i, "employee" + i + "@clinic.test",
+                    null, null, GenderEnum.M, UserTypeEnum.DOCTOR, "hash", LocalDate.of(1980, 1, 1), 0,
+                    Set.of(role));
+            entityManager.persist(employee);
+
+            for (int j = 0; j < TIME_OFFS_PER_EMPLOYEE; j++) {
+                TimeOff timeOff = new TimeOff();
+                timeOff.setEmployee(employee);
+                timeOff.setStartDateTime(start.plusHours(j));
+                timeOff.setEndDateTime(start.plusHours(j + 1));
+                timeOff.setStatus(TimeOffStatus.PENDING);
+                entityManager.persist(timeOff);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void firstPageIsOneStatementWithoutLoadingEmployees() {
+        TimeOffPageDTO page = timeOffService.getPendingTimeOffs(null, null, 20);
+
+        assertThat(page.getContent()).hasSize(20);
+        assertThat(page.getContent()).allSatisfy(timeOff -> {
+            assertThat(timeOff.getEmployeeEmail()).endsWith("@clinic.test");
+            assertThat(timeOff.getEmployeeName()).startsWith("First");
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void nextPageIsOneStatementAndContinuesAfterTheCursor() {
+        TimeOffPageDTO first = timeOffService.getPendingTimeOffs(null, null, 20);
+        statistics.clear();
+
+        TimeOffPageDTO next = timeOffService.getPendingTimeOffs(first.getNextStartDateTime(), first.getNextId(), 20);
+
+        assertThat(next.getContent()).hasSize(EMPLOYEES * TIME_OFFS_PER_EMPLOYEE - 20);
+        assertThat(next.isHasNext()).isFalse();
+        assertThat(next.getContent()).noneMatch(timeOff -> first.getContent().stream()
+                .anyMatch(seen -> seen.getId().equals(timeOff.getId())));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+}
@@ -0,0 +1,134 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.calenderDTO.TimeOffIntervalDTO;
+import com.clinic.demo.repository.TimeOffRepository;
+import com.clinic.demo.utils.MutableClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TimeOffSnapshotServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 2);
+
+    private final TimeOffRepository timeOffRepository = mock(TimeOffRepository.class);
+    private final MutableClock clock = new MutableClock(TODAY.atTime(10, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    private final TimeOffSnapshotService snapshotService = new TimeOffSnapshotService(timeOffRepository, clock);
+
+    private final UUID doctorId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(snapshotService, "horizonWeeks", 2);
+    }
+
+    @Test
+    void asksTheDatabaseUntilTheFirstRefresh() {
+        LocalDateTime from = TODAY.atTime(9, 0);
+        when(timeOffRepository.hasApprovedTimeOffInRange(doctorId, from, from.plusHours(1))).thenReturn(true);
+
+        assertThat(snapshotService.isEmployeeOutDuring(doctorId, from, from.plusHours(1))).isTrue();
+        verify(timeOffRepository).hasApprovedTimeOffInRange(doctorId, from, from.plusHours(1));
+    }
+
+    @Test
+    void answersFromTheSnapshotInsideTheWindow() {
+        TimeOffIntervalDTO timeOff = timeOff(1L, doctorId, TODAY.plusDays(3).atStartOfDay(), TODAY.plusDays(4).atTime(23, 59));
+        when(timeOffRepository.findApprovedIntervalsInRange(TODAY.atStartOfDay(), TODAY.plusWeeks(2).atStartOfDay()))
+                .thenReturn(List.of(timeOff));
+        snapshotService.refresh();
+
+        assertThat(snapshotService.isEmployeeOutOnDate(doctorId, TODAY.plusDays(4))).isTrue();
+        assertThat(snapshotService.isEmployeeOutOnDate(doctorId, TODAY.plusDays(5))).isFalse();
+        assertThat(snapshotService.isEmployeeOutOnDate(UUID.randomUUID(), TODAY.plusDays(4))).isFalse();
+        assertThat(snapshotService.getEmployeesOutAt(TODAY.plusDays(3).atTime(12, 0))).containsExactly(timeOff);
+        verify(timeOffRepository, never()).hasApprovedTimeOffInRange(any(), any(), any());
+    }
+
+    @Test
+    void fallsBackToTheDatabaseBeyondTheHorizon() {
+        when(timeOffRepository.findApprovedIntervalsInRange(any(), any())).thenReturn(List.of());
+        snapshotService.refresh();
+        LocalDate beyond = TODAY.plusWeeks(3);
+        when(timeOffRepository.hasApprovedTimeOffInRange(any(), any(), any())).thenReturn(true);
+
+        assertThat(snapshotService.isEmployeeOutOnDate(doctorId, beyond)).isTrue();
+        assertThat(snapshotService.isEmployeeOutOnDate(doctorId, TODAY.minusDays(1))).isTrue();
+        verify(timeOffRepository, times(2)).hasApprovedTimeOffInRange(any(), any(), any());
+    }
+
+    @Test
+    void theWindowMovesForwardWithTheNextRefresh() {
+        when(timeOffRepository.findApprovedIntervalsInRange(any(), any())).thenReturn(List.of());
+        snapshotService.refresh();
+        LocalDate lastDay = TODAY.plusWeeks(2);
+
+        snapshotService.isEmployeeOutOnDate(doctorId, lastDay);
+        verify(timeOffRepository).hasApprovedTimeOffInRange(any(), any(), any());
+
+        clock.advance(Duration.ofDays(1));
+        snapshotService.refresh();
+        snapshotService.isEmployeeOutOnDate(doctorId, lastDay);
+
+        verify(timeOffRepository).findApprovedIntervalsInRange(TODAY.plusDays(1).atStartOfDay(), lastDay.plusDays(1).atStartOfDay());
+        verify(timeOffRepository, times(1)).hasApprovedTimeOffInRange(any(), any(), any());
+    }
+
+    @Test
+    void aTimeOffChangeRebuildsTheSnapshot() {
+        TimeOffIntervalDTO timeOff = timeOff(1L, doctorId, TODAY.plusDays(1).atStartOfDay(), TODAY.plusDays(1).atTime(23, 59));
+        when(timeOffRepository.findApprovedIntervalsInRange(any(), any())).thenReturn(List.of(), List.of(timeOff));
+        snapshotService.refresh();
+        assertThat(snapshotService.isEmployeeOutOnDate(doctorId, TODAY.plusDays(1))).isFalse();
+
+        snapshotService.onTimeOffChanged(new TimeOffChangedEvent(1L));
+
+        assertThat(snapshotService.isEmployeeOutOnDate(doctorId, TODAY.plusDays(1))).isTrue();
+    }
+
+    @Test
+    void keepsThePreviousSnapshotWhenARebuildFails() {
+        TimeOffIntervalDTO timeOff = timeOff(1L, doctorId, TODAY.plusDays(1).atStartOfDay(), TODAY.plusDays(1).atTime(23, 59));
+        when(timeOffRepository.findApprovedIntervalsInRange(any(), any()))
+                .thenReturn(List.of(timeOff))
+                .thenThrow(new QueryTimeoutException("time_off scan timed out"));
+        snapshotService.refresh();
+
+        snapshotService.onTimeOffChanged(new TimeOffChangedEvent(2L));
+
+        assertThat(snapshotService.isEmployeeOutOnDate(doctorId, TODAY.plusDays(1))).isTrue();
+        verify(timeOffRepository, never()).hasApprovedTimeOffInRange(any(), any(), any());
+    }
+
+    @Test
+    void listsOverlappingTimeOffsInStartOrder() {
+        UUID nurseId = UUID.randomUUID();
+        TimeOffIntervalDTO longLeave = timeOff(1L, nurseId, TODAY.plusDays(1).atStartOfDay(), TODAY.plusDays(10).atStartOfDay());
+        TimeOffIntervalDTO shortLeave = timeOff(2L, doctorId, TODAY.plusDays(5).atStartOfDay(), TODAY.plusDays(5).atTime(12, 0));
+        TimeOffIntervalDTO earlier = timeOff(3L, doctorId, TODAY.plusDays(2).atStartOfDay(), TODAY.plusDays(2).atTime(12, 0));
+        when(timeOffRepository.findApprovedIntervalsInRange(any(), any())).thenReturn(List.of(shortLeave, longLeave, earlier));
+        snapshotService.refresh();
+
+        assertThat(snapshotService.getEmployeesOutDuring(TODAY.plusDays(4).atStartOfDay(), TODAY.plusDays(6).atStartOfDay()))
+                .containsExactly(longLeave, shortLeave);
+        assertThat(snapshotService.getEmployeesOutAt(TODAY.plusDays(2).atTime(6, 0)))
+                .containsExactly(longLeave, earlier);
+    }
+
+    private static TimeOffIntervalDTO timeOff(Long id, UUID employeeId, LocalDateTime start, LocalDateTime end) {
+        return new TimeOffIntervalDTO(id, employeeId, "employee@example.com", "Dana Doe", start, end,
+                "Leave", "admin@example.com", null, start.minusDays(7), start.minusDays(7));
+    }
+}
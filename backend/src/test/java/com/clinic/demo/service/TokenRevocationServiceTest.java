@@ -0,0 +1,57 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TokenRevocationServiceTest {
+
+    private final TokenRevocationService service =
+            new TokenRevocationService(mock(RevokedTokenRepository.class), 15, 0.01);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void revokedSessionBlocksItsTokensOnceCommitted() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.revokeSession("session-1");
+        assertThat(service.isRevoked(token("jti-1", "session-1"))).isFalse();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(service.isRevoked(token("jti-1", "session-1"))).isTrue();
+        assertThat(service.isRevoked(token("jti-2", "session-2"))).isFalse();
+    }
+
+    @Test
+    void rolledBackRevocationDoesNotBlockTheSession() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.revokeSession("session-1");
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(service.isRevoked(token("jti-1", "session-1"))).isFalse();
+    }
+
+    private static Jwt token(String id, String sessionId) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .jti(id)
+                .claim("sid", sessionId)
+                .expiresAt(Instant.now().plusSeconds(900))
+                .build();
+    }
+}
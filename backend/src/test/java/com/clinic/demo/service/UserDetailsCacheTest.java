@@ -0,0 +1,166 @@
+package com.clinic.demo.service;
+
+import com.clinic.demo.DTO.UserDetailsSnapshot;
+import com.clinic.demo.models.entity.RoleEntity;
+import com.clinic.demo.models.entity.user.EmployeeEntity;
+import com.clinic.demo.models.enums.GenderEnum;
+import com.clinic.demo.models.enums.PermissionEnum;
+import com.clinic.demo.models.enums.UserTypeEnum;
+import com.clinic.demo.utils.PermissionMask;
+import com.clinic.demo.utils.Ticker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserDetailsCacheTest {
+
+    private final ManualTicker ticker = new ManualTicker();
+    private final UserDetailsCache cache = new UserDetailsCache(ticker);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "maxSize", 2);
+    }
+
+    @Test
+    void servesAnEntryUntilItsTtlRunsOut() {
+        UserDetailsSnapshot snapshot = snapshot("Doctor@Example.com");
+        cache.put("Doctor@Example.com", snapshot, cache.currentGeneration());
+
+        ticker.advance(59);
+        assertThat(cache.get("doctor@example.com")).isSameAs(snapshot);
+
+        ticker.advance(1);
+        assertThat(cache.get("doctor@example.com")).isNull();
+    }
+
+    @Test
+    void evictsOneUserOnAChange() {
+        cache.put("a@example.com", snapshot("a@example.com"), cache.currentGeneration());
+        cache.put("b@example.com", snapshot("b@example.com"), cache.currentGeneration());
+
+        cache.onUserDetailsChanged(new UserDetailsChangedEvent("A@example.com"));
+
+        assertThat(cache.get("a@example.com")).isNull();
+        assertThat(cache.get("b@example.com")).isNotNull();
+    }
+
+    @Test
+    void evictsEveryoneOnAChangeWithoutAnEmail() {
+        cache.put("a@example.com", snapshot("a@example.com"), cache.currentGeneration());
+        cache.put("b@example.com", snapshot("b@example.com"), cache.currentGeneration());
+
+        cache.onUserDetailsChanged(new UserDetailsChangedEvent(null));
+
+        assertThat(cache.get("a@example.com")).isNull();
+        assertThat(cache.get("b@example.com")).isNull();
+    }
+
+    @Test
+    void dropsASnapshotLoadedBeforeAConcurrentChange() {
+        long loadedAt = cache.currentGeneration();
+        cache.evict("a@example.com");
+
+        cache.put("a@example.com", snapshot("a@example.com"), loadedAt);
+
+        assertThat(cache.get("a@example.com")).isNull();
+    }
+
+    @Test
+    void makesRoomByDroppingExpiredEntriesWhenFull() {
+        cache.put("a@example.com", snapshot("a@example.com"), cache.currentGeneration());
+        ticker.advance(30);
+        cache.put("b@example.com", snapshot("b@example.com"), cache.currentGeneration());
+
+        cache.put("c@example.com", snapshot("c@example.com"), cache.currentGeneration());
+        assertThat(cache.get("c@example.com")).isNull();
+
+        ticker.advance(30);
+        cache.put("c@example.com", snapshot("c@example.com"), cache.currentGeneration());
+        assertThat(cache.get("a@example.com")).isNull();
+        assertThat(cache.get("b@example.com")).isNotNull();
+        assertThat(cache.get("c@example.com")).isNotNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void evictExpiredRemovesOnlyExpiredEntries() {
+        cache.put("a@example.com", snapshot("a@example.com"), cache.currentGeneration());
+        ticker.advance(45);
+        cache.put("b@example.com", snapshot("b@example.com"), cache.currentGeneration());
+        ticker.advance(15);
+
+        cache.evictExpired();
+
+        Map<String, ?> entries = (Map<String, ?>) ReflectionTestUtils.getField(cache, "entries");
+        assertThat(entries).containsOnlyKeys("b@example.com");
+    }
+
+    @Test
+    void snapshotIsDetachedFromTheEntity() {
+        RoleEntity role = RoleEntity.builder().name("ROLE_DOCTOR").permissions(Set.of(PermissionEnum.values()[0])).build();
+        EmployeeEntity employee = employee("doctor@example.com", role);
+        PermissionMask permissions = PermissionMask.ofRoles(Set.of(role));
+
+        UserDetailsSnapshot snapshot = UserDetailsSnapshot.from(employee, permissions, 4);
+        employee.setPassword("changed");
+        employee.setFirstName("Changed");
+
+        assertThat(snapshot.getPassword()).isEqualTo("hash");
+        assertThat(snapshot.getFirstName()).isEqualTo("First");
+        assertThat(snapshot.getRoleNames()).containsExactly("ROLE_DOCTOR");
+        assertThatThrownBy(() -> snapshot.getRoleNames().add("ROLE_ADMIN")).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(snapshot.getAuthorities()).isEqualTo(permissions.getAuthorities());
+        assertThat(snapshot.getPermissionsVersion()).isEqualTo(4);
+        assertThat(snapshot.getProfile().email()).isEqualTo("doctor@example.com");
+    }
+
+    @Test
+    void withPasswordKeepsEverythingElse() {
+        UserDetailsSnapshot snapshot = snapshot("doctor@example.com");
+
+        UserDetailsSnapshot updated = snapshot.withPassword("new-hash");
+
+        assertThat(updated.getPassword()).isEqualTo("new-hash");
+        assertThat(updated.withPassword("hash")).isEqualTo(snapshot);
+    }
+
+    private static UserDetailsSnapshot snapshot(String email) {
+        return UserDetailsSnapshot.from(employee(email), PermissionMask.EMPTY, 1);
+    }
+
+    private static EmployeeEntity employee(String email, RoleEntity... roles) {
+        EmployeeEntity employee = new EmployeeEntity("First", "Last", email, null, null, GenderEnum.M,
+                UserTypeEnum.DOCTOR, "hash", LocalDate.of(1980, 1, 1), 0, Set.of(roles));
+        ReflectionTestUtils.setField(employee, "id", UUID.randomUUID());
+        return employee;
+    }
+
+    private static class ManualTicker implements Ticker {
+        private long nanos;
+
+        void advance(long seconds) {
+            nanos += TimeUnit.SECONDS.toNanos(seconds);
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+
+        @Override
+        public void sleep(long nanos) {
+            this.nanos += nanos;
+        }
+    }
+}
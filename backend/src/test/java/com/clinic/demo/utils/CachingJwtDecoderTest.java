@@ -0,0 +1,103 @@
+package com.clinic.demo.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingJwtDecoderTest {
+
+    private final List<String> verified = new ArrayList<>();
+    private Instant expiresAt = Instant.now().plusSeconds(900);
+
+    private final JwtDecoder delegate = token -> {
+        if (token.startsWith("bad"))
+            throw new BadJwtException("Invalid signature");
+        verified.add(token);
+        return Jwt.withTokenValue(token).header("alg", "none").subject(token).expiresAt(expiresAt).build();
+    };
+
+    @Test
+    void verifiesEachTokenOnceUntilEvicted() {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 10, new SimpleMeterRegistry());
+
+        decoder.decode("a");
+        decoder.decode("a");
+        decoder.decode("a");
+        assertThat(verified).containsExactly("a");
+
+        decoder.evict("a");
+        decoder.decode("a");
+        assertThat(verified).containsExactly("a", "a");
+    }
+
+    @Test
+    void doesNotCacheRejectedTokens() {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 10, new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> decoder.decode("bad")).isInstanceOf(BadJwtException.class);
+        assertThat(decoder.size()).isZero();
+    }
+
+    @Test
+    void reverifiesExpiredTokens() {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 10, new SimpleMeterRegistry());
+        expiresAt = Instant.now().minusSeconds(1);
+
+        decoder.decode("a");
+        decoder.decode("a");
+
+        assertThat(verified).containsExactly("a", "a");
+    }
+
+    @Test
+    void displacesTheOldestTokenOnceFull() {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 3, new SimpleMeterRegistry());
+        for (String token : List.of("a", "b", "c", "d"))
+            decoder.decode(token);
+        verified.clear();
+
+        decoder.decode("b");
+        decoder.decode("c");
+        decoder.decode("d");
+        assertThat(verified).isEmpty();
+        decoder.decode("a");
+        assertThat(verified).containsExactly("a");
+        assertThat(decoder.size()).isEqualTo(3);
+    }
+
+    @Test
+    void staysBoundedWhenTokensAreEvictedAndCachedAgain() {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 3, new SimpleMeterRegistry());
+        for (int i = 0; i < 100; i++) {
+            decoder.decode("token" + i % 5);
+            decoder.evict("token" + (i + 2) % 5);
+        }
+
+        assertThat(decoder.size()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void aStaleQueueEntryDoesNotDisplaceTheTokenCachedAgainSince() {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 2, new SimpleMeterRegistry());
+        decoder.decode("a");
+        decoder.evict("a");
+        decoder.decode("a");
+
+        // Displaces the entry queued for the evicted "a", which must leave the one cached since alone
+        decoder.decode("b");
+        verified.clear();
+        decoder.decode("a");
+        decoder.decode("b");
+
+        assertThat(verified).isEmpty();
+    }
+}
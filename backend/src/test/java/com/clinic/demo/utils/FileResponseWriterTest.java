@@ -0,0 +1,234 @@
+package com.clinic.demo.utils;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class FileResponseWriterTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final Instant LAST_MODIFIED = Instant.parse("2026-01-01T00:00:00Z");
+    private static final String ETAG = "abc123";
+    private static final String CACHE_CONTROL = "private, max-age=60";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sendsTheWholeBodyWithoutARange() throws IOException {
+        MockHttpServletResponse response = write(get());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isNull();
+        assertThat(response.getContentLengthLong()).isEqualTo(10);
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void sendsAClosedRange() throws IOException {
+        MockHttpServletResponse response = write(get("bytes=2-5"));
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 2-5/10");
+        assertThat(response.getContentLengthLong()).isEqualTo(4);
+        assertThat(response.getContentAsString()).isEqualTo("2345");
+    }
+
+    @Test
+    void sendsOpenEndedAndSuffixRanges() throws IOException {
+        MockHttpServletResponse openEnded = write(get("bytes=7-"));
+        MockHttpServletResponse suffix = write(get("bytes=-3"));
+
+        assertThat(openEnded.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 7-9/10");
+        assertThat(openEnded.getContentAsString()).isEqualTo("789");
+        assertThat(suffix.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 7-9/10");
+        assertThat(suffix.getContentAsString()).isEqualTo("789");
+    }
+
+    @Test
+    void clampsARangeThatRunsPastTheEnd() throws IOException {
+        MockHttpServletResponse response = write(get("bytes=8-100"));
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 8-9/10");
+        assertThat(response.getContentAsString()).isEqualTo("89");
+    }
+
+    @Test
+    void refusesARangeStartingPastTheEnd() throws IOException {
+        MockHttpServletResponse response = write(get("bytes=10-"));
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */10");
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void sendsTheWholeBodyForMalformedOrMultipleRanges() throws IOException {
+        for (String range : new String[]{"bytes=abc", "items=0-3", "bytes=5-2", "bytes=0-1,4-5"}) {
+            MockHttpServletResponse response = write(get(range));
+
+            assertThat(response.getStatus()).as(range).isEqualTo(200);
+            assertThat(response.getContentAsString()).as(range).isEqualTo("0123456789");
+        }
+    }
+
+    @Test
+    void honoursTheRangeOnlyWhileIfRangeStillMatches() throws IOException {
+        MockHttpServletRequest matching = get("bytes=0-1");
+        matching.addHeader(HttpHeaders.IF_RANGE, "\"" + ETAG + "\"");
+        MockHttpServletRequest changed = get("bytes=0-1");
+        changed.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+        MockHttpServletRequest weak = get("bytes=0-1");
+        weak.addHeader(HttpHeaders.IF_RANGE, "W/\"" + ETAG + "\"");
+
+        assertThat(write(matching).getContentAsString()).isEqualTo("01");
+        // A weak validator can't vouch for byte-identical content, so the whole body goes out instead
+        for (MockHttpServletRequest request : new MockHttpServletRequest[]{changed, weak}) {
+            MockHttpServletResponse response = write(request);
+            assertThat(response.getStatus()).isEqualTo(200);
+            assertThat(response.getContentAsString()).isEqualTo("0123456789");
+        }
+    }
+
+    @Test
+    void answersHeadWithTheRangeHeadersButNoBody() throws IOException {
+        MockHttpServletRequest request = get("bytes=2-5");
+        request.setMethod("HEAD");
+
+        MockHttpServletResponse response = write(request);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentLengthLong()).isEqualTo(4);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void answersAMatchingIfNoneMatchWithNotModified() throws IOException {
+        MockHttpServletRequest request = get("bytes=2-5");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + ETAG + "\"");
+
+        MockHttpServletResponse response = write(request);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void copiesARangeOfAFile() throws IOException {
+        Path file = Files.write(directory.resolve("avatar.png"), CONTENT);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FileResponseWriter.write(get("bytes=3-6"), response, file, "image/png", ETAG, CACHE_CONTROL);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentAsString()).isEqualTo("3456");
+    }
+
+    @Test
+    void handsTheRangeToSendfileWhenTheConnectorSupportsIt() throws IOException {
+        Path file = Files.write(directory.resolve("avatar.png"), CONTENT);
+        MockHttpServletRequest request = get("bytes=3-6");
+        request.setAttribute("org.apache.tomcat.sendfile.support", true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FileResponseWriter.write(request, response, file, "image/png", ETAG, CACHE_CONTROL);
+
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.filename")).isEqualTo(file.toRealPath().toString());
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.start")).isEqualTo(3L);
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo(7L);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void failsInsteadOfSpinningWhenTheFileIsTruncatedMidResponse() throws IOException {
+        Path file = Files.write(directory.resolve("avatar.png"), CONTENT);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        // Truncate once the size has been stat'ed and the body is about to be copied
+        HttpServletResponseWrapper truncating = new HttpServletResponseWrapper(response) {
+            @Override
+            public ServletOutputStream getOutputStream() throws IOException {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(4);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return super.getOutputStream();
+            }
+        };
+
+        assertThatThrownBy(() -> FileResponseWriter.write(get(), truncating, file, "image/png", ETAG, CACHE_CONTROL))
+                .isInstanceOf(EOFException.class)
+                .hasMessage("File ended 6 bytes early");
+    }
+
+    @Test
+    void handsInMemoryBodiesToTomcatAsABuffer() throws IOException {
+        CoyoteOutputStream coyote = mock(CoyoteOutputStream.class);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        doAnswer(invocation -> {
+            ByteBuffer body = invocation.getArgument(0);
+            while (body.hasRemaining())
+                written.write(body.get());
+            return null;
+        }).when(coyote).write(any(ByteBuffer.class));
+        HttpServletResponseWrapper response = new HttpServletResponseWrapper(new MockHttpServletResponse()) {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return coyote;
+            }
+        };
+        ByteBuffer content = ByteBuffer.allocateDirect(CONTENT.length).put(CONTENT).flip().asReadOnlyBuffer();
+
+        FileResponseWriter.write(get("bytes=2-5"), response, content, LAST_MODIFIED, "image/png", ETAG, CACHE_CONTROL);
+
+        assertThat(written.toString(StandardCharsets.US_ASCII)).isEqualTo("2345");
+        verify(coyote, never()).write(any(byte[].class), anyInt(), anyInt());
+        // The cached buffer itself is left as it was
+        assertThat(content.position()).isZero();
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/avatar");
+    }
+
+    private static MockHttpServletRequest get(String range) {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, range);
+        return request;
+    }
+
+    private static MockHttpServletResponse write(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FileResponseWriter.write(request, response, ByteBuffer.wrap(CONTENT), LAST_MODIFIED,
+                "image/png", ETAG, CACHE_CONTROL);
+        return response;
+    }
+}
@@ -0,0 +1,71 @@
+package com.clinic.demo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageFormatTest {
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 0x10, 'J', 'F', 'I', 'F', 0, 1};
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 0x0D};
+    private static final byte[] WEBP = {'R', 'I', 'F', 'F', 0x24, 0, 0, 0, 'W', 'E', 'B', 'P'};
+
+    @Test
+    void detectsEachFormatFromItsSignature() {
+        assertThat(ImageFormat.detect(JPEG, JPEG.length)).isEqualTo(ImageFormat.JPEG);
+        assertThat(ImageFormat.detect(PNG, PNG.length)).isEqualTo(ImageFormat.PNG);
+        assertThat(ImageFormat.detect(WEBP, WEBP.length)).isEqualTo(ImageFormat.WEBP);
+    }
+
+    @Test
+    void detectsFromTheShortestHeaderThatHoldsTheSignature() {
+        assertThat(ImageFormat.detect(JPEG, 3)).isEqualTo(ImageFormat.JPEG);
+        assertThat(ImageFormat.detect(PNG, 8)).isEqualTo(ImageFormat.PNG);
+        assertThat(ImageFormat.detect(WEBP, ImageFormat.SIGNATURE_LENGTH)).isEqualTo(ImageFormat.WEBP);
+    }
+
+    @Test
+    void ignoresBytesPastTheGivenLength() {
+        // The signatures are all in the buffer, but not within the bytes that have actually been read
+        assertThat(ImageFormat.detect(JPEG, 2)).isNull();
+        assertThat(ImageFormat.detect(PNG, 7)).isNull();
+        assertThat(ImageFormat.detect(WEBP, ImageFormat.SIGNATURE_LENGTH - 1)).isNull();
+        assertThat(ImageFormat.detect(new byte[ImageFormat.SIGNATURE_LENGTH], 0)).isNull();
+    }
+
+    @Test
+    void rejectsRiffContainersThatAreNotWebp() {
+        byte[] wave = WEBP.clone();
+        System.arraycopy("WAVE".getBytes(StandardCharsets.US_ASCII), 0, wave, 8, 4);
+
+        assertThat(ImageFormat.detect(wave, wave.length)).isNull();
+    }
+
+    @Test
+    void rejectsNearMissesAndOtherFormats() {
+        byte[] brokenPng = PNG.clone();
+        brokenPng[4] = '\n';
+        byte[] brokenJpeg = JPEG.clone();
+        brokenJpeg[2] = 0;
+        byte[] gif = Arrays.copyOf("GIF89a".getBytes(StandardCharsets.US_ASCII), ImageFormat.SIGNATURE_LENGTH);
+        byte[] svg = "<svg xmlns=\"".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(ImageFormat.detect(brokenPng, brokenPng.length)).isNull();
+        assertThat(ImageFormat.detect(brokenJpeg, brokenJpeg.length)).isNull();
+        assertThat(ImageFormat.detect(gif, gif.length)).isNull();
+        assertThat(ImageFormat.detect(svg, svg.length)).isNull();
+    }
+
+    @Test
+    void mapsEachFormatToItsExtensionAndContentType() {
+        assertThat(ImageFormat.JPEG.getExtension()).isEqualTo("jpg");
+        assertThat(ImageFormat.JPEG.getContentType()).isEqualTo("image/jpeg");
+        assertThat(ImageFormat.PNG.getExtension()).isEqualTo("png");
+        assertThat(ImageFormat.PNG.getContentType()).isEqualTo("image/png");
+        assertThat(ImageFormat.WEBP.getExtension()).isEqualTo("webp");
+        assertThat(ImageFormat.WEBP.getContentType()).isEqualTo("image/webp");
+    }
+}
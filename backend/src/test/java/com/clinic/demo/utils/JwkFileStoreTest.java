@@ -0,0 +1,64 @@
+package com.clinic.demo.utils;
+
+import com.nimbusds.jose.jwk.JWK;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwkFileStoreTest {
+
+    @TempDir
+    Path keysDirectory;
+
+    @Test
+    void savedKeysLoadBackAndAreOwnerOnly() throws IOException {
+        JwkFileStore store = new JwkFileStore(keysDirectory.resolve("jwt"));
+        JWK key = KeyGeneratorUtility.generateSigningKey(JwtSigningAlgorithm.ES256, Instant.now(), Instant.now());
+
+        store.save(key);
+
+        assertThat(store.loadAll()).singleElement().satisfies(loaded -> {
+            assertThat(loaded.getKeyID()).isEqualTo(key.getKeyID());
+            assertThat(loaded.isPrivate()).isTrue();
+            assertThat(loaded.toPublicJWK().computeThumbprint()).isEqualTo(key.toPublicJWK().computeThumbprint());
+        });
+        Path file = keysDirectory.resolve("jwt").resolve(key.getKeyID() + ".json");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file))).isEqualTo("rw-------");
+        try (var files = Files.list(keysDirectory.resolve("jwt"))) {
+            assertThat(files).noneMatch(path -> path.toString().endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    void ignoresPublicAndUnreadableKeyFiles() throws IOException {
+        JwkFileStore store = new JwkFileStore(keysDirectory);
+        JWK key = KeyGeneratorUtility.generateSigningKey(JwtSigningAlgorithm.ES256, Instant.now(), Instant.now());
+        Files.writeString(keysDirectory.resolve("public.json"), key.toPublicJWK().toJSONString());
+        Files.writeString(keysDirectory.resolve("broken.json"), "{not json");
+
+        assertThat(store.loadAll()).isEmpty();
+    }
+
+    @Test
+    void deleteRemovesTheKeyFile() {
+        JwkFileStore store = new JwkFileStore(keysDirectory);
+        JWK key = KeyGeneratorUtility.generateSigningKey(JwtSigningAlgorithm.ES256, Instant.now(), Instant.now());
+        store.save(key);
+
+        store.delete(key.getKeyID());
+
+        assertThat(store.loadAll()).isEmpty();
+    }
+
+    @Test
+    void loadsNothingFromAMissingDirectory() {
+        assertThat(new JwkFileStore(keysDirectory.resolve("missing")).loadAll()).isEmpty();
+    }
+}
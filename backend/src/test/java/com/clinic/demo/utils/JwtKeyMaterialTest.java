@@ -0,0 +1,202 @@
+package com.clinic.demo.utils;
+
+import com.nimbusds.jose.jwk.JWK;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtKeyMaterialTest {
+
+    private static final long ROTATION_HOURS = 1;
+    private static final long ACTIVATION_DELAY_SECONDS = 120;
+    private static final long TOKEN_TTL_MINUTES = 15;
+
+    @TempDir
+    Path keysDirectory;
+
+    private MutableClock clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-05T09:00:00Z"), ZoneOffset.UTC);
+    }
+
+    @Test
+    void generatesAKeyThatSignsStraightAwayOnFirstStart() throws IOException {
+        JwtKeyMaterial keys = newKeyMaterial();
+
+        JWK signingKey = keys.getSigningKey();
+        assertThat(signingKey).isNotNull();
+        assertThat(signingKey.isPrivate()).isTrue();
+        assertThat(keyFileIds()).containsExactly(signingKey.getKeyID());
+        assertThat(keys.getPublicJwkSet().getKeys())
+                .singleElement()
+                .satisfies(key -> {
+                    assertThat(key.getKeyID()).isEqualTo(signingKey.getKeyID());
+                    assertThat(key.isPrivate()).isFalse();
+                });
+    }
+
+    @Test
+    void anotherInstanceOnTheSameDirectoryReusesTheKey() throws IOException {
+        JwtKeyMaterial first = newKeyMaterial();
+        JwtKeyMaterial second = newKeyMaterial();
+
+        assertThat(second.getSigningKey().getKeyID()).isEqualTo(first.getSigningKey().getKeyID());
+        assertThat(keyFileIds()).hasSize(1);
+    }
+
+    @Test
+    void publishesTheNextKeyBeforeSigningWithIt() {
+        JwtKeyMaterial keys = newKeyMaterial();
+        String initialKeyId = keys.getSigningKey().getKeyID();
+
+        clock.advance(Duration.ofHours(ROTATION_HOURS).plusMinutes(1));
+        keys.refresh();
+
+        String nextKeyId = newestKeyId(keys, initialKeyId);
+        assertThat(keys.getSigningKey().getKeyID()).isEqualTo(initialKeyId);
+        assertThat(keys.findVerificationKey(nextKeyId)).isNotNull();
+
+        clock.advance(Duration.ofSeconds(ACTIVATION_DELAY_SECONDS + 1));
+        keys.refresh();
+
+        assertThat(keys.getSigningKey().getKeyID()).isEqualTo(nextKeyId);
+    }
+
+    @Test
+    void keepsTheSupersededKeyPublishedUntilItsTokensHaveExpired() throws IOException {
+        JwtKeyMaterial keys = newKeyMaterial();
+        String initialKeyId = keys.getSigningKey().getKeyID();
+
+        clock.advance(Duration.ofHours(ROTATION_HOURS).plusMinutes(1));
+        keys.refresh();
+        String nextKeyId = newestKeyId(keys, initialKeyId);
+        clock.advance(Duration.ofSeconds(ACTIVATION_DELAY_SECONDS + 1));
+        keys.refresh();
+
+        // Retention is one token TTL plus the activation delay after the successor started signing
+        clock.advance(Duration.ofMinutes(TOKEN_TTL_MINUTES).plusSeconds(ACTIVATION_DELAY_SECONDS - 10));
+        keys.refresh();
+
+        assertThat(keys.getPublicJwkSet().getKeyByKeyId(initialKeyId)).isNotNull();
+        assertThat(keys.findVerificationKey(initialKeyId)).isNotNull();
+        assertThat(keyFileIds()).containsExactlyInAnyOrder(initialKeyId, nextKeyId);
+
+        clock.advance(Duration.ofSeconds(20));
+        keys.refresh();
+
+        assertThat(keys.getPublicJwkSet().getKeyByKeyId(initialKeyId)).isNull();
+        assertThat(keys.findVerificationKey(initialKeyId)).isNull();
+        assertThat(keyFileIds()).containsExactly(nextKeyId);
+    }
+
+    @Test
+    void findsAKeyAnotherInstanceRotatedIn() {
+        JwtKeyMaterial rotating = newKeyMaterial();
+        JwtKeyMaterial other = newKeyMaterial();
+        String initialKeyId = rotating.getSigningKey().getKeyID();
+
+        clock.advance(Duration.ofHours(ROTATION_HOURS).plusMinutes(1));
+        rotating.refresh();
+        String nextKeyId = newestKeyId(rotating, initialKeyId);
+
+        assertThat(other.getPublicJwkSet().getKeyByKeyId(nextKeyId)).isNull();
+        assertThat(other.findVerificationKey(nextKeyId)).isNotNull();
+    }
+
+    @Test
+    void onlyOneInstanceRotatesWhenBothAreDue() throws Exception {
+        JwtKeyMaterial first = newKeyMaterial();
+        JwtKeyMaterial second = newKeyMaterial();
+        clock.advance(Duration.ofHours(ROTATION_HOURS).plusMinutes(1));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CyclicBarrier start = new CyclicBarrier(2);
+            List<Future<?>> refreshes = Stream.of(first, second)
+                    .<Future<?>>map(keys -> executor.submit(() -> {
+                        start.await();
+                        keys.refresh();
+                        return null;
+                    }))
+                    .toList();
+            for (Future<?> refresh : refreshes)
+                refresh.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(keyFileIds()).hasSize(2);
+    }
+
+    @Test
+    void rotationWaitsForTheDirectoryLock() throws Exception {
+        JwtKeyMaterial keys = newKeyMaterial();
+        clock.advance(Duration.ofHours(ROTATION_HOURS).plusMinutes(1));
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> holder = executor.submit(() -> new JwkFileStore(keysDirectory).withLock(() -> {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+            Future<?> refresh = executor.submit(keys::refresh);
+            Thread.sleep(200);
+            assertThat(refresh.isDone()).isFalse();
+            assertThat(keyFileIds()).hasSize(1);
+
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+            refresh.get(30, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        assertThat(keyFileIds()).hasSize(2);
+    }
+
+    private JwtKeyMaterial newKeyMaterial() {
+        return new JwtKeyMaterial("ES256", keysDirectory.toString(), ROTATION_HOURS,
+                ACTIVATION_DELAY_SECONDS, TOKEN_TTL_MINUTES, clock);
+    }
+
+    private static String newestKeyId(JwtKeyMaterial keys, String previousKeyId) {
+        return keys.getPublicJwkSet().getKeys().stream()
+                .map(JWK::getKeyID)
+                .filter(keyId -> !keyId.equals(previousKeyId))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private List<String> keyFileIds() throws IOException {
+        try (Stream<Path> files = Files.list(keysDirectory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".json"))
+                    .map(name -> name.substring(0, name.length() - ".json".length()))
+                    .toList();
+        }
+    }
+}
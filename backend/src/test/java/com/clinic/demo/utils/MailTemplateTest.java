@@ -0,0 +1,80 @@
+package com.clinic.demo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MailTemplateTest {
+
+    @Test
+    void substitutesEveryPlaceholderBetweenLiterals() {
+        MailTemplate template = MailTemplate.compile("test", "Hello {{ name }}, code {{code}}{{code}}!", false);
+
+        assertThat(render(template, Map.of("name", "Ada", "code", 42))).isEqualTo("Hello Ada, code 4242!");
+    }
+
+    @Test
+    void escapesHtmlInValuesButNotInLiterals() {
+        MailTemplate template = MailTemplate.compile("test", "<p>{{message}}</p>", true);
+
+        assertThat(render(template, Map.of("message", "<script>alert('x')</script> & \"more\"")))
+                .isEqualTo("<p>&lt;script&gt;alert(&#39;x&#39;)&lt;/script&gt; &amp; &quot;more&quot;</p>");
+    }
+
+    @Test
+    void triplePlaceholdersInsertValuesUnescaped() {
+        MailTemplate template = MailTemplate.compile("test", "<ul>{{{items}}}</ul><p>{{note}}</p>", true);
+
+        assertThat(render(template, Map.of("items", "<li>a</li><li>b</li>", "note", "<b>")))
+                .isEqualTo("<ul><li>a</li><li>b</li></ul><p>&lt;b&gt;</p>");
+    }
+
+    @Test
+    void templatesWithoutEscapingCopyValuesAsIs() {
+        MailTemplate template = MailTemplate.compile("test", "Notification - {{title}}", false);
+
+        assertThat(render(template, Map.of("title", "Q&A <today>"))).isEqualTo("Notification - Q&A <today>");
+    }
+
+    @Test
+    void appendsToWhatIsAlreadyInTheBuffer() {
+        StringBuilder out = new StringBuilder("Subject\n");
+        MailTemplate.compile("test", "Hi {{name}}", true).renderTo(out, Map.of("name", "Bo"));
+
+        assertThat(out).hasToString("Subject\nHi Bo");
+    }
+
+    @Test
+    void aMissingValueIsAnError() {
+        MailTemplate template = MailTemplate.compile("test", "Hi {{name}}", true);
+
+        assertThatThrownBy(() -> render(template, Map.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("name");
+    }
+
+    @Test
+    void malformedTemplatesFailToCompile() {
+        assertThatThrownBy(() -> MailTemplate.compile("broken.html", "Hi {{name", true))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("broken.html");
+        assertThatThrownBy(() -> MailTemplate.compile("broken.html", "Hi {{{name}}", true))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> MailTemplate.compile("broken.html", "Hi {{ }}", true))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void aTemplateWithoutPlaceholdersRendersAsIs() {
+        assertThat(render(MailTemplate.compile("test", "<p>Static</p>", true), Map.of())).isEqualTo("<p>Static</p>");
+    }
+
+    private static String render(MailTemplate template, Map<String, ?> values) {
+        StringBuilder out = new StringBuilder();
+        template.renderTo(out, values);
+        return out.toString();
+    }
+}
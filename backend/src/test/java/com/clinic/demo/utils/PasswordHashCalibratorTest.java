@@ -0,0 +1,66 @@
+package com.clinic.demo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PasswordHashCalibratorTest {
+
+    private final List<Integer> measured = new ArrayList<>();
+
+    @Test
+    void picksTheMostIterationsWithinTheTarget() {
+        // 60ms per iteration: 4 iterations take 240ms, 5 would take 300ms
+        int iterations = PasswordHashCalibrator.calibrateIterations(250, 2, 10, timing(60));
+
+        assertThat(iterations).isEqualTo(4);
+        assertThat(measured).containsExactly(2, 4);
+    }
+
+    @Test
+    void neverExceedsTheConfiguredIterations() {
+        int iterations = PasswordHashCalibrator.calibrateIterations(250, 2, 3, timing(10));
+
+        assertThat(iterations).isEqualTo(3);
+    }
+
+    @Test
+    void stepsDownWhenTheExtrapolationOvershoots() {
+        // Slower than linear: the minimum measures 100ms, so 5 iterations are extrapolated but take 625ms
+        IntToLongFunction quadratic = iterations -> {
+            measured.add(iterations);
+            return 25L * iterations * iterations;
+        };
+
+        int iterations = PasswordHashCalibrator.calibrateIterations(250, 2, 10, quadratic);
+
+        assertThat(iterations).isEqualTo(3);
+        assertThat(measured).containsExactly(2, 5, 4, 3);
+    }
+
+    @Test
+    void keepsTheMinimumOnAHostTooSlowForTheTarget() {
+        int iterations = PasswordHashCalibrator.calibrateIterations(250, 2, 10, timing(500));
+
+        assertThat(iterations).isEqualTo(2);
+        assertThat(measured).containsExactly(2);
+    }
+
+    @Test
+    void copesWithHashingFasterThanTheClockResolution() {
+        int iterations = PasswordHashCalibrator.calibrateIterations(250, 2, 10, timing(0));
+
+        assertThat(iterations).isEqualTo(10);
+    }
+
+    private IntToLongFunction timing(long millisPerIteration) {
+        return iterations -> {
+            measured.add(iterations);
+            return millisPerIteration * iterations;
+        };
+    }
+}
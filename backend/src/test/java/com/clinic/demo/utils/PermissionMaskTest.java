@@ -0,0 +1,78 @@
+package com.clinic.demo.utils;
+
+import com.clinic.demo.models.entity.RoleEntity;
+import com.clinic.demo.models.enums.PermissionEnum;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PermissionMaskTest {
+
+    private static final PermissionEnum[] ALL = PermissionEnum.values();
+    private static final PermissionEnum FIRST = ALL[0];
+    private static final PermissionEnum LAST = ALL[ALL.length - 1];
+
+    @Test
+    void hasOnlyThePermissionsItWasBuiltFrom() {
+        PermissionMask mask = PermissionMask.of(List.of(FIRST, LAST));
+
+        assertThat(mask.has(FIRST)).isTrue();
+        assertThat(mask.has(LAST)).isTrue();
+        assertThat(mask.has(ALL[1])).isFalse();
+        assertThat(mask.has(null)).isFalse();
+        assertThat(mask.hasAny(ALL[1], LAST)).isTrue();
+        assertThat(mask.hasAll(FIRST, ALL[1])).isFalse();
+        assertThat(mask.toEnumSet()).containsExactlyInAnyOrder(FIRST, LAST);
+    }
+
+    @Test
+    void encodeRoundTripsEveryPermission() {
+        PermissionMask all = PermissionMask.of(EnumSet.allOf(PermissionEnum.class));
+
+        assertThat(PermissionMask.decode(all.encode())).isEqualTo(all);
+        assertThat(PermissionMask.decode(PermissionMask.EMPTY.encode())).isEqualTo(PermissionMask.EMPTY);
+        for (PermissionEnum permission : ALL)
+            assertThat(PermissionMask.decode(PermissionMask.of(Set.of(permission)).encode()).toEnumSet())
+                    .containsExactly(permission);
+    }
+
+    @Test
+    void malformedClaimsDecodeToEmpty() {
+        assertThat(PermissionMask.decode(null)).isEqualTo(PermissionMask.EMPTY);
+        assertThat(PermissionMask.decode("")).isEqualTo(PermissionMask.EMPTY);
+        assertThat(PermissionMask.decode("not-hex")).isEqualTo(PermissionMask.EMPTY);
+        assertThat(PermissionMask.decode("1.2.3.4.5.6.7.8.9")).isEqualTo(PermissionMask.EMPTY);
+    }
+
+    @Test
+    void unionCombinesBothMasksWithoutChangingEither() {
+        PermissionMask first = PermissionMask.of(Set.of(FIRST));
+        PermissionMask last = PermissionMask.of(Set.of(LAST));
+
+        assertThat(first.or(last).toEnumSet()).containsExactlyInAnyOrder(FIRST, LAST);
+        assertThat(first.toEnumSet()).containsExactly(FIRST);
+        assertThat(last.toEnumSet()).containsExactly(LAST);
+        assertThat(PermissionMask.EMPTY.isEmpty()).isTrue();
+        assertThat(first.isEmpty()).isFalse();
+    }
+
+    @Test
+    void inactiveRolesGrantNothing() {
+        RoleEntity active = RoleEntity.builder().name("ACTIVE").permissions(Set.of(FIRST)).active(true).build();
+        RoleEntity inactive = RoleEntity.builder().name("INACTIVE").permissions(Set.of(LAST)).active(false).build();
+
+        assertThat(PermissionMask.ofRoles(List.of(active, inactive)).toEnumSet()).containsExactly(FIRST);
+    }
+
+    @Test
+    void authoritiesUseTheRolePrefix() {
+        assertThat(PermissionMask.of(Set.of(FIRST)).getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_" + FIRST.name());
+    }
+}
@@ -0,0 +1,41 @@
+package com.clinic.demo.utils;
+
+import com.clinic.demo.models.enums.PermissionEnum;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PermissionSecurityExpressionRootTest {
+
+    private static final PermissionEnum GRANTED = PermissionEnum.values()[0];
+    private static final PermissionEnum DENIED = PermissionEnum.values()[1];
+
+    private final PermissionSecurityExpressionRoot root = new PermissionSecurityExpressionRoot(() -> {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .subject("user")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build();
+        return new PermissionAuthenticationToken(jwt, PermissionMask.of(Set.of(GRANTED)));
+    });
+
+    @Test
+    void answersFromTheTokenMask() {
+        assertThat(root.hasPermission(GRANTED.name())).isTrue();
+        assertThat(root.hasPermission(DENIED.name())).isFalse();
+        assertThat(root.hasAnyPermission(DENIED.name(), GRANTED.name())).isTrue();
+        assertThat(root.hasAllPermissions(DENIED.name(), GRANTED.name())).isFalse();
+    }
+
+    @Test
+    void unknownPermissionNamesFailTheCheckInsteadOfThrowing() {
+        assertThat(root.hasPermission("PATIENT_RAED")).isFalse();
+        assertThat(root.hasAnyPermission("PATIENT_RAED")).isFalse();
+        assertThat(root.hasAllPermissions(GRANTED.name(), "PATIENT_RAED")).isFalse();
+    }
+}
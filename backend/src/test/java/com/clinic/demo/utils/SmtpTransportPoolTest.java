@@ -0,0 +1,135 @@
+package com.clinic.demo.utils;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SmtpTransportPoolTest {
+
+    private FakeSmtpServer server;
+    private JavaMailSenderImpl mailSender;
+    private SmtpTransportPool pool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeSmtpServer();
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(server.getPort());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (pool != null)
+            pool.destroy();
+        server.close();
+    }
+
+    @Test
+    void reusesOneConnectionForConsecutiveMessages() throws Exception {
+        pool = new SmtpTransportPool(mailSender, 2, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 3; i++)
+            pool.send(message("patient" + i + "@example.com"));
+
+        assertThat(server.getMessages()).hasSize(3);
+        assertThat(server.getConnections()).isEqualTo(1);
+        assertThat(pool.idleConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void opensAtMostSizeConnectionsUnderConcurrency() throws Exception {
+        pool = new SmtpTransportPool(mailSender, 2, Duration.ofMinutes(1));
+
+        ExecutorService senders = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> sends = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                MimeMessage message = message("patient" + i + "@example.com");
+                sends.add(senders.submit(() -> {
+                    pool.send(message);
+                    return null;
+                }));
+            }
+            for (Future<?> send : sends)
+                send.get(30, TimeUnit.SECONDS);
+        } finally {
+            senders.shutdownNow();
+        }
+
+        assertThat(server.getMessages()).hasSize(20);
+        assertThat(server.getConnections()).isBetween(1, 2);
+    }
+
+    @Test
+    void replacesConnectionsIdleForTooLong() throws Exception {
+        pool = new SmtpTransportPool(mailSender, 2, Duration.ZERO);
+
+        pool.send(message("a@example.com"));
+        pool.send(message("b@example.com"));
+
+        assertThat(server.getMessages()).hasSize(2);
+        assertThat(server.getConnections()).isEqualTo(2);
+    }
+
+    @Test
+    void replacesAConnectionTheServerDropped() throws Exception {
+        pool = new SmtpTransportPool(mailSender, 2, Duration.ofMinutes(1));
+        pool.send(message("a@example.com"));
+
+        server.dropConnections();
+        pool.send(message("b@example.com"));
+
+        assertThat(server.getMessages()).hasSize(2);
+        assertThat(server.getConnections()).isEqualTo(2);
+    }
+
+    @Test
+    void keepsTheConnectionAfterARejectedRecipient() throws Exception {
+        pool = new SmtpTransportPool(mailSender, 2, Duration.ofMinutes(1));
+        server.rejectRecipient("gone@example.com");
+
+        assertThatThrownBy(() -> pool.send(message("gone@example.com"))).isInstanceOf(SendFailedException.class);
+        pool.send(message("b@example.com"));
+
+        assertThat(server.getMessages()).hasSize(1);
+        assertThat(server.getConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void closesIdleConnectionsOnDestroy() throws Exception {
+        pool = new SmtpTransportPool(mailSender, 2, Duration.ofMinutes(1));
+        pool.send(message("a@example.com"));
+
+        pool.destroy();
+
+        assertThat(pool.idleConnections()).isZero();
+    }
+
+    private MimeMessage message(String recipient) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message);
+        helper.setFrom("clinic@example.com");
+        helper.setTo(recipient);
+        helper.setSubject("Appointment reminder");
+        helper.setText("<p>See you soon</p>", true);
+        return message;
+    }
+}
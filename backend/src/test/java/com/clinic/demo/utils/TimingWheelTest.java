@@ -0,0 +1,156 @@
+package com.clinic.demo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimingWheelTest {
+
+    private static final long TICK = 10;
+
+    @Test
+    void expiresOnTheTickOfItsDeadlineAndNotBefore() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 1_000);
+        wheel.schedule("a", 1_000 + 5 * TICK);
+
+        assertThat(advance(wheel, 1_000 + 5 * TICK - 1)).isEmpty();
+        assertThat(advance(wheel, 1_000 + 5 * TICK)).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void deadlinesBetweenTicksAreRoundedUp() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        wheel.schedule("a", 3 * TICK + 1);
+
+        assertThat(advance(wheel, 3 * TICK + 1)).isEmpty();
+        assertThat(advance(wheel, 4 * TICK - 1)).isEmpty();
+        assertThat(advance(wheel, 4 * TICK)).containsExactly("a");
+    }
+
+    @Test
+    void pastDeadlinesExpireOnTheNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        advance(wheel, 100 * TICK);
+
+        wheel.schedule("late", 10 * TICK);
+
+        assertThat(advance(wheel, 100 * TICK)).isEmpty();
+        assertThat(advance(wheel, 101 * TICK)).containsExactly("late");
+    }
+
+    @Test
+    void cascadesFromEveryLevelAtTheRightTick() {
+        // One deadline in each of the five levels, and on either side of each level boundary
+        long[] ticks = {1, 63, 64, 65, 4_095, 4_096, 4_097, 262_143, 262_144, 262_145,
+                16_777_215, 16_777_216, 16_777_217, 16_777_216 + 262_144 + 4_096 + 64 + 1};
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        for (long tick : ticks)
+            wheel.schedule(tick, tick);
+
+        Map<Long, Long> expiredAt = new HashMap<>();
+        long[] now = new long[1];
+        for (now[0] = 0; now[0] <= ticks[ticks.length - 1]; now[0]++)
+            wheel.advance(now[0], payload -> expiredAt.put(payload, now[0]));
+
+        for (long tick : ticks)
+            assertThat(expiredAt).containsEntry(tick, tick);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void cascadesCorrectlyWhenScheduledAfterTheWheelHasMoved() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        advance(wheel, 12_345);
+
+        List<Long> deadlines = List.of(12_346L, 12_345L + 64, 12_345L + 4_096 + 7, 12_345L + 300_000, 20_000_000L);
+        for (long deadline : deadlines)
+            wheel.schedule(deadline, deadline);
+
+        Map<Long, Long> expiredAt = new HashMap<>();
+        long[] now = new long[1];
+        for (now[0] = 12_346; now[0] <= 20_000_000; now[0]++)
+            wheel.advance(now[0], payload -> expiredAt.put(payload, now[0]));
+
+        for (long deadline : deadlines)
+            assertThat(expiredAt).containsEntry(deadline, deadline);
+    }
+
+    @Test
+    void largeJumpsExpireEverythingDueInDeadlineOrder() {
+        Random random = new Random(7);
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            long deadline = random.nextLong(1, 1_000_000);
+            deadlines.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+
+        List<Long> expired = new ArrayList<>();
+        for (long now = 0; now < 1_000_000; now += random.nextLong(1, 50_000)) {
+            long until = now;
+            wheel.advance(until, deadline -> {
+                assertThat(deadline).isLessThanOrEqualTo(until);
+                expired.add(deadline);
+            });
+        }
+        wheel.advance(1_000_000, expired::add);
+
+        assertThat(expired).isSorted().containsExactlyInAnyOrderElementsOf(deadlines);
+    }
+
+    @Test
+    void cancelledTimeoutsNeverExpire() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        // Same slot, so cancelling exercises the head, middle and tail of its list
+        TimingWheel.Timeout<String> first = wheel.schedule("first", 5 * TICK);
+        TimingWheel.Timeout<String> middle = wheel.schedule("middle", 5 * TICK);
+        TimingWheel.Timeout<String> last = wheel.schedule("last", 5 * TICK);
+        TimingWheel.Timeout<String> far = wheel.schedule("far", 100_000 * TICK);
+        wheel.schedule("kept", 5 * TICK);
+
+        assertThat(wheel.cancel(middle)).isTrue();
+        assertThat(wheel.cancel(last)).isTrue();
+        assertThat(wheel.cancel(first)).isTrue();
+        assertThat(wheel.cancel(far)).isTrue();
+        assertThat(wheel.cancel(middle)).isFalse();
+        assertThat(middle.isPending()).isFalse();
+        assertThat(wheel.size()).isEqualTo(1);
+
+        assertThat(advance(wheel, 200_000 * TICK)).containsExactly("kept");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void anExpiredTimeoutCannotBeCancelled() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        TimingWheel.Timeout<String> timeout = wheel.schedule("a", TICK);
+        assertThat(timeout.isPending()).isTrue();
+
+        advance(wheel, TICK);
+
+        assertThat(timeout.isPending()).isFalse();
+        assertThat(wheel.cancel(timeout)).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void rejectsDeadlinesBeyondTheTopLevel() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+
+        assertThat(wheel.schedule("edge", (1L << 30) - 1).isPending()).isTrue();
+        assertThatThrownBy(() -> wheel.schedule("too far", 1L << 30))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    private static <T> List<T> advance(TimingWheel<T> wheel, long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        wheel.advance(nowMillis, expired::add);
+        return expired;
+    }
+}
@@ -0,0 +1,87 @@
+package com.clinic.demo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long PERIOD = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void allowsABurstOfCapacityThenRefusesWithTheWaitUntilTheNextToken() {
+        TokenBucket bucket = new TokenBucket(3, PERIOD, 0);
+
+        assertThat(bucket.tryAcquire(0)).isZero();
+        assertThat(bucket.tryAcquire(0)).isZero();
+        assertThat(bucket.tryAcquire(0)).isZero();
+        assertThat(bucket.tryAcquire(0)).isEqualTo(PERIOD);
+        assertThat(bucket.tryAcquire(PERIOD / 4)).isEqualTo(PERIOD - PERIOD / 4);
+    }
+
+    @Test
+    void regainsOneTokenPerPeriod() {
+        TokenBucket bucket = new TokenBucket(2, PERIOD, 0);
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(0);
+
+        assertThat(bucket.tryAcquire(PERIOD)).isZero();
+        assertThat(bucket.tryAcquire(PERIOD)).isPositive();
+        assertThat(bucket.tryAcquire(2 * PERIOD)).isZero();
+    }
+
+    @Test
+    void neverHoldsMoreThanCapacityAfterAnIdleStretch() {
+        TokenBucket bucket = new TokenBucket(2, PERIOD, 0);
+        long later = 100 * PERIOD;
+
+        assertThat(bucket.isFull(later)).isTrue();
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isPositive();
+        assertThat(bucket.isFull(later)).isFalse();
+        assertThat(bucket.isFull(later + 2 * PERIOD)).isTrue();
+    }
+
+    @Test
+    void capacityBelowOneStillAllowsOneRequestPerPeriod() {
+        TokenBucket bucket = new TokenBucket(0, PERIOD, 0);
+
+        assertThat(bucket.tryAcquire(0)).isZero();
+        assertThat(bucket.tryAcquire(0)).isEqualTo(PERIOD);
+    }
+
+    @Test
+    void concurrentCallersNeverTakeMoreThanCapacity() throws Exception {
+        int capacity = 1_000;
+        TokenBucket bucket = new TokenBucket(capacity, PERIOD, 0);
+        AtomicInteger granted = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < capacity; i++) {
+                        if (bucket.tryAcquire(0) == 0)
+                            granted.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(granted).hasValue(capacity);
+    }
+}
@@ -34,8 +34,8 @@ function Login() {
             if (!response.user)
                 throw new Error('No user data received from server');
 
-            // Now the response contains { jwt: string, user: User }
-            login(response.jwt, response.user);
+            // Now the response contains { jwt: string, user: User, refreshToken: string }
+            login(response.jwt, response.user, response.refreshToken);
             navigate('/dashboard');
         } catch (err: any) {
             console.error('Login error:', err);
@@ -5,7 +5,7 @@ import { authService } from '../services/authService';
 interface AuthContextType {
     user: User | null;
     isAuthenticated: boolean;
-    login: (token: string, user: User) => void;
+    login: (token: string, user: User, refreshToken: string) => void;
     logout: () => void;
     updateUser: (userData: User) => void;
     loading: boolean;
@@ -30,8 +30,9 @@ export function AuthProvider({ children }: { children: React.ReactNode }) {
         setLoading(false);
     }, []);
 
-    const login = (token: string, userData: User) => {
+    const login = (token: string, userData: User, refreshToken: string) => {
         localStorage.setItem('token', token);
+        localStorage.setItem('refreshToken', refreshToken);
         localStorage.setItem('user', JSON.stringify(userData));
         setUser(userData);
     };
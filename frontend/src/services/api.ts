@@ -1,4 +1,5 @@
-import axios from 'axios';
+import axios, { AxiosError, InternalAxiosRequestConfig } from 'axios';
+import { LoginResponse } from '../types/auth';
 
 const API_BASE_URL = 'http://localhost:3001';
 
@@ -20,9 +21,41 @@ api.interceptors.request.use((config) => {
     return config;
 });
 
+// Access tokens are short-lived; one refresh is shared by every request that failed while it was running,
+// since each refresh token can only be used once
+let refreshing: Promise<string> | null = null;
+
+const refreshAccessToken = (): Promise<string> => {
+    if (!refreshing) {
+        const refreshToken = localStorage.getItem('refreshToken');
+        refreshing = (refreshToken
+            ? axios.post<LoginResponse>(`${API_BASE_URL}/auth/refresh`, { refreshToken })
+                .then(({ data }) => {
+                    localStorage.setItem('token', data.jwt);
+                    localStorage.setItem('refreshToken', data.refreshToken);
+                    localStorage.setItem('user', JSON.stringify(data.user));
+                    return data.jwt;
+                })
+            : Promise.reject(new Error('No refresh token')))
+            .finally(() => {
+                refreshing = null;
+            });
+    }
+    return refreshing;
+};
+
+const endSession = () => {
+    localStorage.removeItem('token');
+    localStorage.removeItem('refreshToken');
+    localStorage.removeItem('user');
+    window.location.href = '/login';
+};
+
+type RetriableRequest = InternalAxiosRequestConfig & { _retried?: boolean };
+
 api.interceptors.response.use(
     (response) => response,
-    (error) => {
+    async (error: AxiosError) => {
         console.error('API Error:', {
             status: error.response?.status,
             statusText: error.response?.statusText,
@@ -31,13 +64,24 @@ api.interceptors.response.use(
             method: error.config?.method
         });
 
-        if (error.response?.status === 401) {
-            localStorage.removeItem('token');
-            localStorage.removeItem('user');
-            window.location.href = '/login';
+        const request = error.config as RetriableRequest | undefined;
+        if (error.response?.status === 401 && request && !request.url?.startsWith('/auth/')) {
+            if (request._retried) {
+                endSession();
+                return Promise.reject(error);
+            }
+
+            try {
+                const token = await refreshAccessToken();
+                request._retried = true;
+                request.headers.Authorization = `Bearer ${token}`;
+                return api(request);
+            } catch {
+                endSession();
+            }
         }
         return Promise.reject(error);
     }
 );
 
-export default api;
\ No newline at end of file
+export default api;
@@ -25,7 +25,13 @@ export const authService = {
     },
 
     logout: () => {
+        const refreshToken = localStorage.getItem('refreshToken');
+        // Ends the session on the server too, so its refresh token and access tokens stop working
+        if (refreshToken)
+            api.post('/auth/logout', { refreshToken }).catch(() => undefined);
+
         localStorage.removeItem('token');
+        localStorage.removeItem('refreshToken');
         localStorage.removeItem('user');
     },
 
@@ -19,6 +19,7 @@ export interface LoginRequest {
 export interface LoginResponse {
     jwt: string;
     user: User;
+    refreshToken: string;
 }
 
 export interface RegisterRequest {